@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamFrameHandler;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+import org.apache.http.HttpStatus;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+/**
+ * An asynchronous stream client, on the non-blocking HTTP engine of the JDK. Sending a request doesn't block the
+ * caller: the response arrives as a future, and the response body can be delivered as frame call backs, so a single
+ * client thread drives any number of concurrent streams.
+ * <p/>
+ * The request bodies are encoded before sending them (they are not streamed), so they should be small. Resuming
+ * response bodies is not supported, use a {@link StreamClient} for that.
+ *
+ * @author agent
+ * @see StreamClient
+ * @since 2026-10-17
+ */
+public final class AsyncStreamClient {
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final ExecutorService executor;
+
+    private final HttpClient httpClient;
+
+    private final StreamProtocol protocol;
+
+    private final RequestProtocols requestProtocols;
+
+    public AsyncStreamClient() {
+        this(StreamProtocol.DEFAULT);
+    }
+
+    /**
+     * Create an asynchronous stream client that offers the provided protocol to the server for writing response bodies,
+     * and writes request bodies with the same protocol once the server has shown that it negotiates protocols.
+     *
+     * @param protocol the protocol
+     * @see StreamClient#StreamClient(StreamProtocol)
+     */
+    public AsyncStreamClient(StreamProtocol protocol) {
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "promise-async-client");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .build();
+        this.protocol = protocol.withCredits(0).withTrailers(false);
+        this.requestProtocols = new RequestProtocols(this.protocol);
+    }
+
+    /**
+     * Send a request, without waiting for the response. The future completes when the response headers arrive, the
+     * response body is read from the response (in the blocking style).
+     *
+     * @param uri     the uri
+     * @param request the request (null for an empty request body)
+     * @return the response future
+     */
+    public CompletableFuture<StreamResponse> sendRequestAsync(final String uri, StreamRequest request) {
+        logger.info("opening stream for " + uri + "...");
+        return httpClient.sendAsync(createRequest(uri, request), HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(new Function<HttpResponse<InputStream>, StreamResponse>() {
+                    public StreamResponse apply(HttpResponse<InputStream> response) {
+                        try {
+                            checkStatus(response);
+                            logger.info("streaming response...");
+                            StreamResponse streamResponse = new StreamResponse(response.body(),
+                                    getContentType(response), response.body(), 0, null, 0);
+                            requestProtocols.negotiated(uri, streamResponse.getProtocol());
+                            return streamResponse;
+                        } catch (IOException e) {
+                            throw new HttpStreamException("error while executing request for stream " + uri, e);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Send a request, and deliver the response body as frame call backs. The frames are delivered (on the client
+     * thread) as soon as they arrive, the handler must not block. The future completes with the status of the stream
+     * when the response body is complete, or fails if the response body ends with an error status (or can't be read).
+     *
+     * @param uri     the uri
+     * @param request the request (null for an empty request body)
+     * @param handler the frame handler
+     * @return the status future
+     */
+    public CompletableFuture<StreamStatus> sendRequestAsync(final String uri, StreamRequest request,
+                                                            final StreamFrameHandler handler) {
+        logger.info("opening stream for " + uri + "...");
+        return httpClient.sendAsync(createRequest(uri, request), new HttpResponse.BodyHandler<StreamStatus>() {
+            public HttpResponse.BodySubscriber<StreamStatus> apply(HttpResponse.ResponseInfo info) {
+                if (info.statusCode() != HttpStatus.SC_ACCEPTED) {
+                    return HttpResponse.BodySubscribers.replacing(null);
+                }
+                String contentType = info.headers().firstValue("Content-Type").orElse(null);
+                StreamProtocol responseProtocol = StreamResponse.getProtocol(contentType);
+                requestProtocols.negotiated(uri, responseProtocol);
+                return new StreamBodySubscriber(responseProtocol, handler);
+            }
+        }).thenApply(new Function<HttpResponse<StreamStatus>, StreamStatus>() {
+            public StreamStatus apply(HttpResponse<StreamStatus> response) {
+                checkStatus(response);
+                return response.body();
+            }
+        });
+    }
+
+    private HttpRequest createRequest(String uri, StreamRequest request) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(uri))
+                .header("User-Agent", StreamClient.USER_AGENT)
+                .header("Accept", StreamClient.getAccept(protocol))
+                .header("Cache-Control", "no-cache")
+                .header("Pragma", "no-cache")
+                .header("Expires", "0");
+        if (request != null) {
+            StreamProtocol requestProtocol = requestProtocols.get(uri);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try {
+                new StreamRequestEntity(request, requestProtocol).writeTo(body);
+            } catch (IOException e) {
+                throw new HttpStreamException("error while encoding request for stream " + uri, e);
+            }
+            builder.header("Content-Type", requestProtocol.getContentType())
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()));
+        } else {
+            builder.POST(HttpRequest.BodyPublishers.noBody());
+        }
+        return builder.build();
+    }
+
+    private static void checkStatus(HttpResponse<?> response) {
+        if (response.statusCode() != HttpStatus.SC_ACCEPTED) {
+            if (response.body() instanceof InputStream) {
+                try {
+                    ((InputStream) response.body()).close();
+                } catch (IOException e) {
+                    // ignore, the request failed already
+                }
+            }
+            throw new HttpStreamException("error while executing stream request, unexpected HTTP status code: " +
+                    response.statusCode());
+        }
+    }
+
+    private static String getContentType(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Type").orElse(null);
+    }
+
+    public void close() {
+        httpClient.shutdownNow();
+        executor.shutdown();
+    }
+
+}
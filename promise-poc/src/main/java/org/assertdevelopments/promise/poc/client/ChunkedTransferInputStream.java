@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream for reading an http body with the chunked transfer encoding. The end of the stream is the last chunk
+ * (the trailers that follow it are skipped).
+ *
+ * @author agent
+ * @see ChunkedTransferOutputStream
+ * @since 2026-10-17
+ */
+final class ChunkedTransferInputStream extends InputStream {
+
+    private final InputStream in;
+
+    private long remaining = 0;
+    private boolean first = true;
+    private boolean eof = false;
+
+    ChunkedTransferInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!checkChunk()) {
+            return -1;
+        }
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("incomplete chunk");
+        }
+        remaining--;
+        return b;
+    }
+
+    @Override
+    @SuppressWarnings({"NullableProblems"})
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!checkChunk()) {
+            return -1;
+        }
+        int n = in.read(bytes, offset, (int) Math.min(length, remaining));
+        if (n == -1) {
+            throw new EOFException("incomplete chunk");
+        }
+        remaining -= n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(remaining, in.available());
+    }
+
+    /**
+     * Make sure there are bytes left in the current chunk, reading the header of the next chunk if needed.
+     *
+     * @return true if there are bytes left, false at the end of the body
+     */
+    private boolean checkChunk() throws IOException {
+        while (remaining == 0) {
+            if (eof) {
+                return false;
+            }
+            if (!first) {
+                // the end of the previous chunk
+                readLine(in);
+            }
+            first = false;
+            String line = readLine(in);
+            int index = line.indexOf(';');
+            try {
+                remaining = Long.parseLong((index != -1 ? line.substring(0, index) : line).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("malformed chunk size: " + line);
+            }
+            if (remaining < 0) {
+                throw new IOException("malformed chunk size: " + line);
+            }
+            if (remaining == 0) {
+                // skip the trailers
+                while (readLine(in).length() > 0) {
+                    // skip
+                }
+                eof = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a line (ending with a line feed, optionally preceded by a carriage return) from an http message.
+     *
+     * @param in the input stream
+     * @return the line, without the line ending
+     */
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("incomplete http message");
+            }
+            if (b == '\n') {
+                break;
+            }
+            line.append((char) b);
+        }
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        return line.toString();
+    }
+
+}
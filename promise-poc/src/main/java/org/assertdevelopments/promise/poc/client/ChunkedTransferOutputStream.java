@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream for writing an http body with the chunked transfer encoding. Bytes are buffered, and written as a
+ * chunk when the buffer is full or when the stream is flushed. Closing the stream writes the last chunk (but doesn't
+ * close the underlying output stream).
+ *
+ * @author agent
+ * @see ChunkedTransferInputStream
+ * @since 2026-10-17
+ */
+final class ChunkedTransferOutputStream extends OutputStream {
+
+    private static final byte[] CRLF = new byte[]{'\r', '\n'};
+    private static final byte[] LAST_CHUNK = new byte[]{'0', '\r', '\n', '\r', '\n'};
+
+    private final OutputStream out;
+    private final byte[] buffer;
+
+    private int count = 0;
+    private boolean closed = false;
+
+    ChunkedTransferOutputStream(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkClosed();
+        if (count == buffer.length) {
+            writeBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    @SuppressWarnings({"NullableProblems"})
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        checkClosed();
+        if (count + length > buffer.length) {
+            writeBuffer();
+        }
+        if (length >= buffer.length) {
+            // too big for the buffer, write a chunk right away
+            writeChunk(bytes, offset, length);
+        } else {
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkClosed();
+        writeBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            writeBuffer();
+            out.write(LAST_CHUNK);
+            out.flush();
+            closed = true;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (count > 0) {
+            writeChunk(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeChunk(byte[] bytes, int offset, int length) throws IOException {
+        out.write(Integer.toHexString(length).getBytes("US-ASCII"));
+        out.write(CRLF);
+        out.write(bytes, offset, length);
+        out.write(CRLF);
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("chunked transfer output stream is closed");
+        }
+    }
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+import org.apache.http.HttpStatus;
+import org.apache.http.config.SocketConfig;
+import org.apache.log4j.Logger;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A full-duplex stream exchange: the request body and the response body flow at the same time, over the same
+ * connection. The request body is written with the http chunked transfer encoding, and the server commits the response
+ * headers before reading the request body, so the response can be read while the request is still being written
+ * (f.e. a streaming lookup, that responds to every request entity right away).
+ * <p/>
+ * The server handles the exchange with the existing {@code Stream} handler API: the handler just reads from the
+ * request and writes (and flushes) to the response in any order. The request body is written by the caller (not by a
+ * {@link StreamRequest}), and typically the request and the response are handled by different threads, or in
+ * lockstep.
+ * <p/>
+ * A duplex stream uses its own connection (not a pooled one), which is closed when the stream is closed.
+ *
+ * @author agent
+ * @see StreamClient#openDuplexStream(String)
+ * @since 2026-10-17
+ */
+public final class DuplexStream implements Closeable {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final String uri;
+    private final int readAheadBlocks;
+    private final Socket socket;
+    private final InputStream socketInputStream;
+    private final ChunkedTransferOutputStream chunkedOutputStream;
+    private final StreamOutputStream streamOutputStream;
+
+    private StreamResponse response;
+    private boolean committed = false;
+
+    DuplexStream(String uri, StreamProtocol protocol, StreamProtocol requestProtocol, int readAheadBlocks,
+                 SocketConfig socketConfig, int connectTimeout) throws IOException {
+        this.uri = uri;
+        this.readAheadBlocks = readAheadBlocks;
+
+        // connect
+        URI location = URI.create(uri);
+        boolean secure = "https".equalsIgnoreCase(location.getScheme());
+        int port = location.getPort() != -1 ? location.getPort() : secure ? 443 : 80;
+        Socket socket = new Socket();
+        try {
+            configure(socket, socketConfig);
+            socket.connect(new InetSocketAddress(location.getHost(), port), connectTimeout);
+            if (secure) {
+                socket = startTLS(socket, location.getHost(), port);
+            }
+            this.socket = socket;
+            this.socketInputStream = new BufferedInputStream(socket.getInputStream());
+            OutputStream socketOutputStream = new BufferedOutputStream(socket.getOutputStream());
+
+            // write request headers
+            String path = location.getRawPath() != null && location.getRawPath().length() > 0
+                    ? location.getRawPath() : "/";
+            if (location.getRawQuery() != null) {
+                path += "?" + location.getRawQuery();
+            }
+            Writer writer = new OutputStreamWriter(socketOutputStream, "ISO-8859-1");
+            writer.write("POST " + path + " HTTP/1.1\r\n");
+            writer.write("Host: " + location.getHost() + (location.getPort() != -1 ? ":" + port : "") + "\r\n");
+            writer.write("User-Agent: " + StreamClient.USER_AGENT + "\r\n");
+            writer.write("Accept: " + StreamClient.getAccept(protocol) + "\r\n");
+            writer.write("Content-Type: " + requestProtocol.getContentType() + "\r\n");
+            writer.write("Transfer-Encoding: chunked\r\n");
+            writer.write("Cache-Control: no-cache\r\n");
+            writer.write("Connection: close\r\n");
+            writer.write(StreamConstants.DUPLEX_HEADER + ": true\r\n");
+            writer.write("\r\n");
+            writer.flush();
+            socketOutputStream.flush();
+
+            // the request body
+            this.chunkedOutputStream = new ChunkedTransferOutputStream(socketOutputStream, CHUNK_SIZE);
+            this.streamOutputStream = new StreamOutputStream(chunkedOutputStream, requestProtocol);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Layer TLS on a connected socket. The host name is sent with SNI (for servers that serve several host names on one
+     * address), and the certificate of the server is verified against it (an SSL socket doesn't verify the host name by
+     * default).
+     *
+     * @param socket the connected socket
+     * @param host   the host name of the uri
+     * @param port   the port
+     * @return the SSL socket, after the handshake
+     */
+    private static SSLSocket startTLS(Socket socket, String host, int port) throws IOException {
+        SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+        SSLParameters parameters = sslSocket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        if (!isAddress(host)) {
+            parameters.setServerNames(Collections.<SNIServerName>singletonList(new SNIHostName(host)));
+        }
+        sslSocket.setSSLParameters(parameters);
+        sslSocket.startHandshake();
+        return sslSocket;
+    }
+
+    private static boolean isAddress(String host) {
+        // an IPv6 literal, or an IPv4 address (SNI is only for host names)
+        return host.indexOf(':') != -1 || host.startsWith("[") || host.matches("[0-9.]+");
+    }
+
+    private static void configure(Socket socket, SocketConfig socketConfig) throws IOException {
+        socket.setTcpNoDelay(socketConfig.isTcpNoDelay());
+        socket.setKeepAlive(socketConfig.isSoKeepAlive());
+        socket.setSoTimeout(socketConfig.getSoTimeout());
+        if (socketConfig.getSndBufSize() > 0) {
+            socket.setSendBufferSize(socketConfig.getSndBufSize());
+        }
+        if (socketConfig.getRcvBufSize() > 0) {
+            socket.setReceiveBufferSize(socketConfig.getRcvBufSize());
+        }
+    }
+
+    /**
+     * Get the output stream, for writing the request body. Flushing the output stream sends the bytes written so far
+     * to the server right away. The request body must be ended with {@link #sendSuccess()} or
+     * {@link #sendError(String)}.
+     *
+     * @return the output stream
+     */
+    public OutputStream getOutputStream() {
+        return streamOutputStream;
+    }
+
+    /**
+     * End the request body successfully.
+     */
+    public void sendSuccess() {
+        sendStatus(StreamStatus.STATUS_OK, "OK");
+    }
+
+    /**
+     * End the request body with an error (the server reads the error when reading the end of the request body).
+     *
+     * @param message the error message
+     */
+    public void sendError(String message) {
+        sendStatus(StreamStatus.STATUS_ERROR, message);
+    }
+
+    private void sendStatus(int code, String message) {
+        if (committed) {
+            throw new IllegalStateException("the request body of the duplex stream has already ended");
+        }
+        committed = true;
+        logger.info("sending stream status: " + (code == StreamStatus.STATUS_OK ? "success" : "error") + "...");
+        try {
+            streamOutputStream.writeStatus(code, message);
+            chunkedOutputStream.close();
+            logger.debug("sent stream status, " + streamOutputStream.getStatistics());
+        } catch (IOException e) {
+            throw new HttpStreamException("error while ending request body of duplex stream " + uri, e);
+        }
+    }
+
+    /**
+     * Get the response. The response headers are read the first time, which blocks until the server has accepted the
+     * request (but not until the request body has ended).
+     *
+     * @return the response
+     */
+    public synchronized StreamResponse getResponse() {
+        if (response == null) {
+            try {
+                response = readResponse();
+            } catch (HttpStreamException e) {
+                closeSocket();
+                throw e;
+            } catch (Throwable t) {
+                closeSocket();
+                throw new HttpStreamException("error while reading response of duplex stream " + uri, t);
+            }
+        }
+        return response;
+    }
+
+    private StreamResponse readResponse() throws IOException {
+        // read status line
+        String statusLine = ChunkedTransferInputStream.readLine(socketInputStream);
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("malformed http status line: " + statusLine);
+        }
+        int status;
+        try {
+            status = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("malformed http status line: " + statusLine);
+        }
+        logger.debug("HTTP status code is " + status + ".");
+
+        // read headers (the values of a repeated header are combined into a comma separated list)
+        Map<String, String> headers = new HashMap<String, String>();
+        String line;
+        while ((line = ChunkedTransferInputStream.readLine(socketInputStream)).length() > 0) {
+            int index = line.indexOf(':');
+            if (index > 0) {
+                String name = line.substring(0, index).trim().toLowerCase(Locale.ENGLISH);
+                String value = line.substring(index + 1).trim();
+                String previous = headers.get(name);
+                headers.put(name, previous != null ? previous + ", " + value : value);
+            }
+        }
+
+        // check status code
+        if (status != HttpStatus.SC_ACCEPTED) {
+            throw new HttpStreamException("error while executing duplex stream request, unexpected HTTP status code: " +
+                    status);
+        }
+
+        // the response body
+        InputStream bodyInputStream;
+        String transferEncoding = headers.get("transfer-encoding");
+        String contentLength = headers.get("content-length");
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ENGLISH).contains("chunked")) {
+            bodyInputStream = new ChunkedTransferInputStream(socketInputStream);
+        } else if (contentLength != null) {
+            bodyInputStream = new LimitedInputStream(socketInputStream, Long.parseLong(contentLength));
+        } else {
+            // until the connection is closed
+            bodyInputStream = socketInputStream;
+        }
+        logger.info("streaming duplex response...");
+        return new StreamResponse(bodyInputStream, headers.get("content-type"), this, readAheadBlocks, null, 0);
+    }
+
+    /**
+     * Close the connection of the duplex stream. The response (if any) should be closed first, for reading its status.
+     */
+    public void close() {
+        logger.debug("closing duplex stream...");
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("error while closing socket", e);
+        }
+    }
+
+    /**
+     * An input stream for reading a response body with a content length.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        @SuppressWarnings({"NullableProblems"})
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(bytes, offset, (int) Math.min(length, remaining));
+            if (n != -1) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(remaining, in.available());
+        }
+
+    }
+
+}
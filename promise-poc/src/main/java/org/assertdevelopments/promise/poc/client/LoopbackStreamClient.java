@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.io.LoopbackRegistry;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A stream client for stream servers in the same jvm (see {@code LoopbackStreamServer}), without http and without a
+ * network: the exchanges are carried by bounded in-memory pipes. The uris have the form
+ * <code>loopback://name/path</code>.
+ * <p/>
+ * The connections are reused, like the connections of the {@link SocketStreamClient}: when a response is closed after
+ * reading it completely, its connection is kept for the next request to the same server.
+ * <p/>
+ * Unlike the other transports, a loopback connection carries credits back to the server, so response bodies can use
+ * flow control (when both the client and the server offer it): the server then writes at most a credit window ahead
+ * of the reader.
+ *
+ * @author agent
+ * @see SocketStreamClient
+ * @since 2026-10-17
+ */
+public final class LoopbackStreamClient {
+
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    private static final int MAX_IDLE_CONNECTIONS = 20;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final StreamProtocol protocol;
+
+    private final int capacity;
+
+    private final Map<String, LinkedList<LoopbackConnection>> idleConnections =
+            new HashMap<String, LinkedList<LoopbackConnection>>();
+
+    private boolean closed = false;
+
+    public LoopbackStreamClient() {
+        this(StreamProtocol.DEFAULT, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a loopback stream client.
+     *
+     * @param protocol the protocol for writing request bodies (and offered to the server for writing response bodies,
+     *                 response bodies can use flow control)
+     * @param capacity the capacity of the pipes (in bytes), the writers wait while a pipe is full
+     */
+    public LoopbackStreamClient(StreamProtocol protocol, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        this.protocol = protocol.withTrailers(false);
+        this.capacity = capacity;
+    }
+
+    public StreamResponse sendRequest(String uri) {
+        return sendRequest(uri, null);
+    }
+
+    /**
+     * Send a request, and get the response. The request body is written completely before the response is read: a
+     * handler that writes its response while reading the request body must not write more than the pipe and the
+     * buffers can hold (like the socket buffers of the socket transport).
+     *
+     * @param uri     the uri (<code>loopback://name/path</code>)
+     * @param request the request (null for an empty request body)
+     * @return the response
+     */
+    public StreamResponse sendRequest(String uri, StreamRequest request) {
+        URI location = URI.create(uri);
+        if (!"loopback".equalsIgnoreCase(location.getScheme()) || location.getAuthority() == null) {
+            throw new IllegalArgumentException("invalid loopback stream uri (expected loopback://name/path): " + uri);
+        }
+        String name = location.getAuthority();
+        String path = location.getRawPath() != null && location.getRawPath().length() > 0 ? location.getRawPath() : "/";
+        if (location.getRawQuery() != null) {
+            path += "?" + location.getRawQuery();
+        }
+        logger.info("opening stream for " + uri + "...");
+        LoopbackConnection connection = null;
+        try {
+            connection = lease(name);
+            return connection.exchange(path, request, protocol);
+        } catch (Throwable t) {
+            if (connection != null) {
+                connection.discard();
+            }
+            throw new HttpStreamException("error while executing request for stream " + uri, t);
+        }
+    }
+
+    private LoopbackConnection lease(String name) throws IOException {
+        synchronized (idleConnections) {
+            if (closed) {
+                throw new IllegalStateException("loopback stream client is closed");
+            }
+            LinkedList<LoopbackConnection> connections = idleConnections.get(name);
+            if (connections != null && !connections.isEmpty()) {
+                return connections.removeLast();
+            }
+        }
+        logger.debug("connecting to loopback://" + name + "...");
+        return new LoopbackConnection(name, LoopbackRegistry.connect(name, capacity));
+    }
+
+    private void release(LoopbackConnection connection) {
+        synchronized (idleConnections) {
+            LinkedList<LoopbackConnection> connections = idleConnections.get(connection.name);
+            if (connections == null) {
+                connections = new LinkedList<LoopbackConnection>();
+                idleConnections.put(connection.name, connections);
+            }
+            if (!closed && connections.size() < MAX_IDLE_CONNECTIONS) {
+                connections.addLast(connection);
+                return;
+            }
+        }
+        connection.discard();
+    }
+
+    /**
+     * Close the client, and its idle connections.
+     */
+    public void close() {
+        List<LoopbackConnection> connections = new ArrayList<LoopbackConnection>();
+        synchronized (idleConnections) {
+            closed = true;
+            for (LinkedList<LoopbackConnection> idle : idleConnections.values()) {
+                connections.addAll(idle);
+            }
+            idleConnections.clear();
+        }
+        for (LoopbackConnection connection : connections) {
+            connection.discard();
+        }
+    }
+
+    /**
+     * A connection to a loopback stream server, returned to the idle connections when it is released.
+     */
+    private final class LoopbackConnection extends StreamConnection {
+
+        private final String name;
+        private final LoopbackRegistry.Connection connection;
+
+        LoopbackConnection(String name, LoopbackRegistry.Connection connection) {
+            super(connection.getInputStream(), connection.getOutputStream(), connection.getCreditOutputStream());
+            this.name = name;
+            this.connection = connection;
+        }
+
+        void release() {
+            LoopbackStreamClient.this.release(this);
+        }
+
+        void discard() {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                logger.debug("error while closing connection", e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The protocols for writing request bodies, per origin (scheme, host and port). Request bodies are written with the
+ * legacy protocol, until the server responded with a version 2 response body: servers that don't negotiate protocols
+ * reject version 2 request bodies, so the upgrade is only made after the server has shown that it speaks version 2.
+ * Request bodies never use a compression dictionary (the client can't know whether the server has it) nor status
+ * trailers.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+final class RequestProtocols {
+
+    private final StreamProtocol protocol;
+    private final Set<String> negotiatedOrigins = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Create the request protocols for a client.
+     *
+     * @param protocol the protocol of the client
+     */
+    RequestProtocols(StreamProtocol protocol) {
+        this.protocol = protocol;
+    }
+
+    /**
+     * Get the protocol for writing a request body to the provided uri.
+     *
+     * @param uri the uri
+     * @return the protocol for the request body
+     */
+    StreamProtocol get(String uri) {
+        if (protocol.getVersion() == StreamProtocol.VERSION_1 || !negotiatedOrigins.contains(getOrigin(uri))) {
+            return StreamProtocol.LEGACY;
+        }
+        return protocol.withDictionary(null).withTrailers(false);
+    }
+
+    /**
+     * Remember that the origin of the provided uri speaks protocol version 2, if the server responded with a version 2
+     * response body.
+     *
+     * @param uri              the uri
+     * @param responseProtocol the protocol of the response body
+     */
+    void negotiated(String uri, StreamProtocol responseProtocol) {
+        if (responseProtocol.getVersion() == StreamProtocol.VERSION_2) {
+            negotiatedOrigins.add(getOrigin(uri));
+        }
+    }
+
+    private static String getOrigin(String uri) {
+        URI location = URI.create(uri);
+        return location.getScheme() + "://" + location.getRawAuthority();
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.io.MappedRingBuffer;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.server.SharedMemoryStreamServer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A stream client for a stream server in another process on the same host, over shared memory: the exchanges are
+ * carried by the ring buffer files of a {@link SharedMemoryStreamServer}, which must be started first. The client is
+ * the single connection of the server, so it carries one exchange at a time: the response must be closed before the
+ * next request is sent. When a response is closed before it was read completely, the connection can't be
+ * synchronized anymore, and the client is closed.
+ *
+ * @author agent
+ * @see SocketStreamClient
+ * @since 2026-10-17
+ */
+public final class SharedMemoryStreamClient {
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final Path directory;
+    private final StreamProtocol protocol;
+    private final SharedMemoryConnection connection;
+
+    private boolean leased = false;
+    private boolean closed = false;
+
+    public SharedMemoryStreamClient(Path directory) throws IOException {
+        this(directory, MappedRingBuffer.WaitStrategy.PARK, StreamProtocol.DEFAULT);
+    }
+
+    /**
+     * Create a shared memory stream client, mapping the ring buffer files of the server. The server serves one client
+     * at a time: while another client is connected (or while the server replaces the ring buffer files of the previous
+     * client), this fails with an IOException, and the client may try again later.
+     *
+     * @param directory    the directory of the ring buffer files
+     * @param waitStrategy the wait strategy of the client
+     * @param protocol     the protocol for writing request bodies (and offered to the server for writing response
+     *                     bodies)
+     */
+    public SharedMemoryStreamClient(Path directory, MappedRingBuffer.WaitStrategy waitStrategy,
+                                    StreamProtocol protocol) throws IOException {
+        this.directory = directory;
+        this.protocol = protocol.withCredits(0).withTrailers(false);
+        MappedRingBuffer requests = MappedRingBuffer.open(directory.resolve(SharedMemoryStreamServer.REQUESTS_FILE),
+                waitStrategy);
+        MappedRingBuffer responses;
+        try {
+            responses = MappedRingBuffer.open(directory.resolve(SharedMemoryStreamServer.RESPONSES_FILE),
+                    waitStrategy);
+        } catch (IOException e) {
+            // (ends the connection on the server, which then replaces the ring buffer files)
+            requests.getOutputStream().close();
+            throw e;
+        }
+        this.connection = new SharedMemoryConnection(requests, responses);
+    }
+
+    public StreamResponse sendRequest(String path) {
+        return sendRequest(path, null);
+    }
+
+    /**
+     * Send a request, and get the response. The request body is written completely before the response is read.
+     *
+     * @param path    the request path (f.e. "/ws/bytes")
+     * @param request the request (null for an empty request body)
+     * @return the response
+     * @throws IllegalStateException if the previous response was not closed yet
+     */
+    public StreamResponse sendRequest(String path, StreamRequest request) {
+        String uri = directory + path;
+        logger.info("opening stream for " + uri + "...");
+        lease();
+        try {
+            return connection.exchange(path, request, protocol);
+        } catch (Throwable t) {
+            connection.discard();
+            throw new HttpStreamException("error while executing request for stream " + uri, t);
+        }
+    }
+
+    private synchronized void lease() {
+        if (closed) {
+            throw new IllegalStateException("shared memory stream client is closed");
+        }
+        if (leased) {
+            throw new IllegalStateException("the previous response must be closed before sending the next request");
+        }
+        leased = true;
+    }
+
+    /**
+     * Close the client, ending its connection with the server.
+     */
+    public void close() {
+        connection.discard();
+    }
+
+    /**
+     * The connection to the shared memory stream server.
+     */
+    private final class SharedMemoryConnection extends StreamConnection {
+
+        private final MappedRingBuffer requests;
+        private final MappedRingBuffer responses;
+
+        SharedMemoryConnection(MappedRingBuffer requests, MappedRingBuffer responses) {
+            super(responses.getInputStream(), requests.getOutputStream());
+            this.requests = requests;
+            this.responses = responses;
+        }
+
+        void release() {
+            synchronized (SharedMemoryStreamClient.this) {
+                leased = false;
+            }
+        }
+
+        void discard() {
+            synchronized (SharedMemoryStreamClient.this) {
+                leased = false;
+                closed = true;
+            }
+            // (closing the requests ends the connection on the server, closing the responses releases its writer)
+            try {
+                requests.getOutputStream().close();
+            } catch (IOException e) {
+                logger.debug("error while closing connection", e);
+            }
+            responses.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A stream client for plain sockets, without http: the envelopes of the promise protocol are carried directly over
+ * the connection, after a small request header (see {@code SocketStreamServer}). The uris have the form
+ * <code>tcp://host:port/path</code>. Servers on the same host can be reached over a unix domain socket as well, by
+ * sending the request to its socket address (<code>UnixDomainSocketAddress.of("/var/run/promise.sock")</code>).
+ * <p/>
+ * The connections are reused: when a response is closed after reading it completely, its connection is kept for the
+ * next request to the same address (up to a maximum number of idle connections per address).
+ *
+ * @author agent
+ * @see StreamClient
+ * @since 2026-10-17
+ */
+public final class SocketStreamClient {
+
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 20;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final StreamProtocol protocol;
+
+    private final int maxIdleConnections;
+
+    private final Map<SocketAddress, LinkedList<SocketConnection>> idleConnections =
+            new HashMap<SocketAddress, LinkedList<SocketConnection>>();
+
+    private boolean closed = false;
+
+    public SocketStreamClient() {
+        this(StreamProtocol.DEFAULT);
+    }
+
+    /**
+     * Create a socket stream client that writes request bodies with the provided protocol, and offers the same
+     * protocol to the server for writing response bodies.
+     *
+     * @param protocol the protocol
+     * @see StreamClient#StreamClient(StreamProtocol)
+     */
+    public SocketStreamClient(StreamProtocol protocol) {
+        this(protocol, DEFAULT_MAX_IDLE_CONNECTIONS);
+    }
+
+    /**
+     * Create a socket stream client.
+     *
+     * @param protocol           the protocol
+     * @param maxIdleConnections the maximum number of idle connections kept per address (0 to close every connection
+     *                           after its exchange)
+     */
+    public SocketStreamClient(StreamProtocol protocol, int maxIdleConnections) {
+        if (maxIdleConnections < 0) {
+            throw new IllegalArgumentException("invalid maximum number of idle connections: " + maxIdleConnections);
+        }
+        this.protocol = protocol.withCredits(0).withTrailers(false);
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public StreamResponse sendRequest(String uri) {
+        return sendRequest(uri, null);
+    }
+
+    /**
+     * Send a request, and get the response. The request body is written completely before the response is read.
+     *
+     * @param uri     the uri (<code>tcp://host:port/path</code>)
+     * @param request the request (null for an empty request body)
+     * @return the response
+     */
+    public StreamResponse sendRequest(String uri, StreamRequest request) {
+        URI location = URI.create(uri);
+        if (!"tcp".equalsIgnoreCase(location.getScheme()) || location.getHost() == null || location.getPort() == -1) {
+            throw new IllegalArgumentException("invalid socket stream uri (expected tcp://host:port/path): " + uri);
+        }
+        String path = location.getRawPath() != null && location.getRawPath().length() > 0 ? location.getRawPath() : "/";
+        if (location.getRawQuery() != null) {
+            path += "?" + location.getRawQuery();
+        }
+        return sendRequest(new InetSocketAddress(location.getHost(), location.getPort()), path, request);
+    }
+
+    /**
+     * Send a request to a socket address (a TCP address, or a unix domain socket address), and get the response.
+     *
+     * @param address the socket address of the server
+     * @param path    the request path (f.e. "/ws/bytes")
+     * @param request the request (null for an empty request body)
+     * @return the response
+     */
+    public StreamResponse sendRequest(SocketAddress address, String path, StreamRequest request) {
+        String uri = address + path;
+        logger.info("opening stream for " + uri + "...");
+        SocketConnection connection = null;
+        try {
+            connection = lease(address);
+            return connection.exchange(path, request, protocol);
+        } catch (Throwable t) {
+            if (connection != null) {
+                connection.discard();
+            }
+            throw new HttpStreamException("error while executing request for stream " + uri, t);
+        }
+    }
+
+    private SocketConnection lease(SocketAddress address) throws IOException {
+        synchronized (idleConnections) {
+            if (closed) {
+                throw new IllegalStateException("socket stream client is closed");
+            }
+            LinkedList<SocketConnection> connections = idleConnections.get(address);
+            if (connections != null && !connections.isEmpty()) {
+                logger.debug("reusing connection to " + address);
+                return connections.removeLast();
+            }
+        }
+        logger.debug("connecting to " + address + "...");
+        return new SocketConnection(address);
+    }
+
+    private void release(SocketConnection connection) {
+        synchronized (idleConnections) {
+            LinkedList<SocketConnection> connections = idleConnections.get(connection.address);
+            if (connections == null) {
+                connections = new LinkedList<SocketConnection>();
+                idleConnections.put(connection.address, connections);
+            }
+            if (!closed && connections.size() < maxIdleConnections) {
+                connections.addLast(connection);
+                return;
+            }
+        }
+        connection.discard();
+    }
+
+    /**
+     * Get the number of idle connections (for all addresses).
+     *
+     * @return the number of idle connections
+     */
+    int getIdleConnections() {
+        synchronized (idleConnections) {
+            int count = 0;
+            for (LinkedList<SocketConnection> connections : idleConnections.values()) {
+                count += connections.size();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Close the client, and its idle connections.
+     */
+    public void close() {
+        List<SocketConnection> connections = new ArrayList<SocketConnection>();
+        synchronized (idleConnections) {
+            closed = true;
+            for (LinkedList<SocketConnection> idle : idleConnections.values()) {
+                connections.addAll(idle);
+            }
+            idleConnections.clear();
+        }
+        for (SocketConnection connection : connections) {
+            connection.discard();
+        }
+    }
+
+    /**
+     * A connection to a socket stream server, returned to the idle connections when it is released.
+     */
+    private final class SocketConnection extends StreamConnection {
+
+        private final SocketAddress address;
+        private final SocketChannel channel;
+
+        SocketConnection(SocketAddress address) throws IOException {
+            this(address, SocketChannel.open(address));
+        }
+
+        private SocketConnection(SocketAddress address, SocketChannel channel) throws IOException {
+            super(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+            this.address = address;
+            this.channel = channel;
+            if (address instanceof InetSocketAddress) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+        }
+
+        void release() {
+            SocketStreamClient.this.release(this);
+        }
+
+        void discard() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("error while closing connection", e);
+            }
+        }
+
+    }
+
+}
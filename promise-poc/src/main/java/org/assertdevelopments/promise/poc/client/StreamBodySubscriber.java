@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.assertdevelopments.promise.poc.core.protocol.StreamDecoder;
+import org.assertdevelopments.promise.poc.core.protocol.StreamFrameHandler;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.EOFException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Subscriber for the response body of an asynchronous stream request. The bytes of the response body are decoded as
+ * they arrive, and the frames are delivered to the frame handler. The body completes with the status of the stream.
+ *
+ * @author agent
+ * @see AsyncStreamClient
+ * @since 2026-10-17
+ */
+final class StreamBodySubscriber implements HttpResponse.BodySubscriber<StreamStatus> {
+
+    private final StreamDecoder decoder;
+    private final CompletableFuture<StreamStatus> status = new CompletableFuture<StreamStatus>();
+
+    private Flow.Subscription subscription;
+
+    StreamBodySubscriber(StreamProtocol protocol, StreamFrameHandler handler) {
+        this.decoder = new StreamDecoder(protocol, handler);
+    }
+
+    public CompletionStage<StreamStatus> getBody() {
+        return status;
+    }
+
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    public void onNext(List<ByteBuffer> buffers) {
+        if (status.isDone()) {
+            return;
+        }
+        try {
+            for (ByteBuffer buffer : buffers) {
+                decoder.decode(buffer);
+            }
+        } catch (Throwable t) {
+            subscription.cancel();
+            fail(t);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    public void onComplete() {
+        if (decoder.isComplete()) {
+            status.complete(decoder.getStatus());
+        } else {
+            fail(new EOFException("incomplete read from stream, the response body ended before the status"));
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        decoder.release();
+        status.completeExceptionally(throwable);
+    }
+
+}
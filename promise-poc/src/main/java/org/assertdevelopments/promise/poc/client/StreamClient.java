@@ -18,14 +18,41 @@ package org.assertdevelopments.promise.poc.client;
 
 import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
 import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.impl.NoConnectionReuseStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultRoutePlanner;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Stefan Bangels
@@ -35,10 +62,30 @@ public final class StreamClient {
 
     public static final String USER_AGENT = "Promise Stream Client/1.0";
 
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+
+    private static final int WARM_UP_TIMEOUT = 10000;
+
     private final Logger logger = Logger.getLogger(getClass());
 
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final HttpRoutePlanner routePlanner;
+
     private final CloseableHttpClient httpClient;
 
+    private final HttpClient http2Client;
+
+    private final StreamProtocol protocol;
+
+    private final int readAheadBlocks;
+
+    private final int connectTimeout;
+
+    private final RequestProtocols requestProtocols;
+
     private static StreamClient instance;
 
     public static synchronized StreamClient getInstance() {
@@ -49,25 +96,240 @@ public final class StreamClient {
     }
 
     public StreamClient() {
-        this.httpClient = HttpClients.createDefault();
+        this(StreamProtocol.DEFAULT);
+    }
+
+    /**
+     * Create a stream client that offers the provided protocol to the server for writing response bodies (servers that
+     * don't support it will fall back to the legacy protocol), and writes request bodies with the same protocol once
+     * the server has shown that it negotiates protocols. Until then, request bodies are written with the legacy
+     * protocol, because servers that don't negotiate protocols reject other request bodies.
+     * A compression dictionary is only offered for response bodies: request bodies are written without dictionary,
+     * because the client can't know whether the server has the dictionary. Flow control is never offered, because a
+     * request/response exchange can't carry credits back to the writer. Status trailers are only offered for response
+     * bodies over HTTP/1.1 (the HTTP/2 client doesn't expose trailers), request bodies carry their status in the body.
+     *
+     * @param protocol the protocol
+     */
+    public StreamClient(StreamProtocol protocol) {
+        this(protocol, 0);
+    }
+
+    /**
+     * Create a stream client that reads response bodies ahead in a background thread (while the caller is processing
+     * the previous bytes). Reading ahead is useful when processing a response body is expensive, so reading from the
+     * network and processing can overlap.
+     *
+     * @param protocol        the protocol
+     * @param readAheadBlocks the maximum number of blocks read ahead per response, or 0 to read in the calling thread
+     */
+    public StreamClient(StreamProtocol protocol, int readAheadBlocks) {
+        this(new Builder().withProtocol(protocol).withReadAheadBlocks(readAheadBlocks));
+    }
+
+    private StreamClient(Builder builder) {
+        // (the connections that keep the trailer only when status trailers are offered, the default connections log
+        // the http headers and the wire)
+        this.connectionManager = builder.protocol.isTrailers()
+                ? new PoolingHttpClientConnectionManager(new TrailerConnectionFactory())
+                : new PoolingHttpClientConnectionManager();
+        this.connectionManager.setDefaultMaxPerRoute(builder.maxConnectionsPerRoute);
+        this.connectionManager.setMaxTotal(builder.maxConnections);
+        this.connectionManager.setDefaultSocketConfig(SocketConfig.custom()
+                .setTcpNoDelay(builder.tcpNoDelay)
+                .setSoKeepAlive(builder.keepAlive)
+                .setSndBufSize(builder.sendBufferSize)
+                .setRcvBufSize(builder.receiveBufferSize)
+                .build()
+        );
+        // (the route planner is shared with the warm-up, so the warmed up connections are pooled for the same routes)
+        this.routePlanner = new DefaultRoutePlanner(DefaultSchemePortResolver.INSTANCE);
+        HttpClientBuilder httpClientBuilder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setRoutePlanner(routePlanner);
+        if (!builder.keepAlive) {
+            httpClientBuilder.setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE);
+        }
+        if (builder.maxIdleTime > 0) {
+            httpClientBuilder.evictIdleConnections(builder.maxIdleTime, TimeUnit.MILLISECONDS);
+        }
+        if (builder.connectTimeout > 0) {
+            httpClientBuilder.setDefaultRequestConfig(RequestConfig.custom()
+                    .setConnectTimeout(builder.connectTimeout)
+                    .build()
+            );
+        }
+        this.httpClient = httpClientBuilder.build();
+        if (builder.http2) {
+            HttpClient.Builder http2ClientBuilder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2);
+            if (builder.connectTimeout > 0) {
+                http2ClientBuilder.connectTimeout(Duration.ofMillis(builder.connectTimeout));
+            }
+            this.http2Client = http2ClientBuilder.build();
+        } else {
+            this.http2Client = null;
+        }
+        this.protocol = builder.protocol.withCredits(0);
+        this.requestProtocols = new RequestProtocols(protocol);
+        this.readAheadBlocks = builder.readAheadBlocks;
+        this.connectTimeout = builder.connectTimeout;
+    }
+
+    /**
+     * Create a builder for a stream client with a tuned connection pool.
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Open connections to the host of the provided uri in advance, and keep them in the connection pool (warm-up). The
+     * first requests can then be sent right away, without connecting first, and parallel consumers don't queue on
+     * connections being opened. The number of connections is limited by the maximum number of connections per route.
+     * The route is planned like the route of a request (f.e. the default port of the scheme when the uri has no port).
+     * Only for HTTP/1.1.
+     *
+     * @param uri         the uri (only the scheme, host and port are used)
+     * @param connections the number of connections to open
+     */
+    public void warmUp(String uri, int connections) {
+        if (http2Client != null) {
+            throw new IllegalStateException("warming up connections is not supported for HTTP/2, the streams share a " +
+                    "connection");
+        }
+        logger.info("warming up " + connections + " connections for " + uri + "...");
+        List<HttpClientConnection> opened = new ArrayList<HttpClientConnection>();
+        try {
+            HttpHost host = URIUtils.extractHost(URI.create(uri));
+            HttpRoute route = routePlanner.determineRoute(host, new HttpPost(uri), HttpClientContext.create());
+            // lease all connections before releasing them, so every connection is a new one
+            for (int n = 0; n < connections; n++) {
+                HttpClientConnection connection = connectionManager.requestConnection(route, null)
+                        .get(WARM_UP_TIMEOUT, TimeUnit.MILLISECONDS);
+                opened.add(connection);
+                if (!connection.isOpen()) {
+                    HttpClientContext context = HttpClientContext.create();
+                    connectionManager.connect(connection, route,
+                            connectTimeout > 0 ? connectTimeout : WARM_UP_TIMEOUT, context);
+                    connectionManager.routeComplete(connection, route, context);
+                }
+            }
+        } catch (Throwable t) {
+            throw new HttpStreamException("error while warming up connections for " + uri, t);
+        } finally {
+            for (HttpClientConnection connection : opened) {
+                connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+            }
+        }
     }
 
     public StreamResponse sendRequest(String uri) {
         return sendRequest(uri, null);
     }
 
+    /**
+     * Send a request, and get the response. When the protocol of this client is resumable, a new resume token is sent
+     * with the request, so the response body can be resumed when it gets interrupted (if the server supports it).
+     *
+     * @param uri     the uri
+     * @param request the request (null for an empty request body)
+     * @return the response
+     * @see #resumeRequest(String, StreamRequest, String, long)
+     */
     public StreamResponse sendRequest(String uri, StreamRequest request) {
-        logger.info("opening stream for " + uri + "...");
+        return sendRequest(uri, request, protocol.isResumable() ? UUID.randomUUID().toString() : null, 0);
+    }
+
+    /**
+     * Send a request, and consume the response with the provided handler on a virtual thread. The handler reads the
+     * response body in the blocking style, but a blocked virtual thread doesn't hold a platform thread, so a large
+     * number of responses can be consumed concurrently (within the limits of the connection pool of this client). The
+     * response is closed when the handler returns.
+     *
+     * @param uri     the uri
+     * @param request the request (null for an empty request body)
+     * @param handler the response handler
+     * @return the result of the handler (or the exception thrown by the handler)
+     */
+    public <T> Future<T> sendRequest(final String uri, final StreamRequest request,
+                                     final StreamResponseHandler<T> handler) {
+        FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+            public T call() throws Exception {
+                StreamResponse response = sendRequest(uri, request);
+                try {
+                    return handler.handleResponse(response);
+                } finally {
+                    response.close();
+                }
+            }
+        });
+        Thread.ofVirtual().name("stream-consumer-" + uri).start(task);
+        return task;
+    }
+
+    /**
+     * Open a full-duplex stream exchange: the request body is written by the caller while the response body is being
+     * read, so the server can respond to the request entities as they arrive (the server must support it, the blocking
+     * stream servlets do). The exchange uses its own connection, with the socket configuration of this client.
+     *
+     * @param uri the uri
+     * @return the duplex stream
+     */
+    public DuplexStream openDuplexStream(String uri) {
+        logger.info("opening duplex stream for " + uri + "...");
+        try {
+            return new DuplexStream(uri, protocol.withTrailers(false), requestProtocols.get(uri), readAheadBlocks,
+                    connectionManager.getDefaultSocketConfig(), connectTimeout);
+        } catch (Throwable t) {
+            throw new HttpStreamException("error while opening duplex stream " + uri, t);
+        }
+    }
+
+    /**
+     * Send a request again, for resuming an interrupted response body. The request is sent again (the server handles
+     * it again), but the response body starts at the provided offset.
+     *
+     * @param uri          the uri
+     * @param request      the request (null for an empty request body)
+     * @param resumeToken  the resume token of the interrupted response
+     * @param resumeOffset the offset in the response body (the bytes that were read from the interrupted response)
+     * @return the response
+     * @see StreamResponse#getResumeToken()
+     * @see StreamResponse#getStreamOffset()
+     */
+    public StreamResponse resumeRequest(String uri, StreamRequest request, String resumeToken, long resumeOffset) {
+        if (!protocol.isResumable()) {
+            throw new IllegalStateException("the protocol of the stream client is not resumable");
+        }
+        return sendRequest(uri, request, resumeToken, resumeOffset);
+    }
+
+    private StreamResponse sendRequest(String uri, StreamRequest request, String resumeToken, long resumeOffset) {
+        logger.info("opening stream for " + uri + (resumeOffset > 0 ? " at offset " + resumeOffset : "") + "...");
+        if (http2Client != null) {
+            return sendHttp2Request(uri, request, resumeToken, resumeOffset);
+        }
         try {
             // create method
             HttpPost httpMethod = new HttpPost(uri);
             httpMethod.setHeader("User-Agent", USER_AGENT);
-            httpMethod.setHeader("Accept", StreamConstants.CONTENT_TYPE);
+            httpMethod.setHeader("Accept", getAccept(protocol));
+            if (protocol.isTrailers()) {
+                httpMethod.setHeader("TE", "trailers");
+            }
             httpMethod.setHeader("Cache-Control", "no-cache");
             httpMethod.setHeader("Pragma", "no-cache");
             httpMethod.setHeader("Expires", "0");
+            if (resumeToken != null) {
+                httpMethod.setHeader(StreamConstants.RESUME_TOKEN_HEADER, resumeToken);
+                if (resumeOffset > 0) {
+                    httpMethod.setHeader(StreamConstants.RESUME_OFFSET_HEADER, String.valueOf(resumeOffset));
+                }
+            }
             if (request != null) {
-                httpMethod.setEntity(new StreamRequestEntity(request));
+                httpMethod.setEntity(new StreamRequestEntity(request, requestProtocols.get(uri)));
             }
 
             logger.info("streaming request...");
@@ -79,17 +341,89 @@ public final class StreamClient {
 
             // check status code
             if (status != HttpStatus.SC_ACCEPTED) {
+                response.close();
                 throw new HttpStreamException("error while executing stream request, unexpected HTTP status code: " + status);
             }
 
             logger.info("streaming response...");
-            return new StreamResponse(response);
+            return negotiated(uri, new StreamResponse(response, readAheadBlocks, resumeToken, resumeOffset));
+        } catch (Throwable t) {
+            throw new HttpStreamException("error while executing request for stream " + uri, t);
+        }
+    }
+
+    private StreamResponse sendHttp2Request(String uri, StreamRequest request, String resumeToken,
+                                            long resumeOffset) {
+        try {
+            // create request
+            HttpRequest.Builder httpRequest = HttpRequest.newBuilder(URI.create(uri))
+                    .header("User-Agent", USER_AGENT)
+                    .header("Accept", getAccept(protocol.withTrailers(false)))
+                    .header("Cache-Control", "no-cache")
+                    .header("Pragma", "no-cache")
+                    .header("Expires", "0");
+            if (resumeToken != null) {
+                httpRequest.header(StreamConstants.RESUME_TOKEN_HEADER, resumeToken);
+                if (resumeOffset > 0) {
+                    httpRequest.header(StreamConstants.RESUME_OFFSET_HEADER, String.valueOf(resumeOffset));
+                }
+            }
+            if (request != null) {
+                StreamProtocol requestProtocol = requestProtocols.get(uri);
+                httpRequest.header("Content-Type", requestProtocol.getContentType())
+                        .POST(new StreamRequestPublisher(uri, new StreamRequestEntity(request, requestProtocol)));
+            } else {
+                httpRequest.POST(HttpRequest.BodyPublishers.noBody());
+            }
+
+            logger.info("streaming request...");
+            HttpResponse<InputStream> response = http2Client.send(httpRequest.build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+
+            // check status code
+            int status = response.statusCode();
+            logger.debug("HTTP status code is " + status + " (" + response.version() + ").");
+            if (status != HttpStatus.SC_ACCEPTED) {
+                response.body().close();
+                throw new HttpStreamException("error while executing stream request, unexpected HTTP status code: " +
+                        status);
+            }
+
+            logger.info("streaming response...");
+            StreamResponse streamResponse = new StreamResponse(response.body(),
+                    response.headers().firstValue("Content-Type").orElse(null), response.body(), readAheadBlocks,
+                    resumeToken, resumeOffset);
+            streamResponse.setHttpVersion(response.version() == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1");
+            return negotiated(uri, streamResponse);
         } catch (Throwable t) {
             throw new HttpStreamException("error while executing request for stream " + uri, t);
         }
     }
 
+    private StreamResponse negotiated(String uri, StreamResponse response) {
+        requestProtocols.negotiated(uri, response.getProtocol());
+        return response;
+    }
+
+    /**
+     * Get the accept header for the protocol of a client. When the protocol uses a compression dictionary, the same
+     * protocol without dictionary is accepted as well (for servers that don't have the dictionary).
+     *
+     * @param protocol the protocol
+     * @return the accept header
+     */
+    static String getAccept(StreamProtocol protocol) {
+        String accept = protocol.getContentType() + ", ";
+        if (protocol.getDictionary() != null) {
+            accept += protocol.withDictionary(null).getContentType() + ", ";
+        }
+        return accept + StreamConstants.CONTENT_TYPE;
+    }
+
     public final void close() {
+        if (http2Client != null) {
+            http2Client.shutdownNow();
+        }
         try {
             httpClient.close();
         } catch (IOException e) {
@@ -97,4 +431,180 @@ public final class StreamClient {
         }
     }
 
+
+    /**
+     * A builder for a stream client with a tuned connection pool. The connections are pooled and reused (keep-alive),
+     * so the number of concurrent requests is limited by the maximum number of connections (per route and in total):
+     * requests that exceed the limit wait for a connection to be released.
+     */
+    public static final class Builder {
+
+        private StreamProtocol protocol = StreamProtocol.DEFAULT;
+        private int readAheadBlocks = 0;
+        private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private int sendBufferSize = 0;
+        private int receiveBufferSize = 0;
+        private boolean tcpNoDelay = true;
+        private boolean keepAlive = true;
+        private long maxIdleTime = 0;
+        private int connectTimeout = 0;
+        private boolean http2 = false;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the protocol offered for response bodies (and used for request bodies, once the server has shown that it
+         * negotiates protocols).
+         *
+         * @param protocol the protocol (default {@link StreamProtocol#DEFAULT})
+         * @return this builder
+         * @see StreamClient#StreamClient(StreamProtocol)
+         */
+        public Builder withProtocol(StreamProtocol protocol) {
+            this.protocol = protocol;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of blocks read ahead per response.
+         *
+         * @param readAheadBlocks the maximum number of blocks read ahead, or 0 to read in the calling thread (default)
+         * @return this builder
+         * @see StreamClient#StreamClient(StreamProtocol, int)
+         */
+        public Builder withReadAheadBlocks(int readAheadBlocks) {
+            this.readAheadBlocks = readAheadBlocks;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of connections per route (per host and port).
+         *
+         * @param maxConnectionsPerRoute the maximum number of connections per route (default
+         *                               {@value StreamClient#DEFAULT_MAX_CONNECTIONS_PER_ROUTE})
+         * @return this builder
+         */
+        public Builder withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            if (maxConnectionsPerRoute <= 0) {
+                throw new IllegalArgumentException("invalid maximum number of connections per route: " +
+                        maxConnectionsPerRoute);
+            }
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of connections in total.
+         *
+         * @param maxConnections the maximum number of connections (default
+         *                       {@value StreamClient#DEFAULT_MAX_CONNECTIONS})
+         * @return this builder
+         */
+        public Builder withMaxConnections(int maxConnections) {
+            if (maxConnections <= 0) {
+                throw new IllegalArgumentException("invalid maximum number of connections: " + maxConnections);
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Set the socket buffer sizes (<code>SO_SNDBUF</code> and <code>SO_RCVBUF</code>). Larger buffers keep more
+         * bytes in flight, which helps bulk transfers over links with a high latency.
+         *
+         * @param sendBufferSize    the send buffer size, or 0 for the system default (default)
+         * @param receiveBufferSize the receive buffer size, or 0 for the system default (default)
+         * @return this builder
+         */
+        public Builder withSocketBufferSizes(int sendBufferSize, int receiveBufferSize) {
+            if (sendBufferSize < 0 || receiveBufferSize < 0) {
+                throw new IllegalArgumentException("invalid socket buffer sizes: " + sendBufferSize + ", " +
+                        receiveBufferSize);
+            }
+            this.sendBufferSize = sendBufferSize;
+            this.receiveBufferSize = receiveBufferSize;
+            return this;
+        }
+
+        /**
+         * Enable or disable <code>TCP_NODELAY</code> (disabling Nagle's algorithm, so small chunks are sent right
+         * away).
+         *
+         * @param tcpNoDelay true to enable <code>TCP_NODELAY</code> (default)
+         * @return this builder
+         */
+        public Builder withTcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        /**
+         * Enable or disable keep-alive: connections are reused for the next requests (and TCP keep-alive is enabled),
+         * instead of being closed after every request.
+         *
+         * @param keepAlive true to reuse connections (default)
+         * @return this builder
+         */
+        public Builder withKeepAlive(boolean keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * Set the maximum time a connection can be idle in the pool. Idle connections are evicted by a background
+         * thread, before the server (or a firewall in between) closes them.
+         *
+         * @param maxIdleTime the maximum idle time in milliseconds, or 0 to keep idle connections (default)
+         * @return this builder
+         */
+        public Builder withMaxIdleTime(long maxIdleTime) {
+            if (maxIdleTime < 0) {
+                throw new IllegalArgumentException("invalid maximum idle time: " + maxIdleTime);
+            }
+            this.maxIdleTime = maxIdleTime;
+            return this;
+        }
+
+        /**
+         * Set the timeout for connecting to the server (for pooled connections, for warming up connections and for
+         * the connections of duplex streams). The socket timeout for reading doesn't apply to connecting.
+         *
+         * @param connectTimeout the connect timeout in milliseconds, or 0 for no timeout (default)
+         * @return this builder
+         */
+        public Builder withConnectTimeout(int connectTimeout) {
+            if (connectTimeout < 0) {
+                throw new IllegalArgumentException("invalid connect timeout: " + connectTimeout);
+            }
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Enable or disable HTTP/2: every request is sent on its own HTTP/2 stream, and the streams to the same server
+         * are multiplexed on a single connection (negotiated with ALPN over TLS, or with an h2c upgrade over plain
+         * http). Servers that don't support HTTP/2 are sent HTTP/1.1 requests. The requests are sent by the HTTP
+         * engine of the JDK, so the connection pool settings don't apply (except for duplex streams).
+         *
+         * @param http2 true to send requests over HTTP/2, false to send them over HTTP/1.1 (default)
+         * @return this builder
+         */
+        public Builder withHttp2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        /**
+         * Build the stream client.
+         *
+         * @return the stream client
+         */
+        public StreamClient build() {
+            return new StreamClient(this);
+        }
+
+    }
+
 }
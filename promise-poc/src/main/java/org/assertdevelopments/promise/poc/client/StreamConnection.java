@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.credit.CreditGrantor;
+import org.assertdevelopments.promise.poc.core.protocol.header.HeaderInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.header.HeaderOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.header.StreamRequestHeader;
+import org.assertdevelopments.promise.poc.core.protocol.header.StreamResponseHeader;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A connection to a stream server without http, carrying stream exchanges one after the other: a request header and
+ * the request body, followed by a response header and the response body (see {@code StreamDispatcher}). Closing the
+ * connection (when the response is closed) releases it for the next exchange if the response body was read
+ * completely, or discards it otherwise.
+ * <p/>
+ * Response bodies only use flow control on connections that carry credits back to the server (a separate credit output
+ * stream): closing a response that was read completely then ends its grants, so the credit stream is ready for the
+ * next exchange.
+ *
+ * @author agent
+ * @see SocketStreamClient
+ * @see SharedMemoryStreamClient
+ * @since 2026-10-17
+ */
+abstract class StreamConnection implements Closeable {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final HeaderInputStream headerInputStream;
+    private final HeaderOutputStream headerOutputStream;
+    private final OutputStream creditOutputStream;
+
+    private StreamResponse response;
+
+    /**
+     * Create a connection.
+     *
+     * @param inputStream  the input stream of the connection (buffered by the connection)
+     * @param outputStream the output stream of the connection (buffered by the connection)
+     */
+    StreamConnection(InputStream inputStream, OutputStream outputStream) {
+        this(inputStream, outputStream, null);
+    }
+
+    /**
+     * Create a connection that carries credits back to the server.
+     *
+     * @param inputStream        the input stream of the connection (buffered by the connection)
+     * @param outputStream       the output stream of the connection (buffered by the connection)
+     * @param creditOutputStream the output stream for granting credits to the server (null for no flow control)
+     */
+    StreamConnection(InputStream inputStream, OutputStream outputStream, OutputStream creditOutputStream) {
+        this.creditOutputStream = creditOutputStream;
+        this.inputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        this.outputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        this.headerInputStream = new HeaderInputStream(this.inputStream);
+        this.headerOutputStream = new HeaderOutputStream(this.outputStream);
+    }
+
+    /**
+     * Execute a stream exchange: write the request header and body, and read the response header. The request body is
+     * written completely before the response is read.
+     *
+     * @param path     the request path (f.e. "/ws/bytes")
+     * @param request  the request (null for an empty request body)
+     * @param protocol the protocol
+     * @return the response (closing the response closes the connection)
+     */
+    StreamResponse exchange(String path, StreamRequest request, StreamProtocol protocol) throws IOException {
+        // write request header and body (request bodies don't use flow control)
+        StreamProtocol requestProtocol = protocol.withDictionary(null).withCredits(0);
+        StreamProtocol offeredProtocol = creditOutputStream != null ? protocol : protocol.withCredits(0);
+        headerOutputStream.writeRequestHeader(new StreamRequestHeader("POST", path, requestProtocol.getContentType(),
+                StreamClient.getAccept(offeredProtocol)));
+        logger.info("streaming request...");
+        if (request != null) {
+            new StreamRequestEntity(request, requestProtocol).writeTo(outputStream);
+        } else {
+            new StreamOutputStream(outputStream, requestProtocol).writeStatus(StreamStatus.STATUS_OK, "OK");
+        }
+        outputStream.flush();
+
+        // read response header
+        StreamResponseHeader responseHeader = headerInputStream.readResponseHeader();
+        logger.debug("response status code is " + responseHeader.getStatusCode() + ".");
+        if (!responseHeader.isAccepted()) {
+            throw new HttpStreamException("error while executing stream request, unexpected status code: " +
+                    responseHeader.getStatusCode() + " (" + responseHeader.getMessage() + ")");
+        }
+
+        logger.info("streaming response...");
+        response = creditOutputStream != null
+                ? new StreamResponse(inputStream, responseHeader.getContentType(), this, creditOutputStream)
+                : new StreamResponse(inputStream, responseHeader.getContentType(), this, 0, null, 0);
+        return response;
+    }
+
+    public void close() {
+        StreamResponse response = this.response;
+        this.response = null;
+        if (response != null && response.isComplete()) {
+            if (response.getProtocol().getCredits() > 0) {
+                try {
+                    CreditGrantor.end(creditOutputStream);
+                } catch (IOException e) {
+                    logger.debug("error while ending the credits of the response", e);
+                    discard();
+                    return;
+                }
+            }
+            release();
+        } else {
+            discard();
+        }
+    }
+
+    /**
+     * Release the connection for the next exchange (the last response was read completely).
+     */
+    abstract void release();
+
+    /**
+     * Discard the connection (it can't carry any more exchanges).
+     */
+    abstract void discard();
+
+}
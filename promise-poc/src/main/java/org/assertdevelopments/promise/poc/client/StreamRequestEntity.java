@@ -17,8 +17,8 @@
 package org.assertdevelopments.promise.poc.client;
 
 import org.assertdevelopments.promise.poc.core.exceptions.LocalStreamException;
-import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
 import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
 import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
 import org.apache.http.entity.BasicHttpEntity;
 import org.apache.log4j.Logger;
@@ -35,20 +35,23 @@ final class StreamRequestEntity extends BasicHttpEntity {
     private final Logger logger = Logger.getLogger(getClass());
 
     private final StreamRequest request;
+    private final StreamProtocol protocol;
 
-    StreamRequestEntity(StreamRequest request) {
+    StreamRequestEntity(StreamRequest request, StreamProtocol protocol) {
         this.request = request;
-        setContentType(StreamConstants.CONTENT_TYPE);
+        this.protocol = protocol;
+        setContentType(protocol.getContentType());
     }
 
     @Override
     public void writeTo(OutputStream outputStream) throws IOException {
         // write data
-        StreamOutputStream chunkOutputStream = new StreamOutputStream(outputStream);
+        StreamOutputStream chunkOutputStream = new StreamOutputStream(outputStream, protocol);
         try {
             request.writeEntity(chunkOutputStream);
             logger.info("sending stream status: success...");
             chunkOutputStream.writeStatus(StreamStatus.STATUS_OK, "OK");
+            logger.debug("sent stream status, " + chunkOutputStream.getStatistics());
         } catch (Throwable t) {
             logger.warn("sending stream status: error (code=" + StreamStatus.STATUS_ERROR + ", message=" + t.getMessage() + ")...");
             chunkOutputStream.writeStatus(StreamStatus.STATUS_ERROR, t.getMessage());
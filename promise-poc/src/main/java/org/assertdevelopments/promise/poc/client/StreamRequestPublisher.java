@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Body publisher for streaming a request body to the HTTP engine of the JDK. The request entity is written on a
+ * virtual thread, in blocks: the writer blocks until the subscriber requests the next block, so the request body is
+ * never buffered completely (unlike the request bodies of the {@link AsyncStreamClient}).
+ * <p/>
+ * A request entity can only be written once: the request body can't be published again (f.e. for a redirect).
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+final class StreamRequestPublisher implements HttpRequest.BodyPublisher {
+
+    private static final int BLOCK_SIZE = 8192;
+
+    private final String uri;
+    private final StreamRequestEntity entity;
+
+    private boolean subscribed = false;
+
+    StreamRequestPublisher(String uri, StreamRequestEntity entity) {
+        this.uri = uri;
+        this.entity = entity;
+    }
+
+    public long contentLength() {
+        // unknown, the request body is chunked
+        return -1;
+    }
+
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Writer writer = new Writer(subscriber);
+        boolean repeated;
+        synchronized (this) {
+            repeated = subscribed;
+            subscribed = true;
+        }
+        subscriber.onSubscribe(writer);
+        if (repeated) {
+            writer.cancel();
+            subscriber.onError(new IOException("the request body of stream " + uri + " can't be published again"));
+        } else {
+            Thread.ofVirtual().name("stream-request-" + uri).start(writer);
+        }
+    }
+
+    /**
+     * The output stream of the request entity, publishing a block whenever it is full (or flushed) and requested.
+     */
+    private final class Writer extends OutputStream implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+
+        private final Lock lock = new ReentrantLock();
+        private final Condition requested = lock.newCondition();
+        private long demand = 0;
+        private boolean cancelled = false;
+
+        private byte[] buffer = new byte[BLOCK_SIZE];
+        private int count = 0;
+
+        Writer(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        public void request(long n) {
+            lock.lock();
+            try {
+                if (n <= 0) {
+                    // not allowed by the reactive streams specification, the writer fails
+                    cancelled = true;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                requested.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                requested.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void run() {
+            try {
+                entity.writeTo(this);
+                publish();
+                subscriber.onComplete();
+            } catch (Throwable t) {
+                subscriber.onError(t);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                publish();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        @SuppressWarnings({"NullableProblems"})
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    publish();
+                }
+                int size = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, size);
+                count += size;
+                offset += size;
+                length -= size;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            publish();
+        }
+
+        /**
+         * Publish the buffered bytes, after waiting until the subscriber requests them.
+         */
+        private void publish() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            lock.lock();
+            try {
+                while (demand == 0 && !cancelled) {
+                    requested.awaitUninterruptibly();
+                }
+                if (cancelled) {
+                    throw new IOException("the request body of stream " + uri + " was cancelled");
+                }
+                demand--;
+            } finally {
+                lock.unlock();
+            }
+            ByteBuffer block = ByteBuffer.wrap(buffer, 0, count);
+            buffer = new byte[BLOCK_SIZE];
+            count = 0;
+            subscriber.onNext(block);
+        }
+
+    }
+
+}
@@ -18,11 +18,17 @@ package org.assertdevelopments.promise.poc.client;
 
 import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
 import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.log4j.Logger;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * @author Stefan Bangels
@@ -34,26 +40,180 @@ public final class StreamResponse {
 
     private final StreamInputStream streamInputStream;
 
-    private final CloseableHttpResponse response;
+    private final StreamProtocol protocol;
 
-    StreamResponse(CloseableHttpResponse response) throws IOException {
+    private final Closeable response;
+
+    private final String resumeToken;
+
+    private String httpVersion;
+
+    StreamResponse(final CloseableHttpResponse response, int readAheadBlocks, String resumeToken, long resumeOffset)
+            throws IOException {
+        // the trailer fields are added to the response headers at the end of the response body
+        // (see TrailerConnectionFactory)
+        this(response.getEntity().getContent(), getContentType(response), response, readAheadBlocks, resumeToken,
+                resumeOffset, null, new Supplier<Map<String, String>>() {
+                    public Map<String, String> get() {
+                        return TrailerConnectionFactory.getTrailerFields(response);
+                    }
+                });
+        this.httpVersion = response.getProtocolVersion().toString();
+    }
+
+    /**
+     * Create a response for a response body from any HTTP engine.
+     *
+     * @param inputStream     the input stream of the response body
+     * @param contentType     the content type of the response (null if none)
+     * @param response        the response (closed when the stream is closed)
+     * @param readAheadBlocks the maximum number of blocks read ahead, or 0 to read in the calling thread
+     * @param resumeToken     the resume token (null if none)
+     * @param resumeOffset    the offset for resuming the response body (0 if not resuming)
+     */
+    StreamResponse(InputStream inputStream, String contentType, Closeable response, int readAheadBlocks,
+                   String resumeToken, long resumeOffset) throws IOException {
+        this(inputStream, contentType, response, readAheadBlocks, resumeToken, resumeOffset, null, null);
+    }
+
+    /**
+     * Create a response for a response body on a transport that carries credits back to the server, so the response
+     * body can use flow control.
+     *
+     * @param inputStream        the input stream of the response body
+     * @param contentType        the content type of the response (null if none)
+     * @param response           the response (closed when the stream is closed)
+     * @param creditOutputStream the output stream for granting credits to the server
+     */
+    StreamResponse(InputStream inputStream, String contentType, Closeable response, OutputStream creditOutputStream)
+            throws IOException {
+        this(inputStream, contentType, response, 0, null, 0, creditOutputStream, null);
+    }
+
+    private StreamResponse(InputStream inputStream, String contentType, Closeable response, int readAheadBlocks,
+                           String resumeToken, long resumeOffset, OutputStream creditOutputStream,
+                           Supplier<Map<String, String>> trailerFields) throws IOException {
+        StreamProtocol protocol = getProtocol(contentType, creditOutputStream != null);
+        if (protocol.isTrailers() && trailerFields == null) {
+            response.close();
+            throw new HttpStreamException("error while reading stream, the response has status trailers, but the " +
+                    "transport doesn't carry trailers");
+        }
+        if (resumeOffset > 0 && !protocol.isResumable()) {
+            response.close();
+            throw new HttpStreamException("error while resuming stream, the server can't resume the response body");
+        }
+        this.protocol = protocol;
         this.response = response;
-        this.streamInputStream = new StreamInputStream(response.getEntity().getContent());
+        this.resumeToken = protocol.isResumable() ? resumeToken : null;
+        this.streamInputStream = new StreamInputStream(inputStream, protocol, readAheadBlocks, creditOutputStream,
+                trailerFields);
+        this.streamInputStream.resume(resumeOffset);
+    }
+
+    private static String getContentType(CloseableHttpResponse response) {
+        Header contentType = response.getEntity().getContentType();
+        return contentType != null ? contentType.getValue() : null;
+    }
+
+    /**
+     * Get the protocol of the response body, from the response content type (servers that don't negotiate a
+     * protocol, respond with the legacy protocol).
+     *
+     * @param contentType the content type of the response (null if none)
+     * @return the protocol
+     */
+    static StreamProtocol getProtocol(String contentType) {
+        return getProtocol(contentType, false);
+    }
+
+    private static StreamProtocol getProtocol(String contentType, boolean credits) {
+        if (contentType == null) {
+            return StreamProtocol.LEGACY;
+        }
+        StreamProtocol protocol = StreamProtocol.parse(contentType);
+        return credits ? protocol : protocol.withCredits(0);
+    }
+
+    /**
+     * Get the protocol of the response body (as negotiated by the server).
+     *
+     * @return the protocol
+     */
+    StreamProtocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Get the http version the response was received with.
+     *
+     * @return the http version (f.e. HTTP/1.1 or HTTP/2), or null if unknown
+     */
+    public String getHttpVersion() {
+        return httpVersion;
+    }
+
+    void setHttpVersion(String httpVersion) {
+        this.httpVersion = httpVersion;
     }
 
     public InputStream getInputStream() {
         return streamInputStream;
     }
 
+    /**
+     * Get the input stream of a channel of the (multiplexed) response body. Channels can be read in any order (the
+     * frames of the channels that are not being read, are queued), and must be read before closing the response.
+     *
+     * @param channel the channel (greater than 0)
+     * @return the input stream
+     * @throws IllegalStateException if the response body is not multiplexed
+     */
+    public InputStream getInputStream(int channel) {
+        return streamInputStream.getChannel(channel);
+    }
+
+    /**
+     * Get the resume token, for resuming the response body when it gets interrupted.
+     *
+     * @return the resume token, or null if the response body is not resumable
+     * @see StreamClient#resumeRequest(String, StreamRequest, String, long)
+     */
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * Get the offset in the response body of the next byte read from the input stream. When the response body gets
+     * interrupted, it can be resumed from this offset (or from an earlier offset, f.e. the last entity boundary).
+     *
+     * @return the stream offset
+     */
+    public long getStreamOffset() {
+        return streamInputStream.getStreamOffset();
+    }
+
+    /**
+     * Check whether the response body has been read completely (including its status), so the connection can carry
+     * the next exchange.
+     *
+     * @return true if the response body has been read completely
+     */
+    boolean isComplete() {
+        return streamInputStream.isComplete();
+    }
+
     public void close() {
         logger.debug("closing stream...");
         try {
-            // reads remaining bytes, reads and processes the request status
-            streamInputStream.readRemaining();
-
-            // close response
-            logger.debug("closing response...");
-            response.close();
+            try {
+                // reads remaining bytes, reads and processes the request status
+                streamInputStream.readRemaining();
+            } finally {
+                // close response (also after an error status, so the connection isn't leaked)
+                logger.debug("closing response...");
+                response.close();
+            }
 
             logger.info("closed stream.");
         } catch (IOException e) {
@@ -61,4 +221,20 @@ public final class StreamResponse {
         }
     }
 
+    /**
+     * Abort the stream, without reading the remaining bytes and the status (f.e. after the response body got
+     * interrupted, before resuming it).
+     */
+    public void abort() {
+        logger.debug("aborting stream...");
+        try {
+            // close the response first: it drops the connection, so a background reader blocked on it is stopped
+            response.close();
+        } catch (IOException e) {
+            logger.debug("error while closing aborted response", e);
+        }
+        streamInputStream.release();
+        logger.info("aborted stream.");
+    }
+
 }
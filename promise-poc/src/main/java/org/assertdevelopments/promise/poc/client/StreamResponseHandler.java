@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+/**
+ * A handler for consuming the response of a stream request. The handler reads the response body (in the blocking
+ * style), and returns the result of the request. The response is closed after the handler returns.
+ *
+ * @param <T> the type of the result
+ * @author agent
+ * @see StreamClient#sendRequest(String, StreamRequest, StreamResponseHandler)
+ * @since 2026-10-17
+ */
+public interface StreamResponseHandler<T> {
+
+    /**
+     * Consume the provided response.
+     *
+     * @param response the response
+     * @return the result
+     */
+    T handleResponse(StreamResponse response) throws Exception;
+
+}
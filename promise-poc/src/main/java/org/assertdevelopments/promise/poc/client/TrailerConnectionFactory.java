@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.conn.DefaultManagedHttpClientConnection;
+import org.apache.http.impl.io.ChunkedInputStream;
+import org.apache.http.message.BasicHeader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A factory for http client connections that keep the trailer of a chunked response: when the end of the response
+ * body is reached, the trailer fields are added to the headers of the response (HttpClient reads the trailer, but
+ * doesn't expose it). The trailer fields can be told apart from the leading headers of the response, see
+ * {@link #getTrailerFields(HttpResponse)}. Unlike the default connections of HttpClient, these connections don't log the http headers and
+ * the wire, so they are only used by clients that offer status trailers.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+final class TrailerConnectionFactory implements HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> {
+
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+        ConnectionConfig connectionConfig = config != null ? config : ConnectionConfig.DEFAULT;
+        CharsetDecoder charDecoder = null;
+        CharsetEncoder charEncoder = null;
+        Charset charset = connectionConfig.getCharset();
+        if (charset != null) {
+            CodingErrorAction malformedInputAction = connectionConfig.getMalformedInputAction() != null
+                    ? connectionConfig.getMalformedInputAction()
+                    : CodingErrorAction.REPORT;
+            CodingErrorAction unmappableInputAction = connectionConfig.getUnmappableInputAction() != null
+                    ? connectionConfig.getUnmappableInputAction()
+                    : CodingErrorAction.REPORT;
+            charDecoder = charset.newDecoder()
+                    .onMalformedInput(malformedInputAction)
+                    .onUnmappableCharacter(unmappableInputAction);
+            charEncoder = charset.newEncoder()
+                    .onMalformedInput(malformedInputAction)
+                    .onUnmappableCharacter(unmappableInputAction);
+        }
+        return new TrailerConnection("http-outgoing-" + COUNTER.getAndIncrement(), connectionConfig, charDecoder,
+                charEncoder);
+    }
+
+    /**
+     * Get the trailer fields of a response, that were added to its headers at the end of the response body. Leading
+     * headers with the same names are not included.
+     *
+     * @param response the response
+     * @return the trailer fields (no fields if the response had no trailer, or the end of the response body wasn't
+     * reached)
+     */
+    static Map<String, String> getTrailerFields(HttpResponse response) {
+        Map<String, String> fields = new LinkedHashMap<String, String>();
+        for (Header header : response.getAllHeaders()) {
+            if (header instanceof TrailerField) {
+                fields.put(header.getName(), header.getValue());
+            }
+        }
+        return fields;
+    }
+
+    private static final class TrailerConnection extends DefaultManagedHttpClientConnection {
+
+        TrailerConnection(String id, ConnectionConfig config, CharsetDecoder charDecoder, CharsetEncoder charEncoder) {
+            super(id, config.getBufferSize(), config.getFragmentSizeHint(), charDecoder, charEncoder,
+                    config.getMessageConstraints(), null, null, null, null);
+        }
+
+        @Override
+        public void receiveResponseEntity(final HttpResponse response) throws HttpException, IOException {
+            super.receiveResponseEntity(response);
+            HttpEntity entity = response.getEntity();
+            if (entity instanceof BasicHttpEntity && entity.getContent() instanceof ChunkedInputStream) {
+                final ChunkedInputStream chunkedInputStream = (ChunkedInputStream) entity.getContent();
+                ((BasicHttpEntity) entity).setContent(new FilterInputStream(chunkedInputStream) {
+                    private boolean eof = false;
+
+                    @Override
+                    public int read() throws IOException {
+                        return checkEOF(in.read());
+                    }
+
+                    @Override
+                    @SuppressWarnings({"NullableProblems"})
+                    public int read(byte[] bytes, int off, int len) throws IOException {
+                        return checkEOF(in.read(bytes, off, len));
+                    }
+
+                    private int checkEOF(int n) {
+                        if (n == -1 && !eof) {
+                            eof = true;
+                            for (Header footer : chunkedInputStream.getFooters()) {
+                                response.addHeader(new TrailerField(footer.getName(), footer.getValue()));
+                            }
+                        }
+                        return n;
+                    }
+                });
+            }
+        }
+
+    }
+
+    /**
+     * A trailer field, added to the headers of a response.
+     */
+    private static final class TrailerField extends BasicHeader {
+
+        TrailerField(String name, String value) {
+            super(name, value);
+        }
+
+    }
+
+}
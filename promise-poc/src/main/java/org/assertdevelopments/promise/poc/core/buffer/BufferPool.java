@@ -0,0 +1,321 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.buffer;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of byte buffers, so short lived streams can reuse their chunk buffers instead of allocating new
+ * ones. Buffers are pooled per size class (powers of two, from {@link #MIN_BUFFER_SIZE} up to
+ * {@link #MAX_BUFFER_SIZE} bytes), and the pool is split in stripes (selected by thread id) to avoid contention. Each
+ * stripe holds at most its share of the maximum number of pooled bytes, buffers released to a full stripe are
+ * discarded.
+ * <p/>
+ * Every borrowed buffer must be released exactly once. Borrowing and releasing only touch the stripe of the current
+ * thread and a few counters, the pool doesn't keep track of the individual buffers. With leak detection enabled, the
+ * pool also remembers every outstanding buffer and where it was borrowed: buffers that are released twice (or that
+ * were not borrowed from the pool) are then refused, and {@link #checkLeaks(long)} will report the buffers that are
+ * outstanding for too long.
+ * <p/>
+ * The shared pool ({@link #getInstance()}) can be sized with the following system properties:
+ * <ul>
+ * <li><code>promise.buffer-pool.max-bytes</code>: the maximum number of pooled bytes (default 64 MB)</li>
+ * <li><code>promise.buffer-pool.stripes</code>: the number of stripes (default the number of processors)</li>
+ * <li><code>promise.buffer-pool.leak-detection</code>: true to enable leak detection (default false)</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class BufferPool {
+
+    public static final int MIN_BUFFER_SIZE = 1024;
+    public static final int MAX_BUFFER_SIZE = StreamConstants.MAX_LARGE_CHUNK_SIZE;
+    public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+    private static final int MIN_SIZE_CLASS_SHIFT = 10;
+    private static final int SIZE_CLASSES = 13;
+
+    private static BufferPool instance;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final Stripe[] stripes;
+    private final Map<byte[], Borrow> borrowed;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong discards = new AtomicLong();
+
+    /**
+     * Get the shared buffer pool (created on first use, sized with the system properties).
+     *
+     * @return the buffer pool
+     */
+    public static synchronized BufferPool getInstance() {
+        if (instance == null) {
+            instance = new BufferPool(
+                    Integer.getInteger("promise.buffer-pool.stripes", Runtime.getRuntime().availableProcessors()),
+                    Long.getLong("promise.buffer-pool.max-bytes", DEFAULT_MAX_POOLED_BYTES),
+                    Boolean.getBoolean("promise.buffer-pool.leak-detection")
+            );
+        }
+        return instance;
+    }
+
+    /**
+     * Replace the shared buffer pool. Buffers borrowed from the previous pool must still be released to it.
+     *
+     * @param pool the buffer pool
+     */
+    public static synchronized void setInstance(BufferPool pool) {
+        instance = pool;
+    }
+
+    /**
+     * Create a buffer pool.
+     *
+     * @param stripes        the number of stripes (rounded up to a power of two)
+     * @param maxPooledBytes the maximum number of bytes held by the pool
+     * @param leakDetection  true to keep track of the outstanding buffers, and remember where they were borrowed
+     */
+    public BufferPool(int stripes, long maxPooledBytes, boolean leakDetection) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("invalid number of stripes: " + stripes);
+        }
+        if (maxPooledBytes < 0) {
+            throw new IllegalArgumentException("invalid maximum number of pooled bytes: " + maxPooledBytes);
+        }
+        int n = Integer.highestOneBit(stripes);
+        if (n < stripes) {
+            n <<= 1;
+        }
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Stripe(maxPooledBytes / n);
+        }
+        this.borrowed = leakDetection ? new ConcurrentHashMap<byte[], Borrow>() : null;
+    }
+
+    /**
+     * Borrow a buffer of at least the provided size. Sizes up to {@link #MAX_BUFFER_SIZE} are rounded up to a power of
+     * two (and at least {@link #MIN_BUFFER_SIZE}), larger buffers are allocated, but not pooled.
+     *
+     * @param size the minimum size of the buffer
+     * @return the buffer
+     */
+    public byte[] borrow(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("invalid buffer size: " + size);
+        }
+        int sizeClass = getSizeClass(size);
+        byte[] buffer = sizeClass != -1 ? getStripe().poll(sizeClass) : null;
+        if (buffer != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            buffer = new byte[sizeClass != -1 ? 1 << (sizeClass + MIN_SIZE_CLASS_SHIFT) : size];
+        }
+        if (borrowed != null) {
+            borrowed.put(buffer, new Borrow());
+        }
+        return buffer;
+    }
+
+    /**
+     * Release a buffer that was borrowed from this pool. After releasing, the buffer can no longer be used.
+     *
+     * @param buffer the buffer
+     * @throws IllegalStateException if the buffer was not borrowed from this pool, or is already released (only
+     *                               detected with leak detection enabled)
+     */
+    public void release(byte[] buffer) throws IllegalStateException {
+        if (borrowed != null && borrowed.remove(buffer) == null) {
+            throw new IllegalStateException("buffer was not borrowed from this pool, or is already released");
+        }
+        releases.incrementAndGet();
+        int sizeClass = getSizeClass(buffer.length);
+        if (sizeClass == -1 || buffer.length != 1 << (sizeClass + MIN_SIZE_CLASS_SHIFT)
+                || !getStripe().offer(sizeClass, buffer)) {
+            discards.incrementAndGet();
+        }
+    }
+
+    /**
+     * Report the buffers that have been outstanding for longer than the provided age (including the place where they
+     * were borrowed). Only with leak detection enabled.
+     *
+     * @param maxAge the maximum age (in milliseconds)
+     * @return the number of buffers outstanding for longer than the maximum age (0 without leak detection)
+     */
+    public int checkLeaks(long maxAge) {
+        if (borrowed == null) {
+            return 0;
+        }
+        long time = System.currentTimeMillis() - maxAge;
+        int leaks = 0;
+        for (Borrow borrow : borrowed.values()) {
+            if (borrow.time < time) {
+                leaks++;
+                logger.warn("buffer outstanding for " + (System.currentTimeMillis() - borrow.time) + "ms", borrow.trace);
+            }
+        }
+        return leaks;
+    }
+
+    private Stripe getStripe() {
+        return stripes[(int) Thread.currentThread().threadId() & (stripes.length - 1)];
+    }
+
+    private static int getSizeClass(int size) {
+        if (size > MAX_BUFFER_SIZE) {
+            return -1;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return Math.max(shift - MIN_SIZE_CLASS_SHIFT, 0);
+    }
+
+    /**
+     * Get the number of buffers borrowed from the pool.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of buffers allocated, because there was no pooled buffer available.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of buffers released.
+     *
+     * @return the number of releases
+     */
+    public long getReleases() {
+        return releases.get();
+    }
+
+    /**
+     * Get the number of released buffers that were discarded, because the pool was full.
+     *
+     * @return the number of discards
+     */
+    public long getDiscards() {
+        return discards.get();
+    }
+
+    /**
+     * Get the number of buffers that are borrowed and not yet released.
+     *
+     * @return the number of outstanding buffers
+     */
+    public int getOutstanding() {
+        return (int) (hits.get() + misses.get() - releases.get());
+    }
+
+    /**
+     * Get the number of bytes held by the pool.
+     *
+     * @return the number of pooled bytes
+     */
+    public long getPooledBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.getPooledBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{" +
+                "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", releases=" + getReleases() +
+                ", discards=" + getDiscards() +
+                ", outstanding=" + getOutstanding() +
+                ", pooledBytes=" + getPooledBytes() +
+                '}';
+    }
+
+    /**
+     * A stripe of the pool, holding the pooled buffers per size class.
+     */
+    private static final class Stripe {
+
+        private final long maxPooledBytes;
+        private final List<List<byte[]>> buffers = new ArrayList<List<byte[]>>(SIZE_CLASSES);
+        private long pooledBytes;
+
+        Stripe(long maxPooledBytes) {
+            this.maxPooledBytes = maxPooledBytes;
+            for (int n = 0; n < SIZE_CLASSES; n++) {
+                buffers.add(new ArrayList<byte[]>());
+            }
+        }
+
+        synchronized byte[] poll(int sizeClass) {
+            List<byte[]> list = buffers.get(sizeClass);
+            if (list.isEmpty()) {
+                return null;
+            }
+            byte[] buffer = list.remove(list.size() - 1);
+            pooledBytes -= buffer.length;
+            return buffer;
+        }
+
+        synchronized boolean offer(int sizeClass, byte[] buffer) {
+            if (pooledBytes + buffer.length > maxPooledBytes) {
+                return false;
+            }
+            buffers.get(sizeClass).add(buffer);
+            pooledBytes += buffer.length;
+            return true;
+        }
+
+        synchronized long getPooledBytes() {
+            return pooledBytes;
+        }
+
+    }
+
+    /**
+     * The bookkeeping for a borrowed buffer.
+     */
+    private static final class Borrow {
+
+        private final long time = System.currentTimeMillis();
+        private final Throwable trace = new Throwable("buffer borrowed here");
+
+    }
+
+}
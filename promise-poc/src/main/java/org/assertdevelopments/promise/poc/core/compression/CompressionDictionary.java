@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A preset dictionary for compressing chunks. Small chunks compress badly on their own (the compressor has no history
+ * to refer to), a preset dictionary with the strings that are common in the stream (f.e. field names and similar
+ * values) gives the compressor that history up front.
+ * <p/>
+ * A dictionary is identified by its Adler-32 checksum (the same id that the zlib format uses to refer to a preset
+ * dictionary). Peers negotiate a dictionary by id, so both peers must have the same dictionary: dictionaries are
+ * registered with {@link #register(CompressionDictionary)}, and looked up by id with {@link #get(int)}.
+ *
+ * @author agent
+ * @see DictionaryTrainer
+ * @since 2026-10-17
+ */
+public final class CompressionDictionary {
+
+    /**
+     * The maximum size of a dictionary (the window size of the deflate algorithm, older bytes are never referred to).
+     */
+    public static final int MAX_SIZE = 32768;
+
+    private static final Map<Integer, CompressionDictionary> dictionaries =
+            new ConcurrentHashMap<Integer, CompressionDictionary>();
+
+    private final byte[] bytes;
+    private final int id;
+
+    /**
+     * Create a dictionary.
+     *
+     * @param bytes the bytes of the dictionary (the most common strings at the end)
+     */
+    public CompressionDictionary(byte[] bytes) {
+        if (bytes.length == 0 || bytes.length > MAX_SIZE) {
+            throw new IllegalArgumentException("invalid dictionary size: " + bytes.length);
+        }
+        Adler32 adler = new Adler32();
+        adler.update(bytes);
+        this.bytes = bytes.clone();
+        this.id = (int) adler.getValue();
+    }
+
+    /**
+     * Register a dictionary, so it can be found by id when negotiating protocols.
+     *
+     * @param dictionary the dictionary
+     * @return the dictionary
+     */
+    public static CompressionDictionary register(CompressionDictionary dictionary) {
+        dictionaries.put(dictionary.getId(), dictionary);
+        return dictionary;
+    }
+
+    /**
+     * Get a registered dictionary.
+     *
+     * @param id the dictionary id
+     * @return the dictionary, or null if no dictionary with the provided id is registered
+     */
+    public static CompressionDictionary get(int id) {
+        return dictionaries.get(id);
+    }
+
+    /**
+     * Read a dictionary (f.e. created by the {@link DictionaryTrainer}) from an input stream.
+     *
+     * @param inputStream the input stream
+     * @return the dictionary
+     * @throws IOException if reading fails
+     */
+    public static CompressionDictionary read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = inputStream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        return new CompressionDictionary(bytes.toByteArray());
+    }
+
+    /**
+     * Read a dictionary (f.e. created by the {@link DictionaryTrainer}) from a file.
+     *
+     * @param file the file
+     * @return the dictionary
+     * @throws IOException if reading fails
+     */
+    public static CompressionDictionary read(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            return read(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Get the id of this dictionary (its Adler-32 checksum).
+     *
+     * @return the id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the bytes of this dictionary. The returned array must not be modified.
+     *
+     * @return the bytes
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Set this dictionary as the preset dictionary of a compressor (after resetting it, before compressing).
+     *
+     * @param deflater the compressor
+     */
+    public void applyTo(Deflater deflater) {
+        deflater.setDictionary(bytes);
+    }
+
+    /**
+     * Set this dictionary as the preset dictionary of a decompressor (when the decompressor needs a dictionary).
+     *
+     * @param inflater the decompressor
+     */
+    public void applyTo(Inflater inflater) {
+        inflater.setDictionary(bytes);
+    }
+
+    /**
+     * Get the id of this dictionary as a hexadecimal string (as used in the content type parameters).
+     *
+     * @return the id
+     */
+    public String getIdString() {
+        String hex = Integer.toHexString(id);
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CompressionDictionary that = (CompressionDictionary) o;
+        return id == that.id && Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionDictionary{" +
+                "id=" + getIdString() +
+                ", size=" + bytes.length +
+                '}';
+    }
+
+}
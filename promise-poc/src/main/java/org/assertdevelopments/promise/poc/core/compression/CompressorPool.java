@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.compression;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded pool of compressors ({@link Deflater}) and decompressors ({@link Inflater}). Compressors hold native
+ * memory and are expensive to create, so streams borrow them from the pool and release them when they are done.
+ * Released compressors are reset, compressors released to a full pool are ended.
+ * <p/>
+ * The shared pool ({@link #getInstance()}) can be configured with the following system properties:
+ * <ul>
+ * <li><code>promise.compressor-pool.level</code>: the compression level (default {@link Deflater#BEST_SPEED})</li>
+ * <li><code>promise.compressor-pool.max-pooled</code>: the maximum number of pooled compressors and decompressors
+ * (default 64 of each)</li>
+ * </ul>
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class CompressorPool {
+
+    public static final int DEFAULT_MAX_POOLED = 64;
+
+    private static CompressorPool instance;
+
+    private final int level;
+    private final int maxPooled;
+
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+    private final AtomicInteger pooledDeflaters = new AtomicInteger();
+    private final AtomicInteger pooledInflaters = new AtomicInteger();
+
+    /**
+     * Get the shared compressor pool (created on first use, configured with the system properties).
+     *
+     * @return the compressor pool
+     */
+    public static synchronized CompressorPool getInstance() {
+        if (instance == null) {
+            instance = new CompressorPool(
+                    Integer.getInteger("promise.compressor-pool.level", Deflater.BEST_SPEED),
+                    Integer.getInteger("promise.compressor-pool.max-pooled", DEFAULT_MAX_POOLED)
+            );
+        }
+        return instance;
+    }
+
+    /**
+     * Replace the shared compressor pool.
+     *
+     * @param pool the compressor pool
+     */
+    public static synchronized void setInstance(CompressorPool pool) {
+        instance = pool;
+    }
+
+    /**
+     * Create a compressor pool.
+     *
+     * @param level     the compression level of the compressors (0-9)
+     * @param maxPooled the maximum number of pooled compressors (and of pooled decompressors)
+     */
+    public CompressorPool(int level, int maxPooled) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level: " + level);
+        }
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("invalid maximum number of pooled compressors: " + maxPooled);
+        }
+        this.level = level;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Borrow a compressor. The compressor must be released by calling {@link #release(Deflater)}.
+     *
+     * @return the compressor
+     */
+    public Deflater borrowDeflater() {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            return new Deflater(level);
+        }
+        pooledDeflaters.decrementAndGet();
+        return deflater;
+    }
+
+    /**
+     * Release a compressor (returning it to the pool, or ending it if the pool is full).
+     *
+     * @param deflater the compressor
+     */
+    public void release(Deflater deflater) {
+        deflater.reset();
+        if (pooledDeflaters.incrementAndGet() <= maxPooled) {
+            deflaters.offer(deflater);
+        } else {
+            pooledDeflaters.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Borrow a decompressor. The decompressor must be released by calling {@link #release(Inflater)}.
+     *
+     * @return the decompressor
+     */
+    public Inflater borrowInflater() {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            return new Inflater();
+        }
+        pooledInflaters.decrementAndGet();
+        return inflater;
+    }
+
+    /**
+     * Release a decompressor (returning it to the pool, or ending it if the pool is full).
+     *
+     * @param inflater the decompressor
+     */
+    public void release(Inflater inflater) {
+        inflater.reset();
+        if (pooledInflaters.incrementAndGet() <= maxPooled) {
+            inflaters.offer(inflater);
+        } else {
+            pooledInflaters.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    /**
+     * Get the number of pooled compressors.
+     *
+     * @return the number of compressors
+     */
+    public int getPooledDeflaters() {
+        return pooledDeflaters.get();
+    }
+
+    /**
+     * Get the number of pooled decompressors.
+     *
+     * @return the number of decompressors
+     */
+    public int getPooledInflaters() {
+        return pooledInflaters.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressorPool{" +
+                "level=" + level +
+                ", pooledDeflaters=" + pooledDeflaters +
+                ", pooledInflaters=" + pooledInflaters +
+                '}';
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Tool for training a compression dictionary from sample streams (f.e. captured output of a
+ * <code>GenericEntityOutputStream</code>).
+ * <p/>
+ * The trainer splits the samples in blocks, and counts in how many blocks every k-gram (a string of {@link #K}
+ * bytes) occurs. It then repeatedly picks the segment (of {@link #SEGMENT_SIZE} bytes) of the samples whose k-grams are
+ * the most common, and that are not yet covered by the dictionary. The most valuable segments are placed at the end of
+ * the dictionary, where they are the cheapest to refer to.
+ * <p/>
+ * Usage: <code>DictionaryTrainer &lt;dictionary file&gt; &lt;dictionary size&gt; &lt;sample file&gt;...</code>
+ *
+ * @author agent
+ * @see CompressionDictionary
+ * @since 2026-10-17
+ */
+public final class DictionaryTrainer {
+
+    static final int K = 8;
+    static final int SEGMENT_SIZE = 64;
+    static final int BLOCK_SIZE = 4096;
+
+    private DictionaryTrainer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: DictionaryTrainer <dictionary file> <dictionary size> <sample file>...");
+            System.exit(1);
+        }
+        ByteArrayOutputStream samples = new ByteArrayOutputStream();
+        for (int n = 2; n < args.length; n++) {
+            InputStream inputStream = new FileInputStream(new File(args[n]));
+            try {
+                byte[] buffer = new byte[4096];
+                int c;
+                while ((c = inputStream.read(buffer)) != -1) {
+                    samples.write(buffer, 0, c);
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+        CompressionDictionary dictionary = train(samples.toByteArray(), Integer.parseInt(args[1]));
+        OutputStream outputStream = new FileOutputStream(new File(args[0]));
+        try {
+            outputStream.write(dictionary.getBytes());
+        } finally {
+            outputStream.close();
+        }
+        System.out.println("trained " + dictionary + " from " + samples.size() + " bytes");
+    }
+
+    /**
+     * Train a dictionary from samples.
+     *
+     * @param samples        the samples
+     * @param dictionarySize the maximum size of the dictionary (no more than {@link CompressionDictionary#MAX_SIZE})
+     * @return the dictionary
+     * @throws IllegalArgumentException if the samples contain no common strings
+     */
+    public static CompressionDictionary train(byte[] samples, int dictionarySize) {
+        if (dictionarySize <= 0 || dictionarySize > CompressionDictionary.MAX_SIZE) {
+            throw new IllegalArgumentException("invalid dictionary size: " + dictionarySize);
+        }
+
+        // count the number of blocks in which every k-gram occurs
+        Map<Long, int[]> frequencies = new HashMap<Long, int[]>();
+        for (int block = 0; block + K <= samples.length; block += BLOCK_SIZE) {
+            Set<Long> kgrams = new HashSet<Long>();
+            int end = Math.min(block + BLOCK_SIZE, samples.length - K + 1);
+            for (int n = block; n < end; n++) {
+                kgrams.add(kgram(samples, n));
+            }
+            for (Long kgram : kgrams) {
+                int[] frequency = frequencies.get(kgram);
+                if (frequency == null) {
+                    frequencies.put(kgram, new int[]{1});
+                } else {
+                    frequency[0]++;
+                }
+            }
+        }
+
+        // pick the best segments (lazily re-scoring them, because scores only drop as k-grams get covered)
+        PriorityQueue<Segment> segments = new PriorityQueue<Segment>();
+        for (int offset = 0; offset + SEGMENT_SIZE <= samples.length; offset += SEGMENT_SIZE / 2) {
+            segments.add(new Segment(offset, score(samples, offset, frequencies)));
+        }
+        List<Segment> selected = new ArrayList<Segment>();
+        int size = 0;
+        while (size + SEGMENT_SIZE <= dictionarySize && !segments.isEmpty()) {
+            Segment segment = segments.poll();
+            int score = score(samples, segment.offset, frequencies);
+            if (score <= 0) {
+                continue;
+            }
+            if (score < segment.score && !segments.isEmpty() && score < segments.peek().score) {
+                segments.add(new Segment(segment.offset, score));
+                continue;
+            }
+            selected.add(segment);
+            size += SEGMENT_SIZE;
+            for (int n = segment.offset; n + K <= segment.offset + SEGMENT_SIZE; n++) {
+                int[] frequency = frequencies.get(kgram(samples, n));
+                if (frequency != null) {
+                    frequency[0] = 0;
+                }
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("no common strings in the samples");
+        }
+
+        // the best segments go last
+        byte[] dictionary = new byte[size];
+        int offset = size;
+        for (Segment segment : selected) {
+            offset -= SEGMENT_SIZE;
+            System.arraycopy(samples, segment.offset, dictionary, offset, SEGMENT_SIZE);
+        }
+        return new CompressionDictionary(dictionary);
+    }
+
+    /**
+     * Score a segment: the sum of the frequencies of its (distinct) k-grams that occur in more than one block.
+     */
+    private static int score(byte[] samples, int offset, Map<Long, int[]> frequencies) {
+        Set<Long> kgrams = new HashSet<Long>();
+        int score = 0;
+        for (int n = offset; n + K <= offset + SEGMENT_SIZE; n++) {
+            Long kgram = kgram(samples, n);
+            if (kgrams.add(kgram)) {
+                int frequency = frequencies.get(kgram)[0];
+                if (frequency > 1) {
+                    score += frequency;
+                }
+            }
+        }
+        return score;
+    }
+
+    private static long kgram(byte[] samples, int offset) {
+        long kgram = 0;
+        for (int n = 0; n < K; n++) {
+            kgram = (kgram << 8) | (samples[offset + n] & 0xff);
+        }
+        return kgram;
+    }
+
+    private static final class Segment implements Comparable<Segment> {
+
+        private final int offset;
+        private final int score;
+
+        private Segment(int offset, int score) {
+            this.offset = offset;
+            this.score = score;
+        }
+
+        public int compareTo(Segment segment) {
+            return segment.score < score ? -1 : segment.score > score ? 1 : offset - segment.offset;
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The (daemon) threads that do background I/O for write-behind output streams, read-ahead input streams and timed
+ * flushes.
+ *
+ * @author agent
+ * @see WriteBehindOutputStream
+ * @see ReadAheadInputStream
+ * @since 2026-10-17
+ */
+public final class BackgroundThreads {
+
+    private static ExecutorService executor;
+    private static ScheduledExecutorService scheduler;
+
+    private BackgroundThreads() {
+    }
+
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "promise-io-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "promise-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Run a task in the background after a delay. The timer thread only starts the task, the task itself runs on a
+     * background I/O thread (so a task blocked on a slow output stream does not delay the other tasks).
+     *
+     * @param task  the task
+     * @param delay the delay (in nanoseconds)
+     * @return the future for cancelling the task (before it starts)
+     */
+    public static Future<?> schedule(final Runnable task, long delay) {
+        return getScheduler().schedule(new Runnable() {
+            public void run() {
+                getExecutor().execute(task);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Convert an interruption while waiting for background I/O to an I/O exception (restoring the interrupted status of
+     * the current thread).
+     *
+     * @param e the interrupted exception
+     * @return the I/O exception
+     */
+    static InterruptedIOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException exception = new InterruptedIOException("interrupted while waiting for background I/O");
+        exception.initCause(e);
+        return exception;
+    }
+
+}
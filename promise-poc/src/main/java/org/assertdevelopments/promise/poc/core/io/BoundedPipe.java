@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded in-memory pipe between writer and reader threads. Unlike the piped streams of the JDK, the pipe doesn't
+ * break when the thread that wrote (or read) last ends, and it blocks on conditions instead of monitors (so blocked
+ * virtual threads release their carrier thread).
+ * <p/>
+ * Closing the output stream ends the input stream (after the remaining bytes are read), and closing the input stream
+ * makes the writes fail, like closing a socket would.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class BoundedPipe {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final byte[] buffer;
+
+    private int head = 0;
+    private int size = 0;
+    private boolean writerClosed = false;
+    private boolean readerClosed = false;
+
+    /**
+     * Create a pipe.
+     *
+     * @param capacity the capacity of the pipe (in bytes)
+     */
+    public BoundedPipe(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] bytes = new byte[1];
+                return read(bytes, 0, 1) == -1 ? -1 : bytes[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                lock.lock();
+                try {
+                    while (size == 0) {
+                        if (readerClosed) {
+                            throw new IOException("pipe input stream is closed");
+                        }
+                        if (writerClosed) {
+                            return -1;
+                        }
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    int n = Math.min(length, Math.min(size, buffer.length - head));
+                    System.arraycopy(buffer, head, bytes, offset, n);
+                    head = (head + n) % buffer.length;
+                    size -= n;
+                    notFull.signal();
+                    return n;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void close() {
+                lock.lock();
+                try {
+                    readerClosed = true;
+                    size = 0;
+                    notEmpty.signalAll();
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                lock.lock();
+                try {
+                    while (length > 0) {
+                        while (size == buffer.length && !readerClosed) {
+                            notFull.awaitUninterruptibly();
+                        }
+                        if (writerClosed) {
+                            throw new IOException("pipe output stream is closed");
+                        }
+                        if (readerClosed) {
+                            throw new IOException("pipe closed by the reader");
+                        }
+                        int tail = (head + size) % buffer.length;
+                        int n = Math.min(length, Math.min(buffer.length - size, buffer.length - tail));
+                        System.arraycopy(bytes, offset, buffer, tail, n);
+                        size += n;
+                        offset += n;
+                        length -= n;
+                        notEmpty.signal();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void close() {
+                lock.lock();
+                try {
+                    writerClosed = true;
+                    notEmpty.signalAll();
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the loopback servers in this jvm, for connecting to a server without a network (like a socket, but with
+ * a name instead of an address). A connection is a pair of bounded pipes, one in each direction, and a third bounded
+ * pipe from the client to the server for granting credits (for response bodies with flow control).
+ *
+ * @author agent
+ * @see BoundedPipe
+ * @since 2026-10-17
+ */
+public final class LoopbackRegistry {
+
+    /**
+     * Acceptor of the connections to a loopback server.
+     */
+    public interface Acceptor {
+
+        /**
+         * Accept a connection. The connection must be served in another thread, the acceptor should return
+         * immediately. Closing the input streams and the output stream closes the connection.
+         *
+         * @param inputStream       the input stream of the connection
+         * @param outputStream      the output stream of the connection
+         * @param creditInputStream the input stream with the credits granted by the client
+         */
+        void accept(InputStream inputStream, OutputStream outputStream, InputStream creditInputStream);
+
+    }
+
+    private static final Map<String, Acceptor> acceptors = new ConcurrentHashMap<String, Acceptor>();
+
+    private LoopbackRegistry() {
+    }
+
+    /**
+     * Bind a loopback server to a name.
+     *
+     * @param name     the name
+     * @param acceptor the acceptor of the server
+     * @throws IllegalStateException if another server is bound to the name
+     */
+    public static void bind(String name, Acceptor acceptor) {
+        if (acceptors.putIfAbsent(name, acceptor) != null) {
+            throw new IllegalStateException("loopback name already bound: " + name);
+        }
+    }
+
+    /**
+     * Unbind a loopback server (the open connections are not closed).
+     *
+     * @param name     the name
+     * @param acceptor the acceptor of the server
+     */
+    public static void unbind(String name, Acceptor acceptor) {
+        acceptors.remove(name, acceptor);
+    }
+
+    /**
+     * Connect to a loopback server.
+     *
+     * @param name     the name of the server
+     * @param capacity the capacity of the pipes (in bytes)
+     * @return the connection
+     * @throws ConnectException if no server is bound to the name
+     */
+    public static Connection connect(String name, int capacity) throws IOException {
+        Acceptor acceptor = acceptors.get(name);
+        if (acceptor == null) {
+            throw new ConnectException("no loopback server bound to " + name);
+        }
+        BoundedPipe requests = new BoundedPipe(capacity);
+        BoundedPipe responses = new BoundedPipe(capacity);
+        BoundedPipe credits = new BoundedPipe(capacity);
+        acceptor.accept(requests.getInputStream(), responses.getOutputStream(), credits.getInputStream());
+        return new Connection(responses.getInputStream(), requests.getOutputStream(), credits.getOutputStream());
+    }
+
+    /**
+     * The client end of a loopback connection.
+     */
+    public static final class Connection implements Closeable {
+
+        private final InputStream inputStream;
+        private final OutputStream outputStream;
+        private final OutputStream creditOutputStream;
+
+        private Connection(InputStream inputStream, OutputStream outputStream, OutputStream creditOutputStream) {
+            this.inputStream = inputStream;
+            this.outputStream = outputStream;
+            this.creditOutputStream = creditOutputStream;
+        }
+
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        public OutputStream getCreditOutputStream() {
+            return creditOutputStream;
+        }
+
+        /**
+         * Close the connection: the server reads the end of the connection, and its writes fail.
+         */
+        public void close() throws IOException {
+            try {
+                outputStream.close();
+            } finally {
+                try {
+                    creditOutputStream.close();
+                } finally {
+                    inputStream.close();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring buffer in a memory-mapped file, for passing bytes from one process to another on the same host, without
+ * system calls. There is a single writer (the output stream) and a single reader (the input stream), typically in
+ * different processes that map the same file. The writer and the reader publish their positions in the file (with
+ * release/acquire ordering), and wait for each other by spinning or parking: the writer waits while the ring buffer
+ * is full (backpressure), the reader waits while it is empty.
+ * <p/>
+ * Closing the output stream ends the input stream (after the remaining bytes are read), and closing the input stream
+ * makes the writes fail, like closing a socket would. Closing the ring buffer closes both streams.
+ * <p/>
+ * A ring buffer connects two processes: the process that created the file, and the (single) process that opened it.
+ * Both publish their process id in the file, so a side that is waiting fails when the process on the other side has
+ * ended without closing its stream (f.e. when it was killed), instead of waiting forever.
+ * <p/>
+ * The layout of the file: the header (magic number, capacity and the process ids of both sides), the write position,
+ * the read position and the closed flags (each on a cache line of its own), followed by the data.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class MappedRingBuffer implements Closeable {
+
+    /**
+     * How to wait for the other side.
+     */
+    public enum WaitStrategy {
+
+        /**
+         * Spin (burning a core) for the lowest latency. Only for hosts with a core for every waiting thread: a spinning
+         * thread that shares its core with the other side only gives way when its time slice ends.
+         */
+        BUSY_SPIN,
+
+        /**
+         * Spin briefly, yield briefly, then park for short intervals (the other process can't unpark this thread).
+         */
+        PARK
+
+    }
+
+    private static final int MAGIC = 0x50524d52; // "PRMR"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int CREATOR_PID_OFFSET = 8;
+    private static final int OPENER_PID_OFFSET = 16;
+    private static final int WRITE_POSITION_OFFSET = 64;
+    private static final int READ_POSITION_OFFSET = 128;
+    private static final int WRITER_CLOSED_OFFSET = 192;
+    private static final int READER_CLOSED_OFFSET = 256;
+    private static final int DATA_OFFSET = 320;
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 1000;
+    private static final long PARK_NANOS = 20000;
+    private static final int PEER_CHECK_ATTEMPTS = 5000;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final WaitStrategy waitStrategy;
+    private final int peerPidOffset;
+    private final RingInputStream inputStream;
+    private final RingOutputStream outputStream;
+
+    private MappedRingBuffer(MappedByteBuffer buffer, int capacity, WaitStrategy waitStrategy, int peerPidOffset) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.waitStrategy = waitStrategy;
+        this.peerPidOffset = peerPidOffset;
+        this.inputStream = new RingInputStream();
+        this.outputStream = new RingOutputStream();
+    }
+
+    /**
+     * Create a ring buffer file (replacing an existing file), and map it.
+     *
+     * @param file         the file
+     * @param capacity     the capacity of the ring buffer (in bytes)
+     * @param waitStrategy the wait strategy
+     * @return the ring buffer
+     */
+    public static MappedRingBuffer create(Path file, int capacity, WaitStrategy waitStrategy) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            LONG.set(buffer, CREATOR_PID_OFFSET, ProcessHandle.current().pid());
+            // publish the magic number last, the ring buffer is ready when it's there
+            INT.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+            return new MappedRingBuffer(buffer, capacity, waitStrategy, OPENER_PID_OFFSET);
+        } finally {
+            // the mapping remains valid after closing the channel
+            channel.close();
+        }
+    }
+
+    /**
+     * Map an existing ring buffer file (created by the other side). A ring buffer can be opened only once, a second
+     * process (or a second attempt) fails.
+     *
+     * @param file         the file
+     * @param waitStrategy the wait strategy
+     * @return the ring buffer
+     * @throws IOException if the file is not a ring buffer, or if the ring buffer is opened already
+     */
+    public static MappedRingBuffer open(Path file, WaitStrategy waitStrategy) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < DATA_OFFSET) {
+                throw new IOException("invalid ring buffer file (too small): " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET);
+            if ((Integer) INT.getAcquire(header, MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("invalid ring buffer file (magic number): " + file);
+            }
+            int capacity = header.getInt(CAPACITY_OFFSET);
+            if (channel.size() < DATA_OFFSET + (long) capacity) {
+                throw new IOException("invalid ring buffer file (truncated): " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+            if (!LONG.compareAndSet(buffer, OPENER_PID_OFFSET, 0L, ProcessHandle.current().pid())) {
+                throw new IOException("ring buffer opened already (by process " +
+                        LONG.getAcquire(buffer, OPENER_PID_OFFSET) + "): " + file);
+            }
+            return new MappedRingBuffer(buffer, capacity, waitStrategy, CREATOR_PID_OFFSET);
+        } finally {
+            channel.close();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the input stream, for the reader of the ring buffer.
+     *
+     * @return the input stream
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Get the output stream, for the writer of the ring buffer.
+     *
+     * @return the output stream
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Close both streams of the ring buffer (f.e. for closing a ring buffer of which the stream on the other side is
+     * blocked).
+     */
+    public void close() {
+        inputStream.close();
+        outputStream.close();
+    }
+
+    private boolean isClosed(int offset) {
+        return (Integer) INT.getAcquire(buffer, offset) != 0;
+    }
+
+    /**
+     * Check the process on the other side, while waiting for it.
+     *
+     * @param attempt the number of attempts so far
+     * @throws IOException if the process on the other side has ended
+     */
+    private void checkPeer(int attempt) throws IOException {
+        if (attempt == 0 || attempt % PEER_CHECK_ATTEMPTS != 0) {
+            return;
+        }
+        long pid = (Long) LONG.getAcquire(buffer, peerPidOffset);
+        if (pid == 0) {
+            // not opened yet
+            return;
+        }
+        Optional<ProcessHandle> process = ProcessHandle.of(pid);
+        if (!process.isPresent() || !process.get().isAlive()) {
+            throw new IOException("the process on the other side of the ring buffer has ended (process " + pid + ")");
+        }
+    }
+
+    private void wait(int attempt) {
+        if (waitStrategy == WaitStrategy.BUSY_SPIN || attempt < SPINS) {
+            Thread.onSpinWait();
+        } else if (attempt < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * The reader of the ring buffer.
+     */
+    private final class RingInputStream extends InputStream {
+
+        private long readPosition = (Long) LONG.getAcquire(buffer, READ_POSITION_OFFSET);
+
+        @Override
+        public int read() throws IOException {
+            byte[] bytes = new byte[1];
+            return read(bytes, 0, 1) == -1 ? -1 : bytes[0] & 0xff;
+        }
+
+        @Override
+        @SuppressWarnings({"NullableProblems"})
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            long available = awaitBytes();
+            if (available == 0) {
+                return -1;
+            }
+            int index = (int) (readPosition % capacity);
+            int size = (int) Math.min(Math.min(length, available), capacity - index);
+            buffer.get(DATA_OFFSET + index, bytes, offset, size);
+            readPosition += size;
+            LONG.setRelease(buffer, READ_POSITION_OFFSET, readPosition);
+            return size;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, (Long) LONG.getAcquire(buffer, WRITE_POSITION_OFFSET) -
+                    readPosition);
+        }
+
+        /**
+         * Wait until there are bytes to read.
+         *
+         * @return the number of bytes available, or 0 at the end of the stream
+         */
+        private long awaitBytes() throws IOException {
+            for (int attempt = 0; ; attempt++) {
+                if (isClosed(READER_CLOSED_OFFSET)) {
+                    // (closing the input stream releases a reader that is waiting)
+                    throw new IOException("ring buffer input stream is closed");
+                }
+                boolean writerClosed = isClosed(WRITER_CLOSED_OFFSET);
+                long available = (Long) LONG.getAcquire(buffer, WRITE_POSITION_OFFSET) - readPosition;
+                if (available > 0 || writerClosed) {
+                    // (the write position is read after the closed flag, so no bytes are lost at the end)
+                    return available;
+                }
+                if (Thread.interrupted()) {
+                    throw new IOException("interrupted while waiting for the ring buffer writer");
+                }
+                checkPeer(attempt);
+                MappedRingBuffer.this.wait(attempt);
+            }
+        }
+
+        @Override
+        public void close() {
+            INT.setRelease(buffer, READER_CLOSED_OFFSET, 1);
+        }
+
+    }
+
+    /**
+     * The writer of the ring buffer.
+     */
+    private final class RingOutputStream extends OutputStream {
+
+        private long writePosition = (Long) LONG.getAcquire(buffer, WRITE_POSITION_OFFSET);
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        @SuppressWarnings({"NullableProblems"})
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                long free = awaitSpace();
+                int index = (int) (writePosition % capacity);
+                int size = (int) Math.min(Math.min(length, free), capacity - index);
+                buffer.put(DATA_OFFSET + index, bytes, offset, size);
+                writePosition += size;
+                LONG.setRelease(buffer, WRITE_POSITION_OFFSET, writePosition);
+                offset += size;
+                length -= size;
+            }
+        }
+
+        /**
+         * Wait until there is space to write (backpressure).
+         *
+         * @return the number of bytes free
+         */
+        private long awaitSpace() throws IOException {
+            for (int attempt = 0; ; attempt++) {
+                if (isClosed(WRITER_CLOSED_OFFSET)) {
+                    throw new IOException("ring buffer output stream is closed");
+                }
+                if (isClosed(READER_CLOSED_OFFSET)) {
+                    throw new IOException("ring buffer closed by the reader");
+                }
+                long free = capacity - (writePosition - (Long) LONG.getAcquire(buffer, READ_POSITION_OFFSET));
+                if (free > 0) {
+                    return free;
+                }
+                if (Thread.interrupted()) {
+                    throw new IOException("interrupted while waiting for the ring buffer reader");
+                }
+                checkPeer(attempt);
+                MappedRingBuffer.this.wait(attempt);
+            }
+        }
+
+        @Override
+        public void close() {
+            INT.setRelease(buffer, WRITER_CLOSED_OFFSET, 1);
+        }
+
+    }
+
+}
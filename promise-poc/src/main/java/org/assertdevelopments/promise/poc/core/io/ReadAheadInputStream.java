@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input stream that reads from an underlying input stream in the background (read-ahead). A background reader reads
+ * blocks (borrowed from a buffer pool) from the underlying input stream, and hands them over to the consumer through a
+ * bounded queue. The consumer can process the previous blocks, while the background reader is waiting for the next
+ * ones. When the queue is full, the background reader stops reading until the consumer has taken a block.
+ * <p/>
+ * The end of the underlying input stream, as well as an error while reading it, is handed over to the consumer after
+ * the last block, so the consumer sees exactly the same bytes (and errors) as when reading the underlying input
+ * stream directly. Call {@link #abort()} when the consumer stops reading before the end of the stream.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class ReadAheadInputStream extends InputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 65536;
+
+    /**
+     * The maximum time (in milliseconds) to wait for the background reader when aborting.
+     */
+    public static final long ABORT_TIMEOUT = 10000;
+
+    private static final Block END = new Block(null, -1, null);
+
+    private final InputStream in;
+    private final BufferPool bufferPool;
+    private final int blockSize;
+    private final BlockingQueue<Block> queue;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private Block block;
+    private int blockOffset;
+    private volatile boolean aborted;
+
+    /**
+     * Create a read-ahead input stream, and start its background reader.
+     *
+     * @param inputStream the underlying input stream
+     * @param blockSize   the size of the blocks
+     * @param maxBlocks   the maximum number of blocks read ahead
+     * @param bufferPool  the buffer pool for borrowing blocks
+     */
+    public ReadAheadInputStream(InputStream inputStream, int blockSize, int maxBlocks, BufferPool bufferPool) {
+        if (maxBlocks <= 0) {
+            throw new IllegalArgumentException("invalid maximum number of blocks: " + maxBlocks);
+        }
+        this.in = inputStream;
+        this.bufferPool = bufferPool;
+        this.blockSize = blockSize;
+        this.queue = new ArrayBlockingQueue<Block>(maxBlocks);
+        BackgroundThreads.getExecutor().execute(new Runnable() {
+            public void run() {
+                readBlocks();
+            }
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!checkBlock(true)) {
+            return -1;
+        }
+        return block.bytes[blockOffset++] & 0xff;
+    }
+
+    @Override
+    @SuppressWarnings({"NullableProblems"})
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+        if (!checkBlock(true)) {
+            return -1;
+        }
+        int c = 0;
+        while (length > 0) {
+            int size = Math.min(length, block.length - blockOffset);
+            System.arraycopy(block.bytes, blockOffset, bytes, offset, size);
+            blockOffset += size;
+            offset += size;
+            length -= size;
+            c += size;
+            if (length > 0 && !checkBlock(false)) {
+                break; // no more blocks available without waiting
+            }
+        }
+        return c;
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+        if (length <= 0 || !checkBlock(true)) {
+            return 0;
+        }
+        int size = (int) Math.min(length, block.length - blockOffset);
+        blockOffset += size;
+        return size;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return block != null && block.bytes != null ? block.length - blockOffset : 0;
+    }
+
+    /**
+     * Make sure there are bytes available in the current block, taking the next block if needed.
+     *
+     * @param wait true to wait for the next block, false to only take the next block if it is available
+     * @return true if there are bytes available, false at the end of the stream (or if no block is available)
+     * @throws IOException if the background reader failed, or if this stream is aborted
+     */
+    private boolean checkBlock(boolean wait) throws IOException {
+        if (aborted) {
+            throw new IOException("read-ahead input stream is aborted");
+        }
+        while (block == null || blockOffset >= block.length) {
+            if (block == END) {
+                return false;
+            }
+            if (block != null) {
+                block.release(bufferPool);
+            }
+            try {
+                block = wait ? queue.take() : queue.poll();
+            } catch (InterruptedException e) {
+                block = null;
+                throw BackgroundThreads.interrupted(e);
+            }
+            blockOffset = 0;
+            if (block == null) {
+                return false;
+            }
+            if (block.error != null) {
+                IOException error = block.error;
+                block = END;
+                throw error;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop reading in the background, and discard (and return to the buffer pool) the blocks that were read ahead.
+     * After aborting, reading from this stream is no longer possible. If the consumer didn't reach the end of the
+     * underlying input stream yet, the underlying input stream is closed (the background reader may be blocked
+     * reading it), and the background reader is waited for, so it no longer uses the underlying input stream or the
+     * buffer pool when this method returns.
+     */
+    public void abort() {
+        if (!aborted) {
+            aborted = true;
+            if (done.getCount() > 0) {
+                if (block != END) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // ignore, the background reader fails (or ends) anyway
+                    }
+                    discardBlocks(); // the background reader may be waiting for room in the queue
+                }
+                try {
+                    done.await(ABORT_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (block != null) {
+                block.release(bufferPool);
+            }
+            block = END;
+            discardBlocks();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        abort();
+    }
+
+    private void discardBlocks() {
+        List<Block> blocks = new ArrayList<Block>();
+        queue.drainTo(blocks);
+        for (Block discarded : blocks) {
+            discarded.release(bufferPool);
+        }
+    }
+
+    /**
+     * The background reader: reads blocks from the underlying input stream, until the end of the stream, an error, or
+     * until the consumer aborts.
+     */
+    private void readBlocks() {
+        try {
+            while (!aborted) {
+                byte[] bytes = bufferPool.borrow(blockSize);
+                Block next;
+                try {
+                    int n = in.read(bytes, 0, bytes.length);
+                    next = n != -1 ? new Block(bytes, n, null) : END;
+                } catch (IOException e) {
+                    next = new Block(null, -1, e);
+                }
+                if (next.bytes == null) {
+                    bufferPool.release(bytes);
+                }
+                if (aborted) {
+                    next.release(bufferPool);
+                    break;
+                }
+                queue.put(next);
+                if (next.bytes == null) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (aborted) {
+                discardBlocks();
+            }
+            done.countDown();
+        }
+    }
+
+    /**
+     * A block of bytes (or an error, or the end of the stream) handed over to the consumer.
+     */
+    private static final class Block {
+
+        private final byte[] bytes;
+        private final int length;
+        private final IOException error;
+
+        Block(byte[] bytes, int length, IOException error) {
+            this.bytes = bytes;
+            this.length = length;
+            this.error = error;
+        }
+
+        void release(BufferPool bufferPool) {
+            if (bytes != null) {
+                bufferPool.release(bytes);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Output stream that writes to an underlying output stream in the background (write-behind). Written bytes are
+ * collected in blocks (borrowed from a buffer pool), that are handed over to a background writer when full or when
+ * flushed. The producer can fill the next block, while the background writer drains the previous blocks to the
+ * underlying output stream. The number of blocks in flight is bounded, when the background writer can't keep up, the
+ * producer blocks until a block has been written (backpressure).
+ * <p/>
+ * The bytes are written to the underlying output stream in the same order as they were written to this stream, so
+ * everything written before a flush, will be written before everything written after it. Call {@link #drain()} to
+ * wait until all bytes are written to the underlying output stream. Errors of the background writer are reported to
+ * the producer on the next write, flush or drain.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class WriteBehindOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 65536;
+
+    /**
+     * The maximum time (in milliseconds) that {@link #abort()} waits for the background writer.
+     */
+    public static final long ABORT_TIMEOUT = 10000;
+
+    private static final Block END = new Block(null, 0, false);
+
+    private final OutputStream out;
+    private final BufferPool bufferPool;
+    private final int blockSize;
+    private final BlockingQueue<Block> queue;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private byte[] block;
+    private int blockOffset;
+    private boolean closed;
+    private volatile IOException error;
+
+    /**
+     * Create a write-behind output stream, and start its background writer.
+     *
+     * @param outputStream the underlying output stream
+     * @param blockSize    the size of the blocks
+     * @param maxBlocks    the maximum number of blocks in flight (waiting to be written, or being written)
+     * @param bufferPool   the buffer pool for borrowing blocks
+     */
+    public WriteBehindOutputStream(OutputStream outputStream, int blockSize, int maxBlocks, BufferPool bufferPool) {
+        if (maxBlocks <= 0) {
+            throw new IllegalArgumentException("invalid maximum number of blocks: " + maxBlocks);
+        }
+        this.out = outputStream;
+        this.bufferPool = bufferPool;
+        this.blockSize = blockSize;
+        this.queue = new ArrayBlockingQueue<Block>(maxBlocks);
+        BackgroundThreads.getExecutor().execute(new Runnable() {
+            public void run() {
+                writeBlocks();
+            }
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkWritable();
+        if (block == null) {
+            block = bufferPool.borrow(blockSize);
+        }
+        block[blockOffset++] = (byte) b;
+        if (blockOffset == block.length) {
+            handOver(false);
+        }
+    }
+
+    @Override
+    @SuppressWarnings({"NullableProblems"})
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        checkWritable();
+        while (length > 0) {
+            if (block == null) {
+                block = bufferPool.borrow(blockSize);
+            }
+            int size = Math.min(length, block.length - blockOffset);
+            System.arraycopy(bytes, offset, block, blockOffset, size);
+            offset += size;
+            blockOffset += size;
+            length -= size;
+            if (blockOffset == block.length) {
+                handOver(false);
+            }
+        }
+    }
+
+    /**
+     * Hand over the current block to the background writer, and let the background writer flush the underlying output
+     * stream after writing it. This method does not wait for the bytes to be written.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkWritable();
+        handOver(true);
+    }
+
+    /**
+     * Hand over the remaining bytes to the background writer and wait until all bytes are written to (and flushed on)
+     * the underlying output stream. After draining, writing to this stream is no longer possible, and the underlying
+     * output stream can be used again.
+     *
+     * @throws IOException if the background writer failed
+     */
+    public void drain() throws IOException {
+        if (!closed) {
+            checkWritable();
+            handOver(true);
+            closed = true;
+            put(END);
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            throw BackgroundThreads.interrupted(e);
+        }
+        checkError();
+    }
+
+    /**
+     * Stop writing, without waiting for the remaining bytes to be written. Blocks that were not yet written are
+     * discarded (and returned to the buffer pool), but the block that is being written is finished: this method waits
+     * (at most {@link #ABORT_TIMEOUT} milliseconds) until the background writer stopped, so the underlying output
+     * stream is no longer used when it returns (f.e. a servlet response that is recycled by the container).
+     */
+    public void abort() {
+        if (!closed) {
+            closed = true;
+            if (block != null) {
+                bufferPool.release(block);
+                block = null;
+            }
+            List<Block> blocks = new ArrayList<Block>();
+            queue.drainTo(blocks);
+            for (Block discarded : blocks) {
+                discarded.release(bufferPool);
+            }
+            queue.offer(END);
+        }
+        try {
+            done.await(ABORT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+    }
+
+    private void handOver(boolean flush) throws IOException {
+        if (block != null || flush) {
+            put(new Block(block, blockOffset, flush));
+            block = null;
+            blockOffset = 0;
+        }
+    }
+
+    private void put(Block block) throws IOException {
+        try {
+            queue.put(block);
+        } catch (InterruptedException e) {
+            throw BackgroundThreads.interrupted(e);
+        }
+    }
+
+    private void checkWritable() throws IOException {
+        if (closed) {
+            throw new EOFException("write-behind output stream is closed");
+        }
+        checkError();
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            IOException e = new IOException("error while writing in the background");
+            e.initCause(error);
+            throw e;
+        }
+    }
+
+    /**
+     * The background writer: writes the blocks to the underlying output stream, until the end marker is received.
+     * After an error, the remaining blocks are discarded.
+     */
+    private void writeBlocks() {
+        try {
+            while (true) {
+                Block next = queue.take();
+                if (next == END) {
+                    break;
+                }
+                try {
+                    if (error == null) {
+                        next.writeTo(out);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    next.release(bufferPool);
+                }
+            }
+        } catch (InterruptedException e) {
+            error = BackgroundThreads.interrupted(e);
+        } finally {
+            done.countDown();
+        }
+    }
+
+    /**
+     * A block of bytes handed over to the background writer.
+     */
+    private static final class Block {
+
+        private final byte[] bytes;
+        private final int length;
+        private final boolean flush;
+
+        Block(byte[] bytes, int length, boolean flush) {
+            this.bytes = bytes;
+            this.length = length;
+            this.flush = flush;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            if (bytes != null) {
+                out.write(bytes, 0, length);
+            }
+            if (flush) {
+                out.flush();
+            }
+        }
+
+        void release(BufferPool bufferPool) {
+            if (bytes != null) {
+                bufferPool.release(bytes);
+            }
+        }
+
+    }
+
+}
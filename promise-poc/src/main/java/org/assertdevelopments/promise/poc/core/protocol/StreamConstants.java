@@ -29,8 +29,47 @@ public interface StreamConstants {
 
     /**
      * The maximum chunk size (in bytes). Changing the max buffer size can have a huge performance impact (as well as
-     * an impact on memory usage).
+     * an impact on memory usage). This is the chunk size for protocol version 1, and the size of the buffer used for
+     * reading partial chunks.
      */
     int MAX_CHUNK_SIZE = 8192;
 
+    /**
+     * The default maximum chunk size (in bytes) for protocol version 2.
+     */
+    int LARGE_CHUNK_SIZE = 262144;
+
+    /**
+     * The upper limit for the maximum chunk size (in bytes) that can be negotiated with protocol version 2.
+     */
+    int MAX_LARGE_CHUNK_SIZE = 4194304;
+
+    /**
+     * The request header with the resume token of a stream: an opaque token chosen by the client, that identifies the
+     * stream body when resuming it.
+     */
+    String RESUME_TOKEN_HEADER = "X-Promise-Resume-Token";
+
+    /**
+     * The request header with the offset in the stream body for resuming an interrupted stream body.
+     */
+    String RESUME_OFFSET_HEADER = "X-Promise-Resume-Offset";
+
+    /**
+     * The request header that asks for a full-duplex exchange: the server commits the response headers right away, so
+     * the client can read the response body while it is still sending the request body.
+     */
+    String DUPLEX_HEADER = "X-Promise-Duplex";
+
+    /**
+     * The trailer field with the status code of a stream, when the stream status is sent as http trailer fields.
+     */
+    String STATUS_TRAILER = "X-Promise-Status";
+
+    /**
+     * The trailer field with the (url encoded) status message of a stream, when the stream status is sent as http
+     * trailer fields.
+     */
+    String STATUS_MESSAGE_TRAILER = "X-Promise-Status-Message";
+
 }
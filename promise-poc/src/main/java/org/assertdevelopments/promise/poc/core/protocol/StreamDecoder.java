@@ -0,0 +1,263 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol;
+
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.status.StatusInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Non-blocking decoder for reading a stream body as it arrives. The bytes of the stream body are fed to the decoder in
+ * any portions, and the decoder calls back a {@link StreamFrameHandler} for every frame as soon as the frame is
+ * complete, so the decoder never waits for bytes (unlike a {@link StreamInputStream}). The stream body ends with the
+ * status of the stream: an error status (or a digest mismatch) fails the decoder.
+ * <p/>
+ * The decoder only buffers the bytes of the next frame, so it holds at most a frame (of the maximum chunk size of the
+ * protocol) and the bytes fed to it at once.
+ *
+ * @author agent
+ * @see StreamFrameHandler
+ * @since 2026-10-17
+ */
+public final class StreamDecoder {
+
+    private static final int MAX_HEADER_SIZE = 32;
+
+    private final StreamProtocol protocol;
+    private final StreamFrameHandler handler;
+    private final ChunkInputStream chunkInputStream;
+    private final BufferedInputStream bufferedInputStream = new BufferedInputStream();
+
+    private byte[] frame;
+    private int channel = -1;
+    private boolean eof = false;
+    private StreamStatus status;
+
+    /**
+     * Create a decoder.
+     *
+     * @param protocol the protocol of the stream body
+     * @param handler  the frame handler
+     */
+    public StreamDecoder(StreamProtocol protocol, StreamFrameHandler handler) {
+        this.protocol = protocol;
+        this.handler = handler;
+        // the frames are read one by one (whether the stream body is multiplexed or not)
+        this.chunkInputStream = new ChunkInputStream(bufferedInputStream, protocol, BufferPool.getInstance(), null,
+                true);
+    }
+
+    /**
+     * Decode the provided bytes of the stream body, calling back the frame handler for every frame that is complete.
+     *
+     * @param bytes the bytes (all remaining bytes are consumed)
+     * @throws IOException if the stream body is malformed, or ends with an error status
+     */
+    public void decode(ByteBuffer bytes) throws IOException {
+        if (status != null) {
+            if (bytes.hasRemaining()) {
+                throw new IOException("unexpected bytes after the end of the stream body");
+            }
+            return;
+        }
+        bufferedInputStream.append(bytes);
+        while (status == null && decodeNext()) {
+            bufferedInputStream.window(-1);
+        }
+    }
+
+    /**
+     * Decode the next frame (or status), if it is complete.
+     *
+     * @return true if decoded, false if more bytes are needed
+     */
+    private boolean decodeNext() throws IOException {
+        byte[] buffer = bufferedInputStream.buffer;
+        int offset = bufferedInputStream.position;
+        int available = bufferedInputStream.limit - offset;
+        if (eof || channel != -1) {
+            // the status of the stream body (or of a channel)
+            int length = getStatusLength(buffer, offset, available, eof && chunkInputStream.getDigest() != null);
+            if (length == -1) {
+                return false;
+            }
+            bufferedInputStream.window(length);
+            if (eof) {
+                readStatus();
+            } else {
+                int channel = this.channel;
+                this.channel = -1;
+                handler.onChannelEnd(channel, new StatusInputStream(bufferedInputStream).readStatus());
+            }
+            return true;
+        }
+        int length = ChunkInputStream.getFrameLength(protocol, buffer, offset, available);
+        if (length == -1) {
+            if (available > protocol.getMaxChunkSize() + MAX_HEADER_SIZE) {
+                throw new IOException("chunk exceeds the maximum chunk size: " + protocol.getMaxChunkSize());
+            }
+            return false;
+        }
+        bufferedInputStream.window(length);
+        if (!chunkInputStream.nextFrame()) {
+            eof = true;
+            chunkInputStream.release();
+        } else if (chunkInputStream.isChannelEOF()) {
+            channel = chunkInputStream.getFrameChannel();
+        } else {
+            int size = chunkInputStream.getFrameSize();
+            if (frame == null || frame.length < size) {
+                frame = new byte[Math.max(size, StreamConstants.MAX_CHUNK_SIZE)];
+            }
+            int n = 0;
+            while (n < size) {
+                int c = chunkInputStream.read(frame, n, size - n);
+                if (c == -1) {
+                    throw new EOFException();
+                }
+                n += c;
+            }
+            handler.onFrame(chunkInputStream.getFrameChannel(), frame, 0, size);
+        }
+        if (bufferedInputStream.position != bufferedInputStream.limit) {
+            throw new IOException("malformed chunk header");
+        }
+        return true;
+    }
+
+    private void readStatus() throws IOException {
+        Integer digest = chunkInputStream.getDigest();
+        StreamStatus status = new StatusInputStream(bufferedInputStream, digest != null).readStatus();
+        this.status = status;
+        if (status.getStatusCode() == StreamStatus.STATUS_ERROR) {
+            throw new RemoteStreamException("incomplete read from stream, because of a remote unexpected error " +
+                    "(statusCode=" + status.getStatusCode() + ", message=" + status.getStatusMessage() + ")"
+            );
+        }
+        if (digest != null && !digest.equals(status.getDigest())) {
+            throw new IOException("stream digest mismatch (expected " + Integer.toHexString(digest) +
+                    ", actual " + Integer.toHexString(status.getDigest()) + ")");
+        }
+    }
+
+    /**
+     * Get the length of the status in the provided bytes (the status code, the message and the digest).
+     *
+     * @return the length of the status, or -1 if the available bytes don't hold the complete status (yet)
+     */
+    private static int getStatusLength(byte[] bytes, int offset, int available, boolean digest) {
+        if (available < 6) {
+            return -1;
+        }
+        int length = 6 + (((bytes[offset + 4] & 0xff) << 8) | (bytes[offset + 5] & 0xff)) + (digest ? 4 : 0);
+        return available >= length ? length : -1;
+    }
+
+    /**
+     * Returns true if the stream body is decoded completely (including the status).
+     *
+     * @return true if complete
+     */
+    public boolean isComplete() {
+        return status != null;
+    }
+
+    /**
+     * Get the status of the stream body.
+     *
+     * @return the status, or null if the stream body is not decoded completely yet
+     */
+    public StreamStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Release the buffers of this decoder (after an error, or when the stream body is abandoned).
+     */
+    public void release() {
+        chunkInputStream.release();
+    }
+
+    /**
+     * The bytes fed to the decoder that are not decoded yet. The chunk input stream reads them through a window that
+     * only holds the next frame (or status), so reading past it fails instead of blocking.
+     */
+    private static final class BufferedInputStream extends InputStream {
+
+        private byte[] buffer = new byte[StreamConstants.MAX_CHUNK_SIZE];
+        private int position = 0;
+        private int limit = 0;
+        private int end = 0;
+
+        void append(ByteBuffer bytes) {
+            // drop the decoded bytes
+            System.arraycopy(buffer, position, buffer, 0, end - position);
+            end -= position;
+            position = 0;
+
+            int length = bytes.remaining();
+            if (end + length > buffer.length) {
+                byte[] newBuffer = new byte[Math.max(buffer.length * 2, end + length)];
+                System.arraycopy(buffer, 0, newBuffer, 0, end);
+                buffer = newBuffer;
+            }
+            bytes.get(buffer, end, length);
+            end += length;
+            limit = end;
+        }
+
+        /**
+         * Limit the bytes that can be read to the provided length.
+         *
+         * @param length the length, or -1 to remove the limit
+         */
+        void window(int length) {
+            limit = length != -1 ? position + length : end;
+        }
+
+        @Override
+        public int read() {
+            return position < limit ? buffer[position++] & 0xff : -1;
+        }
+
+        @Override
+        @SuppressWarnings({"NullableProblems"})
+        public int read(byte[] bytes, int offset, int length) {
+            if (position >= limit) {
+                return -1;
+            }
+            int n = Math.min(length, limit - position);
+            System.arraycopy(buffer, position, bytes, offset, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol;
+
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.IOException;
+
+/**
+ * A handler for the frames of a stream body, called back by a {@link StreamDecoder} as soon as a frame is complete.
+ * The handler is called back on the thread that feeds the decoder (f.e. the thread of a non-blocking HTTP engine), so
+ * it must not block.
+ *
+ * @author agent
+ * @see StreamDecoder
+ * @since 2026-10-17
+ */
+public interface StreamFrameHandler {
+
+    /**
+     * Handle the (uncompressed) bytes of a frame. The bytes are only valid during the call back.
+     *
+     * @param channel the channel of the frame (0 for the main channel, or for stream bodies that are not multiplexed)
+     * @param bytes   the bytes
+     * @param offset  the offset of the frame in the bytes
+     * @param length  the length of the frame
+     */
+    void onFrame(int channel, byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Handle the end of a channel of a multiplexed stream body (the end of the main channel is the end of the stream
+     * body, that completes the decoder).
+     *
+     * @param channel the channel
+     * @param status  the status of the channel
+     */
+    void onChannelEnd(int channel, StreamStatus status) throws IOException;
+
+}
@@ -16,14 +16,23 @@
 
 package org.assertdevelopments.promise.poc.core.protocol;
 
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
 import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.io.ReadAheadInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.channel.ChannelDemultiplexer;
+import org.assertdevelopments.promise.poc.core.protocol.channel.ChannelInputStream;
 import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.credit.CreditGrantor;
 import org.assertdevelopments.promise.poc.core.protocol.status.StatusInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.status.StatusTrailers;
 import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
 
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * @author Stefan Bangels
@@ -31,28 +40,159 @@ import java.io.InputStream;
  */
 public final class StreamInputStream extends FilterInputStream {
 
-    private final ChunkInputStream chunkInputStream;
-    private final StatusInputStream statusInputStream;
+    private final ReadAheadInputStream readAheadInputStream;
+    private final ChunkInputStream chunkInputStream; // null if the stream body is not framed
+    private final ChannelDemultiplexer demultiplexer;
+    private final InputStream mainInputStream;
+    private final Supplier<Map<String, String>> trailerFields;
 
+    private long position = 0;
     private boolean eof = false;
+    private boolean complete = false;
 
     public StreamInputStream(InputStream inputStream) {
-        super(inputStream);
-        this.chunkInputStream = new ChunkInputStream(inputStream, StreamConstants.MAX_CHUNK_SIZE);
-        this.statusInputStream = new StatusInputStream(inputStream);
+        this(inputStream, StreamProtocol.LEGACY);
+    }
+
+    public StreamInputStream(InputStream inputStream, StreamProtocol protocol) {
+        this(inputStream, protocol, 0);
+    }
+
+    /**
+     * Create a stream input stream, optionally reading ahead in the background. When reading ahead, a background
+     * reader reads (at most <code>readAheadBlocks</code>) blocks from the underlying input stream, while the consumer is
+     * processing the previous ones.
+     *
+     * @param inputStream     the underlying input stream
+     * @param protocol        the stream protocol
+     * @param readAheadBlocks the maximum number of blocks read ahead, or 0 to read in the calling thread
+     */
+    public StreamInputStream(InputStream inputStream, StreamProtocol protocol, int readAheadBlocks) {
+        this(inputStream, protocol, readAheadBlocks, null);
+    }
+
+    /**
+     * Create a stream input stream with credit-based flow control (if the protocol uses flow control). The chunks are
+     * reported to a credit grantor as they are consumed, and the credits are granted to the writer on the credit
+     * output stream, so the transport must be bidirectional.
+     *
+     * @param inputStream        the underlying input stream
+     * @param protocol           the stream protocol
+     * @param readAheadBlocks    the maximum number of blocks read ahead, or 0 to read in the calling thread
+     * @param creditOutputStream the output stream for granting credits to the writer (null if the protocol doesn't
+     *                           use flow control)
+     * @see CreditGrantor
+     */
+    public StreamInputStream(InputStream inputStream, StreamProtocol protocol, int readAheadBlocks,
+                             OutputStream creditOutputStream) {
+        this(inputStream, protocol, readAheadBlocks, creditOutputStream, null);
+    }
+
+    /**
+     * Create a stream input stream that reads the stream status from http trailer fields (if the protocol uses status
+     * trailers). The stream body is then read without chunk frames, up to the end of the underlying input stream, and
+     * the status is read from the trailer fields (which are only available after the end of the http response body).
+     *
+     * @param inputStream        the underlying input stream
+     * @param protocol           the stream protocol
+     * @param readAheadBlocks    the maximum number of blocks read ahead, or 0 to read in the calling thread
+     * @param creditOutputStream the output stream for granting credits to the writer (null if the protocol doesn't
+     *                           use flow control)
+     * @param trailerFields      the trailer fields of the http response (null if the protocol doesn't use status
+     *                           trailers)
+     * @see StatusTrailers
+     */
+    public StreamInputStream(InputStream inputStream, StreamProtocol protocol, int readAheadBlocks,
+                             OutputStream creditOutputStream, Supplier<Map<String, String>> trailerFields) {
+        super(readAheadBlocks > 0
+                ? new ReadAheadInputStream(inputStream, ReadAheadInputStream.DEFAULT_BLOCK_SIZE, readAheadBlocks,
+                BufferPool.getInstance())
+                : inputStream);
+        if (protocol.getCredits() > 0 && creditOutputStream == null) {
+            throw new IllegalArgumentException("flow control requires a credit output stream: " + protocol);
+        }
+        CreditGrantor grantor = protocol.getCredits() > 0
+                ? new CreditGrantor(creditOutputStream, protocol.getCredits())
+                : null;
+        if (protocol.isTrailers() && trailerFields == null) {
+            throw new IllegalArgumentException("status trailers require the trailer fields: " + protocol);
+        }
+        this.trailerFields = protocol.isTrailers() ? trailerFields : null;
+        this.readAheadInputStream = readAheadBlocks > 0 ? (ReadAheadInputStream) in : null;
+        if (this.trailerFields != null) {
+            // unframed stream body
+            this.chunkInputStream = null;
+            this.demultiplexer = null;
+            this.mainInputStream = in;
+        } else if (protocol.isMultiplexed()) {
+            this.chunkInputStream = new ChunkInputStream(in, protocol, BufferPool.getInstance(), grantor);
+            this.demultiplexer = new ChannelDemultiplexer(chunkInputStream, in, grantor);
+            this.mainInputStream = demultiplexer.getChannel(0);
+        } else {
+            this.chunkInputStream = new ChunkInputStream(in, protocol, BufferPool.getInstance(), grantor);
+            this.demultiplexer = null;
+            this.mainInputStream = chunkInputStream;
+        }
+    }
+
+    /**
+     * Get a channel of the (multiplexed) stream body. Channels are read independently of the main channel (this
+     * stream), the frames of the channels that are not being read are queued. The end of a channel is followed by the
+     * status of the channel.
+     *
+     * @param channel the channel (greater than 0)
+     * @return the channel input stream
+     * @throws IllegalStateException if the protocol is not multiplexed
+     */
+    public ChannelInputStream getChannel(int channel) {
+        if (demultiplexer == null) {
+            throw new IllegalStateException("stream input stream is not multiplexed");
+        }
+        if (channel <= 0) {
+            throw new IllegalArgumentException("invalid channel: " + channel);
+        }
+        return demultiplexer.getChannel(channel);
+    }
+
+    /**
+     * Resume reading an interrupted stream body at the provided offset (the protocol must be resumable). This is only
+     * possible before reading the first byte.
+     *
+     * @param resumeOffset the offset in the stream body of the first byte read from this stream
+     */
+    public void resume(long resumeOffset) {
+        if (chunkInputStream != null) {
+            chunkInputStream.resume(resumeOffset);
+        } else if (resumeOffset < 0) {
+            throw new IllegalArgumentException("invalid stream offset: " + resumeOffset);
+        } else if (position != 0 || eof) {
+            throw new IllegalStateException("stream input stream already started");
+        } else {
+            position = resumeOffset;
+        }
+    }
+
+    /**
+     * Get the offset in the stream body of the next byte read from this stream (the bytes read so far, including the
+     * resume offset). When an interrupted stream body is resumed, it can be resumed from this offset.
+     *
+     * @return the stream offset
+     */
+    public long getStreamOffset() {
+        return chunkInputStream != null ? chunkInputStream.getStreamOffset() : position;
     }
 
     @Override
     public int read() throws IOException {
-        int n = chunkInputStream.read();
-        checkEOF(n);
+        int n = mainInputStream.read();
+        checkEOF(n != -1 ? 1 : -1);
         return n;
     }
 
     @Override
     @SuppressWarnings({"NullableProblems"})
     public int read(byte[] bytes) throws IOException {
-        int n = chunkInputStream.read(bytes);
+        int n = mainInputStream.read(bytes);
         checkEOF(n);
         return n;
     }
@@ -60,14 +200,14 @@ public final class StreamInputStream extends FilterInputStream {
     @Override
     @SuppressWarnings({"NullableProblems"})
     public int read(byte[] bytes, int off, int len) throws IOException {
-        int n = chunkInputStream.read(bytes, off, len);
+        int n = mainInputStream.read(bytes, off, len);
         checkEOF(n);
         return n;
     }
 
     @Override
     public long skip(long length) throws IOException {
-        long n = chunkInputStream.skip(length);
+        long n = mainInputStream.skip(length);
         checkEOF(n);
         return n;
     }
@@ -75,6 +215,8 @@ public final class StreamInputStream extends FilterInputStream {
     private void checkEOF(long n) throws IOException {
         if (n == -1) {
             readRemaining();
+        } else {
+            position += n;
         }
     }
 
@@ -82,24 +224,96 @@ public final class StreamInputStream extends FilterInputStream {
         if (!eof) {
             eof = true;
 
+            // status trailers: skip the rest of the http response body, and read the status from its trailer
+            if (trailerFields != null) {
+                readTrailers();
+                return;
+            }
+
             // skip remaining bytes
-            chunkInputStream.skipRemaining();
+            try {
+                if (demultiplexer != null) {
+                    demultiplexer.getChannel(0).skipRemaining();
+                } else {
+                    chunkInputStream.skipRemaining();
+                }
+            } finally {
+                chunkInputStream.release();
+            }
 
             // read status
-            StreamStatus status = statusInputStream.readStatus();
+            Integer digest = chunkInputStream.getDigest();
+            StreamStatus status;
+            try {
+                status = new StatusInputStream(in, digest != null).readStatus();
+                complete = true;
+            } finally {
+                abortReadAhead();
+            }
 
             // check status
-            if (status.getStatusCode() == StreamStatus.STATUS_ERROR) {
-                throw new RemoteStreamException("incomplete read from stream, because of a remote unexpected error " +
-                        "(statusCode=" + status.getStatusCode() + ", message=" + status.getStatusMessage() + ")"
-                );
+            checkStatus(status);
+            if (digest != null && !digest.equals(status.getDigest())) {
+                throw new IOException("stream digest mismatch (expected " + Integer.toHexString(digest) +
+                        ", actual " + Integer.toHexString(status.getDigest()) + ")");
             }
         }
     }
 
+    private void readTrailers() throws IOException {
+        StreamStatus status;
+        try {
+            byte[] bytes = new byte[StreamConstants.MAX_CHUNK_SIZE];
+            while (in.read(bytes) != -1) {
+                // skip
+            }
+            status = StatusTrailers.readStatus(trailerFields.get());
+            complete = true;
+        } finally {
+            abortReadAhead();
+        }
+        checkStatus(status);
+    }
+
+    private static void checkStatus(StreamStatus status) throws RemoteStreamException {
+        if (status.getStatusCode() == StreamStatus.STATUS_ERROR) {
+            throw new RemoteStreamException("incomplete read from stream, because of a remote unexpected error " +
+                    "(statusCode=" + status.getStatusCode() + ", message=" + status.getStatusMessage() + ")"
+            );
+        }
+    }
+
+    /**
+     * Check whether the stream body has been read completely, up to and including its status (even if the status is
+     * an error status). The underlying input stream is then positioned right after the stream body, so it can carry
+     * the next stream body (f.e. on a reused connection).
+     *
+     * @return true if the stream body has been read completely
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Release the buffers of this stream, without reading the remaining bytes and the status. After releasing, reading
+     * from this stream is no longer possible.
+     */
+    public void release() {
+        if (chunkInputStream != null) {
+            chunkInputStream.release();
+        }
+        abortReadAhead();
+    }
+
+    private void abortReadAhead() {
+        if (readAheadInputStream != null) {
+            readAheadInputStream.abort();
+        }
+    }
+
     @Override
     public int available() throws IOException {
-        return chunkInputStream.available();
+        return mainInputStream.available();
     }
 
     @Override
@@ -16,12 +16,29 @@
 
 package org.assertdevelopments.promise.poc.core.protocol;
 
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+import org.assertdevelopments.promise.poc.core.io.WriteBehindOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.channel.ChannelOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.AdaptiveChunkSizePolicy;
 import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkSizePolicy;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkStatistics;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ExplicitFlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.credit.CreditWindow;
 import org.assertdevelopments.promise.poc.core.protocol.status.StatusOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.status.StatusTrailers;
 import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * @author Stefan Bangels
@@ -29,28 +46,213 @@ import java.io.OutputStream;
  */
 public final class StreamOutputStream extends OutputStream {
 
+    private final OutputStream outputStream;
+    private final WriteBehindOutputStream writeBehindOutputStream;
     private final ChunkOutputStream chunkOutputStream;
-    private final StatusOutputStream statusOutputStream;
+    private final StreamProtocol protocol;
+    private final FlushPolicy flushPolicy;
+    private final Lock frameLock;
+    private final CreditWindow credits;
+    private final StatusTrailers trailers;
+    private final Map<Integer, ChannelOutputStream> channels = new LinkedHashMap<Integer, ChannelOutputStream>();
+
+    private long resumeOffset = 0;
+    private long position = 0;
+    private boolean started = false;
 
     public StreamOutputStream(OutputStream outputStream) {
-        this.chunkOutputStream = new ChunkOutputStream(outputStream, StreamConstants.MAX_CHUNK_SIZE);
-        this.statusOutputStream = new StatusOutputStream(outputStream);
+        this(outputStream, StreamProtocol.LEGACY);
+    }
+
+    /**
+     * Create a stream output stream for the provided protocol. The chunk size adapts itself to the producer and the
+     * consumer of the stream, within the maximum chunk size of the protocol.
+     *
+     * @param outputStream the output stream
+     * @param protocol     the protocol
+     * @see AdaptiveChunkSizePolicy
+     * @see #builder(OutputStream, StreamProtocol)
+     */
+    public StreamOutputStream(OutputStream outputStream, StreamProtocol protocol) {
+        this(new Builder(outputStream, protocol));
+    }
+
+    private StreamOutputStream(Builder builder) {
+        if (builder.protocol.getCredits() > 0 && builder.creditInputStream == null) {
+            throw new IllegalArgumentException("flow control requires a credit input stream: " + builder.protocol);
+        }
+        if (builder.protocol.isTrailers() && builder.trailers == null) {
+            throw new IllegalArgumentException("status trailers require trailers for the status: " + builder.protocol);
+        }
+        BufferPool bufferPool = BufferPool.getInstance();
+        if (builder.writeBehindBlocks > 0) {
+            this.writeBehindOutputStream = new WriteBehindOutputStream(
+                    builder.outputStream, WriteBehindOutputStream.DEFAULT_BLOCK_SIZE, builder.writeBehindBlocks,
+                    bufferPool
+            );
+            this.outputStream = writeBehindOutputStream;
+        } else {
+            this.writeBehindOutputStream = null;
+            this.outputStream = builder.outputStream;
+        }
+        this.protocol = builder.protocol;
+        this.flushPolicy = builder.flushPolicy;
+        this.frameLock = protocol.isMultiplexed() ? new ReentrantLock(true) : null;
+        this.credits = protocol.getCredits() > 0
+                ? new CreditWindow(builder.creditInputStream, protocol.getCredits())
+                : null;
+        this.trailers = protocol.isTrailers() ? builder.trailers : null;
+        this.chunkOutputStream = ChunkOutputStream.builder(this.outputStream, protocol)
+                .withChunkSizePolicy(builder.chunkSizePolicy)
+                .withFlushPolicy(flushPolicy)
+                .withBufferPool(bufferPool)
+                .withChannel(0, frameLock)
+                .withCredits(credits)
+                .build();
+    }
+
+    /**
+     * Create a builder for a stream output stream for the provided protocol.
+     *
+     * @param outputStream the output stream
+     * @param protocol     the protocol
+     * @return the builder
+     */
+    public static Builder builder(OutputStream outputStream, StreamProtocol protocol) {
+        return new Builder(outputStream, protocol);
+    }
+
+    /**
+     * Open a channel of the (multiplexed) stream body. Channels are written independently of the main channel (this
+     * stream), and end with a status of their own. Channels that are still open when the status of the stream body is
+     * written, end with the same status.
+     *
+     * @param channel the channel (greater than 0)
+     * @return the channel output stream
+     * @throws IllegalStateException if the protocol is not multiplexed, or the channel was opened before
+     */
+    public ChannelOutputStream openChannel(int channel) {
+        if (!protocol.isMultiplexed()) {
+            throw new IllegalStateException("protocol is not multiplexed: " + protocol);
+        }
+        synchronized (channels) {
+            if (channels.containsKey(channel)) {
+                throw new IllegalStateException("channel " + channel + " already opened");
+            }
+            ChannelOutputStream channelOutputStream = new ChannelOutputStream(
+                    outputStream, protocol, flushPolicy, channel, frameLock, credits
+            );
+            channels.put(channel, channelOutputStream);
+            return channelOutputStream;
+        }
+    }
+
+    /**
+     * Get the statistics about the chunks written so far.
+     *
+     * @return the chunk statistics
+     */
+    public ChunkStatistics getStatistics() {
+        return chunkOutputStream.getStatistics();
+    }
+
+    /**
+     * Get the credits of the writers (when the protocol uses flow control).
+     *
+     * @return the credit window, or null if the protocol doesn't use flow control
+     */
+    public CreditWindow getCredits() {
+        return credits;
+    }
+
+    /**
+     * Resume an interrupted stream body at the provided offset (the protocol must be resumable). The bytes before the
+     * resume offset were received by the peer already, so they are discarded: by default, the producer regenerates the
+     * stream body from the beginning, and only the bytes from the resume offset on are written. Producers that can
+     * seek, call {@link #seek(long)} before writing. This is only possible before writing the first byte.
+     *
+     * @param resumeOffset the resume offset
+     * @throws IllegalStateException if bytes were written already
+     */
+    public void resume(long resumeOffset) {
+        if (started) {
+            throw new IllegalStateException("stream output stream already started");
+        }
+        chunkOutputStream.resume(resumeOffset);
+        this.resumeOffset = resumeOffset;
+    }
+
+    /**
+     * Tell the stream that the producer starts writing at the provided offset in the stream body, instead of at the
+     * beginning. The offset can be before the resume offset (f.e. the last entity boundary before the resume offset),
+     * the bytes before the resume offset are discarded. This is only possible before writing the first byte.
+     *
+     * @param position the offset of the next byte written by the producer
+     * @throws IllegalStateException    if bytes were written already
+     * @throws IllegalArgumentException if the offset is beyond the resume offset
+     */
+    public void seek(long position) {
+        if (started) {
+            throw new IllegalStateException("stream output stream already started");
+        }
+        if (position < 0 || position > resumeOffset) {
+            throw new IllegalArgumentException("invalid position: " + position + " (resume offset = " +
+                    resumeOffset + ")");
+        }
+        this.position = position;
+    }
+
+    /**
+     * Get the offset in the stream body of the next byte written by the producer.
+     *
+     * @return the stream offset
+     */
+    public long getStreamOffset() {
+        return position < resumeOffset || trailers != null ? position : chunkOutputStream.getStreamOffset();
     }
 
     @Override
     public void write(int n) throws IOException {
+        started = true;
+        if (position < resumeOffset) {
+            position++;
+            return;
+        }
+        if (trailers != null) {
+            // unframed stream body
+            outputStream.write(n);
+            position++;
+            return;
+        }
         chunkOutputStream.write(n);
     }
 
     @Override
     @SuppressWarnings({"NullableProblems"})
     public void write(byte[] bytes) throws IOException {
-        chunkOutputStream.write(bytes);
+        write(bytes, 0, bytes.length);
     }
 
     @Override
     @SuppressWarnings({"NullableProblems"})
     public void write(byte[] bytes, int off, int len) throws IOException {
+        started = true;
+        if (position < resumeOffset) {
+            // discard the bytes before the resume offset
+            int size = (int) Math.min(len, resumeOffset - position);
+            position += size;
+            off += size;
+            len -= size;
+            if (len == 0) {
+                return;
+            }
+        }
+        if (trailers != null) {
+            // unframed stream body
+            outputStream.write(bytes, off, len);
+            position += len;
+            return;
+        }
         chunkOutputStream.write(bytes, off, len);
     }
 
@@ -59,16 +261,67 @@ public final class StreamOutputStream extends OutputStream {
     }
 
     private void writeStatus(StreamStatus status) throws IOException {
+        // end the open channels (outside the monitor, so virtual threads don't pin their carrier while writing)
+        List<ChannelOutputStream> openChannels;
+        synchronized (channels) {
+            openChannels = new ArrayList<ChannelOutputStream>(channels.values());
+        }
+        for (ChannelOutputStream channelOutputStream : openChannels) {
+            channelOutputStream.writeStatusIfNotCommitted(status.getStatusCode(), status.getStatusMessage());
+        }
+
+        // status trailers: no eof, the status follows the stream body in the trailer of the http response
+        if (trailers != null) {
+            chunkOutputStream.release();
+            outputStream.flush();
+            if (writeBehindOutputStream != null) {
+                writeBehindOutputStream.drain();
+            }
+            trailers.setStatus(status);
+            return;
+        }
+
         // write eof
-        chunkOutputStream.writeEOF();
+        try {
+            chunkOutputStream.writeEOF();
+        } finally {
+            chunkOutputStream.release();
+        }
+        status.setDigest(chunkOutputStream.getDigest());
 
         // write status
+        StatusOutputStream statusOutputStream = new StatusOutputStream(outputStream);
         statusOutputStream.writeStatus(status);
         statusOutputStream.flush();
+
+        // wait for the background writer
+        if (writeBehindOutputStream != null) {
+            writeBehindOutputStream.drain();
+        }
+    }
+
+    /**
+     * Release the buffers of this stream, without writing the status. After releasing, writing to this stream is no
+     * longer possible.
+     */
+    public void release() {
+        chunkOutputStream.release();
+        synchronized (channels) {
+            for (ChannelOutputStream channelOutputStream : channels.values()) {
+                channelOutputStream.release();
+            }
+        }
+        if (writeBehindOutputStream != null) {
+            writeBehindOutputStream.abort();
+        }
     }
 
     @Override
     public void flush() throws IOException {
+        if (trailers != null) {
+            outputStream.flush();
+            return;
+        }
         chunkOutputStream.flush();
     }
 
@@ -77,4 +330,107 @@ public final class StreamOutputStream extends OutputStream {
         // do nothing
     }
 
+    /**
+     * A builder for a stream output stream.
+     */
+    public static final class Builder {
+
+        private final OutputStream outputStream;
+        private final StreamProtocol protocol;
+        private ChunkSizePolicy chunkSizePolicy;
+        private FlushPolicy flushPolicy = new ExplicitFlushPolicy();
+        private int writeBehindBlocks = 0;
+        private InputStream creditInputStream = null;
+        private StatusTrailers trailers = null;
+
+        private Builder(OutputStream outputStream, StreamProtocol protocol) {
+            this.outputStream = outputStream;
+            this.protocol = protocol;
+            this.chunkSizePolicy = new AdaptiveChunkSizePolicy(StreamConstants.MAX_CHUNK_SIZE,
+                    protocol.getMaxChunkSize());
+        }
+
+        /**
+         * Set the chunk size policy.
+         *
+         * @param chunkSizePolicy the chunk size policy (default an {@link AdaptiveChunkSizePolicy} within the maximum
+         *                        chunk size of the protocol)
+         * @return this builder
+         */
+        public Builder withChunkSizePolicy(ChunkSizePolicy chunkSizePolicy) {
+            this.chunkSizePolicy = chunkSizePolicy;
+            return this;
+        }
+
+        /**
+         * Set the flush policy (explicit flushes, coalescing flushes for throughput, or timed flushes for latency).
+         *
+         * @param flushPolicy the flush policy (default {@link ExplicitFlushPolicy})
+         * @return this builder
+         * @see FlushPolicy
+         */
+        public Builder withFlushPolicy(FlushPolicy flushPolicy) {
+            this.flushPolicy = flushPolicy;
+            return this;
+        }
+
+        /**
+         * Write in the background (write-behind). In write-behind mode, the chunks are handed over to a background
+         * writer, so the producer can continue while the previous chunks are written to the output stream. The status
+         * is written after all chunks, and writing the status waits until everything is written.
+         *
+         * @param writeBehindBlocks the maximum number of blocks in flight, or 0 to write synchronously (default)
+         * @return this builder
+         * @see WriteBehindOutputStream
+         */
+        public Builder withWriteBehindBlocks(int writeBehindBlocks) {
+            if (writeBehindBlocks < 0) {
+                throw new IllegalArgumentException("invalid number of write-behind blocks: " + writeBehindBlocks);
+            }
+            this.writeBehindBlocks = writeBehindBlocks;
+            return this;
+        }
+
+        /**
+         * Set the input stream with the credits granted by the reader, for credit-based flow control (required if
+         * the protocol uses flow control). The transport must be bidirectional. The writers (of the main channel and
+         * of every other channel) wait when their channel is out of credits, so the memory used by the reader stays
+         * bounded, regardless of the buffering in between.
+         *
+         * @param creditInputStream the credit input stream (default none)
+         * @return this builder
+         * @see CreditWindow
+         */
+        public Builder withCreditInputStream(InputStream creditInputStream) {
+            this.creditInputStream = creditInputStream;
+            return this;
+        }
+
+        /**
+         * Set the trailers for the stream status (required if the protocol uses status trailers). The stream body is
+         * then written without chunk frames, and the status is handed over to the trailers instead of being written
+         * after the stream body, so the http container must send the trailers when the response is completed.
+         *
+         * @param trailers the trailers (default none)
+         * @return this builder
+         * @see StatusTrailers
+         */
+        public Builder withTrailers(StatusTrailers trailers) {
+            this.trailers = trailers;
+            return this;
+        }
+
+        /**
+         * Build the stream output stream.
+         *
+         * @return the stream output stream
+         * @throws IllegalArgumentException if the protocol uses flow control without a credit input stream, or status
+         *                                  trailers without trailers
+         */
+        public StreamOutputStream build() {
+            return new StreamOutputStream(this);
+        }
+
+    }
+
 }
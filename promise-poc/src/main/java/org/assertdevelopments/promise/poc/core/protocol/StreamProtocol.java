@@ -0,0 +1,520 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol;
+
+import org.assertdevelopments.promise.poc.core.compression.CompressionDictionary;
+
+/**
+ * The protocol used for framing a stream body, as negotiated via the parameters of the promise content type (f.e.
+ * <code>application/x-promise; version=2; max-chunk-size=262144</code>).
+ * <p/>
+ * Version 1 (a promise content type without parameters) prefixes every chunk with a 2 byte size, and has a maximum
+ * chunk size of {@link StreamConstants#MAX_CHUNK_SIZE} bytes. Version 2 prefixes every chunk with a flags byte and a
+ * variable length size, and allows chunks up to {@link StreamConstants#MAX_LARGE_CHUNK_SIZE} bytes.
+ * <p/>
+ * Version 2 can also compress chunks (<code>compression=deflate</code>). Compression is only used when both peers
+ * offer the same codec. Chunks are compressed one by one, and chunks that don't shrink are written uncompressed.
+ * Compressed chunks can use a preset dictionary (<code>dictionary=&lt;id&gt;</code>), if both peers offer the same
+ * (registered) dictionary.
+ * <p/>
+ * Version 2 can also protect chunks with a checksum (<code>checksum=crc32c</code>): every chunk then carries the
+ * CRC-32C of its bytes, and the stream status carries a digest of all chunks. Checksums are only used when both peers
+ * offer them.
+ * <p/>
+ * Version 2 can also make stream bodies resumable (<code>resumable=true</code>): every chunk then carries the offset of
+ * its first byte in the stream body, so an interrupted stream body can be resumed from the last offset read. Resumable
+ * stream bodies are only used when both peers offer them.
+ * <p/>
+ * Version 2 can also multiplex several channels in one stream body (<code>multiplexed=true</code>): besides the main
+ * channel, chunks can belong to numbered channels, that are read and written independently, and that end with a status
+ * of their own. Multiplexed stream bodies are only used when both peers offer them (and can't be resumable).
+ * <p/>
+ * Version 2 can also use credit-based flow control (<code>credits=&lt;window&gt;</code>): the writer only writes as
+ * many chunks (per channel) as the reader granted credits for, and the reader grants new credits while consuming the
+ * chunks. The initial credit window is the smallest window of both peers. Flow control needs a transport that carries
+ * the credits back to the writer (the loopback transport), so it's only used when both peers offer it.
+ * <p/>
+ * Version 2 can also send the stream status as http trailer fields (<code>trailers=true</code>): the stream body is
+ * then written as is, without chunk frames, and the status follows the body in the trailer of the http response. This
+ * saves the framing overhead, but the body can't be compressed, checksummed, resumed, multiplexed or flow controlled,
+ * and it needs an http transport that carries trailers both ways, so it's only used when both peers offer it.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class StreamProtocol {
+
+    public static final int VERSION_1 = 1;
+    public static final int VERSION_2 = 2;
+
+    /**
+     * The protocol spoken by peers that do not negotiate a protocol.
+     */
+    public static final StreamProtocol LEGACY = new StreamProtocol(VERSION_1, StreamConstants.MAX_CHUNK_SIZE);
+
+    /**
+     * The protocol offered by default.
+     */
+    public static final StreamProtocol DEFAULT = new StreamProtocol(VERSION_2, StreamConstants.LARGE_CHUNK_SIZE);
+
+    /**
+     * The codec for compressing chunks with the deflate algorithm (zlib format).
+     */
+    public static final String COMPRESSION_DEFLATE = "deflate";
+
+    /**
+     * The checksum algorithm CRC-32C (Castagnoli).
+     */
+    public static final String CHECKSUM_CRC32C = "crc32c";
+
+    private static final String VERSION_PARAMETER = "version";
+    private static final String MAX_CHUNK_SIZE_PARAMETER = "max-chunk-size";
+    private static final String COMPRESSION_PARAMETER = "compression";
+    private static final String DICTIONARY_PARAMETER = "dictionary";
+    private static final String CHECKSUM_PARAMETER = "checksum";
+    private static final String RESUMABLE_PARAMETER = "resumable";
+    private static final String MULTIPLEXED_PARAMETER = "multiplexed";
+    private static final String CREDITS_PARAMETER = "credits";
+    private static final String TRAILERS_PARAMETER = "trailers";
+
+    private final int version;
+    private final int maxChunkSize;
+    private final String compression;
+    private final CompressionDictionary dictionary;
+    private final String checksum;
+    private final boolean resumable;
+    private final boolean multiplexed;
+    private final int credits;
+    private final boolean trailers;
+
+    public StreamProtocol(int version, int maxChunkSize) {
+        this(version, maxChunkSize, null);
+    }
+
+    public StreamProtocol(int version, int maxChunkSize, String compression) {
+        this(version, maxChunkSize, compression, null);
+    }
+
+    /**
+     * Create a protocol that compresses chunks with the provided codec and preset dictionary.
+     *
+     * @param version      the protocol version
+     * @param maxChunkSize the maximum chunk size
+     * @param compression  the compression codec (null for no compression)
+     * @param dictionary   the preset dictionary (null for no dictionary)
+     */
+    public StreamProtocol(int version, int maxChunkSize, String compression, CompressionDictionary dictionary) {
+        this(version, maxChunkSize, compression, dictionary, null, false, false, 0, false);
+    }
+
+    private StreamProtocol(int version, int maxChunkSize, String compression, CompressionDictionary dictionary,
+                           String checksum, boolean resumable, boolean multiplexed, int credits,
+                           boolean trailers) {
+        if (version != VERSION_1 && version != VERSION_2) {
+            throw new IllegalArgumentException("unsupported protocol version: " + version);
+        }
+        if (maxChunkSize <= 0 || maxChunkSize > getMaxChunkSizeLimit(version)) {
+            throw new IllegalArgumentException("invalid maximum chunk size for protocol version " + version + ": " +
+                    maxChunkSize);
+        }
+        if (compression != null && (version == VERSION_1 || !COMPRESSION_DEFLATE.equals(compression))) {
+            throw new IllegalArgumentException("unsupported compression for protocol version " + version + ": " +
+                    compression);
+        }
+        if (dictionary != null && compression == null) {
+            throw new IllegalArgumentException("a compression dictionary requires compression");
+        }
+        if (checksum != null && (version == VERSION_1 || !CHECKSUM_CRC32C.equals(checksum))) {
+            throw new IllegalArgumentException("unsupported checksum for protocol version " + version + ": " +
+                    checksum);
+        }
+        if (resumable && version == VERSION_1) {
+            throw new IllegalArgumentException("resumable stream bodies require protocol version " + VERSION_2);
+        }
+        if (multiplexed && version == VERSION_1) {
+            throw new IllegalArgumentException("multiplexed stream bodies require protocol version " + VERSION_2);
+        }
+        if (multiplexed && resumable) {
+            throw new IllegalArgumentException("multiplexed stream bodies can't be resumable");
+        }
+        if (credits < 0 || (credits > 0 && version == VERSION_1)) {
+            throw new IllegalArgumentException("invalid credit window for protocol version " + version + ": " +
+                    credits);
+        }
+        if (trailers && version == VERSION_1) {
+            throw new IllegalArgumentException("status trailers require protocol version " + VERSION_2);
+        }
+        if (trailers && (compression != null || checksum != null || resumable || multiplexed || credits > 0)) {
+            throw new IllegalArgumentException("status trailers can't be combined with compression, checksums, " +
+                    "resumable or multiplexed stream bodies, or flow control");
+        }
+        this.version = version;
+        this.maxChunkSize = maxChunkSize;
+        this.compression = compression;
+        this.dictionary = dictionary;
+        this.checksum = checksum;
+        this.resumable = resumable;
+        this.multiplexed = multiplexed;
+        this.credits = credits;
+        this.trailers = trailers;
+    }
+
+    private static int getMaxChunkSizeLimit(int version) {
+        return version == VERSION_1 ? 0xFFFF : StreamConstants.MAX_LARGE_CHUNK_SIZE;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * Get the codec for compressing chunks.
+     *
+     * @return the compression codec, or null if chunks are not compressed
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * Get a copy of this protocol, that compresses chunks with the provided codec.
+     *
+     * @param compression the compression codec (null for no compression)
+     * @return the protocol
+     */
+    public StreamProtocol withCompression(String compression) {
+        return new StreamProtocol(version, maxChunkSize, compression, compression != null ? dictionary : null,
+                checksum, resumable, multiplexed, credits, trailers);
+    }
+
+    /**
+     * Get the preset dictionary for compressing chunks.
+     *
+     * @return the dictionary, or null if no dictionary is used
+     */
+    public CompressionDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Get a copy of this protocol, that compresses chunks with the provided preset dictionary. The dictionary must be
+     * registered (peers can only negotiate registered dictionaries).
+     *
+     * @param dictionary the dictionary (null for no dictionary)
+     * @return the protocol
+     */
+    public StreamProtocol withDictionary(CompressionDictionary dictionary) {
+        return new StreamProtocol(version, maxChunkSize, compression, dictionary, checksum, resumable, multiplexed,
+                credits, trailers);
+    }
+
+    /**
+     * Get the checksum algorithm for protecting chunks.
+     *
+     * @return the checksum algorithm, or null if chunks are not protected
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Get a copy of this protocol, that protects chunks with the provided checksum algorithm.
+     *
+     * @param checksum the checksum algorithm (null for no checksums)
+     * @return the protocol
+     */
+    public StreamProtocol withChecksum(String checksum) {
+        return new StreamProtocol(version, maxChunkSize, compression, dictionary, checksum, resumable, multiplexed,
+                credits, trailers);
+    }
+
+    /**
+     * Returns true if stream bodies carry the stream offset of every chunk (so they can be resumed).
+     *
+     * @return true if resumable, false if not
+     */
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    /**
+     * Get a copy of this protocol, with resumable stream bodies or not.
+     *
+     * @param resumable true for resumable stream bodies
+     * @return the protocol
+     */
+    public StreamProtocol withResumable(boolean resumable) {
+        return new StreamProtocol(version, maxChunkSize, compression, dictionary, checksum, resumable, multiplexed,
+                credits, trailers);
+    }
+
+    /**
+     * Returns true if stream bodies can multiplex several channels.
+     *
+     * @return true if multiplexed, false if not
+     */
+    public boolean isMultiplexed() {
+        return multiplexed;
+    }
+
+    /**
+     * Get a copy of this protocol, with multiplexed stream bodies or not.
+     *
+     * @param multiplexed true for multiplexed stream bodies
+     * @return the protocol
+     */
+    public StreamProtocol withMultiplexed(boolean multiplexed) {
+        return new StreamProtocol(version, maxChunkSize, compression, dictionary, checksum, resumable, multiplexed,
+                credits, trailers);
+    }
+
+    /**
+     * Get the initial credit window (the number of chunks per channel that can be written before the reader grants
+     * new credits).
+     *
+     * @return the credit window, or 0 if the protocol doesn't use flow control
+     */
+    public int getCredits() {
+        return credits;
+    }
+
+    /**
+     * Get a copy of this protocol, with credit-based flow control or not.
+     *
+     * @param credits the initial credit window (0 for no flow control)
+     * @return the protocol
+     */
+    public StreamProtocol withCredits(int credits) {
+        return new StreamProtocol(version, maxChunkSize, compression, dictionary, checksum, resumable, multiplexed,
+                credits, trailers);
+    }
+
+    /**
+     * Returns true if the stream status is sent as http trailer fields, after the (unframed) stream body.
+     *
+     * @return true if the status is sent as trailers, false if it follows the stream body
+     */
+    public boolean isTrailers() {
+        return trailers;
+    }
+
+    /**
+     * Get a copy of this protocol, that sends the stream status as http trailer fields or not.
+     *
+     * @param trailers true for sending the status as trailers
+     * @return the protocol
+     */
+    public StreamProtocol withTrailers(boolean trailers) {
+        return new StreamProtocol(version, maxChunkSize, compression, dictionary, checksum, resumable, multiplexed,
+                credits, trailers);
+    }
+
+    /**
+     * Negotiate the protocol for writing to a peer that accepts the provided protocol: the lowest version and the
+     * smallest maximum chunk size of both protocols, compression if both protocols use the same codec, and a
+     * dictionary if both protocols use the same dictionary, checksums if both protocols use the same algorithm, and
+     * resumable or multiplexed stream bodies if both protocols are resumable or multiplexed (multiplexing wins), and
+     * the smallest credit window if both protocols use flow control, and status trailers if both protocols use them.
+     *
+     * @param accepted the protocol accepted by the peer
+     * @return the negotiated protocol
+     */
+    public StreamProtocol negotiate(StreamProtocol accepted) {
+        if (version == VERSION_1 || accepted.version == VERSION_1) {
+            return LEGACY;
+        }
+        boolean compressed = compression != null && compression.equals(accepted.compression);
+        boolean multiplexing = multiplexed && accepted.multiplexed;
+        return new StreamProtocol(VERSION_2, Math.min(maxChunkSize, accepted.maxChunkSize),
+                compressed ? compression : null,
+                compressed && dictionary != null && dictionary.equals(accepted.dictionary) ? dictionary : null,
+                checksum != null && checksum.equals(accepted.checksum) ? checksum : null,
+                resumable && accepted.resumable && !multiplexing, multiplexing,
+                credits > 0 && accepted.credits > 0 ? Math.min(credits, accepted.credits) : 0,
+                trailers && accepted.trailers);
+    }
+
+    /**
+     * Check whether a stream body written with the provided protocol stays within the limits of this protocol: its
+     * version and its maximum chunk size must not exceed the version and the maximum chunk size of this protocol (so a
+     * reader never allocates chunk buffers larger than it offered).
+     *
+     * @param protocol the protocol of the stream body
+     * @return true if the protocol stays within the limits of this protocol
+     */
+    public boolean accepts(StreamProtocol protocol) {
+        return protocol.version <= version && protocol.maxChunkSize <= maxChunkSize;
+    }
+
+    /**
+     * Get the content type (including the protocol parameters) for this protocol.
+     *
+     * @return the content type
+     */
+    public String getContentType() {
+        if (version == VERSION_1) {
+            return StreamConstants.CONTENT_TYPE;
+        }
+        return StreamConstants.CONTENT_TYPE + "; " + VERSION_PARAMETER + "=" + version + "; " +
+                MAX_CHUNK_SIZE_PARAMETER + "=" + maxChunkSize +
+                (compression != null ? "; " + COMPRESSION_PARAMETER + "=" + compression : "") +
+                (dictionary != null ? "; " + DICTIONARY_PARAMETER + "=" + dictionary.getIdString() : "") +
+                (checksum != null ? "; " + CHECKSUM_PARAMETER + "=" + checksum : "") +
+                (resumable ? "; " + RESUMABLE_PARAMETER + "=true" : "") +
+                (multiplexed ? "; " + MULTIPLEXED_PARAMETER + "=true" : "") +
+                (credits > 0 ? "; " + CREDITS_PARAMETER + "=" + credits : "") +
+                (trailers ? "; " + TRAILERS_PARAMETER + "=true" : "");
+    }
+
+    /**
+     * Parse the protocol from a content type. A promise content type without protocol parameters results in the
+     * legacy protocol, unknown parameters are ignored (but unsupported compression codecs, unknown dictionaries and
+     * unsupported checksum algorithms are not).
+     *
+     * @param contentType the content type
+     * @return the protocol
+     * @throws IllegalArgumentException if the content type is not a (valid) promise content type
+     */
+    public static StreamProtocol parse(String contentType) throws IllegalArgumentException {
+        String[] parts = contentType.split(";");
+        if (!StreamConstants.CONTENT_TYPE.equalsIgnoreCase(parts[0].trim())) {
+            throw new IllegalArgumentException("unsupported content type: " + contentType);
+        }
+        int version = VERSION_1;
+        int maxChunkSize = -1;
+        String compression = null;
+        CompressionDictionary dictionary = null;
+        String checksum = null;
+        boolean resumable = false;
+        boolean multiplexed = false;
+        int credits = 0;
+        boolean trailers = false;
+        for (int n = 1; n < parts.length; n++) {
+            String parameter = parts[n].trim();
+            int index = parameter.indexOf('=');
+            if (index == -1) {
+                continue;
+            }
+            String name = parameter.substring(0, index).trim();
+            String value = parameter.substring(index + 1).trim().replace("\"", "");
+            try {
+                if (VERSION_PARAMETER.equalsIgnoreCase(name)) {
+                    version = Integer.parseInt(value);
+                } else if (MAX_CHUNK_SIZE_PARAMETER.equalsIgnoreCase(name)) {
+                    maxChunkSize = Integer.parseInt(value);
+                } else if (COMPRESSION_PARAMETER.equalsIgnoreCase(name)) {
+                    compression = value.toLowerCase();
+                } else if (DICTIONARY_PARAMETER.equalsIgnoreCase(name)) {
+                    dictionary = CompressionDictionary.get((int) Long.parseLong(value, 16));
+                    if (dictionary == null) {
+                        throw new IllegalArgumentException("unknown compression dictionary: " + value);
+                    }
+                } else if (CHECKSUM_PARAMETER.equalsIgnoreCase(name)) {
+                    checksum = value.toLowerCase();
+                } else if (RESUMABLE_PARAMETER.equalsIgnoreCase(name)) {
+                    resumable = Boolean.parseBoolean(value);
+                } else if (MULTIPLEXED_PARAMETER.equalsIgnoreCase(name)) {
+                    multiplexed = Boolean.parseBoolean(value);
+                } else if (CREDITS_PARAMETER.equalsIgnoreCase(name)) {
+                    credits = Integer.parseInt(value);
+                } else if (TRAILERS_PARAMETER.equalsIgnoreCase(name)) {
+                    trailers = Boolean.parseBoolean(value);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid content type parameter: " + parameter, e);
+            }
+        }
+        if (version == VERSION_1 && compression == null && dictionary == null && checksum == null && !resumable &&
+                !multiplexed && credits == 0 && !trailers) {
+            return LEGACY;
+        }
+        return new StreamProtocol(version, maxChunkSize != -1 ? maxChunkSize : StreamConstants.MAX_CHUNK_SIZE,
+                compression, dictionary, checksum, resumable, multiplexed, credits, trailers);
+    }
+
+    /**
+     * Parse the accepted protocol from an accept header. The first promise media type in the accept header is used.
+     * Peers that do not accept a promise media type, or do not send an accept header at all, only accept the legacy
+     * protocol. Promise media types with an unsupported version (or compression codec, dictionary or checksum) are
+     * skipped.
+     *
+     * @param accept the accept header (can be null)
+     * @return the accepted protocol
+     */
+    public static StreamProtocol parseAccept(String accept) {
+        if (accept != null) {
+            for (String mediaType : accept.split(",")) {
+                try {
+                    return parse(mediaType);
+                } catch (IllegalArgumentException e) {
+                    // not an (acceptable) promise media type, try the next one
+                }
+            }
+        }
+        return LEGACY;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StreamProtocol that = (StreamProtocol) o;
+        return version == that.version && maxChunkSize == that.maxChunkSize &&
+                (compression != null ? compression.equals(that.compression) : that.compression == null) &&
+                (dictionary != null ? dictionary.equals(that.dictionary) : that.dictionary == null) &&
+                (checksum != null ? checksum.equals(that.checksum) : that.checksum == null) &&
+                resumable == that.resumable && multiplexed == that.multiplexed &&
+                credits == that.credits && trailers == that.trailers;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * version + maxChunkSize;
+        result = 31 * result + (compression != null ? compression.hashCode() : 0);
+        result = 31 * result + (dictionary != null ? dictionary.hashCode() : 0);
+        result = 31 * result + (checksum != null ? checksum.hashCode() : 0);
+        result = 31 * result + (resumable ? 1 : 0);
+        result = 31 * result + (multiplexed ? 1 : 0);
+        result = 31 * result + credits;
+        result = 31 * result + (trailers ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamProtocol{" +
+                "version=" + version +
+                ", maxChunkSize=" + maxChunkSize +
+                ", compression=" + compression +
+                ", dictionary=" + dictionary +
+                ", checksum=" + checksum +
+                ", resumable=" + resumable +
+                ", multiplexed=" + multiplexed +
+                ", credits=" + credits +
+                ", trailers=" + trailers +
+                '}';
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.channel;
+
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.credit.CreditGrantor;
+import org.assertdevelopments.promise.poc.core.protocol.status.StatusInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Demultiplexer for reading the channels of a multiplexed stream body. The channels are read independently (from any
+ * thread): the reader of a channel reads the next frames of the stream body, until a frame of its channel arrives,
+ * and the frames of the other channels are queued for their own readers.
+ * <p/>
+ * With flow control, the credits of a frame are granted when its reader takes it from the queue, so the queue of a
+ * channel never holds more frames than the credit window. Note that the writer then waits for channels that are not
+ * being read: channels written by the same thread must be read in the order they are written.
+ * <p/>
+ * The queue of a channel holds at most a maximum number of bytes (besides a single frame, which is always queued).
+ * When a frame doesn't fit in the queue of its channel, reading the stream body fails (for all channels), rather than
+ * buffering a channel that is not being read without limit.
+ *
+ * @author agent
+ * @see ChannelInputStream
+ * @since 2026-10-17
+ */
+public final class ChannelDemultiplexer {
+
+    /**
+     * The default maximum number of bytes queued for a channel.
+     */
+    public static final int DEFAULT_MAX_QUEUED_BYTES = 16 * 1024 * 1024;
+
+    private final ChunkInputStream chunkInputStream;
+    private final InputStream inputStream;
+    private final CreditGrantor grantor;
+    private final int maxQueuedBytes;
+
+    // guards the state of the demultiplexer and its channels (a lock rather than a monitor, because frames are read
+    // while holding it, and virtual threads that block on a monitor pin their carrier thread)
+    final Lock lock = new ReentrantLock();
+    private final Map<Integer, ChannelInputStream> channels = new HashMap<Integer, ChannelInputStream>();
+
+    private boolean eof = false;
+    private IOException error;
+
+    /**
+     * Create a demultiplexer.
+     *
+     * @param chunkInputStream the chunk input stream (multiplexed)
+     * @param inputStream      the underlying input stream (for reading the status of a channel)
+     */
+    public ChannelDemultiplexer(ChunkInputStream chunkInputStream, InputStream inputStream) {
+        this(chunkInputStream, inputStream, null);
+    }
+
+    /**
+     * Create a demultiplexer with flow control.
+     *
+     * @param chunkInputStream the chunk input stream (multiplexed)
+     * @param inputStream      the underlying input stream (for reading the status of a channel)
+     * @param grantor          the credit grantor (null for no flow control)
+     */
+    public ChannelDemultiplexer(ChunkInputStream chunkInputStream, InputStream inputStream, CreditGrantor grantor) {
+        this(chunkInputStream, inputStream, grantor, DEFAULT_MAX_QUEUED_BYTES);
+    }
+
+    /**
+     * Create a demultiplexer with flow control, and a maximum number of bytes queued per channel.
+     *
+     * @param chunkInputStream the chunk input stream (multiplexed)
+     * @param inputStream      the underlying input stream (for reading the status of a channel)
+     * @param grantor          the credit grantor (null for no flow control)
+     * @param maxQueuedBytes   the maximum number of bytes queued for a channel
+     */
+    public ChannelDemultiplexer(ChunkInputStream chunkInputStream, InputStream inputStream, CreditGrantor grantor,
+                                int maxQueuedBytes) {
+        if (maxQueuedBytes <= 0) {
+            throw new IllegalArgumentException("invalid maximum number of queued bytes: " + maxQueuedBytes);
+        }
+        this.chunkInputStream = chunkInputStream;
+        this.inputStream = inputStream;
+        this.grantor = grantor;
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /**
+     * Get the input stream of a channel.
+     *
+     * @param channel the channel (0 for the main channel)
+     * @return the channel input stream
+     */
+    public ChannelInputStream getChannel(int channel) {
+        lock.lock();
+        try {
+            if (channel < 0) {
+                throw new IllegalArgumentException("invalid channel: " + channel);
+            }
+            ChannelInputStream channelInputStream = channels.get(channel);
+            if (channelInputStream == null) {
+                channelInputStream = new ChannelInputStream(this, channel);
+                if (eof) {
+                    channelInputStream.ended();
+                }
+                channels.put(channel, channelInputStream);
+            }
+            return channelInputStream;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Report that the reader of a channel took a frame from the queue.
+     *
+     * @param channel the channel
+     */
+    void consumed(int channel) {
+        if (grantor != null) {
+            grantor.consumed(channel);
+        }
+    }
+
+    /**
+     * Read the next frame of the stream body, and queue it for the reader of its channel.
+     *
+     * @return true if a frame was read, false at the end of the stream body
+     */
+    boolean readFrame() throws IOException {
+        lock.lock();
+        try {
+            if (error != null) {
+                IOException exception = new IOException("error while reading multiplexed stream body");
+                exception.initCause(error);
+                throw exception;
+            }
+            if (eof) {
+                return false;
+            }
+            try {
+                if (!chunkInputStream.nextFrame()) {
+                    eof = true;
+                    for (ChannelInputStream channelInputStream : channels.values()) {
+                        channelInputStream.ended();
+                    }
+                    return false;
+                }
+                ChannelInputStream channelInputStream = getChannel(chunkInputStream.getFrameChannel());
+                if (chunkInputStream.isChannelEOF()) {
+                    channelInputStream.closed(new StatusInputStream(inputStream).readStatus());
+                } else {
+                    int queuedBytes = channelInputStream.getQueuedBytes();
+                    if (queuedBytes > 0 && queuedBytes + chunkInputStream.getFrameSize() > maxQueuedBytes) {
+                        throw new IOException("too many bytes queued for channel " + channelInputStream.getChannel() +
+                                " (maximum = " + maxQueuedBytes + "), the channel is not being read");
+                    }
+                    byte[] frame = new byte[chunkInputStream.getFrameSize()];
+                    int offset = 0;
+                    while (offset < frame.length) {
+                        int n = chunkInputStream.read(frame, offset, frame.length - offset);
+                        if (n == -1) {
+                            throw new EOFException();
+                        }
+                        offset += n;
+                    }
+                    channelInputStream.received(frame);
+                }
+                return true;
+            } catch (IOException e) {
+                error = e;
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.channel;
+
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+
+/**
+ * Input stream for reading a channel of a multiplexed stream body. The end of a channel is followed by the status of
+ * the channel: when the channel ends with an error status, reading the end of the channel results in a
+ * {@link RemoteStreamException}.
+ * <p/>
+ * The state of all channels is guarded by the lock of the demultiplexer.
+ *
+ * @author agent
+ * @see ChannelOutputStream
+ * @see ChannelDemultiplexer
+ * @since 2026-10-17
+ */
+public final class ChannelInputStream extends InputStream {
+
+    private final ChannelDemultiplexer demultiplexer;
+    private final int channel;
+    private final LinkedList<byte[]> frames = new LinkedList<byte[]>();
+
+    private int queuedBytes;
+    private byte[] frame;
+    private int frameOffset;
+    private boolean eof = false;
+    private boolean checked = false;
+    private StreamStatus status;
+
+    ChannelInputStream(ChannelDemultiplexer demultiplexer, int channel) {
+        this.demultiplexer = demultiplexer;
+        this.channel = channel;
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    /**
+     * Get the status of the channel.
+     *
+     * @return the status, or null if the end of the channel was not read yet (or for the main channel)
+     */
+    public StreamStatus getStatus() {
+        demultiplexer.lock.lock();
+        try {
+            return status;
+        } finally {
+            demultiplexer.lock.unlock();
+        }
+    }
+
+    void received(byte[] frame) {
+        frames.addLast(frame);
+        queuedBytes += frame.length;
+    }
+
+    int getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    void closed(StreamStatus status) {
+        this.status = status;
+        this.eof = true;
+    }
+
+    void ended() {
+        this.eof = true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        demultiplexer.lock.lock();
+        try {
+            if (!checkFrame()) {
+                return -1;
+            }
+            return frame[frameOffset++] & 0xff;
+        } finally {
+            demultiplexer.lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings({"NullableProblems"})
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        demultiplexer.lock.lock();
+        try {
+            if (!checkFrame()) {
+                return -1;
+            }
+            int size = Math.min(length, frame.length - frameOffset);
+            System.arraycopy(frame, frameOffset, bytes, offset, size);
+            frameOffset += size;
+            return size;
+        } finally {
+            demultiplexer.lock.unlock();
+        }
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+        demultiplexer.lock.lock();
+        try {
+            if (!checkFrame()) {
+                return -1; // eof
+            }
+            int size = (int) Math.min(length, frame.length - frameOffset);
+            frameOffset += size;
+            return size;
+        } finally {
+            demultiplexer.lock.unlock();
+        }
+    }
+
+    @Override
+    public int available() {
+        demultiplexer.lock.lock();
+        try {
+            return frame != null ? frame.length - frameOffset : 0;
+        } finally {
+            demultiplexer.lock.unlock();
+        }
+    }
+
+    /**
+     * Skip the remaining bytes of the channel (and check its status).
+     */
+    public void skipRemaining() throws IOException {
+        demultiplexer.lock.lock();
+        try {
+            while (checkFrame()) {
+                frameOffset = frame.length;
+            }
+        } finally {
+            demultiplexer.lock.unlock();
+        }
+    }
+
+    /**
+     * Make sure there are bytes available in the current frame, reading the next frames of the stream body if needed.
+     *
+     * @return true if there are bytes available, false at the end of the channel
+     */
+    private boolean checkFrame() throws IOException {
+        while (frame == null || frameOffset >= frame.length) {
+            if (!frames.isEmpty()) {
+                frame = frames.removeFirst();
+                frameOffset = 0;
+                queuedBytes -= frame.length;
+                demultiplexer.consumed(channel);
+            } else if (eof) {
+                frame = null;
+                checkStatus();
+                return false;
+            } else {
+                demultiplexer.readFrame();
+            }
+        }
+        return true;
+    }
+
+    private void checkStatus() throws IOException {
+        if (checked) {
+            return;
+        }
+        checked = true;
+        if (channel == 0) {
+            // the status of the main channel is the status of the stream body
+            return;
+        }
+        if (status == null) {
+            throw new IOException("incomplete read from channel " + channel + ", the stream body ended before the " +
+                    "channel did");
+        }
+        if (status.getStatusCode() == StreamStatus.STATUS_ERROR) {
+            throw new RemoteStreamException("incomplete read from channel " + channel + ", because of a remote " +
+                    "unexpected error (statusCode=" + status.getStatusCode() + ", message=" +
+                    status.getStatusMessage() + ")");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // do nothing
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.channel;
+
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.AdaptiveChunkSizePolicy;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.credit.CreditWindow;
+import org.assertdevelopments.promise.poc.core.protocol.status.StatusOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Output stream for writing a channel of a multiplexed stream body. A channel is written independently of the other
+ * channels (from any thread), and ends with a status of its own.
+ *
+ * @author agent
+ * @see ChannelInputStream
+ * @since 2026-10-17
+ */
+public final class ChannelOutputStream extends OutputStream {
+
+    private final int channel;
+    private final ChunkOutputStream chunkOutputStream;
+
+    private volatile boolean committed = false;
+
+    /**
+     * Create a channel output stream.
+     *
+     * @param outputStream the output stream (shared by all channels)
+     * @param protocol     the protocol (must be multiplexed)
+     * @param flushPolicy  the flush policy
+     * @param channel      the channel (greater than 0)
+     * @param frameLock    the frame lock (shared by all channels)
+     */
+    public ChannelOutputStream(OutputStream outputStream, StreamProtocol protocol, FlushPolicy flushPolicy,
+                               int channel, Lock frameLock) {
+        this(outputStream, protocol, flushPolicy, channel, frameLock, null);
+    }
+
+    /**
+     * Create a channel output stream with flow control.
+     *
+     * @param outputStream the output stream (shared by all channels)
+     * @param protocol     the protocol (must be multiplexed)
+     * @param flushPolicy  the flush policy
+     * @param channel      the channel (greater than 0)
+     * @param frameLock    the frame lock (shared by all channels)
+     * @param credits      the credits (shared by all channels, null for no flow control)
+     */
+    public ChannelOutputStream(OutputStream outputStream, StreamProtocol protocol, FlushPolicy flushPolicy,
+                               int channel, Lock frameLock, CreditWindow credits) {
+        if (channel <= 0) {
+            throw new IllegalArgumentException("invalid channel: " + channel);
+        }
+        this.channel = channel;
+        this.chunkOutputStream = ChunkOutputStream.builder(outputStream, protocol)
+                .withChunkSizePolicy(
+                        new AdaptiveChunkSizePolicy(StreamConstants.MAX_CHUNK_SIZE, protocol.getMaxChunkSize()))
+                .withFlushPolicy(flushPolicy)
+                .withBufferPool(BufferPool.getInstance())
+                .withChannel(channel, frameLock)
+                .withCredits(credits)
+                .build();
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void write(int n) throws IOException {
+        chunkOutputStream.write(n);
+    }
+
+    @Override
+    @SuppressWarnings({"NullableProblems"})
+    public void write(byte[] bytes) throws IOException {
+        chunkOutputStream.write(bytes);
+    }
+
+    @Override
+    @SuppressWarnings({"NullableProblems"})
+    public void write(byte[] bytes, int off, int len) throws IOException {
+        chunkOutputStream.write(bytes, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        chunkOutputStream.flush();
+    }
+
+    /**
+     * Returns true if the status of the channel was written.
+     *
+     * @return true if committed, false if not
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * End the channel, and write the status of the channel. After writing the status, writing to the channel is no
+     * longer possible.
+     *
+     * @param code    the status code
+     * @param message the status message
+     */
+    public void writeStatus(int code, String message) throws IOException {
+        if (!commit()) {
+            throw new IllegalStateException("channel " + channel + " already committed");
+        }
+        writeEOF(code, message);
+    }
+
+    /**
+     * End the channel, and write the status of the channel, unless the status of the channel was written already (f.e.
+     * when the stream body ends while the channel is still open). Writing to the channel from another thread is waited
+     * for, and fails after the channel ended.
+     *
+     * @param code    the status code
+     * @param message the status message
+     * @return true if the status was written, false if the channel was committed already
+     */
+    public boolean writeStatusIfNotCommitted(int code, String message) throws IOException {
+        if (!commit()) {
+            return false;
+        }
+        writeEOF(code, message);
+        return true;
+    }
+
+    private synchronized boolean commit() {
+        if (committed) {
+            return false;
+        }
+        committed = true;
+        return true;
+    }
+
+    private void writeEOF(int code, String message) throws IOException {
+        ByteArrayOutputStream status = new ByteArrayOutputStream();
+        StatusOutputStream statusOutputStream = new StatusOutputStream(status);
+        statusOutputStream.writeStatus(new StreamStatus(code, message));
+        statusOutputStream.flush();
+        try {
+            chunkOutputStream.writeEOF(status.toByteArray());
+        } finally {
+            chunkOutputStream.release();
+        }
+    }
+
+    /**
+     * Release the buffers of the channel (after writing to the channel from another thread is done). After releasing,
+     * writing to the channel is no longer possible.
+     */
+    public void release() {
+        chunkOutputStream.release();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // do nothing
+    }
+
+}
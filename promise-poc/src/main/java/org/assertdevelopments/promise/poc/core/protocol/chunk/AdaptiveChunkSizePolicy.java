@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+/**
+ * A chunk size policy that grows or shrinks the chunk size while writing, based on the measured write throughput and
+ * on the time blocked while writing chunks to the underlying output stream. Only chunks that were written because they
+ * were full are measured (chunks that were flushed say nothing about the producer). The measurements are evaluated per
+ * window of {@link #WINDOW_SIZE} chunks:
+ * <ul>
+ * <li>if more than 75% of the time is spent writing, the consumer (or the network) is the bottleneck, and larger
+ * chunks will only cost memory and latency, so the chunk size is halved</li>
+ * <li>if filling a chunk takes longer than {@link #MAX_FILL_TIME}, the producer is slow, and smaller chunks will reach
+ * the consumer sooner, so the chunk size is halved</li>
+ * <li>if the throughput dropped after the chunk size was doubled, the chunk size is halved again, and will not grow
+ * for a while</li>
+ * <li>if less than 25% of the time is spent writing, the producer is the bottleneck, and larger chunks will reduce the
+ * overhead per chunk, so the chunk size is doubled</li>
+ * </ul>
+ *
+ * @author agent
+ * @see ChunkSizePolicy
+ * @since 2026-10-17
+ */
+public final class AdaptiveChunkSizePolicy implements ChunkSizePolicy {
+
+    public static final int MIN_CHUNK_SIZE = 1024;
+
+    static final int WINDOW_SIZE = 4;
+    static final long MAX_FILL_TIME = 20000000L;
+    static final int HOLD_WINDOWS = 16;
+
+    private static final double GROW_BLOCKED_RATIO = 0.25;
+    private static final double SHRINK_BLOCKED_RATIO = 0.75;
+    private static final double MIN_THROUGHPUT_GAIN = 0.9;
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private int chunkSize;
+
+    private int windowChunks;
+    private long windowBytes;
+    private long windowWriteTime;
+    private long windowElapsedTime;
+
+    private double lastThroughput;
+    private boolean grown;
+    private int holdWindows;
+
+    /**
+     * Create an adaptive chunk size policy, starting at the provided chunk size and staying between the minimum chunk
+     * size and the provided maximum chunk size (the negotiated ceiling).
+     *
+     * @param initialChunkSize the initial chunk size
+     * @param maxChunkSize     the maximum chunk size
+     */
+    public AdaptiveChunkSizePolicy(int initialChunkSize, int maxChunkSize) {
+        this.maxChunkSize = maxChunkSize;
+        this.minChunkSize = Math.min(MIN_CHUNK_SIZE, maxChunkSize);
+        this.chunkSize = Math.max(minChunkSize, Math.min(initialChunkSize, maxChunkSize));
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void chunkWritten(int size, boolean full, long writeTime, long elapsedTime) {
+        if (!full) {
+            // a flushed chunk interrupts the measurements
+            resetWindow();
+            return;
+        }
+
+        windowChunks++;
+        windowBytes += size;
+        windowWriteTime += writeTime;
+        windowElapsedTime += elapsedTime;
+        if (windowChunks < WINDOW_SIZE) {
+            return;
+        }
+
+        long elapsedTime0 = Math.max(windowElapsedTime, 1);
+        double blockedRatio = (double) windowWriteTime / elapsedTime0;
+        double throughput = (double) windowBytes / elapsedTime0;
+        long fillTime = (windowElapsedTime - windowWriteTime) / windowChunks;
+        if (holdWindows > 0) {
+            holdWindows--;
+        }
+
+        if (blockedRatio > SHRINK_BLOCKED_RATIO || fillTime > MAX_FILL_TIME) {
+            shrink();
+        } else if (grown && throughput < lastThroughput * MIN_THROUGHPUT_GAIN) {
+            shrink();
+            holdWindows = HOLD_WINDOWS;
+        } else if (blockedRatio < GROW_BLOCKED_RATIO && holdWindows == 0) {
+            grow();
+        } else {
+            grown = false;
+        }
+
+        lastThroughput = throughput;
+        resetWindow();
+    }
+
+    private void grow() {
+        int size = (int) Math.min((long) chunkSize * 2, maxChunkSize);
+        grown = size != chunkSize;
+        chunkSize = size;
+    }
+
+    private void shrink() {
+        chunkSize = Math.max(chunkSize / 2, minChunkSize);
+        grown = false;
+    }
+
+    private void resetWindow() {
+        windowChunks = 0;
+        windowBytes = 0;
+        windowWriteTime = 0;
+        windowElapsedTime = 0;
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+/**
+ * The flags in the chunk header (protocol version 2).
+ *
+ * @author agent
+ * @see ChunkOutputStream
+ * @see ChunkInputStream
+ * @since 2026-10-17
+ */
+interface ChunkFlags {
+
+    /**
+     * The chunk is compressed. The chunk size is followed by the uncompressed size (variable length), the chunk
+     * contains the compressed bytes.
+     */
+    int COMPRESSED = 0x01;
+
+    /**
+     * The chunk carries a checksum. The chunk sizes (and the channel and stream offset) are followed by the CRC-32C
+     * (4 bytes, big-endian) of the bytes of the chunk (as written, so after compression).
+     */
+    int CHECKSUM = 0x02;
+
+    /**
+     * The chunk carries its stream offset. The chunk sizes (and the channel) are followed by the offset in the stream
+     * body of the first (uncompressed) byte of the chunk (variable length).
+     */
+    int OFFSET = 0x04;
+
+    /**
+     * The chunk belongs to a channel (other than the main channel) of a multiplexed stream body. The chunk sizes are
+     * followed by the channel (variable length). A chunk of size 0 with this flag ends the channel, and is followed by
+     * the status of the channel.
+     */
+    int CHANNEL = 0x08;
+
+    /**
+     * All flags supported by this implementation.
+     */
+    int SUPPORTED = COMPRESSED | CHECKSUM | OFFSET | CHANNEL;
+
+}
@@ -16,13 +16,38 @@
 
 package org.assertdevelopments.promise.poc.core.protocol.chunk;
 
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+import org.assertdevelopments.promise.poc.core.checksum.Crc32c;
+import org.assertdevelopments.promise.poc.core.compression.CompressionDictionary;
+import org.assertdevelopments.promise.poc.core.compression.CompressorPool;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.credit.CreditGrantor;
+
 import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Input Stream for reading a stream body (with an unknown size, in chunks) from an input stream.
+ * <p/>
+ * Uncompressed chunks are read straight into the provided bytes (also when only part of a chunk is requested), the
+ * chunk buffer is only used for reading single bytes and skipping.
+ * <p/>
+ * When the protocol compresses chunks, compressed chunks are read completely, and decompressed while reading from this
+ * stream (straight into the provided bytes, when possible).
+ * <p/>
+ * When the protocol uses checksums, the checksum of every chunk is verified once the chunk is read completely, and the
+ * digest of all chunks is kept for verifying the stream status.
+ * <p/>
+ * When the protocol is resumable, the stream offset of every chunk is verified, so the offset of the bytes read from
+ * this stream is known for resuming an interrupted stream body.
+ * <p/>
+ * When the protocol is multiplexed, this stream is read frame by frame (by a demultiplexer): {@link #nextFrame()} reads
+ * the next frame header, and reading stops at the end of the frame.
  *
  * @author Stefan Bangels
  * @see ChunkOutputStream
@@ -30,14 +55,241 @@ import java.io.InputStream;
  */
 public final class ChunkInputStream extends FilterInputStream {
 
+    private final int version;
+    private final int maxChunkSize;
+    private final BufferPool bufferPool;
+    private final CompressorPool compressorPool;
+    private final CompressionDictionary dictionary;
+    private final Crc32c checksum;
+    private final Crc32c digest;
+    private int expectedChecksum;
+    private final boolean offsets;
+    private long frameOffset = 0;
+    private final boolean framed;
+    private final CreditGrantor grantor;
+    private int frameChannel = 0;
+    private int frameSize = 0;
+    private boolean channelEOF = false;
+    private Inflater inflater;
+    private byte[] compressed;
+    private boolean inflating = false;
     private byte[] chunk;
     private int chunkSize = 0;
     private int chunkOffset = 0;
+    private int frameRemaining = 0;
     private boolean eof = false;
 
     public ChunkInputStream(InputStream inputStream, int maxBufferSize) {
+        this(inputStream, StreamProtocol.VERSION_1, maxBufferSize, maxBufferSize, null, null, null, false, false, false,
+                null);
+    }
+
+    public ChunkInputStream(InputStream inputStream, StreamProtocol protocol) {
+        this(inputStream, protocol, null);
+    }
+
+    /**
+     * Create a chunk input stream that borrows its chunk buffer from the provided buffer pool. The chunk buffer must
+     * be returned to the pool by calling {@link #release()}. When the protocol compresses chunks, the decompressor is
+     * borrowed from the shared compressor pool (and returned by {@link #release()} as well). When the protocol uses
+     * checksums, chunks without a (valid) checksum are rejected. When the protocol is resumable, chunks without the
+     * expected stream offset are rejected. When the protocol is multiplexed, the stream is read frame by frame.
+     *
+     * @param inputStream the input stream
+     * @param protocol    the protocol
+     * @param bufferPool  the buffer pool (null to allocate the chunk buffer)
+     */
+    public ChunkInputStream(InputStream inputStream, StreamProtocol protocol, BufferPool bufferPool) {
+        this(inputStream, protocol, bufferPool, null);
+    }
+
+    /**
+     * Create a chunk input stream with flow control: every chunk read is reported to the credit grantor, that grants
+     * new credits to the writer. When the protocol is multiplexed, the chunks are consumed (and reported) by the reader
+     * of the frames instead.
+     *
+     * @param inputStream the input stream
+     * @param protocol    the protocol
+     * @param bufferPool  the buffer pool (null to allocate the chunk buffer)
+     * @param grantor     the credit grantor (null for no flow control)
+     * @see CreditGrantor
+     */
+    public ChunkInputStream(InputStream inputStream, StreamProtocol protocol, BufferPool bufferPool,
+                            CreditGrantor grantor) {
+        this(inputStream, protocol, bufferPool, grantor, protocol.isMultiplexed());
+    }
+
+    /**
+     * Create a chunk input stream that reads frame by frame, also when the protocol is not multiplexed (f.e. for
+     * decoding frames as they arrive).
+     *
+     * @param inputStream the input stream
+     * @param protocol    the protocol
+     * @param bufferPool  the buffer pool (null to allocate the chunk buffer)
+     * @param grantor     the credit grantor (null for no flow control)
+     * @param framed      true to read frame by frame (always true when the protocol is multiplexed)
+     * @see #nextFrame()
+     */
+    public ChunkInputStream(InputStream inputStream, StreamProtocol protocol, BufferPool bufferPool,
+                            CreditGrantor grantor, boolean framed) {
+        this(inputStream, protocol.getVersion(), protocol.getMaxChunkSize(),
+                Math.min(protocol.getMaxChunkSize(), StreamConstants.MAX_CHUNK_SIZE), bufferPool,
+                protocol.getCompression() != null ? CompressorPool.getInstance() : null, protocol.getDictionary(),
+                protocol.getChecksum() != null, protocol.isResumable(), framed || protocol.isMultiplexed(), grantor);
+    }
+
+    private ChunkInputStream(InputStream inputStream, int version, int maxChunkSize, int bufferSize,
+                             BufferPool bufferPool, CompressorPool compressorPool, CompressionDictionary dictionary,
+                             boolean checksums, boolean offsets, boolean framed, CreditGrantor grantor) {
         super(inputStream);
-        chunk = new byte[maxBufferSize];
+        this.version = version;
+        this.maxChunkSize = maxChunkSize;
+        this.bufferPool = bufferPool;
+        this.compressorPool = compressorPool;
+        this.dictionary = dictionary;
+        this.checksum = checksums ? new Crc32c() : null;
+        this.digest = checksums ? new Crc32c() : null;
+        this.offsets = offsets;
+        this.framed = framed;
+        this.grantor = grantor;
+        this.chunk = bufferPool != null ? bufferPool.borrow(bufferSize) : new byte[bufferSize];
+    }
+
+    /**
+     * Get the offset in the stream body of the next byte read from this stream.
+     *
+     * @return the stream offset
+     */
+    public long getStreamOffset() {
+        return frameOffset - frameRemaining - (chunkSize - chunkOffset);
+    }
+
+    /**
+     * Start reading the stream body at the provided offset, instead of at the beginning (when resuming an interrupted
+     * stream body). This is only possible before reading the first byte.
+     *
+     * @param streamOffset the offset in the stream body of the first byte read from this stream
+     * @throws IllegalStateException if bytes were read already
+     */
+    public void resume(long streamOffset) {
+        if (streamOffset < 0) {
+            throw new IllegalArgumentException("invalid stream offset: " + streamOffset);
+        }
+        if (frameOffset != 0 || eof) {
+            throw new IllegalStateException("chunk input stream already started");
+        }
+        this.frameOffset = streamOffset;
+    }
+
+    /**
+     * Skip the remaining bytes of the current frame, and read the header of the next frame (multiplexed stream bodies,
+     * or when reading frame by frame). The bytes of the frame can be read from this stream, up to the end of the frame.
+     *
+     * @return true if there is a next frame (a frame with bytes, or the end of a channel), false at the end of the
+     * stream body
+     * @see #getFrameChannel()
+     * @see #isChannelEOF()
+     */
+    public boolean nextFrame() throws IOException {
+        if (!framed) {
+            throw new IllegalStateException("chunk input stream is not multiplexed");
+        }
+        while (frameRemaining > 0) {
+            readNextChunk();
+        }
+        chunkOffset = chunkSize;
+        return readNextFrame();
+    }
+
+    /**
+     * Get the length of the next frame in the provided bytes (the header and the bytes of the frame, as written),
+     * without reading it. This allows a non-blocking reader to collect a complete frame before reading it from a chunk
+     * input stream (frame by frame), so reading never blocks. The header is not validated, that's left to the chunk
+     * input stream.
+     *
+     * @param protocol the protocol
+     * @param bytes    the bytes
+     * @param offset   the offset of the next frame in the bytes
+     * @param length   the number of bytes available
+     * @return the length of the next frame, or -1 if the available bytes don't hold the complete frame (yet)
+     */
+    public static int getFrameLength(StreamProtocol protocol, byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        if (protocol.getVersion() == StreamProtocol.VERSION_1) {
+            if (length < 2) {
+                return -1;
+            }
+            int size = ((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff);
+            return length >= 2 + size ? 2 + size : -1;
+        }
+        if (length < 1) {
+            return -1;
+        }
+        int flags = bytes[offset] & 0xff;
+        int position = skipVarLong(bytes, offset + 1, end);
+        if (position == -1) {
+            return -1;
+        }
+        long size = 0;
+        for (int n = offset + 1, shift = 0; n < position && shift < 64; n++, shift += 7) {
+            size |= (long) (bytes[n] & 0x7F) << shift;
+        }
+        if (size == 0) {
+            // the end of the stream body, or the end of a channel
+            position = (flags & ChunkFlags.CHANNEL) != 0 ? skipVarLong(bytes, position, end) : position;
+            return position != -1 ? position - offset : -1;
+        }
+        if ((flags & ChunkFlags.COMPRESSED) != 0) {
+            position = skipVarLong(bytes, position, end);
+        }
+        if (position != -1 && (flags & ChunkFlags.CHANNEL) != 0) {
+            position = skipVarLong(bytes, position, end);
+        }
+        if (position != -1 && (flags & ChunkFlags.OFFSET) != 0) {
+            position = skipVarLong(bytes, position, end);
+        }
+        if (position == -1) {
+            return -1;
+        }
+        long frameLength = position - offset + ((flags & ChunkFlags.CHECKSUM) != 0 ? 4 : 0) + size;
+        return frameLength <= length ? (int) frameLength : -1;
+    }
+
+    private static int skipVarLong(byte[] bytes, int position, int end) {
+        while (position < end) {
+            if ((bytes[position++] & 0x80) == 0) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the channel of the current frame (multiplexed stream bodies only).
+     *
+     * @return the channel (0 for the main channel)
+     */
+    public int getFrameChannel() {
+        return frameChannel;
+    }
+
+    /**
+     * Get the (uncompressed) size of the current frame (multiplexed stream bodies only).
+     *
+     * @return the frame size
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Returns true if the current frame is the end of its channel (multiplexed stream bodies only). The end of a
+     * channel is followed by the status of the channel.
+     *
+     * @return true if the end of the channel, false if not
+     */
+    public boolean isChannelEOF() {
+        return channelEOF;
     }
 
     @Override
@@ -57,7 +309,7 @@ public final class ChunkInputStream extends FilterInputStream {
     @Override
     @SuppressWarnings({"NullableProblems"})
     public int read(byte[] bytes, int offset, int length) throws IOException {
-        if (!checkReadNextChunk()) {
+        if (!checkReadNextFrame()) {
             return -1; // eof
         }
         if (length <= 0) {
@@ -65,14 +317,27 @@ public final class ChunkInputStream extends FilterInputStream {
         }
         int c = 0;
         while (length > 0) {
-            int size = Math.min(length, chunkSize - chunkOffset);
-            System.arraycopy(chunk, chunkOffset, bytes, offset, size);
+            int size;
+            if (chunkOffset < chunkSize) {
+                // copy the bytes that are already buffered
+                size = Math.min(length, chunkSize - chunkOffset);
+                System.arraycopy(chunk, chunkOffset, bytes, offset, size);
+                chunkOffset += size;
+            } else if (!inflating || length >= frameRemaining) {
+                // read the bytes of the frame directly (without buffering), up to the end of the frame (compressed
+                // frames only when the remaining bytes of the frame fit in the provided bytes)
+                size = Math.min(length, frameRemaining);
+                readFrame(bytes, offset, size);
+            } else {
+                // only part of the remaining bytes of a compressed frame is requested, buffer them
+                readNextChunk();
+                continue;
+            }
             offset += size;
-            chunkOffset += size;
             length -= size;
             c += size;
             if (length > 0) {
-                if (!readNextChunk()) {
+                if (!checkReadNextFrame()) {
                     break; // eof
                 }
             }
@@ -103,7 +368,7 @@ public final class ChunkInputStream extends FilterInputStream {
             length -= size;
             c += size;
             if (length > 0) {
-                if (!readNextChunk()) {
+                if (!checkReadNextChunk()) {
                     break; // eof
                 }
             }
@@ -111,26 +376,265 @@ public final class ChunkInputStream extends FilterInputStream {
         return c;
     }
 
+    /**
+     * Make sure there are bytes available in the chunk buffer, reading the next (part of the) frame into the chunk
+     * buffer if needed.
+     *
+     * @return true if there are bytes available in the chunk buffer, false if eof
+     */
     private boolean checkReadNextChunk() throws IOException {
-        return chunkOffset < chunkSize || readNextChunk();
+        return chunkOffset < chunkSize || (checkReadNextFrame() && readNextChunk());
+    }
+
+    /**
+     * Make sure there are bytes available in the chunk buffer or in the current frame, reading the next frame header
+     * if needed.
+     *
+     * @return true if there are bytes available, false if eof
+     */
+    private boolean checkReadNextFrame() throws IOException {
+        return chunkOffset < chunkSize || frameRemaining > 0 || (!framed && readNextFrame());
     }
 
     private boolean readNextChunk() throws IOException {
+        if (chunk == null) {
+            throw new IOException("chunk input stream is released");
+        }
+        int size = Math.min(frameRemaining, chunk.length);
+        readFrame(chunk, 0, size);
+        this.chunkOffset = 0;
+        this.chunkSize = size;
+        return true;
+    }
+
+    private boolean readNextFrame() throws IOException {
         if (eof) {
             return false;
         }
-        int size = readShort();
-        if (size > chunk.length) {
-            throw new IOException("chunk size exceeds maximum buffer size: size = " + size + ", maximum = " + chunk.length);
-        } else if (size != 0) {
-            readFully(chunk, 0, size);
-            this.chunkOffset = 0;
-            this.chunkSize = size;
-            return true;
+        channelEOF = false;
+        int flags = 0;
+        int size;
+        if (version == StreamProtocol.VERSION_1) {
+            size = readShort();
         } else {
+            flags = readUnsignedByte();
+            if ((flags & ~ChunkFlags.SUPPORTED) != 0 ||
+                    ((flags & ChunkFlags.COMPRESSED) != 0 && compressorPool == null) ||
+                    ((flags & ChunkFlags.CHECKSUM) != 0 && checksum == null) ||
+                    ((flags & ChunkFlags.OFFSET) != 0 && !offsets) ||
+                    ((flags & ChunkFlags.CHANNEL) != 0 && !framed)) {
+                throw new IOException("unsupported chunk flags: " + flags);
+            }
+            size = readVarInt();
+        }
+        checkChunkSize(size);
+        if (size == 0) {
+            if ((flags & ChunkFlags.CHANNEL) != 0) {
+                // the end of a channel
+                frameChannel = readChannel();
+                frameSize = 0;
+                channelEOF = true;
+                return true;
+            }
             eof = true;
             return false;
         }
+        int uncompressedSize = 0;
+        if ((flags & ChunkFlags.COMPRESSED) != 0) {
+            uncompressedSize = readVarInt();
+            checkChunkSize(uncompressedSize);
+            if (uncompressedSize == 0) {
+                throw new IOException("malformed compressed chunk");
+            }
+        }
+        frameChannel = (flags & ChunkFlags.CHANNEL) != 0 ? readChannel() : 0;
+        if (offsets) {
+            if ((flags & ChunkFlags.OFFSET) == 0) {
+                throw new IOException("missing chunk offset");
+            }
+            long offset = readVarLong();
+            if (offset != frameOffset) {
+                throw new IOException("unexpected chunk offset: offset = " + offset + ", expected = " + frameOffset);
+            }
+        }
+        if (checksum != null) {
+            if ((flags & ChunkFlags.CHECKSUM) == 0) {
+                throw new IOException("missing chunk checksum");
+            }
+            expectedChecksum = readInt();
+            checksum.reset();
+            if (frameChannel == 0) {
+                digest.updateInt(expectedChecksum);
+                digest.updateInt(size);
+            }
+        }
+        if ((flags & ChunkFlags.COMPRESSED) != 0) {
+            readCompressed(size);
+            this.frameRemaining = uncompressedSize;
+            this.inflating = true;
+        } else {
+            this.frameRemaining = size;
+            this.inflating = false;
+        }
+        this.frameOffset += frameRemaining;
+        this.frameSize = frameRemaining;
+        return true;
+    }
+
+    private void checkChunkSize(int size) throws IOException {
+        if (size < 0 || size > maxChunkSize) {
+            throw new IOException("chunk size exceeds maximum chunk size: size = " + size + ", maximum = " + maxChunkSize);
+        }
+    }
+
+    /**
+     * Read the compressed bytes of a chunk, and prepare the decompressor for decompressing them.
+     *
+     * @param size the compressed size
+     */
+    private void readCompressed(int size) throws IOException {
+        if (chunk == null) {
+            throw new IOException("chunk input stream is released");
+        }
+        if (compressed == null || compressed.length < size) {
+            if (compressed != null && bufferPool != null) {
+                bufferPool.release(compressed);
+            }
+            compressed = bufferPool != null ? bufferPool.borrow(size) : new byte[size];
+        }
+        readFully(compressed, 0, size);
+        if (checksum != null) {
+            checksum.update(compressed, 0, size);
+            verifyChecksum();
+        }
+        frameConsumed();
+        if (inflater == null) {
+            inflater = compressorPool.borrowInflater();
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 0, size);
+    }
+
+    /**
+     * Read bytes of the current frame, decompressing them if the frame is compressed.
+     *
+     * @param bytes  the bytes
+     * @param offset the offset
+     * @param length the number of bytes (no more than the remaining bytes of the frame)
+     */
+    private void readFrame(byte[] bytes, int offset, int length) throws IOException {
+        if (chunk == null) {
+            throw new IOException("chunk input stream is released");
+        }
+        frameRemaining -= length;
+        if (!inflating) {
+            readFully(bytes, offset, length);
+            if (checksum != null) {
+                checksum.update(bytes, offset, length);
+                if (frameRemaining == 0) {
+                    verifyChecksum();
+                }
+            }
+            if (frameRemaining == 0) {
+                frameConsumed();
+            }
+            return;
+        }
+        try {
+            while (length > 0) {
+                int n = inflater.inflate(bytes, offset, length);
+                if (n == 0 && inflater.needsDictionary()) {
+                    if (dictionary == null || inflater.getAdler() != dictionary.getId()) {
+                        throw new IOException("compressed chunk requires an unknown dictionary: " +
+                                Integer.toHexString(inflater.getAdler()));
+                    }
+                    dictionary.applyTo(inflater);
+                    continue;
+                }
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("corrupt compressed chunk");
+                }
+                offset += n;
+                length -= n;
+            }
+        } catch (DataFormatException e) {
+            IOException exception = new IOException("corrupt compressed chunk");
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    /**
+     * Report the current frame to the credit grantor, once it is read completely from the underlying input stream
+     * (frames that are read directly can be read in parts).
+     */
+    private void frameConsumed() {
+        if (grantor != null && !framed) {
+            grantor.consumed(0);
+        }
+    }
+
+    private void verifyChecksum() throws IOException {
+        if ((int) checksum.getValue() != expectedChecksum) {
+            throw new IOException("chunk checksum mismatch");
+        }
+    }
+
+    /**
+     * Get the digest of the chunks read so far (a CRC-32C over the checksums and sizes of all chunks of the main
+     * channel, the chunks of the other channels of a multiplexed stream body are not included).
+     *
+     * @return the digest, or null if the protocol doesn't use checksums
+     */
+    public Integer getDigest() {
+        return digest != null ? (int) digest.getValue() : null;
+    }
+
+    private int readChannel() throws IOException {
+        int channel = readVarInt();
+        if (channel == 0) {
+            throw new IOException("malformed chunk channel");
+        }
+        return channel;
+    }
+
+    private int readVarInt() throws IOException {
+        long value = readVarLong();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("malformed chunk size");
+        }
+        return (int) value;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed chunk header");
+    }
+
+    private int readUnsignedByte() throws IOException {
+        int ch = super.read();
+        if (ch < 0) {
+            throw new EOFException();
+        }
+        return ch;
+    }
+
+    private int readInt() throws IOException {
+        int ch1 = super.read();
+        int ch2 = super.read();
+        int ch3 = super.read();
+        int ch4 = super.read();
+        if ((ch1 | ch2 | ch3 | ch4) < 0) {
+            throw new EOFException();
+        }
+        return ((ch1 << 24) + (ch2 << 16) + (ch3 << 8) + ch4);
     }
 
     private int readShort() throws IOException {
@@ -153,9 +657,39 @@ public final class ChunkInputStream extends FilterInputStream {
         }
     }
 
+    /**
+     * Release the chunk buffer (returning it to the buffer pool) and the decompressor (returning it to the compressor
+     * pool). After releasing, reading from this stream is no longer possible.
+     */
+    public void release() {
+        if (chunk != null) {
+            if (bufferPool != null) {
+                bufferPool.release(chunk);
+            }
+            chunk = null;
+            chunkSize = 0;
+            chunkOffset = 0;
+        }
+        if (compressed != null) {
+            if (bufferPool != null) {
+                bufferPool.release(compressed);
+            }
+            compressed = null;
+        }
+        if (inflater != null) {
+            compressorPool.release(inflater);
+            inflater = null;
+            inflating = false;
+        }
+    }
+
     @Override
     public int available() throws IOException {
-        return !eof ? chunkSize - chunkOffset : 0;
+        if (eof) {
+            return 0;
+        }
+        // the buffered bytes, and the bytes of an uncompressed frame that can be read directly
+        return chunkSize - chunkOffset + (!inflating ? Math.min(frameRemaining, super.available()) : 0);
     }
 
     @Override
@@ -16,13 +16,50 @@
 
 package org.assertdevelopments.promise.poc.core.protocol.chunk;
 
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+import org.assertdevelopments.promise.poc.core.checksum.Crc32c;
+import org.assertdevelopments.promise.poc.core.compression.CompressionDictionary;
+import org.assertdevelopments.promise.poc.core.compression.CompressorPool;
+import org.assertdevelopments.promise.poc.core.io.BackgroundThreads;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.credit.CreditWindow;
+
 import java.io.EOFException;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
 
 /**
  * Output Stream for writing a stream body (with an unknown size, in chunks) to an output stream.
+ * <p/>
+ * Every chunk is prefixed with a chunk header, containing the chunk size. The format of the chunk header depends on
+ * the protocol version: version 1 uses a 2 byte chunk size, version 2 uses a flags byte followed by a variable length
+ * chunk size (7 bits per byte, least significant group first, the high bit set on all but the last byte). A chunk
+ * with size 0 marks the end of the stream body.
+ * <p/>
+ * When the protocol compresses chunks, every chunk of at least {@link #MIN_COMPRESSED_SIZE} bytes is compressed
+ * separately (starting from the preset dictionary of the protocol, if any), and written with the compressed flag (and
+ * its uncompressed size) if it shrinks. Chunks that don't shrink are written uncompressed.
+ * <p/>
+ * When the protocol uses checksums, every chunk carries the CRC-32C of its bytes, and a digest (a CRC-32C over the
+ * checksums and sizes of all chunks) is kept for the stream status, so lost, duplicated or reordered chunks are detected
+ * as well.
+ * <p/>
+ * When the protocol is resumable, every chunk carries the offset of its first (uncompressed) byte in the stream body,
+ * so a reader can tell where an interrupted stream body can be resumed.
+ * <p/>
+ * When the protocol is multiplexed, several chunk output streams (one per channel) write to the same output stream.
+ * Chunks are written under a shared (fair) frame lock, so chunks of different channels never mix, and producers get
+ * their turn in order of arrival (a slow producer doesn't hold up the others).
+ * <p/>
+ * The chunk size policy decides the size of the chunks, the flush policy decides when the underlying output stream is
+ * flushed. When the flush policy has a maximum flush delay, postponed flushes are done by a timer (in a background
+ * thread), and the chunk output stream synchronizes on itself. So does the chunk output stream of a multiplexed stream
+ * body, because its channel can be ended (or released) by another thread than the one writing to it.
  *
  * @author Stefan Bangels
  * @see ChunkInputStream
@@ -30,22 +67,170 @@ import java.io.OutputStream;
  */
 public final class ChunkOutputStream extends FilterOutputStream {
 
-    private final byte[] chunk;
+    /**
+     * The minimum size of a chunk for compressing it (smaller chunks are not worth the effort).
+     */
+    public static final int MIN_COMPRESSED_SIZE = 64;
+
+    private final int version;
+    private final int maxChunkSize;
+    private final ChunkSizePolicy chunkSizePolicy;
+    private final FlushPolicy flushPolicy;
+    private final long maxFlushDelay;
+    private final ChunkStatistics statistics;
+    private final BufferPool bufferPool;
+    private final CompressorPool compressorPool;
+    private final CompressionDictionary dictionary;
+    private final Crc32c checksum;
+    private final Crc32c digest;
+    private final boolean offsets;
+    private final int channel;
+    private final Lock frameLock;
+    // guards the chunk buffer against the flush timer (a lock rather than a monitor, so virtual threads that block
+    // while writing don't pin their carrier thread)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final boolean locked;
+    private final CreditWindow credits;
+    private final byte[] header = new byte[30];
+    private long streamOffset = 0;
+    private Deflater deflater;
+    private byte[] compressed;
+    private byte[] chunk;
+    private int chunkSize;
     private int chunkOffset;
+    private long chunkTime;
+    private long pendingBytes;
+    private long flushTime;
+    private Future<?> scheduledFlush;
+    private IOException flushError;
     private boolean eof = false;
 
     public ChunkOutputStream(OutputStream outputStream, int bufferSize) {
+        this(outputStream, StreamProtocol.VERSION_1, bufferSize, null, null, false, false,
+                new FixedChunkSizePolicy(bufferSize), new ExplicitFlushPolicy(), null, 0, null, null);
+    }
+
+    /**
+     * Create a chunk output stream for the provided protocol, writing chunks of the maximum chunk size of the protocol.
+     *
+     * @param outputStream the output stream
+     * @param protocol     the protocol
+     * @see #builder(OutputStream, StreamProtocol)
+     */
+    public ChunkOutputStream(OutputStream outputStream, StreamProtocol protocol) {
+        this(new Builder(outputStream, protocol));
+    }
+
+    private ChunkOutputStream(Builder builder) {
+        this(builder.outputStream, builder.protocol.getVersion(), builder.protocol.getMaxChunkSize(),
+                builder.protocol.getCompression() != null ? CompressorPool.getInstance() : null,
+                builder.protocol.getDictionary(), builder.protocol.getChecksum() != null,
+                builder.protocol.isResumable(), builder.chunkSizePolicy, builder.flushPolicy, builder.bufferPool,
+                builder.channel, builder.frameLock, builder.credits);
+    }
+
+    private ChunkOutputStream(OutputStream outputStream, int version, int maxChunkSize, CompressorPool compressorPool,
+                              CompressionDictionary dictionary, boolean checksums, boolean offsets,
+                              ChunkSizePolicy chunkSizePolicy, FlushPolicy flushPolicy, BufferPool bufferPool,
+                              int channel, Lock frameLock, CreditWindow credits) {
         super(outputStream);
-        this.chunk = new byte[bufferSize];
+        this.version = version;
+        this.maxChunkSize = maxChunkSize;
+        this.compressorPool = compressorPool;
+        this.dictionary = dictionary;
+        this.checksum = checksums ? new Crc32c() : null;
+        this.digest = checksums ? new Crc32c() : null;
+        this.offsets = offsets;
+        this.channel = channel;
+        this.frameLock = frameLock;
+        this.credits = credits;
+        this.chunkSizePolicy = chunkSizePolicy;
+        this.flushPolicy = flushPolicy;
+        this.maxFlushDelay = flushPolicy.getMaxFlushDelay();
+        this.locked = maxFlushDelay > 0 || frameLock != null;
+        this.bufferPool = bufferPool;
+        this.chunkSize = getPolicyChunkSize();
+        this.chunk = allocate(chunkSize);
+        this.chunkTime = System.nanoTime();
+        this.flushTime = chunkTime - maxFlushDelay;
+        this.statistics = new ChunkStatistics(chunkSize);
+    }
+
+    /**
+     * Get the statistics about the chunks written so far.
+     *
+     * @return the chunk statistics
+     */
+    public ChunkStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Get the digest of the chunks written so far (a CRC-32C over the checksums and sizes of all chunks).
+     *
+     * @return the digest, or null if the protocol doesn't use checksums
+     */
+    public Integer getDigest() {
+        return digest != null ? (int) digest.getValue() : null;
+    }
+
+    /**
+     * Get the offset in the stream body of the next byte written to this stream.
+     *
+     * @return the stream offset
+     */
+    public long getStreamOffset() {
+        lock.lock();
+        try {
+            return streamOffset + chunkOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start writing the stream body at the provided offset, instead of at the beginning (when resuming an interrupted
+     * stream body). This is only possible before writing the first byte.
+     *
+     * @param streamOffset the offset in the stream body of the first byte written to this stream
+     * @throws IllegalStateException if bytes were written already
+     */
+    public void resume(long streamOffset) {
+        lock.lock();
+        try {
+            if (streamOffset < 0) {
+                throw new IllegalArgumentException("invalid stream offset: " + streamOffset);
+            }
+            if (this.streamOffset != 0 || chunkOffset != 0 || statistics.getChunks() != 0) {
+                throw new IllegalStateException("chunk output stream already started");
+            }
+            this.streamOffset = streamOffset;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void write(int b) throws IOException {
+        if (locked) {
+            lock.lock();
+            try {
+                writeByte(b);
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            writeByte(b);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
         if (eof) {
             throw new EOFException();
         }
-        if (chunkOffset >= chunk.length) {
-            flush();
+        checkReleased();
+        if (chunkOffset >= chunkSize) {
+            writeChunk(chunk, 0, chunkOffset, true);
         }
         chunk[chunkOffset++] = (byte) b;
     }
@@ -59,14 +244,39 @@ public final class ChunkOutputStream extends FilterOutputStream {
     @Override
     @SuppressWarnings({"NullableProblems"})
     public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (locked) {
+            lock.lock();
+            try {
+                writeBytes(bytes, offset, length);
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            writeBytes(bytes, offset, length);
+        }
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
         if (eof) {
             throw new EOFException();
         }
+        checkReleased();
         while (length > 0) {
-            if (chunkOffset >= chunk.length) {
-                flush();
+            if (chunkOffset >= chunkSize) {
+                writeChunk(chunk, 0, chunkOffset, true);
             }
-            int size = Math.min(length, chunk.length - chunkOffset);
+            if (chunkOffset == 0 && length >= chunkSize) {
+                // the chunk buffer is empty and the remaining bytes fill at least one complete chunk, so we write the
+                // chunks straight from the provided bytes (without copying them into the chunk buffer first)
+                while (length >= chunkSize) {
+                    int size = chunkSize;
+                    writeChunk(bytes, offset, size, true);
+                    offset += size;
+                    length -= size;
+                }
+                continue;
+            }
+            int size = Math.min(length, chunkSize - chunkOffset);
             System.arraycopy(bytes, offset, chunk, chunkOffset, size);
             offset += size;
             chunkOffset += size;
@@ -74,29 +284,476 @@ public final class ChunkOutputStream extends FilterOutputStream {
         }
     }
 
+    /**
+     * Write the pending bytes and the end of the stream body, and flush the underlying output stream (regardless of
+     * the flush policy).
+     */
     public void writeEOF() throws IOException {
-        if (eof) {
-            throw new EOFException();
+        writeEOF(null);
+    }
+
+    /**
+     * Write the pending bytes and the end of the stream body (or channel) followed by the provided trailer (f.e. the
+     * status of a channel, so no chunks of other channels get in between), and flush the underlying output stream
+     * (regardless of the flush policy).
+     *
+     * @param trailer the trailer (null for none)
+     */
+    public void writeEOF(byte[] trailer) throws IOException {
+        lock.lock();
+        try {
+            if (eof) {
+                throw new EOFException();
+            }
+            checkFlushError();
+            cancelScheduledFlush();
+            if (chunkOffset > 0) {
+                writeChunk(chunk, 0, chunkOffset, false);
+            }
+            lockFrames();
+            try {
+                writeHeader(0, 0, 0, null, 0);
+                if (trailer != null) {
+                    out.write(trailer);
+                }
+                eof = true;
+                flushOutput();
+            } finally {
+                unlockFrames();
+            }
+        } finally {
+            lock.unlock();
         }
-        flush();
-        writeShort(0);
-        eof = true;
-        out.flush();
     }
 
+    /**
+     * Flush the pending bytes, if the flush policy agrees. Otherwise, the pending bytes stay pending (and are flushed
+     * later, by a later flush, by a timer, or at the end of the stream body).
+     */
     @Override
     public void flush() throws IOException {
-        if (!eof && chunkOffset > 0) {
-            writeShort(chunkOffset);
-            out.write(chunk, 0, chunkOffset);
+        if (locked) {
+            lock.lock();
+            try {
+                flushPending();
+            } finally {
+                lock.unlock();
+            }
+        } else {
+            flushPending();
+        }
+    }
+
+    private void flushPending() throws IOException {
+        if (eof) {
+            out.flush();
+            return;
+        }
+        checkFlushError();
+        if (flushPolicy.isFlushNeeded(pendingBytes + chunkOffset, System.nanoTime() - flushTime)) {
+            if (chunkOffset > 0) {
+                writeChunk(chunk, 0, chunkOffset, false);
+            }
+            flushOutput();
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Flush the underlying output stream.
+     */
+    private void flushOutput() throws IOException {
+        lockFrames();
+        try {
+            out.flush();
+        } finally {
+            unlockFrames();
+        }
+        pendingBytes = 0;
+        flushTime = System.nanoTime();
+    }
+
+    /**
+     * Schedule a flush of the pending bytes after the maximum flush delay of the flush policy (if the flush policy has
+     * one, and if no flush is scheduled yet).
+     */
+    private void scheduleFlush() {
+        if (maxFlushDelay > 0 && scheduledFlush == null) {
+            long delay = Math.max(0, flushTime + maxFlushDelay - System.nanoTime());
+            scheduledFlush = BackgroundThreads.schedule(new Runnable() {
+                public void run() {
+                    flushScheduled();
+                }
+            }, delay);
+        }
+    }
+
+    private void flushScheduled() {
+        lock.lock();
+        try {
+            scheduledFlush = null;
+            if (eof || chunk == null || flushError != null || pendingBytes + chunkOffset == 0) {
+                return;
+            }
+            try {
+                if (chunkOffset > 0) {
+                    writeChunk(chunk, 0, chunkOffset, false);
+                }
+                flushOutput();
+            } catch (IOException e) {
+                // reported to the producer on its next write
+                flushError = e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    private void checkFlushError() throws IOException {
+        if (flushError != null) {
+            IOException exception = new IOException("error while flushing in the background");
+            exception.initCause(flushError);
+            throw exception;
+        }
+    }
+
+    /**
+     * Write a chunk to the underlying output stream, and let the chunk size policy decide the size of the next chunks.
+     * Full chunks are flushed to the underlying output stream when the flush policy agrees (flushed chunks are flushed
+     * by the caller).
+     * When writing from the chunk buffer, the chunk buffer is emptied.
+     *
+     * @param bytes  the bytes
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     * @param full   true if the chunk is written because it is full, false if it is flushed
+     */
+    private void writeChunk(byte[] bytes, int offset, int length, boolean full) throws IOException {
+        if (credits != null && !credits.tryAcquire(channel)) {
+            // out of credits, make sure the reader has everything written so far before waiting
+            flushOutput();
+            credits.acquire(channel);
+        }
+        long time = System.nanoTime();
+        int size = compressorPool != null && length >= MIN_COMPRESSED_SIZE ? compress(bytes, offset, length) : -1;
+        lockFrames();
+        try {
+            if (size != -1) {
+                writeHeader(ChunkFlags.COMPRESSED, size, length, compressed, 0);
+                out.write(compressed, 0, size);
+            } else {
+                writeHeader(0, length, 0, bytes, offset);
+                out.write(bytes, offset, length);
+            }
+        } finally {
+            unlockFrames();
+        }
+        if (size != -1) {
+            statistics.chunkCompressed(length, size);
+        }
+        streamOffset += length;
+        pendingBytes += size != -1 ? size : length;
+        if (full) {
+            if (flushPolicy.isFlushNeeded(pendingBytes, time - flushTime)) {
+                flushOutput();
+            } else {
+                scheduleFlush();
+            }
+        }
+        if (bytes == chunk) {
             chunkOffset = 0;
         }
-        out.flush();
+        long now = System.nanoTime();
+        statistics.chunkWritten(length, now - time);
+        chunkSizePolicy.chunkWritten(length, full, now - time, now - chunkTime);
+        chunkTime = now;
+
+        // resize the chunk buffer (the chunk buffer is empty at this point)
+        int newChunkSize = getPolicyChunkSize();
+        if (newChunkSize != chunkSize) {
+            if (newChunkSize > chunk.length) {
+                free(chunk);
+                chunk = allocate(newChunkSize);
+            }
+            chunkSize = newChunkSize;
+            statistics.chunkSizeChanged(newChunkSize);
+        }
+    }
+
+    /**
+     * Compress a chunk into the compression buffer.
+     *
+     * @param bytes  the bytes
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     * @return the compressed size, or -1 if the chunk doesn't shrink
+     */
+    private int compress(byte[] bytes, int offset, int length) {
+        if (deflater == null) {
+            deflater = compressorPool.borrowDeflater();
+        }
+        if (compressed == null || compressed.length < length) {
+            if (compressed != null) {
+                free(compressed);
+            }
+            compressed = allocate(length);
+        }
+        deflater.reset();
+        if (dictionary != null) {
+            dictionary.applyTo(deflater);
+        }
+        deflater.setInput(bytes, offset, length);
+        deflater.finish();
+        int size = deflater.deflate(compressed, 0, length);
+        return deflater.finished() && size < length ? size : -1;
+    }
+
+    /**
+     * Release the chunk buffer (returning it to the buffer pool) and the compressor (returning it to the compressor
+     * pool). After releasing, writing to this stream is no longer
+     * possible (pending bytes that were not flushed are lost).
+     */
+    public void release() {
+        lock.lock();
+        try {
+            cancelScheduledFlush();
+            if (chunk != null) {
+                free(chunk);
+                chunk = null;
+                chunkSize = 0;
+                chunkOffset = 0;
+            }
+            if (compressed != null) {
+                free(compressed);
+                compressed = null;
+            }
+            if (deflater != null) {
+                compressorPool.release(deflater);
+                deflater = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lockFrames() {
+        if (frameLock != null) {
+            frameLock.lock();
+        }
+    }
+
+    private void unlockFrames() {
+        if (frameLock != null) {
+            frameLock.unlock();
+        }
+    }
+
+    private void checkReleased() throws IOException {
+        if (chunk == null) {
+            throw new IOException("chunk output stream is released");
+        }
+        checkFlushError();
+    }
+
+    private byte[] allocate(int size) {
+        return bufferPool != null ? bufferPool.borrow(size) : new byte[size];
+    }
+
+    private void free(byte[] buffer) {
+        if (bufferPool != null) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private int getPolicyChunkSize() {
+        return Math.max(1, Math.min(chunkSizePolicy.getChunkSize(), maxChunkSize));
+    }
+
+    /**
+     * Write a chunk header (with the channel of the chunk, if the protocol is multiplexed, the stream offset of the
+     * chunk, if the protocol is resumable, and the checksum of the chunk, if the protocol uses checksums).
+     *
+     * @param flags            the flags (version 2 only)
+     * @param size             the chunk size
+     * @param uncompressedSize the uncompressed size (for compressed chunks only)
+     * @param bytes            the bytes of the chunk (null for the eof chunk)
+     * @param offset           the offset of the chunk
+     */
+    private void writeHeader(int flags, int size, int uncompressedSize, byte[] bytes, int offset) throws IOException {
+        int n = 0;
+        if (version == StreamProtocol.VERSION_1) {
+            header[n++] = (byte) (size >>> 8);
+            header[n++] = (byte) size;
+        } else {
+            if (checksum != null && size != 0) {
+                flags |= ChunkFlags.CHECKSUM;
+            }
+            if (offsets && size != 0) {
+                flags |= ChunkFlags.OFFSET;
+            }
+            if (channel != 0) {
+                flags |= ChunkFlags.CHANNEL;
+            }
+            header[n++] = (byte) flags;
+            n = writeVarLong(size, n);
+            if ((flags & ChunkFlags.COMPRESSED) != 0) {
+                n = writeVarLong(uncompressedSize, n);
+            }
+            if ((flags & ChunkFlags.CHANNEL) != 0) {
+                n = writeVarLong(channel, n);
+            }
+            if ((flags & ChunkFlags.OFFSET) != 0) {
+                n = writeVarLong(streamOffset, n);
+            }
+            if ((flags & ChunkFlags.CHECKSUM) != 0) {
+                checksum.reset();
+                checksum.update(bytes, offset, size);
+                int crc = (int) checksum.getValue();
+                header[n++] = (byte) (crc >>> 24);
+                header[n++] = (byte) (crc >>> 16);
+                header[n++] = (byte) (crc >>> 8);
+                header[n++] = (byte) crc;
+                digest.updateInt(crc);
+                digest.updateInt(size);
+            }
+        }
+        out.write(header, 0, n);
+    }
+
+    /**
+     * Write a variable length number into the header.
+     *
+     * @param value  the number
+     * @param offset the offset in the header
+     * @return the offset after the number
+     */
+    private int writeVarLong(long value, int offset) {
+        while ((value & ~0x7FL) != 0) {
+            header[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        header[offset++] = (byte) value;
+        return offset;
     }
 
-    private void writeShort(int v) throws IOException {
-        out.write((v >>> 8) & 0xFF);
-        out.write(v & 0xFF);
+    /**
+     * Create a builder for a chunk output stream for the provided protocol.
+     *
+     * @param outputStream the output stream
+     * @param protocol     the protocol
+     * @return the builder
+     */
+    public static Builder builder(OutputStream outputStream, StreamProtocol protocol) {
+        return new Builder(outputStream, protocol);
+    }
+
+    /**
+     * A builder for a chunk output stream. When the protocol compresses chunks, the compressor is borrowed from the
+     * shared compressor pool, and must be returned to the pool by calling {@link ChunkOutputStream#release()}.
+     */
+    public static final class Builder {
+
+        private final OutputStream outputStream;
+        private final StreamProtocol protocol;
+        private ChunkSizePolicy chunkSizePolicy;
+        private FlushPolicy flushPolicy = new ExplicitFlushPolicy();
+        private BufferPool bufferPool = null;
+        private int channel = 0;
+        private Lock frameLock = null;
+        private CreditWindow credits = null;
+
+        private Builder(OutputStream outputStream, StreamProtocol protocol) {
+            this.outputStream = outputStream;
+            this.protocol = protocol;
+            this.chunkSizePolicy = new FixedChunkSizePolicy(protocol.getMaxChunkSize());
+        }
+
+        /**
+         * Set the chunk size policy.
+         *
+         * @param chunkSizePolicy the chunk size policy (default a {@link FixedChunkSizePolicy} with the maximum chunk
+         *                        size of the protocol)
+         * @return this builder
+         */
+        public Builder withChunkSizePolicy(ChunkSizePolicy chunkSizePolicy) {
+            this.chunkSizePolicy = chunkSizePolicy;
+            return this;
+        }
+
+        /**
+         * Set the flush policy, deciding when the underlying output stream is flushed.
+         *
+         * @param flushPolicy the flush policy (default {@link ExplicitFlushPolicy})
+         * @return this builder
+         */
+        public Builder withFlushPolicy(FlushPolicy flushPolicy) {
+            this.flushPolicy = flushPolicy;
+            return this;
+        }
+
+        /**
+         * Set the buffer pool to borrow the chunk buffer from. The chunk buffer must be returned to the pool by
+         * calling {@link ChunkOutputStream#release()}.
+         *
+         * @param bufferPool the buffer pool, or null to allocate the chunk buffer (default)
+         * @return this builder
+         */
+        public Builder withBufferPool(BufferPool bufferPool) {
+            this.bufferPool = bufferPool;
+            return this;
+        }
+
+        /**
+         * Set the channel of a multiplexed stream body. The chunk output streams of all channels write to the same
+         * output stream, under the same frame lock.
+         *
+         * @param channel   the channel (0 for the main channel, default)
+         * @param frameLock the frame lock, shared by all channels (null if the stream body is not multiplexed)
+         * @return this builder
+         */
+        public Builder withChannel(int channel, Lock frameLock) {
+            if (channel < 0 || (channel != 0 && !protocol.isMultiplexed())) {
+                throw new IllegalArgumentException("invalid channel for protocol " + protocol + ": " + channel);
+            }
+            this.channel = channel;
+            this.frameLock = frameLock;
+            return this;
+        }
+
+        /**
+         * Set the credits for flow control: every chunk costs a credit of the channel, and writing waits when the
+         * channel is out of credits (after flushing the chunks written so far, so the reader can consume them). The
+         * end of the stream body (or channel) doesn't cost a credit.
+         *
+         * @param credits the credits, shared by all channels, or null for no flow control (default)
+         * @return this builder
+         * @see CreditWindow
+         */
+        public Builder withCredits(CreditWindow credits) {
+            if (credits != null && protocol.getCredits() == 0) {
+                throw new IllegalArgumentException("protocol doesn't use flow control: " + protocol);
+            }
+            this.credits = credits;
+            return this;
+        }
+
+        /**
+         * Build the chunk output stream.
+         *
+         * @return the chunk output stream
+         */
+        public ChunkOutputStream build() {
+            return new ChunkOutputStream(this);
+        }
+
     }
 
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+/**
+ * A policy that decides the size of the chunks written by a chunk output stream. A chunk size policy can keep state,
+ * so every chunk output stream needs its own instance.
+ *
+ * @author agent
+ * @see ChunkOutputStream
+ * @see FixedChunkSizePolicy
+ * @see AdaptiveChunkSizePolicy
+ * @since 2026-10-17
+ */
+public interface ChunkSizePolicy {
+
+    /**
+     * Get the size for the next chunks. The chunk output stream will never write chunks larger than the maximum chunk
+     * size of its protocol.
+     *
+     * @return the chunk size (in bytes)
+     */
+    int getChunkSize();
+
+    /**
+     * Notify the policy that a chunk has been written.
+     *
+     * @param size        the size of the chunk (in bytes)
+     * @param full        true if the chunk was written because it was full, false if it was flushed
+     * @param writeTime   the time spent writing the chunk to the underlying output stream (in nanoseconds)
+     * @param elapsedTime the time since the previous chunk was written (in nanoseconds, including the write time)
+     */
+    void chunkWritten(int size, boolean full, long writeTime, long elapsedTime);
+
+}
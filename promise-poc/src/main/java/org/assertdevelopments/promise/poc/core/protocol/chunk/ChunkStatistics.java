@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+/**
+ * Statistics about the chunks written by a chunk output stream (number of chunks, bytes, time spent writing, the
+ * chunk sizes chosen by the chunk size policy, and the effect of compression).
+ *
+ * @author agent
+ * @see ChunkOutputStream
+ * @see ChunkSizePolicy
+ * @since 2026-10-17
+ */
+public final class ChunkStatistics {
+
+    private long chunks;
+    private long bytes;
+    private long writeTime;
+    private int chunkSize;
+    private int minChunkSize;
+    private int maxChunkSize;
+    private int chunkSizeChanges;
+    private long compressedChunks;
+    private long compressedBytes;
+    private long savedBytes;
+
+    ChunkStatistics(int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.minChunkSize = chunkSize;
+        this.maxChunkSize = chunkSize;
+    }
+
+    void chunkWritten(int size, long time) {
+        chunks++;
+        bytes += size;
+        writeTime += time;
+    }
+
+    void chunkCompressed(int size, int compressedSize) {
+        compressedChunks++;
+        compressedBytes += compressedSize;
+        savedBytes += size - compressedSize;
+    }
+
+    void chunkSizeChanged(int size) {
+        chunkSize = size;
+        minChunkSize = Math.min(minChunkSize, size);
+        maxChunkSize = Math.max(maxChunkSize, size);
+        chunkSizeChanges++;
+    }
+
+    /**
+     * Get the number of chunks written (not including the eof chunk).
+     *
+     * @return the number of chunks
+     */
+    public long getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Get the number of bytes written (before compression, not including the chunk headers).
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the time spent writing chunks to the underlying output stream.
+     *
+     * @return the write time (in nanoseconds)
+     */
+    public long getWriteTime() {
+        return writeTime;
+    }
+
+    /**
+     * Get the current chunk size.
+     *
+     * @return the chunk size (in bytes)
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Get the smallest chunk size chosen.
+     *
+     * @return the chunk size (in bytes)
+     */
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    /**
+     * Get the largest chunk size chosen.
+     *
+     * @return the chunk size (in bytes)
+     */
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    /**
+     * Get the number of times the chunk size has changed.
+     *
+     * @return the number of chunk size changes
+     */
+    public int getChunkSizeChanges() {
+        return chunkSizeChanges;
+    }
+
+    /**
+     * Get the number of chunks that were written compressed.
+     *
+     * @return the number of compressed chunks
+     */
+    public long getCompressedChunks() {
+        return compressedChunks;
+    }
+
+    /**
+     * Get the number of bytes written for the compressed chunks (after compression, not including the chunk headers).
+     *
+     * @return the number of compressed bytes
+     */
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    /**
+     * Get the number of bytes saved by compressing chunks.
+     *
+     * @return the number of saved bytes
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkStatistics{" +
+                "chunks=" + chunks +
+                ", bytes=" + bytes +
+                ", writeTime=" + (writeTime / 1000000) + "ms" +
+                ", chunkSize=" + chunkSize +
+                ", minChunkSize=" + minChunkSize +
+                ", maxChunkSize=" + maxChunkSize +
+                ", chunkSizeChanges=" + chunkSizeChanges +
+                ", compressedChunks=" + compressedChunks +
+                ", savedBytes=" + savedBytes +
+                '}';
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+/**
+ * A flush policy for throughput (bulk transfers): flushes are coalesced until a minimum number of bytes is pending.
+ * Smaller flushes are ignored, the pending bytes are sent with a later flush, or at the end of the stream.
+ *
+ * @author agent
+ * @see FlushPolicy
+ * @since 2026-10-17
+ */
+public final class CoalescingFlushPolicy implements FlushPolicy {
+
+    private final long minPendingBytes;
+
+    /**
+     * Create a coalescing flush policy.
+     *
+     * @param minPendingBytes the minimum number of pending bytes for a flush
+     */
+    public CoalescingFlushPolicy(long minPendingBytes) {
+        if (minPendingBytes <= 0) {
+            throw new IllegalArgumentException("invalid minimum number of pending bytes: " + minPendingBytes);
+        }
+        this.minPendingBytes = minPendingBytes;
+    }
+
+    public boolean isFlushNeeded(long pendingBytes, long elapsedTime) {
+        return pendingBytes >= minPendingBytes;
+    }
+
+    public long getMaxFlushDelay() {
+        return 0;
+    }
+
+}
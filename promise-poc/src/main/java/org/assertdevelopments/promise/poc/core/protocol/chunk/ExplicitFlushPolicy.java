@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+/**
+ * A flush policy that flushes whenever the producer flushes, and after every full chunk (the chunk output stream
+ * behaviour before flush policies were introduced).
+ *
+ * @author agent
+ * @see FlushPolicy
+ * @since 2026-10-17
+ */
+public final class ExplicitFlushPolicy implements FlushPolicy {
+
+    public boolean isFlushNeeded(long pendingBytes, long elapsedTime) {
+        return true;
+    }
+
+    public long getMaxFlushDelay() {
+        return 0;
+    }
+
+}
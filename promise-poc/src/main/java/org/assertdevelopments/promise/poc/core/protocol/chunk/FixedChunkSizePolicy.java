@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+/**
+ * A chunk size policy that always uses the same chunk size.
+ *
+ * @author agent
+ * @see ChunkSizePolicy
+ * @since 2026-10-17
+ */
+public final class FixedChunkSizePolicy implements ChunkSizePolicy {
+
+    private final int chunkSize;
+
+    public FixedChunkSizePolicy(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void chunkWritten(int size, boolean full, long writeTime, long elapsedTime) {
+        // do nothing
+    }
+
+}
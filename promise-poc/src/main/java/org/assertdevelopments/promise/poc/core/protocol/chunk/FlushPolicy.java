@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+/**
+ * A policy that decides when a chunk output stream flushes its underlying output stream. Flushing pushes the pending
+ * bytes to the consumer (through the servlet container or the network) immediately, which is good for latency, but
+ * costs throughput when done too often. Unlike a chunk size policy, a flush policy has no state, so it can be shared
+ * between chunk output streams.
+ *
+ * @author agent
+ * @see ChunkOutputStream
+ * @see ExplicitFlushPolicy
+ * @see CoalescingFlushPolicy
+ * @see LatencyFlushPolicy
+ * @since 2026-10-17
+ */
+public interface FlushPolicy {
+
+    /**
+     * Decide whether the underlying output stream must be flushed now. This is asked when the producer flushes the
+     * chunk output stream, and after every chunk that was written because it was full. When the answer is no, the
+     * pending bytes stay pending until a later flush (or until the maximum flush delay has passed).
+     *
+     * @param pendingBytes the number of bytes written since the underlying output stream was last flushed (including
+     *                     the bytes in the chunk buffer)
+     * @param elapsedTime  the time since the underlying output stream was last flushed (in nanoseconds)
+     * @return true to flush now
+     */
+    boolean isFlushNeeded(long pendingBytes, long elapsedTime);
+
+    /**
+     * Get the maximum time that pending bytes can stay pending. When a flush is postponed, a timer flushes the pending
+     * bytes after this time (even when the producer is not writing anymore).
+     *
+     * @return the maximum flush delay (in nanoseconds), or 0 when pending bytes can stay pending until a later flush
+     */
+    long getMaxFlushDelay();
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A flush policy for latency (live feeds): flushes at most once per flush interval. Flushes within the interval are
+ * postponed, and a timer flushes the pending bytes at the end of the interval, so pending bytes never wait longer than
+ * the flush interval (even when the producer has nothing more to write).
+ *
+ * @author agent
+ * @see FlushPolicy
+ * @since 2026-10-17
+ */
+public final class LatencyFlushPolicy implements FlushPolicy {
+
+    private final long flushInterval;
+
+    /**
+     * Create a latency flush policy.
+     *
+     * @param flushInterval the flush interval (in milliseconds)
+     */
+    public LatencyFlushPolicy(long flushInterval) {
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("invalid flush interval: " + flushInterval);
+        }
+        this.flushInterval = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+    }
+
+    public boolean isFlushNeeded(long pendingBytes, long elapsedTime) {
+        return elapsedTime >= flushInterval;
+    }
+
+    public long getMaxFlushDelay() {
+        return flushInterval;
+    }
+
+}
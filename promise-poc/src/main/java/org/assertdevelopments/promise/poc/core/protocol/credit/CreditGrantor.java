@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.credit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The credits granted by the reader of a stream body with flow control. The reader reports every chunk it consumes,
+ * and grants the consumed credits back to the writer in batches of half the credit window (so the writer can keep
+ * writing while the grant is on its way, without a grant per chunk).
+ * <p/>
+ * Once granting fails (f.e. because the writer finished and went away), no more credits are granted: a writer that is
+ * still waiting for credits notices the failure itself.
+ * <p/>
+ * When the credit stream carries the grants of several stream bodies one after the other (f.e. on a connection that
+ * is reused), the reader ends the grants of every stream body (see {@link #end}), and the writer skips
+ * the grants it didn't need (see {@link CreditWindow#skip}).
+ *
+ * @author agent
+ * @see CreditWindow
+ * @since 2026-10-17
+ */
+public final class CreditGrantor {
+
+    private final OutputStream creditOutputStream;
+    private final int batchSize;
+    private final Map<Integer, Integer> consumed = new HashMap<Integer, Integer>();
+    private final byte[] grant = new byte[10];
+
+    private boolean failed = false;
+
+    /**
+     * Create a credit grantor.
+     *
+     * @param creditOutputStream the output stream for granting credits to the writer
+     * @param window             the credit window of the writer
+     */
+    public CreditGrantor(OutputStream creditOutputStream, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("invalid credit window: " + window);
+        }
+        this.creditOutputStream = creditOutputStream;
+        this.batchSize = (window + 1) / 2;
+    }
+
+    /**
+     * Report that a chunk of a channel was consumed (removed from the buffers of the reader), and grant the consumed
+     * credits of the channel if there are enough of them.
+     *
+     * @param channel the channel
+     */
+    public synchronized void consumed(int channel) {
+        Integer count = consumed.get(channel);
+        int credits = count != null ? count + 1 : 1;
+        if (credits < batchSize) {
+            consumed.put(channel, credits);
+            return;
+        }
+        consumed.remove(channel);
+        if (failed) {
+            return;
+        }
+        int length = writeVarInt(credits, writeVarInt(channel, 0));
+        try {
+            creditOutputStream.write(grant, 0, length);
+            creditOutputStream.flush();
+        } catch (IOException e) {
+            failed = true;
+        }
+    }
+
+    /**
+     * End the grants of a stream body, after the stream body was read completely: a grant of 0 credits for the main
+     * channel (which is never granted otherwise).
+     *
+     * @param creditOutputStream the output stream for granting credits to the writer
+     */
+    public static void end(OutputStream creditOutputStream) throws IOException {
+        creditOutputStream.write(new byte[]{0, 0});
+        creditOutputStream.flush();
+    }
+
+    private int writeVarInt(int value, int offset) {
+        while ((value & ~0x7F) != 0) {
+            grant[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        grant[offset++] = (byte) value;
+        return offset;
+    }
+
+}
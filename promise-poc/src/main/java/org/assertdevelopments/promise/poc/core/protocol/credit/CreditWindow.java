@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.credit;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The credits of the writer of a stream body with flow control. Every chunk (of every channel) costs a credit, and the
+ * writer of a channel waits when the credits of its channel run out, until the reader grants new credits. Initially,
+ * every channel has the credits of the credit window.
+ * <p/>
+ * The credits are granted on a separate (credit) input stream, from the reader back to the writer. There's no
+ * background thread: a writer that is out of credits reads the grants itself (while the other writers wait for it).
+ *
+ * @author agent
+ * @see CreditGrantor
+ * @since 2026-10-17
+ */
+public final class CreditWindow {
+
+    private final InputStream creditInputStream;
+    private final int window;
+    private final Map<Integer, Integer> credits = new HashMap<Integer, Integer>();
+
+    private boolean reading = false;
+    private IOException error;
+    private long stalls = 0;
+
+    /**
+     * Create a credit window.
+     *
+     * @param creditInputStream the input stream with the credits granted by the reader
+     * @param window            the initial credits of every channel
+     */
+    public CreditWindow(InputStream creditInputStream, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("invalid credit window: " + window);
+        }
+        this.creditInputStream = creditInputStream;
+        this.window = window;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Get the number of times a writer had to wait for credits.
+     *
+     * @return the number of stalls
+     */
+    public synchronized long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Get the credits left for a channel.
+     *
+     * @param channel the channel
+     * @return the credits
+     */
+    public synchronized int getCredits(int channel) {
+        Integer available = credits.get(channel);
+        return available != null ? available : window;
+    }
+
+    /**
+     * Take a credit for a chunk of a channel, if there's one left.
+     *
+     * @param channel the channel
+     * @return true if a credit was taken, false if the channel is out of credits
+     */
+    public synchronized boolean tryAcquire(int channel) {
+        int available = getCredits(channel);
+        if (available == 0) {
+            return false;
+        }
+        credits.put(channel, available - 1);
+        return true;
+    }
+
+    /**
+     * Take a credit for a chunk of a channel, waiting for the reader to grant new credits if the channel is out of
+     * credits.
+     *
+     * @param channel the channel
+     * @throws IOException if the credits can't be read (f.e. because the reader went away)
+     */
+    public void acquire(int channel) throws IOException {
+        boolean stalled = false;
+        while (true) {
+            synchronized (this) {
+                if (tryAcquire(channel)) {
+                    return;
+                }
+                if (!stalled) {
+                    stalled = true;
+                    stalls++;
+                }
+                checkError();
+                if (reading) {
+                    // another writer is reading the grants
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("interrupted while waiting for credits");
+                    }
+                    continue;
+                }
+                reading = true;
+            }
+            readGrant();
+        }
+    }
+
+    /**
+     * Read the next grant (a variable length channel, followed by a variable length number of credits).
+     */
+    private void readGrant() throws IOException {
+        int channel;
+        int granted;
+        try {
+            channel = readVarInt();
+            granted = readVarInt();
+        } catch (IOException e) {
+            synchronized (this) {
+                error = e;
+                reading = false;
+                notifyAll();
+            }
+            throw e;
+        }
+        if (granted == 0) {
+            IOException e = new IOException("credits ended before the end of the stream body");
+            synchronized (this) {
+                error = e;
+                reading = false;
+                notifyAll();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            credits.put(channel, getCredits(channel) + granted);
+            reading = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Skip the remaining grants of a stream body (the grants the writer didn't need), up to the end of the grants, so
+     * the credit stream is ready for the grants of the next stream body.
+     *
+     * @param creditInputStream the input stream with the credits granted by the reader
+     * @throws IOException if the credits can't be read (f.e. because the reader went away)
+     * @see CreditGrantor#end
+     */
+    public static void skip(InputStream creditInputStream) throws IOException {
+        CreditWindow window = new CreditWindow(creditInputStream, 1);
+        while (true) {
+            int channel = window.readVarInt();
+            if (window.readVarInt() == 0 && channel == 0) {
+                return;
+            }
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            IOException exception = new IOException("error while reading credits");
+            exception.initCause(error);
+            throw exception;
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = creditInputStream.read();
+            if (b == -1) {
+                throw new EOFException("credit stream closed");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed credit grant");
+    }
+
+}
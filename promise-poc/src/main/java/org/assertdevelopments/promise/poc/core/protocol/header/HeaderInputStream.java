@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.header;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream for reading the request and response headers of a stream exchange from an input stream.
+ *
+ * @author agent
+ * @see HeaderOutputStream
+ * @since 2026-10-17
+ */
+public final class HeaderInputStream extends DataInputStream {
+
+    public HeaderInputStream(InputStream inputStream) {
+        super(inputStream);
+    }
+
+    /**
+     * Read the next request header. A connection can carry any number of exchanges, one after the other, so the end
+     * of the input stream before a request header is the end of the connection (not an error).
+     *
+     * @return the request header, or null at the end of the input stream
+     */
+    public StreamRequestHeader readRequestHeader() throws IOException {
+        int magic;
+        try {
+            magic = readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (magic != HeaderOutputStream.MAGIC) {
+            throw new IOException("invalid request header, not a stream request (magic " +
+                    Integer.toHexString(magic) + ")");
+        }
+        String method = readUTF();
+        String uri = readUTF();
+        String contentType = readString();
+        String accept = readString();
+        return new StreamRequestHeader(method, uri, contentType, accept);
+    }
+
+    public StreamResponseHeader readResponseHeader() throws IOException {
+        int statusCode = readUnsignedShort();
+        String contentType = readString();
+        String message = readString();
+        return new StreamResponseHeader(statusCode, contentType, message);
+    }
+
+    private String readString() throws IOException {
+        String value = readUTF();
+        return value.length() > 0 ? value : null;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.header;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream for writing the request and response headers of a stream exchange to an output stream. A request
+ * header starts with a magic number, so a server can tell a stream request from anything else arriving on its port.
+ *
+ * @author agent
+ * @see HeaderInputStream
+ * @since 2026-10-17
+ */
+public final class HeaderOutputStream extends DataOutputStream {
+
+    /**
+     * The magic number of a request header ("PRMS").
+     */
+    static final int MAGIC = 0x50524d53;
+
+    public HeaderOutputStream(OutputStream outputStream) {
+        super(outputStream);
+    }
+
+    public void writeRequestHeader(StreamRequestHeader header) throws IOException {
+        writeInt(MAGIC);
+        writeUTF(header.getMethod());
+        writeUTF(header.getUri());
+        writeString(header.getContentType());
+        writeString(header.getAccept());
+    }
+
+    public void writeResponseHeader(StreamResponseHeader header) throws IOException {
+        writeShort(header.getStatusCode());
+        writeString(header.getContentType());
+        writeString(header.getMessage());
+    }
+
+    private void writeString(String value) throws IOException {
+        writeUTF(value != null ? value : "");
+    }
+
+}
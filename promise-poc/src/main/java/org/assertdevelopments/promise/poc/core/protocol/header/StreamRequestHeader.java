@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.header;
+
+/**
+ * The header of a stream request, for transports without http headers: the request method and uri, the protocol of
+ * the request body and the protocols accepted for the response body.
+ *
+ * @author agent
+ * @see HeaderInputStream
+ * @see HeaderOutputStream
+ * @since 2026-10-17
+ */
+public final class StreamRequestHeader {
+
+    private final String method;
+    private final String uri;
+    private final String contentType;
+    private final String accept;
+
+    /**
+     * Create a request header.
+     *
+     * @param method      the request method
+     * @param uri         the request uri (the path, without scheme and authority)
+     * @param contentType the content type of the request body
+     * @param accept      the content types accepted for the response body (like the http accept header)
+     */
+    public StreamRequestHeader(String method, String uri, String contentType, String accept) {
+        this.method = method;
+        this.uri = uri;
+        this.contentType = contentType;
+        this.accept = accept;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getAccept() {
+        return accept;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + uri;
+    }
+
+}
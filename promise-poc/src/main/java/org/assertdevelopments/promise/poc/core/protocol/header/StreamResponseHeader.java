@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.header;
+
+/**
+ * The header of a stream response, for transports without http headers: a status code (the http status codes, so the
+ * transports read the same), and the content type of the response body (if accepted) or an error message (if not).
+ *
+ * @author agent
+ * @see HeaderInputStream
+ * @see HeaderOutputStream
+ * @since 2026-10-17
+ */
+public final class StreamResponseHeader {
+
+    /**
+     * The request is accepted, the response body follows.
+     */
+    public static final int STATUS_ACCEPTED = 202;
+
+    /**
+     * The request header is invalid.
+     */
+    public static final int STATUS_BAD_REQUEST = 400;
+
+    /**
+     * There is no handler for the request uri.
+     */
+    public static final int STATUS_NOT_FOUND = 404;
+
+    /**
+     * The content type of the request body is not supported.
+     */
+    public static final int STATUS_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    private final int statusCode;
+    private final String contentType;
+    private final String message;
+
+    /**
+     * Create a response header.
+     *
+     * @param statusCode  the status code
+     * @param contentType the content type of the response body (null if the request is not accepted)
+     * @param message     the error message (null if the request is accepted)
+     */
+    public StreamResponseHeader(int statusCode, String contentType, String message) {
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.message = message;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isAccepted() {
+        return statusCode == STATUS_ACCEPTED;
+    }
+
+    @Override
+    public String toString() {
+        return statusCode + " " + (isAccepted() ? contentType : message);
+    }
+
+}
@@ -30,14 +30,30 @@ import java.io.InputStream;
  */
 public final class StatusInputStream extends DataInputStream {
 
+    private final boolean digest;
+
     public StatusInputStream(InputStream inputStream) {
+        this(inputStream, false);
+    }
+
+    /**
+     * Create a status input stream.
+     *
+     * @param inputStream the input stream
+     * @param digest      true if the status contains the digest of the stream body (when checksums are used)
+     */
+    public StatusInputStream(InputStream inputStream, boolean digest) {
         super(inputStream);
+        this.digest = digest;
     }
 
     public StreamStatus readStatus() throws IOException {
         StreamStatus status = new StreamStatus();
         status.setStatusCode(readInt());
         status.setStatusMessage(readUTF());
+        if (digest) {
+            status.setDigest(readInt());
+        }
         return status;
     }
 
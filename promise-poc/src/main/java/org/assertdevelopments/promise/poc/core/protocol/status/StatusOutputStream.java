@@ -37,6 +37,9 @@ public final class StatusOutputStream extends DataOutputStream {
     public void writeStatus(StreamStatus status) throws IOException {
         writeInt(status.getStatusCode());
         writeUTF(status.getStatusMessage());
+        if (status.getDigest() != null) {
+            writeInt(status.getDigest());
+        }
     }
 
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.status;
+
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The stream status as http trailer fields (status code and url encoded status message), for protocols that send the
+ * status after the stream body in the trailer of the http response. The writer sets the status when the stream is
+ * finished, and the http container asks for the trailer fields when the response is completed.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class StatusTrailers implements Supplier<Map<String, String>> {
+
+    private static final String ENCODING = "UTF-8";
+
+    private volatile StreamStatus status;
+
+    /**
+     * Get the stream status.
+     *
+     * @return the status, or null if the stream is not finished yet
+     */
+    public StreamStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(StreamStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Get the trailer fields for the stream status.
+     *
+     * @return the trailer fields, or no fields if the stream is not finished (the reader then reports an incomplete
+     * stream)
+     */
+    public Map<String, String> get() {
+        StreamStatus status = this.status;
+        if (status == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> fields = new LinkedHashMap<String, String>();
+        fields.put(StreamConstants.STATUS_TRAILER, String.valueOf(status.getStatusCode()));
+        if (status.getStatusMessage() != null) {
+            try {
+                fields.put(StreamConstants.STATUS_MESSAGE_TRAILER, URLEncoder.encode(status.getStatusMessage(),
+                        ENCODING));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Read the stream status from the trailer fields of an http response (the names of the fields are not case
+     * sensitive).
+     *
+     * @param fields the trailer fields (null if the response had no trailer)
+     * @return the status
+     * @throws IOException if the trailer fields don't carry a (valid) stream status
+     */
+    public static StreamStatus readStatus(Map<String, String> fields) throws IOException {
+        String statusCode = null;
+        String statusMessage = null;
+        if (fields != null) {
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                if (StreamConstants.STATUS_TRAILER.equalsIgnoreCase(field.getKey())) {
+                    statusCode = field.getValue();
+                } else if (StreamConstants.STATUS_MESSAGE_TRAILER.equalsIgnoreCase(field.getKey())) {
+                    statusMessage = field.getValue();
+                }
+            }
+        }
+        if (statusCode == null) {
+            throw new IOException("incomplete read from stream, the stream status trailer is missing");
+        }
+        try {
+            return new StreamStatus(Integer.parseInt(statusCode.trim()),
+                    statusMessage != null ? URLDecoder.decode(statusMessage, ENCODING) : null);
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid stream status trailer: " + statusCode, e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("invalid stream status message trailer: " + statusMessage, e);
+        }
+    }
+
+}
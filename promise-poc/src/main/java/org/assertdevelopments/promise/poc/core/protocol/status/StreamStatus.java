@@ -17,7 +17,7 @@
 package org.assertdevelopments.promise.poc.core.protocol.status;
 
 /**
- * The stream status (status code and status message).
+ * The stream status (status code and status message, and the digest of the stream body when checksums are used).
  *
  * @author Stefan Bangels
  * @since 2015-02-26
@@ -29,6 +29,7 @@ public final class StreamStatus {
 
     private int statusCode;
     private String statusMessage;
+    private Integer digest;
 
     public StreamStatus() {
     }
@@ -54,11 +55,25 @@ public final class StreamStatus {
         this.statusMessage = statusMessage;
     }
 
+    /**
+     * Get the digest of the stream body (a CRC-32C over the checksums and sizes of all chunks).
+     *
+     * @return the digest, or null if the stream body has no digest
+     */
+    public Integer getDigest() {
+        return digest;
+    }
+
+    public void setDigest(Integer digest) {
+        this.digest = digest;
+    }
+
     @Override
     public String toString() {
         return "StreamStatus{" +
                 "statusCode=" + statusCode +
                 ", statusMessage='" + statusMessage + '\'' +
+                ", digest=" + digest +
                 '}';
     }
 
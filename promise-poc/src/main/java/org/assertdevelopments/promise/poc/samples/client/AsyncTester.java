@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.client.StreamClient;
+import org.assertdevelopments.promise.poc.client.StreamResponse;
+import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityInputStream;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads many asynchronous streams at the same time, more than the container has threads. The clients read slowly, so
+ * the streams are mostly idle (waiting for the client), without holding a container thread.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class AsyncTester {
+
+    private static final String URI = "/ws/async";
+
+    private static final int STREAMS = 1000;
+
+    private static Logger logger = Logger.getLogger(AsyncTester.class);
+
+    public static void main(String[] args) throws Exception {
+        long timer = System.currentTimeMillis();
+        final AtomicLong entities = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        // read the streams concurrently, each with its own client (and connection)
+        Thread[] readers = new Thread[STREAMS];
+        for (int n = 0; n < STREAMS; n++) {
+            readers[n] = new Thread() {
+                @Override
+                public void run() {
+                    StreamClient client = new StreamClient();
+                    try {
+                        StreamResponse response = client.sendRequest(Constants.BASE_URL + URI);
+                        try {
+                            GenericEntityInputStream in = new GenericEntityInputStream(response.getInputStream());
+                            long count = 0;
+                            while (in.readEntity() != null) {
+                                if (++count % 10000 == 0) {
+                                    // slow client
+                                    Thread.sleep(100);
+                                }
+                            }
+                            entities.addAndGet(count);
+                        } finally {
+                            response.close();
+                        }
+                    } catch (Exception e) {
+                        logger.error("error while reading stream", e);
+                        errors.incrementAndGet();
+                    } finally {
+                        client.close();
+                    }
+                }
+            };
+            readers[n].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        logger.info((System.currentTimeMillis() - timer) + "ms (" + STREAMS + " streams, " + entities + " items, " +
+                errors + " errors)");
+    }
+
+}
@@ -58,7 +58,7 @@ public final class EntityTester {
 
             // execute request
             int n = 0;
-            StreamResponse response = new StreamClient().sendRequest(Constants.BASE_URL + URI, request);
+            StreamResponse response = client.sendRequest(Constants.BASE_URL + URI, request);
             try {
                 GenericEntityInputStream in = new GenericEntityInputStream(response.getInputStream());
                 while (true) {
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.client.StreamClient;
+import org.assertdevelopments.promise.poc.client.StreamRequest;
+import org.assertdevelopments.promise.poc.client.StreamResponse;
+import org.assertdevelopments.promise.poc.client.StreamResponseHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
+
+/**
+ * Compares HTTP/1.1 and HTTP/2 for many concurrent short streams: over HTTP/1.1 every concurrent stream needs its own
+ * connection, over HTTP/2 the streams are multiplexed on a single connection. The server must have HTTP/2 enabled
+ * (f.e. <code>enable-http2="true"</code> on the undertow http listener of WildFly), otherwise the HTTP/2 client falls
+ * back to HTTP/1.1 and the test fails.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class Http2Tester {
+
+    private static final String URI = "/ws/short";
+
+    private static final int STREAMS = 1000;
+
+    private static final int RUNS = 5;
+
+    private static Logger logger = Logger.getLogger(Http2Tester.class);
+
+    public static void main(String[] args) throws Exception {
+        // a connection per concurrent stream
+        StreamClient http1Client = StreamClient.builder()
+                .withMaxConnectionsPerRoute(STREAMS)
+                .withMaxConnections(STREAMS)
+                .build();
+        // all streams on one connection
+        StreamClient http2Client = StreamClient.builder()
+                .withHttp2(true)
+                .build();
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                // the first run includes opening the connections
+                Set<String> versions = Collections.synchronizedSet(new TreeSet<String>());
+                logger.info("HTTP/1.1 run " + run + ": " + sendRequests(http1Client, versions) + "ms " + versions);
+                versions.clear();
+                logger.info("HTTP/2 run " + run + ": " + sendRequests(http2Client, versions) + "ms " + versions);
+                if (!versions.equals(Collections.singleton("HTTP/2"))) {
+                    throw new IllegalStateException("the HTTP/2 run used " + versions + ", is HTTP/2 enabled on the " +
+                            "server?");
+                }
+            }
+        } finally {
+            http1Client.close();
+            http2Client.close();
+        }
+    }
+
+    private static long sendRequests(StreamClient client, final Set<String> versions) throws Exception {
+        long timer = System.currentTimeMillis();
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int n = 0; n < STREAMS; n++) {
+            final byte[] bytes = ("short-stream-" + n).getBytes("UTF-8");
+            results.add(client.sendRequest(Constants.BASE_URL + URI, new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(bytes);
+                }
+            }, new StreamResponseHandler<Integer>() {
+                public Integer handleResponse(StreamResponse response) throws Exception {
+                    versions.add(response.getHttpVersion());
+                    InputStream in = response.getInputStream();
+                    int size = 0;
+                    while (in.read() != -1) {
+                        size++;
+                    }
+                    return size;
+                }
+            }));
+        }
+        int errors = 0;
+        for (Future<Integer> result : results) {
+            try {
+                result.get();
+            } catch (Exception e) {
+                logger.error("error while reading stream", e);
+                errors++;
+            }
+        }
+        if (errors > 0) {
+            logger.warn(errors + " of " + STREAMS + " streams failed");
+        }
+        return System.currentTimeMillis() - timer;
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.client.LoopbackStreamClient;
+import org.assertdevelopments.promise.poc.client.StreamRequest;
+import org.assertdevelopments.promise.poc.client.StreamResponse;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+import org.assertdevelopments.promise.poc.samples.server.BytesStreamServlet;
+import org.assertdevelopments.promise.poc.samples.server.ObjectsStreamServlet;
+import org.assertdevelopments.promise.poc.samples.server.ShortStreamServlet;
+import org.assertdevelopments.promise.poc.server.LoopbackStreamServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Benchmarks the layers of the promise protocol without a container or a network: the chunk layer in isolation
+ * (encoding into memory and decoding from memory, for several protocols), and the complete stack (serialization,
+ * chunk layer, dispatcher and stream handlers) over a loopback stream server in this process.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class LoopbackTester {
+
+    private static final int RUNS = 10;
+
+    private static final int BODY_SIZE = 64 * 1024 * 1024;
+
+    private static final int BLOCK_SIZE = 8192;
+
+    private static final int EXCHANGES = 10000;
+
+    private static final StreamProtocol[] PROTOCOLS = {
+            StreamProtocol.LEGACY,
+            StreamProtocol.DEFAULT,
+            StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C),
+            StreamProtocol.DEFAULT.withCompression(StreamProtocol.COMPRESSION_DEFLATE)
+    };
+
+    private static Logger logger = Logger.getLogger(LoopbackTester.class);
+
+    public static void main(String[] args) throws Exception {
+        // chunk layer
+        byte[] block = createBlock();
+        for (int run = 0; run < RUNS; run++) {
+            for (StreamProtocol protocol : PROTOCOLS) {
+                logger.info("chunk layer run " + run + " (" + protocol.getContentType() + "): " +
+                        measureChunkLayer(protocol, block));
+            }
+        }
+
+        // complete stack
+        LoopbackStreamServer server = new LoopbackStreamServer("samples")
+                .register("/ws/bytes", new BytesStreamServlet().getStreamHandler())
+                .register("/ws/objects", new ObjectsStreamServlet().getStreamHandler())
+                .register("/ws/short", new ShortStreamServlet().getStreamHandler());
+        server.start();
+        LoopbackStreamClient client = new LoopbackStreamClient();
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                logger.info("loopback run " + run + ": " + measureStack(client));
+            }
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+
+    private static byte[] createBlock() {
+        // text-like content (compressible, but not trivially)
+        byte[] block = new byte[BLOCK_SIZE];
+        Random random = new Random(0);
+        for (int n = 0; n < block.length; n++) {
+            block[n] = (byte) ('a' + random.nextInt(16));
+        }
+        return block;
+    }
+
+    private static String measureChunkLayer(StreamProtocol protocol, byte[] block) throws IOException {
+        // encode
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(BODY_SIZE + BODY_SIZE / 8);
+        long timer = System.nanoTime();
+        StreamOutputStream out = new StreamOutputStream(encoded, protocol);
+        for (int size = 0; size < BODY_SIZE; size += block.length) {
+            out.write(block);
+        }
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        long encodeTime = System.nanoTime() - timer;
+
+        // decode
+        InputStream in = new StreamInputStream(new ByteArrayInputStream(encoded.toByteArray()), protocol);
+        byte[] buffer = new byte[BLOCK_SIZE];
+        long bytes = 0;
+        timer = System.nanoTime();
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            bytes += length;
+        }
+        long decodeTime = System.nanoTime() - timer;
+        if (bytes != BODY_SIZE) {
+            throw new IllegalStateException("decoded " + bytes + " bytes, expected " + BODY_SIZE);
+        }
+
+        return "encode " + throughput(encodeTime) + ", decode " + throughput(decodeTime) + " (" + encoded.size() +
+                " bytes encoded)";
+    }
+
+    private static String throughput(long nanos) {
+        return (nanos > 0 ? (long) BODY_SIZE * 1000000000L / nanos / 1024 / 1024 : 0) + " MB/s";
+    }
+
+    private static String measureStack(LoopbackStreamClient client) throws Exception {
+        // bytes (throughput)
+        long timer = System.currentTimeMillis();
+        long bytes = SocketTester.read(client.sendRequest("loopback://samples/ws/bytes"));
+        String throughput = SocketTester.report(bytes, System.currentTimeMillis() - timer);
+
+        // objects (serialization)
+        timer = System.currentTimeMillis();
+        StreamResponse response = client.sendRequest("loopback://samples/ws/objects", new StreamRequest() {
+            public void writeEntity(OutputStream outputStream) throws IOException {
+                ObjectOutputStream out = new ObjectOutputStream(outputStream);
+                out.writeObject(null);
+                out.flush();
+            }
+        });
+        int objects = 0;
+        try {
+            ObjectInputStream in = new ObjectInputStream(response.getInputStream());
+            while (in.readObject() != null) {
+                objects++;
+            }
+        } finally {
+            response.close();
+        }
+        String serialization = (System.currentTimeMillis() - timer) + "ms for " + objects + " objects";
+
+        // latency
+        final byte[] request = "ping".getBytes("UTF-8");
+        timer = System.nanoTime();
+        for (int n = 0; n < EXCHANGES; n++) {
+            SocketTester.read(client.sendRequest("loopback://samples/ws/short", new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(request);
+                }
+            }));
+        }
+        long latency = (System.nanoTime() - timer) / EXCHANGES / 1000;
+        return throughput + ", " + serialization + ", " + latency + "us per exchange";
+    }
+
+}
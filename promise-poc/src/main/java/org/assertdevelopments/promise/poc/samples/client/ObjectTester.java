@@ -56,7 +56,7 @@ public final class ObjectTester {
 
             // execute request
             int n = 0;
-            StreamResponse response = new StreamClient().sendRequest(Constants.BASE_URL + URI, request);
+            StreamResponse response = client.sendRequest(Constants.BASE_URL + URI, request);
             try {
                 ObjectInputStream in = new ObjectInputStream(response.getInputStream());
                 while (true) {
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.client.StreamClient;
+import org.assertdevelopments.promise.poc.client.StreamResponse;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityInputStream;
+
+import java.io.IOException;
+
+/**
+ * Reads entities from a resumable stream. When the response body gets interrupted, the response body is resumed at
+ * the last entity boundary (the entity that was being read, is read again).
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class ResumeTester {
+
+    private static final String URI = "/ws/resume";
+
+    private static final int MAX_RESUMES = 10;
+
+    private static Logger logger = Logger.getLogger(ResumeTester.class);
+
+    public static void main(String[] args) throws Exception {
+        StreamClient client = new StreamClient(StreamProtocol.DEFAULT.withResumable(true));
+        try {
+            long timer = System.currentTimeMillis();
+
+            // execute request
+            int n = 0;
+            int resumes = 0;
+            StreamResponse response = client.sendRequest(Constants.BASE_URL + URI);
+            while (true) {
+                long entityOffset = response.getStreamOffset();
+                try {
+                    GenericEntityInputStream in = new GenericEntityInputStream(response.getInputStream());
+                    while (true) {
+                        GenericEntity entity = in.readEntity();
+                        logger.debug("IN: " + entity);
+                        if (entity == null) {
+                            break;
+                        }
+                        entityOffset = response.getStreamOffset();
+                        n++;
+                    }
+                    response.close();
+                    break;
+                } catch (IOException e) {
+                    response.abort();
+                    if (response.getResumeToken() == null || ++resumes > MAX_RESUMES) {
+                        throw e;
+                    }
+                    logger.warn("response interrupted, resuming at offset " + entityOffset + "...", e);
+                    response = client.resumeRequest(Constants.BASE_URL + URI, null, response.getResumeToken(),
+                            entityOffset);
+                }
+            }
+
+            logger.info((System.currentTimeMillis() - timer) + "ms (" + n + " items, " + resumes + " resumes)");
+        } finally {
+            client.close();
+        }
+    }
+
+}
@@ -50,7 +50,7 @@ public final class ServerErrorTester {
             };
 
             // execute request
-            StreamResponse response = new StreamClient().sendRequest(Constants.BASE_URL + URI, request);
+            StreamResponse response = client.sendRequest(Constants.BASE_URL + URI, request);
             try {
                 BufferedReader in = new BufferedReader(new InputStreamReader(response.getInputStream()));
                 while (true) {
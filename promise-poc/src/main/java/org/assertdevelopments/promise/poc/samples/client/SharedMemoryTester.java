@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.client.SharedMemoryStreamClient;
+import org.assertdevelopments.promise.poc.client.SocketStreamClient;
+import org.assertdevelopments.promise.poc.client.StreamRequest;
+import org.assertdevelopments.promise.poc.client.StreamResponse;
+import org.assertdevelopments.promise.poc.core.io.MappedRingBuffer;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.samples.server.BytesStreamServlet;
+import org.assertdevelopments.promise.poc.samples.server.ShortStreamServlet;
+import org.assertdevelopments.promise.poc.server.SharedMemoryStreamServer;
+import org.assertdevelopments.promise.poc.server.SocketStreamServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares a unix domain socket and shared memory ring buffers (busy-spinning and parking) on the same host: the
+ * throughput of bulk transfers (the bytes servlet), and the latency of short exchanges (the short stream servlet). The
+ * servers run in this process, so no deployment is needed (the ring buffers work the same between processes).
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class SharedMemoryTester {
+
+    private static final int RUNS = 10;
+
+    private static final int EXCHANGES = 10000;
+
+    private static Logger logger = Logger.getLogger(SharedMemoryTester.class);
+
+    /**
+     * A transport under test: sends a request to a path.
+     */
+    private interface Transport {
+
+        StreamResponse sendRequest(String path, StreamRequest request);
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        // one transport at a time (an idle busy-spinning server would slow down the other transports)
+        Path directory = Files.createTempDirectory("promise");
+        try {
+            measureUnixSocket(directory);
+            if (Runtime.getRuntime().availableProcessors() >= 4) {
+                measureSharedMemory(directory, MappedRingBuffer.WaitStrategy.BUSY_SPIN);
+            } else {
+                // (the client and the server would spin on each other's core)
+                logger.warn("skipping busy spin, not enough processors");
+            }
+            measureSharedMemory(directory, MappedRingBuffer.WaitStrategy.PARK);
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void measureUnixSocket(Path directory) throws Exception {
+        final UnixDomainSocketAddress address = UnixDomainSocketAddress.of(directory.resolve("promise.sock"));
+        SocketStreamServer server = new SocketStreamServer(address)
+                .register("/ws/bytes", new BytesStreamServlet().getStreamHandler())
+                .register("/ws/short", new ShortStreamServlet().getStreamHandler());
+        server.start();
+        final SocketStreamClient client = new SocketStreamClient();
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                logger.info("unix run " + run + ": " + measure(new Transport() {
+                    public StreamResponse sendRequest(String path, StreamRequest request) {
+                        return client.sendRequest(address, path, request);
+                    }
+                }));
+            }
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+
+    private static void measureSharedMemory(Path directory, MappedRingBuffer.WaitStrategy waitStrategy)
+            throws Exception {
+        SharedMemoryStreamServer server = new SharedMemoryStreamServer(directory,
+                SharedMemoryStreamServer.DEFAULT_CAPACITY, waitStrategy, StreamProtocol.DEFAULT)
+                .register("/ws/bytes", new BytesStreamServlet().getStreamHandler())
+                .register("/ws/short", new ShortStreamServlet().getStreamHandler());
+        server.start();
+        final SharedMemoryStreamClient client = new SharedMemoryStreamClient(directory, waitStrategy,
+                StreamProtocol.DEFAULT);
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                logger.info("shared memory (" + waitStrategy + ") run " + run + ": " + measure(new Transport() {
+                    public StreamResponse sendRequest(String path, StreamRequest request) {
+                        return client.sendRequest(path, request);
+                    }
+                }));
+            }
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+
+    private static String measure(Transport transport) throws Exception {
+        // throughput
+        long timer = System.currentTimeMillis();
+        long bytes = SocketTester.read(transport.sendRequest("/ws/bytes", null));
+        String throughput = SocketTester.report(bytes, System.currentTimeMillis() - timer);
+
+        // latency
+        final byte[] request = "ping".getBytes("UTF-8");
+        timer = System.nanoTime();
+        for (int n = 0; n < EXCHANGES; n++) {
+            SocketTester.read(transport.sendRequest("/ws/short", new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(request);
+                }
+            }));
+        }
+        long latency = (System.nanoTime() - timer) / EXCHANGES / 1000;
+        return throughput + ", " + latency + "us per exchange";
+    }
+
+}
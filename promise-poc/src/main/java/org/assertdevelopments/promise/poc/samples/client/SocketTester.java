@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.client.SocketStreamClient;
+import org.assertdevelopments.promise.poc.client.StreamClient;
+import org.assertdevelopments.promise.poc.client.StreamResponse;
+import org.assertdevelopments.promise.poc.samples.server.BytesStreamServlet;
+import org.assertdevelopments.promise.poc.server.SocketStreamServer;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+
+/**
+ * Compares the http path and the plain socket path on loopback, for bulk transfers: the same stream handler (the
+ * bytes servlet) is served by the deployed application over http, and by a socket stream server in this process.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class SocketTester {
+
+    private static final String URI = "/ws/bytes";
+
+    private static final int SOCKET_PORT = 8082;
+
+    private static final int RUNS = 10;
+
+    private static Logger logger = Logger.getLogger(SocketTester.class);
+
+    public static void main(String[] args) throws Exception {
+        SocketStreamServer server = new SocketStreamServer(new InetSocketAddress("localhost", SOCKET_PORT))
+                .register(URI, new BytesStreamServlet().getStreamHandler());
+        server.start();
+        StreamClient httpClient = new StreamClient();
+        SocketStreamClient socketClient = new SocketStreamClient();
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                // the first run includes opening the connections
+                long timer = System.currentTimeMillis();
+                long bytes = read(httpClient.sendRequest(Constants.BASE_URL + URI));
+                logger.info("http run " + run + ": " + report(bytes, System.currentTimeMillis() - timer));
+
+                timer = System.currentTimeMillis();
+                bytes = read(socketClient.sendRequest("tcp://localhost:" + SOCKET_PORT + URI));
+                logger.info("socket run " + run + ": " + report(bytes, System.currentTimeMillis() - timer));
+            }
+        } finally {
+            httpClient.close();
+            socketClient.close();
+            server.close();
+        }
+    }
+
+    static long read(StreamResponse response) throws Exception {
+        try {
+            InputStream in = response.getInputStream();
+            byte[] buffer = new byte[65536];
+            long bytes = 0;
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                bytes += length;
+            }
+            return bytes;
+        } finally {
+            response.close();
+        }
+    }
+
+    static String report(long bytes, long time) {
+        return time + "ms (" + bytes + " bytes, " + (time > 0 ? bytes * 1000 / time / 1024 : 0) + " KB/s)";
+    }
+
+}
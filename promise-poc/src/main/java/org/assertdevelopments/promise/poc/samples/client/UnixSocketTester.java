@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.client.SocketStreamClient;
+import org.assertdevelopments.promise.poc.client.StreamRequest;
+import org.assertdevelopments.promise.poc.samples.server.BytesStreamServlet;
+import org.assertdevelopments.promise.poc.samples.server.ShortStreamServlet;
+import org.assertdevelopments.promise.poc.server.SocketStreamServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares TCP loopback and a unix domain socket on the same host: the throughput of bulk transfers (the bytes
+ * servlet), and the latency of short exchanges on a reused connection (the short stream servlet). Both servers run in
+ * this process, so no deployment is needed.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class UnixSocketTester {
+
+    private static final int RUNS = 10;
+
+    private static final int EXCHANGES = 10000;
+
+    private static Logger logger = Logger.getLogger(UnixSocketTester.class);
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("promise");
+        SocketStreamServer tcpServer = createServer(new InetSocketAddress("localhost", 0));
+        SocketStreamServer unixServer = createServer(UnixDomainSocketAddress.of(directory.resolve("promise.sock")));
+        SocketStreamClient client = new SocketStreamClient();
+        try {
+            SocketAddress tcpAddress = tcpServer.getLocalAddress();
+            SocketAddress unixAddress = unixServer.getLocalAddress();
+            for (int run = 0; run < RUNS; run++) {
+                // the first run includes opening the connections
+                logger.info("tcp run " + run + ": " + measure(client, tcpAddress));
+                logger.info("unix run " + run + ": " + measure(client, unixAddress));
+            }
+        } finally {
+            client.close();
+            tcpServer.close();
+            unixServer.close();
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static SocketStreamServer createServer(SocketAddress address) throws IOException {
+        SocketStreamServer server = new SocketStreamServer(address)
+                .register("/ws/bytes", new BytesStreamServlet().getStreamHandler())
+                .register("/ws/short", new ShortStreamServlet().getStreamHandler());
+        server.start();
+        return server;
+    }
+
+    private static String measure(SocketStreamClient client, SocketAddress address) throws Exception {
+        // throughput
+        long timer = System.currentTimeMillis();
+        long bytes = SocketTester.read(client.sendRequest(address, "/ws/bytes", null));
+        String throughput = SocketTester.report(bytes, System.currentTimeMillis() - timer);
+
+        // latency
+        final byte[] request = "ping".getBytes("UTF-8");
+        timer = System.nanoTime();
+        for (int n = 0; n < EXCHANGES; n++) {
+            SocketTester.read(client.sendRequest(address, "/ws/short", new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(request);
+                }
+            }));
+        }
+        long latency = (System.nanoTime() - timer) / EXCHANGES / 1000;
+        return throughput + ", " + latency + "us per exchange";
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.client;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.client.StreamClient;
+import org.assertdevelopments.promise.poc.client.StreamResponse;
+import org.assertdevelopments.promise.poc.client.StreamResponseHandler;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityInputStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Reads many streams at the same time, each consumed on a virtual thread (on the client) and handled on a virtual
+ * thread (on the server). The clients read slowly, so the streams are mostly idle.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public final class VirtualThreadTester {
+
+    private static final String URI = "/ws/virtual";
+
+    private static final int STREAMS = 1000;
+
+    private static Logger logger = Logger.getLogger(VirtualThreadTester.class);
+
+    public static void main(String[] args) throws Exception {
+        long timer = System.currentTimeMillis();
+
+        // consume the streams concurrently, on a single client with a connection per stream
+        StreamClient client = StreamClient.builder()
+                .withMaxConnectionsPerRoute(STREAMS)
+                .withMaxConnections(STREAMS)
+                .build();
+        client.warmUp(Constants.BASE_URL, STREAMS);
+        List<Future<Long>> results = new ArrayList<Future<Long>>();
+        for (int n = 0; n < STREAMS; n++) {
+            results.add(client.sendRequest(Constants.BASE_URL + URI, null, new StreamResponseHandler<Long>() {
+                public Long handleResponse(StreamResponse response) throws Exception {
+                    GenericEntityInputStream in = new GenericEntityInputStream(response.getInputStream());
+                    long count = 0;
+                    while (in.readEntity() != null) {
+                        if (++count % 10000 == 0) {
+                            // slow client
+                            Thread.sleep(100);
+                        }
+                    }
+                    return count;
+                }
+            }));
+        }
+        long entities = 0;
+        long errors = 0;
+        for (Future<Long> result : results) {
+            try {
+                entities += result.get();
+            } catch (Exception e) {
+                logger.error("error while reading stream", e);
+                errors++;
+            }
+        }
+        client.close();
+
+        logger.info((System.currentTimeMillis() - timer) + "ms (" + STREAMS + " streams, " + entities + " items, " +
+                errors + " errors)");
+    }
+
+}
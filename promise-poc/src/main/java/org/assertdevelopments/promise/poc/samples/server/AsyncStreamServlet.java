@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityInputStream;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityOutputStream;
+import org.assertdevelopments.promise.poc.server.AbstractAsyncStreamServlet;
+import org.assertdevelopments.promise.poc.server.AsyncStream;
+import org.assertdevelopments.promise.poc.server.AsyncStreamHandler;
+
+import javax.servlet.annotation.WebServlet;
+
+/**
+ * Writes entities asynchronously: the entities are written while the stream is ready, and the container thread is
+ * released in between (so slow clients don't hold a container thread).
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+@WebServlet(name = "AsyncStreamServlet", urlPatterns = "/ws/async", asyncSupported = true)
+public final class AsyncStreamServlet extends AbstractAsyncStreamServlet {
+
+    private static final long ENTITIES = 100000;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    public AsyncStreamHandler handleStreamRequest(AsyncStream stream) throws Throwable {
+        // read request (received already, so reading doesn't block)
+        GenericEntityInputStream in = new GenericEntityInputStream(stream.getInputStream());
+        while (true) {
+            GenericEntity entity = in.readEntity();
+            if (entity == null) {
+                break;
+            }
+            logger.debug("IN: " + entity);
+        }
+
+        // write response, while the stream is ready
+        final GenericEntityOutputStream out = new GenericEntityOutputStream(stream.getOutputStream());
+        return new AsyncStreamHandler() {
+            private long n = 0;
+
+            public void onWritePossible(AsyncStream stream) throws Throwable {
+                while (stream.isReady() && n < ENTITIES) {
+                    out.writeEntity(new GenericEntity()
+                            .setLong("id", n)
+                            .setString("name", "async-user-" + n)
+                    );
+                    n++;
+                }
+                out.flush();
+                if (n == ENTITIES) {
+                    stream.sendSuccess();
+                }
+            }
+        };
+    }
+
+}
@@ -17,6 +17,7 @@
 package org.assertdevelopments.promise.poc.samples.server;
 
 import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
 import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
 import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityInputStream;
 import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityOutputStream;
@@ -34,6 +35,16 @@ public final class EntityStreamServlet extends AbstractStreamServlet {
 
     private final Logger logger = Logger.getLogger(getClass());
 
+    /**
+     * Entities (with repeated field names and similar values) compress well, so compression is offered to clients.
+     *
+     * @return the protocol
+     */
+    @Override
+    protected StreamProtocol getStreamProtocol() {
+        return StreamProtocol.DEFAULT.withCompression(StreamProtocol.COMPRESSION_DEFLATE);
+    }
+
     public void handleStreamRequest(Stream stream) throws Throwable {
         // read request
         GenericEntityInputStream in = new GenericEntityInputStream(stream.getInputStream());
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.server;
+
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityOutputStream;
+import org.assertdevelopments.promise.poc.server.AbstractStreamServlet;
+import org.assertdevelopments.promise.poc.server.Stream;
+
+import javax.servlet.annotation.WebServlet;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+@WebServlet(name = "ResumeStreamServlet", urlPatterns = "/ws/resume")
+public final class ResumeStreamServlet extends AbstractStreamServlet {
+
+    /**
+     * Resumable response bodies are offered to clients, so interrupted downloads can be resumed.
+     *
+     * @return the protocol
+     */
+    @Override
+    protected StreamProtocol getStreamProtocol() {
+        return StreamProtocol.DEFAULT.withResumable(true);
+    }
+
+    public void handleStreamRequest(Stream stream) throws Throwable {
+        // write response (when resuming, the same entities are generated again, and the stream discards the bytes
+        // before the resume offset)
+        GenericEntityOutputStream out = new GenericEntityOutputStream(stream.getOutputStream());
+        for (long n = 0; n < 500000; n++) {
+            out.writeEntity(new GenericEntity()
+                    .setLong("id", n)
+                    .setString("name", "server-user-" + n)
+            );
+        }
+        out.flush();
+    }
+
+}
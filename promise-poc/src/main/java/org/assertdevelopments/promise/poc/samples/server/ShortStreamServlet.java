@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.server;
+
+import org.assertdevelopments.promise.poc.server.AbstractStreamServlet;
+import org.assertdevelopments.promise.poc.server.Stream;
+
+import javax.servlet.annotation.WebServlet;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Echoes a short request body: the response body is a copy of the request body. Used for measuring the overhead of
+ * opening streams (rather than the throughput of a stream).
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+@WebServlet(name = "ShortStreamServlet", urlPatterns = "/ws/short", asyncSupported = true)
+public final class ShortStreamServlet extends AbstractStreamServlet {
+
+    @Override
+    protected boolean isVirtualThreads() {
+        return true;
+    }
+
+    public void handleStreamRequest(Stream stream) throws Throwable {
+        InputStream in = stream.getInputStream();
+        OutputStream out = stream.getOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            out.write(buffer, 0, length);
+        }
+        out.flush();
+    }
+
+}
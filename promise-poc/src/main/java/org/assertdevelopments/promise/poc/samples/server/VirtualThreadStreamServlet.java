@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.samples.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityInputStream;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityOutputStream;
+import org.assertdevelopments.promise.poc.server.AbstractStreamServlet;
+import org.assertdevelopments.promise.poc.server.Stream;
+
+import javax.servlet.annotation.WebServlet;
+
+/**
+ * Writes entities on a virtual thread: the stream handler blocks while the client is slow, but the blocked virtual
+ * thread doesn't hold a container thread.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+@WebServlet(name = "VirtualThreadStreamServlet", urlPatterns = "/ws/virtual", asyncSupported = true)
+public final class VirtualThreadStreamServlet extends AbstractStreamServlet {
+
+    private static final long ENTITIES = 100000;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    @Override
+    protected boolean isVirtualThreads() {
+        return true;
+    }
+
+    public void handleStreamRequest(Stream stream) throws Throwable {
+        // read request
+        GenericEntityInputStream in = new GenericEntityInputStream(stream.getInputStream());
+        while (true) {
+            GenericEntity entity = in.readEntity();
+            if (entity == null) {
+                break;
+            }
+            logger.debug("IN: " + entity);
+        }
+
+        // write response
+        GenericEntityOutputStream out = new GenericEntityOutputStream(stream.getOutputStream());
+        for (long n = 0; n < ENTITIES; n++) {
+            out.writeEntity(new GenericEntity()
+                    .setLong("id", n)
+                    .setString("name", "virtual-user-" + n)
+            );
+        }
+        out.flush();
+    }
+
+}
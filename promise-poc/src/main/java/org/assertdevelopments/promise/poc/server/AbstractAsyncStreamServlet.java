@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ExplicitFlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FlushPolicy;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * An abstract base class for servlets that do promise stream processing asynchronously (servlet 3.1 non-blocking
+ * I/O). Unlike {@link AbstractStreamServlet}, a stream doesn't hold a container thread for its lifetime: the request
+ * body is received without blocking, and the response body is written whenever the client is ready for it, so many
+ * (slow or mostly idle) streams can share a small thread pool. The servlet must be registered with async support.
+ * <p/>
+ * Request bodies are received completely before the stream is handled, so they are limited in size (see
+ * {@link #getMaxRequestSize()}). For the same reason, full-duplex exchanges are not supported (the client would wait
+ * for a response that is only sent when the request body is complete): they are rejected with http status code 501.
+ *
+ * @author agent
+ * @see AsyncStream
+ * @see AsyncStreamHandler
+ * @since 2026-10-17
+ */
+public abstract class AbstractAsyncStreamServlet extends HttpServlet {
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    @Override
+    protected final void service(
+            HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        try {
+            // start timer
+            long time = System.currentTimeMillis();
+
+            // fetch uri from request
+            String uri = StreamExchange.getRelativeURI(request);
+            String method = request.getMethod();
+            logger.info("processing async stream request " + method + " " + uri + "...");
+
+            // check the request headers, negotiate the protocols and accept the request (no full-duplex, the request
+            // body is received completely before the stream is handled)
+            StreamExchange exchange = StreamExchange.accept(request, response, getStreamProtocol(), false, logger);
+            if (exchange == null) {
+                return;
+            }
+
+            // receive the request body without blocking, the stream is handled when it's complete
+            AsyncContext asyncContext = request.startAsync();
+            asyncContext.setTimeout(0);
+            ServletInputStream inputStream = request.getInputStream();
+            inputStream.setReadListener(new RequestBodyReader(asyncContext, inputStream, uri, method, exchange, time));
+        } catch (Throwable t) {
+            logger.error("error while processing stream request", t);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Handle a received request. The stream is created, and handled by the stream handler. When the stream handler
+     * doesn't finish the stream, the asynchronous handler it returns is called back for writing the rest of the
+     * response body.
+     *
+     * @param asyncContext the async context
+     * @param uri          the relative uri
+     * @param method       the http method
+     * @param exchange     the accepted exchange (with the negotiated protocols)
+     * @param requestBody  the request body
+     * @param time         the time the request was received
+     */
+    private void handleRequest(AsyncContext asyncContext, String uri, String method, StreamExchange exchange,
+                               byte[] requestBody, long time) {
+        try {
+            AsyncStreamImpl stream = new AsyncStreamImpl(
+                    uri, method, requestBody, asyncContext, exchange, getFlushPolicy(), getMaxBufferSize(),
+                    getMaxOutputBufferSize(), time
+            );
+            AsyncStreamHandler handler = null;
+            try {
+                logger.debug("handling stream request...");
+                handler = handleStreamRequest(stream);
+                if (handler == null && !stream.isCommitted()) {
+                    stream.sendSuccess();
+                }
+            } catch (Throwable t) {
+                stream.failed(t);
+            }
+            stream.start(handler);
+        } catch (Throwable t) {
+            logger.error("an unexpected error has occurred", t);
+            asyncContext.complete();
+        }
+    }
+
+    /**
+     * Get the protocol offered by this servlet.
+     *
+     * @return the protocol
+     * @see AbstractStreamServlet#getStreamProtocol()
+     */
+    protected StreamProtocol getStreamProtocol() {
+        return StreamProtocol.DEFAULT;
+    }
+
+    /**
+     * Get the policy that decides when the response is flushed (the buffered bytes are handed over to the client
+     * when the stream handler flushes, and when the handler returns).
+     *
+     * @return the flush policy
+     * @see AbstractStreamServlet#getFlushPolicy()
+     */
+    protected FlushPolicy getFlushPolicy() {
+        return new ExplicitFlushPolicy();
+    }
+
+    /**
+     * Get the maximum size of a request body (larger request bodies are rejected with http status code 413).
+     *
+     * @return the maximum request size
+     */
+    protected int getMaxRequestSize() {
+        return 1024 * 1024;
+    }
+
+    /**
+     * Get the number of buffered bytes of a response, above which the stream is no longer ready for output.
+     *
+     * @return the maximum buffer size
+     * @see AsyncStream#isReady()
+     */
+    protected int getMaxBufferSize() {
+        return 64 * 1024;
+    }
+
+    /**
+     * Get the maximum number of buffered bytes of a response. Writing never blocks, so a handler that keeps writing
+     * while the stream is not ready fails when the buffered bytes would exceed this maximum (and the response is
+     * aborted, the client reads an incomplete stream).
+     *
+     * @return the maximum output buffer size (at least the maximum buffer size)
+     * @see #getMaxBufferSize()
+     */
+    protected int getMaxOutputBufferSize() {
+        return 1024 * 1024;
+    }
+
+    /**
+     * Process the provided stream request: read the request from the stream, and write the response (or the first part
+     * of it). When the response body is complete, the handler returns null (the stream is finished with a success
+     * status, unless it's committed already). Otherwise, the handler returns an asynchronous handler for writing the
+     * rest of the response body. All exceptions thrown by this handler, will be included in the stream output status.
+     *
+     * @param stream the stream
+     * @return the handler for the rest of the response body, or null if the response body is complete
+     * @see AsyncStream
+     */
+    protected abstract AsyncStreamHandler handleStreamRequest(AsyncStream stream) throws Throwable;
+
+    /**
+     * Receives a request body without blocking (whenever bytes are available), and handles the request when the
+     * request body is complete.
+     */
+    private final class RequestBodyReader implements ReadListener {
+
+        private final AsyncContext asyncContext;
+        private final ServletInputStream inputStream;
+        private final String uri;
+        private final String method;
+        private final StreamExchange exchange;
+        private final long time;
+        private final ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+        private final byte[] buffer = new byte[4096];
+
+        private boolean aborted = false;
+
+        RequestBodyReader(AsyncContext asyncContext, ServletInputStream inputStream, String uri, String method,
+                          StreamExchange exchange, long time) {
+            this.asyncContext = asyncContext;
+            this.inputStream = inputStream;
+            this.uri = uri;
+            this.method = method;
+            this.exchange = exchange;
+            this.time = time;
+        }
+
+        public void onDataAvailable() throws IOException {
+            while (!aborted && inputStream.isReady()) {
+                int n = inputStream.read(buffer);
+                if (n == -1) {
+                    return;
+                }
+                requestBody.write(buffer, 0, n);
+                if (requestBody.size() > getMaxRequestSize()) {
+                    logger.warn("aborting, request body too large");
+                    aborted = true;
+                    ((HttpServletResponse) asyncContext.getResponse()).sendError(
+                            HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE
+                    );
+                    asyncContext.complete();
+                }
+            }
+        }
+
+        public void onAllDataRead() {
+            if (!aborted) {
+                handleRequest(asyncContext, uri, method, exchange, requestBody.toByteArray(), time);
+            }
+        }
+
+        public void onError(Throwable t) {
+            logger.error("error while receiving stream request", t);
+            if (!aborted) {
+                aborted = true;
+                asyncContext.complete();
+            }
+        }
+
+    }
+
+}
@@ -17,9 +17,13 @@
 package org.assertdevelopments.promise.poc.server;
 
 import org.apache.log4j.Logger;
-import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
-import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.CoalescingFlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ExplicitFlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.LatencyFlushPolicy;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -29,18 +33,22 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
- * An abstract base class for servlets that do promise stream processing.
+ * An abstract base class for servlets that do promise stream processing. The servlet can also be served over other
+ * transports, as a {@link StreamHandler} (see {@link #getStreamHandler()}).
  *
  * @author Stefan Bangels
  * @since 2015-01-20
  */
 public abstract class AbstractStreamServlet extends HttpServlet {
 
-    private static final String SERVER = "Promise Server/1.0";
-    private static final String DOWNLOAD_FILE_NAME = "data.stream";
-
     private final Logger logger = Logger.getLogger(getClass());
 
+    private final StreamHandler streamHandler = new StreamHandler() {
+        public void handleStreamRequest(Stream stream) throws Throwable {
+            AbstractStreamServlet.this.handleStreamRequest(stream);
+        }
+    };
+
     @Override
     protected final void service(
             HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
@@ -49,39 +57,24 @@ public abstract class AbstractStreamServlet extends HttpServlet {
             long time = System.currentTimeMillis();
 
             // fetch uri from request
-            String uri = getRelativeURI(request);
+            String uri = StreamExchange.getRelativeURI(request);
             String method = request.getMethod();
             logger.info("processing stream request " + method + " " + uri + "...");
 
-            // set request http headers
-            response.setHeader("Server", SERVER);
-            response.setHeader("Accepts", StreamConstants.CONTENT_TYPE);
-            response.setHeader("Cache-Control", "no-cache");
-            response.setHeader("Pragma", "no-cache");
-            response.setHeader("Expires", "0");
-
-            // check content type
-            String contentType = request.getContentType();
-            if (contentType != null && !StreamConstants.CONTENT_TYPE.equals(contentType)) {
-                logger.warn("aborting, unsupported content type: " + contentType);
-                response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            // check the request headers, negotiate the protocols and accept the request
+            StreamExchange exchange = StreamExchange.accept(request, response, getStreamProtocol(), true, logger);
+            if (exchange == null) {
                 return;
             }
 
-            // set response http headers
-            response.setHeader("Content-Type", StreamConstants.CONTENT_TYPE);
-            response.setHeader("Content-Disposition", "attachment; filename=" + DOWNLOAD_FILE_NAME);
-
-            // change the http status code to accepted (status code 202)
-            // beyond this point, the request has been accepted by the server
-            // all exceptions will be reported in the representation body, not as an http error
-            // because once we start writing to the http output stream, we can no longer change the http status code
-            logger.debug("accepted stream request");
-            response.setStatus(HttpServletResponse.SC_ACCEPTED);
-
             // handle stream request
+            if (isVirtualThreads()) {
+                logger.debug("handling stream request on a virtual thread...");
+                handleRequestOnVirtualThread(request, response, uri, exchange, time);
+                return;
+            }
             logger.debug("handling stream request...");
-            handleRequest(request, response, uri);
+            handleRequest(request, response, uri, exchange);
 
             logger.info("processed stream request in " + (System.currentTimeMillis() - time) + "ms.");
         } catch (Throwable t) {
@@ -90,18 +83,6 @@ public abstract class AbstractStreamServlet extends HttpServlet {
         }
     }
 
-    /**
-     * Get the relative URI of a request (this will remove the servlet path from the request URI, and will return
-     * the URI relative to the servlet path).
-     *
-     * @param request the request
-     * @return the relative URI
-     */
-    private String getRelativeURI(HttpServletRequest request) {
-        String servletUri = request.getRequestURI().substring(request.getContextPath().length());
-        return servletUri.substring(request.getServletPath().length());
-    }
-
     /**
      * Handle a request with the provided stream handler. This method will instantiate a stream, that wraps the request
      * input stream and response output stream and passes it to the provided stream handler. The stream handler will
@@ -111,30 +92,54 @@ public abstract class AbstractStreamServlet extends HttpServlet {
      *
      * @param request  the request
      * @param response the response
+     * @param uri      the relative uri
+     * @param exchange the accepted exchange (with the negotiated protocols)
      * @see Stream
      */
     private void handleRequest(
-            HttpServletRequest request, HttpServletResponse response, String uri) {
+            HttpServletRequest request, HttpServletResponse response, String uri, StreamExchange exchange) {
         try {
-            Stream stream = createStream(
-                    uri, request.getMethod(), request.getInputStream(), response.getOutputStream()
+            StreamImpl stream = createStream(
+                    uri, request.getMethod(), request.getInputStream(), response.getOutputStream(), exchange
             );
             try {
-                handleStreamRequest(stream);
-                if (!stream.isCommitted()) {
-                    stream.sendSuccess();
-                }
-            } catch (Throwable t) {
-                logger.error("error while handling stream", t);
-                if (!stream.isCommitted()) {
-                    stream.sendError(StreamStatus.STATUS_ERROR, t.getMessage());
-                }
+                stream.handle(streamHandler);
+            } finally {
+                stream.release();
             }
         } catch (Throwable t) {
             logger.error("an unexpected error has occurred", t);
         }
     }
 
+    /**
+     * Handle a request on a virtual thread. The request is put in asynchronous mode, so the container thread is
+     * returned to the container immediately, while the stream handler runs (blocking) on a virtual thread of its own.
+     * The asynchronous request is completed when the stream handler is finished.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param uri      the relative uri
+     * @param exchange the accepted exchange (with the negotiated protocols)
+     * @param time     the time the request processing started
+     */
+    private void handleRequestOnVirtualThread(
+            final HttpServletRequest request, final HttpServletResponse response, final String uri,
+            final StreamExchange exchange, final long time) {
+        final AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(0);
+        Thread.ofVirtual().name("stream-handler-" + uri).start(new Runnable() {
+            public void run() {
+                try {
+                    handleRequest(request, response, uri, exchange);
+                    logger.info("processed stream request in " + (System.currentTimeMillis() - time) + "ms.");
+                } finally {
+                    asyncContext.complete();
+                }
+            }
+        });
+    }
+
     /**
      * Instantiate a stream for the provided uri and http method, and wrap it around the provided input- and output
      * stream.
@@ -143,10 +148,66 @@ public abstract class AbstractStreamServlet extends HttpServlet {
      * @param method       the http method
      * @param inputStream  the input stream
      * @param outputStream the output stream
+     * @param exchange     the accepted exchange (with the negotiated protocols, the resume offset and the trailers)
      * @return the stream
      */
-    private Stream createStream(String uri, String method, InputStream inputStream, OutputStream outputStream) {
-        return new StreamImpl(uri, method, inputStream, outputStream);
+    private StreamImpl createStream(String uri, String method, InputStream inputStream, OutputStream outputStream,
+                                    StreamExchange exchange) {
+        return StreamImpl.builder(uri, method, inputStream, outputStream)
+                .withProtocols(exchange.getRequestProtocol(), exchange.getResponseProtocol())
+                .withFlushPolicy(getFlushPolicy())
+                .withWriteBehindBlocks(getWriteBehindBlocks())
+                .withResume(exchange.getResumeToken(), exchange.getResumeOffset())
+                .withTrailers(exchange.getTrailers())
+                .build();
+    }
+
+    /**
+     * Get the protocol offered by this servlet. The protocol of the response body is negotiated between this protocol
+     * and the protocol accepted by the client. Override this method to change the protocol version or the maximum
+     * chunk size, or to offer compression, checksums, resumable response bodies or status trailers (status trailers
+     * need a Servlet 4 container, other containers fall back to sending the status in the response body).
+     *
+     * @return the protocol
+     */
+    protected StreamProtocol getStreamProtocol() {
+        return StreamProtocol.DEFAULT;
+    }
+
+    /**
+     * Get the policy that decides when the response is flushed. The default policy flushes whenever the stream handler
+     * flushes. Override this method to coalesce flushes for bulk transfers ({@link CoalescingFlushPolicy}), or to bound
+     * the latency of low-rate feeds ({@link LatencyFlushPolicy}).
+     *
+     * @return the flush policy
+     */
+    protected FlushPolicy getFlushPolicy() {
+        return new ExplicitFlushPolicy();
+    }
+
+    /**
+     * Get the maximum number of blocks in flight for writing the response in the background (write-behind). In
+     * write-behind mode, the stream handler can continue producing while a background writer drains the previous
+     * blocks to the response (when all blocks are in flight, the stream handler blocks until a block has been written).
+     * By default, write-behind is disabled, override this method to enable it.
+     *
+     * @return the maximum number of blocks in flight (0 to write synchronously)
+     */
+    protected int getWriteBehindBlocks() {
+        return 0;
+    }
+
+    /**
+     * Check whether the stream handler runs on a virtual thread (instead of the container thread). Virtual threads are
+     * cheap to block, so a container with a small thread pool can serve a large number of concurrent (slow) streams,
+     * while the stream handler is still written in the blocking style. By default, the stream handler runs on the
+     * container thread, override this method to enable virtual threads (the servlet must then be registered with
+     * <code>asyncSupported</code>).
+     *
+     * @return true to handle the stream request on a virtual thread
+     */
+    protected boolean isVirtualThreads() {
+        return false;
     }
 
     /**
@@ -158,4 +219,14 @@ public abstract class AbstractStreamServlet extends HttpServlet {
      */
     protected abstract void handleStreamRequest(Stream stream) throws Throwable;
 
+    /**
+     * Get the stream handler of this servlet, for serving the same stream requests over other transports (f.e. a
+     * {@link SocketStreamServer}).
+     *
+     * @return the stream handler
+     */
+    public final StreamHandler getStreamHandler() {
+        return streamHandler;
+    }
+
 }
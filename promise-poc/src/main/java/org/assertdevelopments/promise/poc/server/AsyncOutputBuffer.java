@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+
+/**
+ * Output buffer of an asynchronous stream. The bytes are collected in blocks, and taken block by block by the writer
+ * that writes them to the client (whenever the client is ready for them).
+ * <p/>
+ * The buffer is bounded: writing never blocks (it may be called on a container thread), so a write that would exceed
+ * the maximum size fails instead, and so do all later writes (the buffer is overflowed, the stream can't be finished).
+ *
+ * @author agent
+ * @see AsyncStreamImpl
+ * @since 2026-10-17
+ */
+final class AsyncOutputBuffer extends OutputStream {
+
+    static final int BLOCK_SIZE = 8192;
+
+    private final LinkedList<byte[]> blocks = new LinkedList<byte[]>();
+    private final int maxSize;
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockSize = 0;
+    private int size = 0;
+    private boolean overflowed = false;
+
+    /**
+     * Create an output buffer.
+     *
+     * @param maxSize the maximum number of buffered bytes
+     */
+    AsyncOutputBuffer(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("invalid maximum buffer size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        checkSize(1);
+        block[blockSize++] = (byte) b;
+        size++;
+        if (blockSize == BLOCK_SIZE) {
+            nextBlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings({"NullableProblems"})
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        checkSize(length);
+        size += length;
+        while (length > 0) {
+            int n = Math.min(length, BLOCK_SIZE - blockSize);
+            System.arraycopy(bytes, offset, block, blockSize, n);
+            blockSize += n;
+            offset += n;
+            length -= n;
+            if (blockSize == BLOCK_SIZE) {
+                nextBlock();
+            }
+        }
+    }
+
+    private void checkSize(int length) throws IOException {
+        if (overflowed || size + length > maxSize) {
+            overflowed = true;
+            throw new IOException("async output buffer overflow (maximum size = " + maxSize + "), the stream " +
+                    "handler must stop writing while the stream is not ready");
+        }
+    }
+
+    /**
+     * Returns true if a write exceeded the maximum size of this buffer.
+     *
+     * @return true if overflowed, false if not
+     */
+    synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
+    private void nextBlock() {
+        blocks.addLast(block);
+        block = new byte[BLOCK_SIZE];
+        blockSize = 0;
+    }
+
+    /**
+     * Get the number of buffered bytes.
+     *
+     * @return the size
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Take the next block of buffered bytes (a partial block, if there are no full blocks).
+     *
+     * @return the block, or null if there are no buffered bytes
+     */
+    synchronized byte[] take() {
+        byte[] result;
+        if (!blocks.isEmpty()) {
+            result = blocks.removeFirst();
+        } else if (blockSize > 0) {
+            result = new byte[blockSize];
+            System.arraycopy(block, 0, result, 0, blockSize);
+            blockSize = 0;
+        } else {
+            return null;
+        }
+        size -= result.length;
+        return result;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A stream that is handled asynchronously, without holding a container thread for the lifetime of the stream. The
+ * request body is received completely before the stream is handled, so reading from the input stream never blocks.
+ * The output stream is buffered, and the buffered bytes are written to the client whenever the client is ready for
+ * them, so writing to the output stream never blocks either: instead, handlers write while the stream is ready, and
+ * continue when they are called back (see {@link AsyncStreamHandler}).
+ * <p/>
+ * The bytes written so far are handed over to the client when the output stream is flushed, or when the handler
+ * returns. Handlers that write from other threads (outside the call back), flush the output stream to hand over their
+ * bytes. Finishing the stream (with {@link #sendSuccess()} or {@link #sendError(int, String)}) completes the exchange
+ * as soon as the remaining bytes are written.
+ * <p/>
+ * Instead of being called back, handlers can also compose completion stages: {@link #whenReady()} completes when the
+ * stream is ready for more output.
+ *
+ * @author agent
+ * @see AbstractAsyncStreamServlet
+ * @since 2026-10-17
+ */
+public interface AsyncStream extends Stream {
+
+    /**
+     * Returns true if the stream is ready for more output (the buffered bytes, that are not written to the client yet,
+     * stay below the buffer limit), false if not. Handlers that find the stream not ready, return and continue when
+     * they are called back.
+     *
+     * @return true if ready, false if not
+     */
+    boolean isReady();
+
+    /**
+     * Get a completion stage that completes when the stream is ready for more output (right away, if the stream is
+     * ready now). The dependent stages that don't run asynchronously, run on the container thread that writes the
+     * buffered bytes to the client, so they must not block. When the exchange is completed before the stream is
+     * ready, the completion stage completes exceptionally.
+     *
+     * @return the completion stage, completed with this stream
+     * @see #isReady()
+     */
+    CompletionStage<AsyncStream> whenReady();
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+/**
+ * A handler for writing the response body of an asynchronous stream. The handler is called back (on a container
+ * thread) whenever the buffered output of the stream is written to the client, until the stream is committed. Every
+ * call back, the handler writes the next part of the response body (f.e. while the stream is ready) and returns, so
+ * the container thread is released. The handler finishes the stream when the response body is complete.
+ * <p/>
+ * When the handler returns without writing anything (f.e. because it's waiting for data from elsewhere), it's not
+ * called back until the output stream is flushed (from another thread).
+ *
+ * @author agent
+ * @see AsyncStream
+ * @since 2026-10-17
+ */
+public interface AsyncStreamHandler {
+
+    /**
+     * Write the next part of the response body. All exceptions thrown by this handler, finish the stream with an error
+     * status.
+     *
+     * @param stream the stream
+     */
+    void onWritePossible(AsyncStream stream) throws Throwable;
+
+}
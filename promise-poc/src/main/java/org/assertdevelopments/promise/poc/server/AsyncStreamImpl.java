@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Implementation for an asynchronous stream. The stream body is framed by a regular stream (writing to an output
+ * buffer never blocks), and the output buffer is written to the client whenever the client is ready for it. When the
+ * output buffer is empty, the handler is called back for the next part of the stream body, until the stream is
+ * committed. After writing the status, the exchange is completed.
+ *
+ * @author agent
+ * @see AsyncStream
+ * @since 2026-10-17
+ */
+final class AsyncStreamImpl implements AsyncStream, WriteListener {
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final AsyncContext asyncContext;
+    private final AsyncOutputBuffer buffer;
+    private final StreamImpl stream;
+    private final OutputStream outputStream;
+    private final int bufferLimit;
+    private final long startTime;
+
+    private ServletOutputStream servletOutputStream;
+    private AsyncStreamHandler handler;
+    private CompletableFuture<AsyncStream> ready;
+    private boolean pumping = false;
+    private boolean completed = false;
+
+    /**
+     * Create an asynchronous stream for a received request body.
+     *
+     * @param uri          the uri
+     * @param method       the http method
+     * @param requestBody  the request body (received completely)
+     * @param asyncContext the async context of the exchange
+     * @param exchange     the accepted exchange (with the negotiated protocols)
+     * @param flushPolicy  the flush policy of the output stream
+     * @param bufferLimit  the number of buffered bytes, above which the stream is no longer ready
+     * @param maxBuffer    the maximum number of buffered bytes, above which writing fails
+     * @param startTime    the time the request was received
+     */
+    AsyncStreamImpl(String uri, String method, byte[] requestBody, AsyncContext asyncContext, StreamExchange exchange,
+                    FlushPolicy flushPolicy, int bufferLimit, int maxBuffer, long startTime) {
+        if (maxBuffer < bufferLimit) {
+            throw new IllegalArgumentException("maximum buffer size below the buffer limit: " + maxBuffer);
+        }
+        this.asyncContext = asyncContext;
+        this.buffer = new AsyncOutputBuffer(maxBuffer);
+        this.bufferLimit = bufferLimit;
+        this.startTime = startTime;
+        this.stream = StreamImpl.builder(uri, method, new ByteArrayInputStream(requestBody), buffer)
+                .withProtocols(exchange.getRequestProtocol(), exchange.getResponseProtocol())
+                .withFlushPolicy(flushPolicy)
+                .withResume(exchange.getResumeToken(), exchange.getResumeOffset())
+                .withTrailers(exchange.getTrailers())
+                .build();
+        this.outputStream = new FilterOutputStream(stream.getOutputStream()) {
+            @Override
+            @SuppressWarnings({"NullableProblems"})
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+                pump();
+            }
+
+            @Override
+            public void close() throws IOException {
+                // do nothing
+            }
+        };
+    }
+
+    /**
+     * Start writing the output buffer to the client, and call back the handler when the output buffer is empty.
+     *
+     * @param handler the handler (null if the handler finished the stream already, or finishes it from another
+     *                thread)
+     */
+    void start(AsyncStreamHandler handler) throws IOException {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            this.handler = handler;
+            this.servletOutputStream = asyncContext.getResponse().getOutputStream();
+        }
+        // the container calls back when the client is ready
+        servletOutputStream.setWriteListener(this);
+    }
+
+    public String getUri() {
+        return stream.getUri();
+    }
+
+    public String getMethod() {
+        return stream.getMethod();
+    }
+
+    public InputStream getInputStream() {
+        return stream.getInputStream();
+    }
+
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    public String getResumeToken() {
+        return stream.getResumeToken();
+    }
+
+    public long getResumeOffset() {
+        return stream.getResumeOffset();
+    }
+
+    public void seek(long position) {
+        stream.seek(position);
+    }
+
+    public StreamChannel getChannel(int channel) {
+        return stream.getChannel(channel);
+    }
+
+    public boolean isReady() {
+        return buffer.size() < bufferLimit;
+    }
+
+    public synchronized CompletionStage<AsyncStream> whenReady() {
+        if (completed) {
+            CompletableFuture<AsyncStream> future = new CompletableFuture<AsyncStream>();
+            future.completeExceptionally(new IOException("stream exchange completed"));
+            return future;
+        }
+        if (isReady()) {
+            return CompletableFuture.completedFuture((AsyncStream) this);
+        }
+        if (ready == null) {
+            ready = new CompletableFuture<AsyncStream>();
+        }
+        return ready;
+    }
+
+    public boolean isCommitted() {
+        return stream.isCommitted();
+    }
+
+    public void sendSuccess() {
+        stream.sendSuccess();
+        pump();
+    }
+
+    public void sendError(int code, String message) {
+        stream.sendError(code, message);
+        pump();
+    }
+
+    public void onWritePossible() {
+        pump();
+    }
+
+    public void onError(Throwable t) {
+        logger.error("error while writing stream response", t);
+        complete();
+    }
+
+    /**
+     * Write the output buffer to the client (while the client is ready), and call back the handler when the output
+     * buffer is empty. Returns when the client is not ready (the container calls back when it is), when the handler
+     * doesn't write anything, or when the exchange is completed.
+     */
+    private synchronized void pump() {
+        if (servletOutputStream == null || pumping || completed) {
+            // not started yet, or called by the handler (the running pump continues)
+            return;
+        }
+        pumping = true;
+        try {
+            while (true) {
+                // write the output buffer, while the client is ready
+                while (buffer.size() > 0) {
+                    if (!servletOutputStream.isReady()) {
+                        return;
+                    }
+                    servletOutputStream.write(buffer.take());
+                    if (ready != null && isReady()) {
+                        // the dependent stages run here (their flushes don't pump, this pump continues)
+                        CompletableFuture<AsyncStream> future = ready;
+                        ready = null;
+                        future.complete(this);
+                    }
+                }
+
+                // complete the exchange after writing the status
+                if (stream.isCommitted()) {
+                    complete();
+                    return;
+                }
+
+                // call back the handler for the next part of the stream body
+                if (handler == null) {
+                    return;
+                }
+                try {
+                    handler.onWritePossible(this);
+                    stream.getOutputStream().flush();
+                } catch (Throwable t) {
+                    failed(t);
+                    if (completed) {
+                        return;
+                    }
+                }
+                if (buffer.size() == 0 && !stream.isCommitted()) {
+                    // the handler is waiting for something else, and flushes when it's ready
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("error while writing stream response", e);
+            complete();
+        } finally {
+            pumping = false;
+        }
+    }
+
+    /**
+     * Finish the stream with an error status after the handler failed. When the handler overflowed the output buffer,
+     * there's no room for the status: the exchange is completed, and the client reads an incomplete stream.
+     *
+     * @param t the error of the handler
+     */
+    synchronized void failed(Throwable t) {
+        logger.error("error while handling stream", t);
+        if (buffer.isOverflowed()) {
+            complete();
+        } else if (!stream.isCommitted()) {
+            stream.sendError(StreamStatus.STATUS_ERROR, t.getMessage());
+        }
+    }
+
+    private synchronized void complete() {
+        if (!completed) {
+            completed = true;
+            if (ready != null) {
+                ready.completeExceptionally(new IOException("stream exchange completed"));
+                ready = null;
+            }
+            stream.release();
+            asyncContext.complete();
+            logger.info("processed stream request in " + (System.currentTimeMillis() - startTime) + "ms.");
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.io.LoopbackRegistry;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A server for stream requests from the same jvm, without http and without a network: the exchanges (the same
+ * request headers and envelopes as over a socket, see {@link SocketStreamServer}) are carried by bounded in-memory
+ * pipes. Co-located callers can invoke the stream handlers (f.e. the stream servlets) directly, and tests can exercise
+ * them without a deployment. The server is bound to a name, the clients send their requests to
+ * <code>loopback://name/path</code>.
+ * <p/>
+ * Every connection is served on a virtual thread (the pipes block on conditions, so they don't pin the carrier
+ * threads), and carries any number of exchanges (one after the other).
+ * <p/>
+ * Unlike the other transports, a loopback connection carries credits from the client back to the server, so response
+ * bodies can use flow control (when both the server and the client offer it).
+ *
+ * @author agent
+ * @see org.assertdevelopments.promise.poc.client.LoopbackStreamClient
+ * @since 2026-10-17
+ */
+public final class LoopbackStreamServer {
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final String name;
+    private final StreamDispatcher dispatcher;
+    private final Set<Closeable> connections = ConcurrentHashMap.newKeySet();
+
+    private LoopbackRegistry.Acceptor acceptor;
+
+    public LoopbackStreamServer(String name) {
+        this(name, StreamProtocol.DEFAULT);
+    }
+
+    /**
+     * Create a loopback stream server.
+     *
+     * @param name     the name to bind to (f.e. "echo", for the uris <code>loopback://echo/path</code>)
+     * @param protocol the protocol offered for the response bodies (negotiated with the protocols accepted by the
+     *                 client, including flow control)
+     */
+    public LoopbackStreamServer(String name, StreamProtocol protocol) {
+        this.name = name;
+        this.dispatcher = new StreamDispatcher(protocol);
+    }
+
+    /**
+     * Register a stream handler for a path.
+     *
+     * @param path    the path (f.e. "/ws/bytes")
+     * @param handler the stream handler
+     * @return this server
+     * @see StreamDispatcher#register(String, StreamHandler)
+     */
+    public LoopbackStreamServer register(String path, StreamHandler handler) {
+        dispatcher.register(path, handler);
+        return this;
+    }
+
+    /**
+     * Bind the server to its name, and start accepting connections.
+     */
+    public synchronized void start() {
+        if (acceptor != null) {
+            throw new IllegalStateException("loopback stream server already started");
+        }
+        acceptor = new LoopbackRegistry.Acceptor() {
+            public void accept(final InputStream inputStream, final OutputStream outputStream,
+                               final InputStream creditInputStream) {
+                final Closeable connection = new Closeable() {
+                    public void close() throws IOException {
+                        try {
+                            inputStream.close();
+                        } finally {
+                            try {
+                                creditInputStream.close();
+                            } finally {
+                                outputStream.close();
+                            }
+                        }
+                    }
+                };
+                connections.add(connection);
+                Thread.ofVirtual().name("stream-connection-loopback-" + name).start(new Runnable() {
+                    public void run() {
+                        serve(inputStream, outputStream, creditInputStream, connection);
+                    }
+                });
+            }
+        };
+        LoopbackRegistry.bind(name, acceptor);
+        logger.info("listening for stream requests on loopback://" + name + "...");
+    }
+
+    private void serve(InputStream inputStream, OutputStream outputStream, InputStream creditInputStream,
+                       Closeable connection) {
+        try {
+            logger.debug("serving loopback connection...");
+            dispatcher.serve(inputStream, outputStream, creditInputStream);
+        } catch (Throwable t) {
+            if (connections.contains(connection)) {
+                logger.error("error while serving connection", t);
+            }
+        } finally {
+            close(connection);
+        }
+    }
+
+    private void close(Closeable connection) {
+        connections.remove(connection);
+        try {
+            connection.close();
+        } catch (IOException e) {
+            logger.debug("error while closing connection", e);
+        }
+    }
+
+    /**
+     * Unbind the server, and close the open connections.
+     */
+    public void close() {
+        LoopbackRegistry.Acceptor acceptor;
+        synchronized (this) {
+            acceptor = this.acceptor;
+        }
+        if (acceptor == null) {
+            return;
+        }
+        logger.info("closing loopback stream server...");
+        LoopbackRegistry.unbind(name, acceptor);
+        for (Closeable connection : connections) {
+            close(connection);
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.io.MappedRingBuffer;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A server for stream requests over shared memory, for a client in another process on the same host: the exchanges
+ * (the same request headers and envelopes as over a socket, see {@link SocketStreamServer}) are carried by two ring
+ * buffers in memory-mapped files, one for the requests and one for the responses. The bytes are copied into and out of
+ * the page cache directly, without system calls, and the ring buffers give backpressure to the writers.
+ * <p/>
+ * The ring buffer files are created in a directory when the server starts (<code>requests.ring</code> and
+ * <code>responses.ring</code>), and deleted when the server is closed. A pair of ring buffers is a single connection:
+ * the server serves one client at a time, which carries any number of exchanges (one after the other) until it closes
+ * its end. Then the server replaces the ring buffer files with new ones, for the next client. When the process of the
+ * client ends without closing its end (f.e. when it's killed), the server notices it while waiting for the client, and
+ * replaces the ring buffer files as well.
+ * <p/>
+ * Note that the waiting side busy-spins or parks for short intervals (there are no wakeups between processes), so the
+ * server consumes a little cpu time while idle.
+ *
+ * @author agent
+ * @see org.assertdevelopments.promise.poc.client.SharedMemoryStreamClient
+ * @since 2026-10-17
+ */
+public final class SharedMemoryStreamServer {
+
+    public static final String REQUESTS_FILE = "requests.ring";
+    public static final String RESPONSES_FILE = "responses.ring";
+
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final Path directory;
+    private final int capacity;
+    private final MappedRingBuffer.WaitStrategy waitStrategy;
+    private final StreamDispatcher dispatcher;
+
+    private MappedRingBuffer requests;
+    private MappedRingBuffer responses;
+    private Thread server;
+    private boolean closed = false;
+
+    public SharedMemoryStreamServer(Path directory) {
+        this(directory, DEFAULT_CAPACITY, MappedRingBuffer.WaitStrategy.PARK, StreamProtocol.DEFAULT);
+    }
+
+    /**
+     * Create a shared memory stream server.
+     *
+     * @param directory    the directory of the ring buffer files (must exist)
+     * @param capacity     the capacity of each ring buffer (in bytes)
+     * @param waitStrategy the wait strategy of the server (the client chooses its own)
+     * @param protocol     the protocol offered for the response bodies (negotiated with the protocols accepted by the
+     *                     client)
+     */
+    public SharedMemoryStreamServer(Path directory, int capacity, MappedRingBuffer.WaitStrategy waitStrategy,
+                                    StreamProtocol protocol) {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.waitStrategy = waitStrategy;
+        this.dispatcher = new StreamDispatcher(protocol);
+    }
+
+    /**
+     * Register a stream handler for a path.
+     *
+     * @param path    the path (f.e. "/ws/bytes")
+     * @param handler the stream handler
+     * @return this server
+     * @see StreamDispatcher#register(String, StreamHandler)
+     */
+    public SharedMemoryStreamServer register(String path, StreamHandler handler) {
+        dispatcher.register(path, handler);
+        return this;
+    }
+
+    /**
+     * Create the ring buffer files, and start serving clients.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("shared memory stream server already started");
+        }
+        createRingBuffers();
+        logger.info("listening for stream requests in " + directory + "...");
+        server = new Thread(new Runnable() {
+            public void run() {
+                serve();
+            }
+        }, "promise-shared-memory-server");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    private void createRingBuffers() throws IOException {
+        // (new files, the mappings of the previous client remain valid; the responses first, the client maps the ring
+        // buffers when the requests file appears)
+        deleteRingBuffers();
+        responses = MappedRingBuffer.create(directory.resolve(RESPONSES_FILE), capacity, waitStrategy);
+        requests = MappedRingBuffer.create(directory.resolve(REQUESTS_FILE), capacity, waitStrategy);
+    }
+
+    private void deleteRingBuffers() {
+        for (String file : new String[]{REQUESTS_FILE, RESPONSES_FILE}) {
+            try {
+                Files.deleteIfExists(directory.resolve(file));
+            } catch (IOException e) {
+                logger.warn("error while deleting ring buffer file " + file, e);
+            }
+        }
+    }
+
+    private void serve() {
+        while (true) {
+            MappedRingBuffer requests;
+            MappedRingBuffer responses;
+            synchronized (this) {
+                requests = this.requests;
+                responses = this.responses;
+            }
+            try {
+                dispatcher.serve(requests.getInputStream(), responses.getOutputStream());
+                logger.debug("shared memory connection closed by the client");
+            } catch (Throwable t) {
+                synchronized (this) {
+                    if (!closed) {
+                        logger.error("error while serving shared memory connection", t);
+                    }
+                }
+            } finally {
+                requests.close();
+                responses.close();
+            }
+
+            // the next client
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    createRingBuffers();
+                } catch (IOException e) {
+                    logger.error("error while creating ring buffers, no longer serving clients", e);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop serving the client, and delete the ring buffer files.
+     */
+    public void close() {
+        Thread server;
+        synchronized (this) {
+            server = this.server;
+            if (server == null || closed) {
+                return;
+            }
+            logger.info("closing shared memory stream server...");
+            closed = true;
+            // (closing the ring buffers releases the server thread, and ends the streams of the client)
+            requests.close();
+            responses.close();
+        }
+        try {
+            server.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deleteRingBuffers();
+    }
+
+}
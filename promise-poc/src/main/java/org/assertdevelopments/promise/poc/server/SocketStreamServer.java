@@ -0,0 +1,205 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A lightweight server for stream requests over plain sockets, without http: the envelopes of the promise protocol
+ * are carried directly over the connection, after a small request header (method, uri and protocols). This avoids
+ * the http header parsing, the chunked transfer encoding (on top of the chunks of the promise protocol) and the
+ * container overhead, for service to service transfers on a trusted network. The requests are dispatched to the same
+ * {@link StreamHandler}s as the stream servlets (see {@link AbstractStreamServlet#getStreamHandler()}).
+ * <p/>
+ * Every connection is served on a virtual thread, and carries any number of exchanges (one after the other).
+ * <p/>
+ * The server listens on a TCP address, or on a unix domain socket address (f.e. for consumers on the same host, behind
+ * a sidecar): same-host streams then skip the TCP stack entirely. The socket file of a unix domain socket is created
+ * when the server starts (it must not exist yet), and deleted when the server is closed.
+ *
+ * @author agent
+ * @see org.assertdevelopments.promise.poc.client.SocketStreamClient
+ * @since 2026-10-17
+ */
+public final class SocketStreamServer {
+
+    private static final int BACKLOG = 1024;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final SocketAddress address;
+    private final StreamDispatcher dispatcher;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+
+    private ServerSocketChannel serverChannel;
+    private Thread acceptor;
+
+    public SocketStreamServer(SocketAddress address) {
+        this(address, StreamProtocol.DEFAULT);
+    }
+
+    /**
+     * Create a socket stream server.
+     *
+     * @param address  the address to listen on (f.e. <code>new InetSocketAddress(8082)</code>, or
+     *                 <code>UnixDomainSocketAddress.of("/var/run/promise.sock")</code>)
+     * @param protocol the protocol offered for the response bodies (negotiated with the protocols accepted by the
+     *                 client)
+     */
+    public SocketStreamServer(SocketAddress address, StreamProtocol protocol) {
+        this.address = address;
+        this.dispatcher = new StreamDispatcher(protocol);
+    }
+
+    /**
+     * Register a stream handler for a path.
+     *
+     * @param path    the path (f.e. "/ws/bytes")
+     * @param handler the stream handler
+     * @return this server
+     * @see StreamDispatcher#register(String, StreamHandler)
+     */
+    public SocketStreamServer register(String path, StreamHandler handler) {
+        dispatcher.register(path, handler);
+        return this;
+    }
+
+    /**
+     * Start listening for connections.
+     */
+    public synchronized void start() throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("socket stream server already started");
+        }
+        serverChannel = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        serverChannel.bind(address, BACKLOG);
+        logger.info("listening for stream requests on " + serverChannel.getLocalAddress() + "...");
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "promise-socket-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Get the address the server is listening on (f.e. for getting the port, when listening on port 0).
+     *
+     * @return the local address
+     */
+    public synchronized SocketAddress getLocalAddress() throws IOException {
+        if (serverChannel == null) {
+            throw new IllegalStateException("socket stream server not started");
+        }
+        return serverChannel.getLocalAddress();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                final SocketChannel channel = serverChannel.accept();
+                if (channel.getRemoteAddress() instanceof InetSocketAddress) {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                connections.add(channel);
+                Thread.ofVirtual().name("stream-connection-" + channel.getRemoteAddress()).start(new Runnable() {
+                    public void run() {
+                        serve(channel);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            if (serverChannel.isOpen()) {
+                logger.error("error while accepting connections", e);
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try {
+            logger.debug("serving connection from " + channel.getRemoteAddress() + "...");
+            dispatcher.serve(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+        } catch (Throwable t) {
+            if (channel.isOpen()) {
+                logger.error("error while serving connection", t);
+            }
+        } finally {
+            connections.remove(channel);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("error while closing connection", e);
+            }
+        }
+    }
+
+    /**
+     * Stop listening, and close the open connections.
+     */
+    public void close() {
+        ServerSocketChannel serverChannel;
+        Thread acceptor;
+        synchronized (this) {
+            serverChannel = this.serverChannel;
+            acceptor = this.acceptor;
+        }
+        if (serverChannel == null) {
+            return;
+        }
+        logger.info("closing socket stream server...");
+        try {
+            serverChannel.close();
+            acceptor.join();
+        } catch (IOException e) {
+            logger.debug("error while closing server socket", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SocketChannel channel : connections) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("error while closing connection", e);
+            }
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            try {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            } catch (IOException e) {
+                logger.warn("error while deleting socket file " + address, e);
+            }
+        }
+    }
+
+}
@@ -61,6 +61,49 @@ public interface Stream {
      */
     OutputStream getOutputStream();
 
+    /**
+     * Get the resume token of the stream: an opaque token chosen by the requester, that identifies the stream body
+     * (the same token is sent when resuming an interrupted stream body). Handlers that can't regenerate the same stream
+     * body by handling the same request again, can use the token for keeping track of the stream body.
+     *
+     * @return the resume token, or null if the stream body is not resumable
+     */
+    String getResumeToken();
+
+    /**
+     * Get the offset in the stream body from which the requester resumes an interrupted stream body. The bytes before
+     * the resume offset are discarded, so by default the handler just regenerates the stream body (the same stream
+     * body, for the same request). Handlers that can seek (f.e. in a file, or to an entity boundary), can call
+     * {@link #seek(long)} first.
+     *
+     * @return the resume offset, or 0 if the stream body is not resumed
+     */
+    long getResumeOffset();
+
+    /**
+     * Tell the stream that the handler starts writing the stream body at the provided offset, instead of at the
+     * beginning. The offset can be before the resume offset (the bytes before the resume offset are discarded), so
+     * handlers can seek to a convenient position (f.e. the last entity boundary before the resume offset). This is only
+     * possible before writing to the output stream.
+     *
+     * @param position the offset in the stream body of the next byte written
+     * @throws IllegalStateException    if the output stream was written to already
+     * @throws IllegalArgumentException if the offset is beyond the resume offset
+     * @see #getResumeOffset()
+     */
+    void seek(long position) throws IllegalStateException, IllegalArgumentException;
+
+    /**
+     * Get a channel of the stream (when the stream is multiplexed): an independent sub-stream in both directions, with
+     * a status of its own. The channels are written independently (from any thread), and their chunks are interleaved
+     * fairly. Channels that are still open when the stream is finished, are finished with the status of the stream.
+     *
+     * @param channel the channel (greater than 0, channel 0 is the stream itself)
+     * @return the channel
+     * @see StreamChannel
+     */
+    StreamChannel getChannel(int channel);
+
     /**
      * Returns true if the stream is committed, false if not.
      *
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A channel of a multiplexed stream: an independent sub-stream (in both directions), with a status of its own.
+ *
+ * @author agent
+ * @see Stream#getChannel(int)
+ * @since 2026-10-17
+ */
+public interface StreamChannel {
+
+    /**
+     * Get the channel number.
+     *
+     * @return the channel
+     */
+    int getChannel();
+
+    /**
+     * Get the input stream, for reading the channel of the request body. Reading the end of the channel results in
+     * an exception if the channel of the request body ended with an error status.
+     *
+     * @return the input stream
+     * @throws IllegalStateException if the request body is not multiplexed
+     */
+    InputStream getInputStream() throws IllegalStateException;
+
+    /**
+     * Get the output stream, for writing the channel of the response body. The channel is opened when calling this
+     * method for the first time.
+     *
+     * @return the output stream
+     * @throws IllegalStateException if the response body is not multiplexed
+     */
+    OutputStream getOutputStream() throws IllegalStateException;
+
+    /**
+     * Returns true if the channel is committed (the status of the channel was sent), false if not. Channels that are
+     * not committed when the stream is finished, are finished with the status of the stream.
+     *
+     * @return true if committed, false if not
+     */
+    boolean isCommitted();
+
+    /**
+     * Finish the channel of the response body, and report that the channel was successfully handled.
+     *
+     * @throws IllegalStateException if the channel was already committed
+     */
+    void sendSuccess() throws IllegalStateException;
+
+    /**
+     * Finish the channel of the response body, and report that there were errors while handling the channel.
+     *
+     * @param code    the error code
+     * @param message the error message
+     * @throws IllegalStateException if the channel was already committed
+     */
+    void sendError(int code, String message) throws IllegalStateException;
+
+}
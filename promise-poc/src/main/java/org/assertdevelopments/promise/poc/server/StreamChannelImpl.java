@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.channel.ChannelOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Implementation for a channel of a multiplexed stream.
+ *
+ * @author agent
+ * @see StreamChannel
+ * @since 2026-10-17
+ */
+final class StreamChannelImpl implements StreamChannel {
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final int channel;
+    private final StreamInputStream streamInputStream;
+    private final StreamOutputStream streamOutputStream;
+
+    private InputStream inputStream;
+    private ChannelOutputStream outputStream;
+
+    StreamChannelImpl(int channel, StreamInputStream streamInputStream, StreamOutputStream streamOutputStream) {
+        this.channel = channel;
+        this.streamInputStream = streamInputStream;
+        this.streamOutputStream = streamOutputStream;
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    public synchronized InputStream getInputStream() {
+        if (inputStream == null) {
+            inputStream = streamInputStream.getChannel(channel);
+        }
+        return inputStream;
+    }
+
+    public synchronized OutputStream getOutputStream() {
+        return getChannelOutputStream();
+    }
+
+    private synchronized ChannelOutputStream getChannelOutputStream() {
+        if (outputStream == null) {
+            outputStream = streamOutputStream.openChannel(channel);
+        }
+        return outputStream;
+    }
+
+    public synchronized boolean isCommitted() {
+        return outputStream != null && outputStream.isCommitted();
+    }
+
+    public void sendSuccess() {
+        if (isCommitted()) {
+            throw new IllegalStateException("channel already committed");
+        }
+        logger.info("sending channel " + channel + " status: success...");
+        sendStatus(StreamStatus.STATUS_OK, "OK");
+    }
+
+    public void sendError(int code, String message) {
+        if (isCommitted()) {
+            throw new IllegalStateException("channel already committed");
+        }
+        logger.warn("sending channel " + channel + " status: error (code=" + code + ", message=" + message + ")...");
+        sendStatus(code, message);
+    }
+
+    private void sendStatus(int code, String message) {
+        try {
+            getChannelOutputStream().writeStatus(code, message);
+        } catch (IOException e) {
+            throw new HttpStreamException("error while sending channel status", e);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.credit.CreditWindow;
+import org.assertdevelopments.promise.poc.core.protocol.header.HeaderInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.header.HeaderOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.header.StreamRequestHeader;
+import org.assertdevelopments.promise.poc.core.protocol.header.StreamResponseHeader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dispatcher for the stream exchanges on a connection, for transports without http: every exchange starts with a
+ * request header (method, uri and protocols), which is answered with a response header, and is followed by the
+ * request body and the response body (the envelopes of the promise protocol, which delimit themselves). The requests
+ * are dispatched to the stream handlers registered for their paths.
+ * <p/>
+ * A connection carries any number of exchanges, one after the other, until the client closes it.
+ * <p/>
+ * Response bodies only use flow control on connections that carry credits back to the server (a separate credit input
+ * stream): the client then ends the grants of every response body it read completely, so the credit stream is ready
+ * for the next exchange.
+ *
+ * @author agent
+ * @see SocketStreamServer
+ * @since 2026-10-17
+ */
+final class StreamDispatcher {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    private final StreamProtocol protocol;
+    private final Map<String, StreamHandler> handlers = new ConcurrentHashMap<String, StreamHandler>();
+
+    /**
+     * Create a dispatcher.
+     *
+     * @param protocol the protocol offered for the response bodies (without status trailers, the exchanges are not
+     *                 http exchanges, and without flow control on connections that don't carry credits)
+     */
+    StreamDispatcher(StreamProtocol protocol) {
+        this.protocol = protocol.withTrailers(false);
+    }
+
+    /**
+     * Register a stream handler. A request is dispatched to the handler registered for the longest path matching its
+     * uri (like a servlet path), and the handler gets the uri relative to that path.
+     *
+     * @param path    the path (f.e. "/ws/bytes")
+     * @param handler the stream handler
+     */
+    void register(String path, StreamHandler handler) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("invalid path: " + path);
+        }
+        handlers.put(path.endsWith("/") ? path.substring(0, path.length() - 1) : path, handler);
+    }
+
+    /**
+     * Serve the stream exchanges of a connection, until the end of the connection (or until an exchange is
+     * rejected).
+     *
+     * @param inputStream  the input stream of the connection
+     * @param outputStream the output stream of the connection
+     */
+    void serve(InputStream inputStream, OutputStream outputStream) throws IOException {
+        serve(inputStream, outputStream, null);
+    }
+
+    /**
+     * Serve the stream exchanges of a connection that carries credits back to the server, until the end of the
+     * connection (or until an exchange is rejected).
+     *
+     * @param inputStream       the input stream of the connection
+     * @param outputStream      the output stream of the connection
+     * @param creditInputStream the input stream with the credits granted by the client (null for no flow control)
+     */
+    void serve(InputStream inputStream, OutputStream outputStream, InputStream creditInputStream) throws IOException {
+        InputStream in = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        OutputStream out = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        HeaderInputStream headerInputStream = new HeaderInputStream(in);
+        HeaderOutputStream headerOutputStream = new HeaderOutputStream(out);
+        while (true) {
+            StreamRequestHeader requestHeader = headerInputStream.readRequestHeader();
+            if (requestHeader == null) {
+                logger.debug("end of connection");
+                return;
+            }
+            if (!serve(requestHeader, in, out, creditInputStream, headerOutputStream)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serve a stream exchange.
+     *
+     * @return true if the connection can carry the next exchange
+     */
+    private boolean serve(StreamRequestHeader requestHeader, InputStream in, OutputStream out,
+                          InputStream creditInputStream, HeaderOutputStream headerOutputStream) throws IOException {
+        long time = System.currentTimeMillis();
+        logger.info("processing stream request " + requestHeader + "...");
+
+        // find handler
+        String uri = requestHeader.getUri();
+        String path = getPath(uri);
+        if (path == null) {
+            logger.warn("aborting, no stream handler for " + uri);
+            reject(headerOutputStream, StreamResponseHeader.STATUS_NOT_FOUND, "no stream handler for " + uri);
+            return false;
+        }
+
+        // check content type
+        StreamProtocol requestProtocol = StreamProtocol.LEGACY;
+        if (requestHeader.getContentType() != null) {
+            try {
+                requestProtocol = StreamProtocol.parse(requestHeader.getContentType()).withCredits(0);
+                if (requestProtocol.isTrailers()) {
+                    // request bodies always carry their status in the body
+                    throw new IllegalArgumentException("status trailers are not supported for request bodies");
+                }
+                if (!protocol.accepts(requestProtocol)) {
+                    throw new IllegalArgumentException("request protocol exceeds the offered protocol");
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warn("aborting, unsupported content type: " + requestHeader.getContentType());
+                reject(headerOutputStream, StreamResponseHeader.STATUS_UNSUPPORTED_MEDIA_TYPE,
+                        "unsupported content type: " + requestHeader.getContentType());
+                return false;
+            }
+        }
+
+        // negotiate response protocol, and accept the request
+        StreamProtocol offeredProtocol = creditInputStream != null ? protocol : protocol.withCredits(0);
+        StreamProtocol responseProtocol = offeredProtocol.negotiate(
+                StreamProtocol.parseAccept(requestHeader.getAccept()));
+        logger.debug("negotiated protocols: request=" + requestProtocol + ", response=" + responseProtocol);
+        headerOutputStream.writeResponseHeader(new StreamResponseHeader(StreamResponseHeader.STATUS_ACCEPTED,
+                responseProtocol.getContentType(), null));
+
+        // handle stream request
+        StreamImpl stream = StreamImpl.builder(uri.substring(path.length()), requestHeader.getMethod(), in, out)
+                .withProtocols(requestProtocol, responseProtocol)
+                .withCreditInputStream(responseProtocol.getCredits() > 0 ? creditInputStream : null)
+                .build();
+        try {
+            stream.handle(handlers.get(path));
+
+            // read the rest of the request body, so the connection is ready for the next exchange
+            try {
+                ((StreamInputStream) stream.getInputStream()).readRemaining();
+            } catch (RemoteStreamException e) {
+                logger.debug("request body ended with an error status", e);
+            }
+            out.flush();
+
+            // skip the credits the response body didn't need, so the credit stream is ready for the next exchange
+            if (responseProtocol.getCredits() > 0) {
+                CreditWindow.skip(creditInputStream);
+            }
+        } finally {
+            stream.release();
+        }
+
+        logger.info("processed stream request in " + (System.currentTimeMillis() - time) + "ms.");
+        return true;
+    }
+
+    private String getPath(String uri) {
+        int index = uri.indexOf('?');
+        String path = index != -1 ? uri.substring(0, index) : uri;
+        while (true) {
+            if (handlers.containsKey(path)) {
+                return path;
+            }
+            index = path.lastIndexOf('/');
+            if (index <= 0) {
+                // the root path (if registered)
+                return handlers.containsKey("") ? "" : null;
+            }
+            path = path.substring(0, index);
+        }
+    }
+
+    private void reject(HeaderOutputStream headerOutputStream, int statusCode, String message) throws IOException {
+        headerOutputStream.writeResponseHeader(new StreamResponseHeader(statusCode, null, message));
+        headerOutputStream.flush();
+    }
+
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StatusTrailers;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * An accepted stream exchange: the request headers are checked, the protocols of the request and response body are
+ * negotiated, and the response headers are set. Shared by the blocking and the asynchronous stream servlets.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+final class StreamExchange {
+
+    private static final String SERVER = "Promise Server/1.0";
+    private static final String DOWNLOAD_FILE_NAME = "data.stream";
+
+    private final StreamProtocol requestProtocol;
+    private final StreamProtocol responseProtocol;
+    private final String resumeToken;
+    private final long resumeOffset;
+    private final StatusTrailers trailers;
+
+    StreamExchange(StreamProtocol requestProtocol, StreamProtocol responseProtocol, String resumeToken,
+                   long resumeOffset, StatusTrailers trailers) {
+        this.requestProtocol = requestProtocol;
+        this.responseProtocol = responseProtocol;
+        this.resumeToken = resumeToken;
+        this.resumeOffset = resumeOffset;
+        this.trailers = trailers;
+    }
+
+    /**
+     * Check the request headers, negotiate the protocols, set the response headers and accept the request (with http
+     * status code 202). When the request headers are not acceptable, an http error is sent instead.
+     *
+     * @param request         the request
+     * @param response        the response
+     * @param offeredProtocol the protocol offered by the servlet
+     * @param duplex          true if the servlet supports full-duplex exchanges (false to reject them with http
+     *                        status code 501)
+     * @param logger          the logger of the servlet
+     * @return the exchange, or null if the request was rejected
+     */
+    static StreamExchange accept(HttpServletRequest request, HttpServletResponse response,
+                                 StreamProtocol offeredProtocol, boolean duplex, Logger logger) throws IOException {
+        // set request http headers
+        response.setHeader("Server", SERVER);
+        response.setHeader("Accepts", offeredProtocol.getContentType());
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Pragma", "no-cache");
+        response.setHeader("Expires", "0");
+
+        // check full-duplex
+        boolean duplexRequested = Boolean.parseBoolean(request.getHeader(StreamConstants.DUPLEX_HEADER));
+        if (duplexRequested && !duplex) {
+            logger.warn("aborting, full-duplex exchanges are not supported");
+            response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED);
+            return null;
+        }
+
+        // check content type
+        String contentType = request.getContentType();
+        StreamProtocol requestProtocol = StreamProtocol.LEGACY;
+        if (contentType != null) {
+            try {
+                // no flow control, a request/response exchange can't carry credits back to the client
+                requestProtocol = StreamProtocol.parse(contentType).withCredits(0);
+                if (requestProtocol.isTrailers()) {
+                    // request bodies always carry their status in the body
+                    throw new IllegalArgumentException("status trailers are not supported for request bodies");
+                }
+                if (!offeredProtocol.accepts(requestProtocol)) {
+                    throw new IllegalArgumentException("request protocol exceeds the offered protocol");
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warn("aborting, unsupported content type: " + contentType);
+                response.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+                return null;
+            }
+        }
+
+        // check resume offset
+        long resumeOffset = 0;
+        String resumeOffsetHeader = request.getHeader(StreamConstants.RESUME_OFFSET_HEADER);
+        if (resumeOffsetHeader != null) {
+            try {
+                resumeOffset = Long.parseLong(resumeOffsetHeader.trim());
+            } catch (NumberFormatException e) {
+                resumeOffset = -1;
+            }
+            if (resumeOffset < 0) {
+                logger.warn("aborting, invalid resume offset: " + resumeOffsetHeader);
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                return null;
+            }
+        }
+
+        // negotiate response protocol
+        StreamProtocol responseProtocol = offeredProtocol.withCredits(0).negotiate(
+                StreamProtocol.parseAccept(request.getHeader("Accept"))
+        );
+
+        // status trailers: the container must send trailers (Servlet 4), and the client must accept them
+        StatusTrailers trailers = null;
+        if (responseProtocol.isTrailers()) {
+            trailers = new StatusTrailers();
+            if (!isTrailersAccepted(request) || !setTrailerFields(response, trailers, logger)) {
+                logger.debug("falling back to the stream status in the response body");
+                responseProtocol = responseProtocol.withTrailers(false);
+                trailers = null;
+            }
+        }
+        logger.debug("negotiated protocols: request=" + requestProtocol + ", response=" + responseProtocol);
+
+        // set response http headers
+        response.setHeader("Content-Type", responseProtocol.getContentType());
+        if (trailers != null) {
+            response.setHeader("Trailer", StreamConstants.STATUS_TRAILER + ", " +
+                    StreamConstants.STATUS_MESSAGE_TRAILER);
+        }
+        response.setHeader("Content-Disposition", "attachment; filename=" + DOWNLOAD_FILE_NAME);
+
+        // change the http status code to accepted (status code 202)
+        // beyond this point, the request has been accepted by the server
+        // all exceptions will be reported in the representation body, not as an http error
+        // because once we start writing to the http output stream, we can no longer change the http status code
+        logger.debug("accepted stream request");
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+
+        // full-duplex: commit the response headers, so the client can read the response while sending the request
+        if (duplexRequested) {
+            logger.debug("committing response headers for full-duplex exchange");
+            response.flushBuffer();
+        }
+
+        return new StreamExchange(requestProtocol, responseProtocol,
+                request.getHeader(StreamConstants.RESUME_TOKEN_HEADER), resumeOffset, trailers);
+    }
+
+    /**
+     * Check whether the client accepts trailers in a chunked response (the <code>TE: trailers</code> request header).
+     *
+     * @param request the request
+     * @return true if the client accepts trailers
+     */
+    private static boolean isTrailersAccepted(HttpServletRequest request) {
+        String te = request.getHeader("TE");
+        if (te != null) {
+            for (String coding : te.split(",")) {
+                if ("trailers".equalsIgnoreCase(coding.trim())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Register the supplier of the trailer fields of the response. The Servlet 4 API is called reflectively, because
+     * the servlets are compiled against (and also run in) Servlet 3.1 containers. When the Servlet 3.1 API is on the
+     * class path of a Servlet 4 container (f.e. bundled with the web application), the method is looked up on the
+     * class of the response instead.
+     *
+     * @param response the response
+     * @param trailers the trailer fields
+     * @param logger   the logger of the servlet
+     * @return true if the container will send the trailer fields, false if it doesn't support trailers
+     */
+    private static boolean setTrailerFields(HttpServletResponse response, StatusTrailers trailers, Logger logger) {
+        try {
+            Method method;
+            try {
+                method = HttpServletResponse.class.getMethod("setTrailerFields", Supplier.class);
+            } catch (NoSuchMethodException e) {
+                method = response.getClass().getMethod("setTrailerFields", Supplier.class);
+            }
+            method.invoke(response, trailers);
+            return true;
+        } catch (NoSuchMethodException e) {
+            logger.debug("the servlet container doesn't support trailers");
+            return false;
+        } catch (InvocationTargetException e) {
+            // f.e. an http/1.0 request, or a response that is not chunked
+            logger.debug("the servlet container can't send trailers for this response", e.getCause());
+            return false;
+        } catch (IllegalAccessException e) {
+            logger.debug("the servlet container doesn't support trailers", e);
+            return false;
+        }
+    }
+
+    /**
+     * Get the relative URI of a request (this will remove the servlet path from the request URI, and will return
+     * the URI relative to the servlet path).
+     *
+     * @param request the request
+     * @return the relative URI
+     */
+    static String getRelativeURI(HttpServletRequest request) {
+        String servletUri = request.getRequestURI().substring(request.getContextPath().length());
+        return servletUri.substring(request.getServletPath().length());
+    }
+
+    StreamProtocol getRequestProtocol() {
+        return requestProtocol;
+    }
+
+    StreamProtocol getResponseProtocol() {
+        return responseProtocol;
+    }
+
+    String getResumeToken() {
+        return resumeToken;
+    }
+
+    long getResumeOffset() {
+        return resumeOffset;
+    }
+
+    /**
+     * Get the trailers for the status of the response body.
+     *
+     * @return the trailers, or null if the response protocol doesn't use status trailers
+     */
+    StatusTrailers getTrailers() {
+        return trailers;
+    }
+
+}
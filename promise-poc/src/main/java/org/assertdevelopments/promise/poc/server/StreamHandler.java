@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+/**
+ * A handler for processing stream requests, independent of the transport: the same handler can be served by a stream
+ * servlet (over http) and by a {@link SocketStreamServer} (over a plain socket).
+ *
+ * @author agent
+ * @see AbstractStreamServlet
+ * @see SocketStreamServer
+ * @since 2026-10-17
+ */
+public interface StreamHandler {
+
+    /**
+     * Process the provided stream request (read the stream input, process it and write the stream output). All
+     * exceptions thrown by this handler, will be included in the stream output status.
+     *
+     * @param stream the stream
+     * @see Stream
+     */
+    void handleStreamRequest(Stream stream) throws Throwable;
+
+}
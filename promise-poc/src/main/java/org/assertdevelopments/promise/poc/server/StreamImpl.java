@@ -19,12 +19,18 @@ package org.assertdevelopments.promise.poc.server;
 import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
 import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
 import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ExplicitFlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FlushPolicy;
+import org.assertdevelopments.promise.poc.core.protocol.status.StatusTrailers;
 import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Implementation for a full duplex stream (reading and writing at the same time).
@@ -41,23 +47,44 @@ final class StreamImpl implements Stream {
     private final String method;
     private final StreamInputStream streamInputStream;
     private final StreamOutputStream streamOutputStream;
+    private final String resumeToken;
+    private final long resumeOffset;
+    private final Map<Integer, StreamChannel> channels = new HashMap<Integer, StreamChannel>();
 
     private boolean committed;
 
+    private StreamImpl(Builder builder) {
+        this.uri = builder.uri;
+        this.method = builder.method;
+        this.streamInputStream = new StreamInputStream(builder.inputStream, builder.inputProtocol);
+        this.streamOutputStream = StreamOutputStream.builder(builder.outputStream, builder.outputProtocol)
+                .withFlushPolicy(builder.flushPolicy)
+                .withWriteBehindBlocks(builder.writeBehindBlocks)
+                .withCreditInputStream(builder.creditInputStream)
+                .withTrailers(builder.trailers)
+                .build();
+        if (builder.outputProtocol.isResumable()) {
+            this.resumeToken = builder.resumeToken;
+            this.resumeOffset = builder.resumeOffset;
+            streamOutputStream.resume(resumeOffset);
+        } else {
+            this.resumeToken = null;
+            this.resumeOffset = 0;
+        }
+    }
+
     /**
-     * Default constructor that instantiates a full duplex stream for the provided uri and http method, and wraps
-     * it around the provided input- and output stream.
+     * Create a builder for a full duplex stream for the provided uri and http method, wrapped around the provided
+     * input- and output stream.
      *
-     * @param uri the uri
-     * @param method the http Method
+     * @param uri          the uri
+     * @param method       the http method
      * @param inputStream  the input stream
      * @param outputStream the output stream
+     * @return the builder
      */
-    StreamImpl(String uri, String method, InputStream inputStream, OutputStream outputStream) {
-        this.uri = uri;
-        this.method = method;
-        this.streamInputStream = new StreamInputStream(inputStream);
-        this.streamOutputStream = new StreamOutputStream(outputStream);
+    static Builder builder(String uri, String method, InputStream inputStream, OutputStream outputStream) {
+        return new Builder(uri, method, inputStream, outputStream);
     }
 
     public String getUri() {
@@ -76,6 +103,30 @@ final class StreamImpl implements Stream {
         return streamOutputStream;
     }
 
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    public long getResumeOffset() {
+        return resumeOffset;
+    }
+
+    public void seek(long position) {
+        streamOutputStream.seek(position);
+    }
+
+    public synchronized StreamChannel getChannel(int channel) {
+        if (channel <= 0) {
+            throw new IllegalArgumentException("invalid channel: " + channel);
+        }
+        StreamChannel streamChannel = channels.get(channel);
+        if (streamChannel == null) {
+            streamChannel = new StreamChannelImpl(channel, streamInputStream, streamOutputStream);
+            channels.put(channel, streamChannel);
+        }
+        return streamChannel;
+    }
+
     public boolean isCommitted() {
         return committed;
     }
@@ -96,6 +147,35 @@ final class StreamImpl implements Stream {
         sendStatus(code, message);
     }
 
+    /**
+     * Handle the stream with the provided handler, and finish it: when the handler returns without committing the
+     * stream, a success status is sent, and when the handler throws an exception, an error status is sent instead.
+     *
+     * @param handler the stream handler
+     */
+    void handle(StreamHandler handler) {
+        try {
+            handler.handleStreamRequest(this);
+            if (!isCommitted()) {
+                sendSuccess();
+            }
+        } catch (Throwable t) {
+            logger.error("error while handling stream", t);
+            if (!isCommitted()) {
+                sendError(StreamStatus.STATUS_ERROR, t.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Release the buffers of the stream (returning them to the buffer pool). After releasing, reading/writing from/to
+     * the stream will no longer be possible.
+     */
+    void release() {
+        streamInputStream.release();
+        streamOutputStream.release();
+    }
+
     /**
      * Finish the stream and write the stream status (code and message) to the stream output stream. After calling this
      * method, reading/writing from/to the stream will no longer be possible.
@@ -110,9 +190,117 @@ final class StreamImpl implements Stream {
 
             // write eof and status
             streamOutputStream.writeStatus(code, message);
+            logger.debug("sent stream status, " + streamOutputStream.getStatistics());
         } catch (IOException e) {
             throw new HttpStreamException("error while sending stream status", e);
         }
     }
 
+    /**
+     * A builder for a full duplex stream.
+     */
+    static final class Builder {
+
+        private final String uri;
+        private final String method;
+        private final InputStream inputStream;
+        private final OutputStream outputStream;
+        private StreamProtocol inputProtocol = StreamProtocol.LEGACY;
+        private StreamProtocol outputProtocol = StreamProtocol.LEGACY;
+        private FlushPolicy flushPolicy = new ExplicitFlushPolicy();
+        private int writeBehindBlocks = 0;
+        private String resumeToken = null;
+        private long resumeOffset = 0;
+        private StatusTrailers trailers = null;
+        private InputStream creditInputStream = null;
+
+        private Builder(String uri, String method, InputStream inputStream, OutputStream outputStream) {
+            this.uri = uri;
+            this.method = method;
+            this.inputStream = inputStream;
+            this.outputStream = outputStream;
+        }
+
+        /**
+         * Set the protocols of the input- and output stream.
+         *
+         * @param inputProtocol  the protocol of the input stream (default {@link StreamProtocol#LEGACY})
+         * @param outputProtocol the protocol of the output stream (default {@link StreamProtocol#LEGACY})
+         * @return this builder
+         */
+        Builder withProtocols(StreamProtocol inputProtocol, StreamProtocol outputProtocol) {
+            this.inputProtocol = inputProtocol;
+            this.outputProtocol = outputProtocol;
+            return this;
+        }
+
+        /**
+         * Set the flush policy of the output stream.
+         *
+         * @param flushPolicy the flush policy (default {@link ExplicitFlushPolicy})
+         * @return this builder
+         */
+        Builder withFlushPolicy(FlushPolicy flushPolicy) {
+            this.flushPolicy = flushPolicy;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of blocks in flight for writing the output stream in the background.
+         *
+         * @param writeBehindBlocks the maximum number of blocks in flight, or 0 to write synchronously (default)
+         * @return this builder
+         */
+        Builder withWriteBehindBlocks(int writeBehindBlocks) {
+            this.writeBehindBlocks = writeBehindBlocks;
+            return this;
+        }
+
+        /**
+         * Resume the output stream (if the output protocol is resumable).
+         *
+         * @param resumeToken  the resume token sent by the requester (null if none)
+         * @param resumeOffset the offset for resuming the output stream (0 if not resuming)
+         * @return this builder
+         */
+        Builder withResume(String resumeToken, long resumeOffset) {
+            this.resumeToken = resumeToken;
+            this.resumeOffset = resumeOffset;
+            return this;
+        }
+
+        /**
+         * Set the trailers for the status of the output stream.
+         *
+         * @param trailers the trailers (null if the output protocol doesn't use status trailers)
+         * @return this builder
+         */
+        Builder withTrailers(StatusTrailers trailers) {
+            this.trailers = trailers;
+            return this;
+        }
+
+        /**
+         * Set the input stream with the credits granted by the reader of the output stream, on a transport that
+         * carries them back to this stream.
+         *
+         * @param creditInputStream the credit input stream (null if the output protocol doesn't use flow control)
+         * @return this builder
+         */
+        Builder withCreditInputStream(InputStream creditInputStream) {
+            this.creditInputStream = creditInputStream;
+            return this;
+        }
+
+        /**
+         * Build the full duplex stream.
+         *
+         * @return the stream
+         */
+        StreamImpl build() {
+            return new StreamImpl(this);
+        }
+
+    }
+
 }
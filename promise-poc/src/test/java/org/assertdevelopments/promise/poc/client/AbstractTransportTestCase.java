@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.server.Stream;
+import org.assertdevelopments.promise.poc.server.StreamHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The handlers and helpers shared by the tests of the stream transports (sockets, shared memory and loopback): the
+ * server of every transport registers an echo handler at <code>/ws/echo</code> and a failing handler at
+ * <code>/ws/error</code>.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public abstract class AbstractTransportTestCase extends TestCase {
+
+    protected static final byte[] BYTES = createBytes(1000000);
+
+    /**
+     * Create a handler that echoes the method, the relative uri (on a line of their own) and the request body.
+     *
+     * @return the handler
+     */
+    protected static StreamHandler createEchoHandler() {
+        return new StreamHandler() {
+            public void handleStreamRequest(Stream stream) throws Throwable {
+                OutputStream out = stream.getOutputStream();
+                out.write((stream.getMethod() + " " + stream.getUri() + "\n").getBytes("UTF-8"));
+                InputStream in = stream.getInputStream();
+                byte[] buffer = new byte[4096];
+                int length;
+                while ((length = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, length);
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a handler that fails without reading the request body.
+     *
+     * @return the handler
+     */
+    protected static StreamHandler createErrorHandler() {
+        return new StreamHandler() {
+            public void handleStreamRequest(Stream stream) throws Throwable {
+                stream.getOutputStream().write(new byte[1000]);
+                throw new IllegalStateException("failed");
+            }
+        };
+    }
+
+    /**
+     * Check the response of the echo handler to a request body with the first bytes of {@link #BYTES}.
+     *
+     * @param response the response (closed afterwards)
+     * @param uri      the relative uri
+     * @param length   the length of the request body
+     */
+    protected static void assertEcho(StreamResponse response, String uri, int length) throws IOException {
+        try {
+            byte[] bytes = readFully(response.getInputStream());
+            byte[] header = ("POST " + uri + "\n").getBytes("UTF-8");
+            assertTrue(Arrays.equals(header, Arrays.copyOf(bytes, header.length)));
+            assertTrue(Arrays.equals(Arrays.copyOf(BYTES, length), Arrays.copyOfRange(bytes, header.length,
+                    bytes.length)));
+        } finally {
+            response.close();
+        }
+    }
+
+    protected static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, length);
+        }
+        return bytes.toByteArray();
+    }
+
+    protected static byte[] createBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(0).nextBytes(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamFrameHandler;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertdevelopments.promise.poc.core.protocol.StreamTestCase.createBytes;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class AsyncStreamClientTestCase extends TestCase {
+
+    private static final byte[] BYTES = createBytes(100000);
+
+    private HttpServer server;
+    private AsyncStreamClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        // a server that echoes the size of the request body, followed by the bytes (or an error status)
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                long requestSize = 0;
+                if (contentType != null) {
+                    StreamInputStream in = new StreamInputStream(exchange.getRequestBody(),
+                            StreamProtocol.parse(contentType));
+                    while (in.read() != -1) {
+                        requestSize++;
+                    }
+                }
+                StreamProtocol protocol = StreamProtocol.DEFAULT.negotiate(
+                        StreamProtocol.parseAccept(exchange.getRequestHeaders().getFirst("Accept")));
+                exchange.getResponseHeaders().set("Content-Type", protocol.getContentType());
+                exchange.sendResponseHeaders(202, 0);
+                StreamOutputStream out = new StreamOutputStream(exchange.getResponseBody(), protocol);
+                out.write(String.valueOf(requestSize).getBytes("UTF-8"));
+                out.write(' ');
+                out.write(BYTES);
+                if (exchange.getRequestURI().getPath().endsWith("/error")) {
+                    out.writeStatus(StreamStatus.STATUS_ERROR, "failed");
+                } else {
+                    out.writeStatus(StreamStatus.STATUS_OK, "OK");
+                }
+                out.release();
+                exchange.close();
+            }
+        });
+        server.start();
+        client = new AsyncStreamClient(StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    public void testResponse() throws Exception {
+        StreamResponse response = client.sendRequestAsync(getURI("/test"), new StreamRequest() {
+            public void writeEntity(OutputStream outputStream) throws IOException {
+                outputStream.write(new byte[1234]);
+            }
+        }).get(10, TimeUnit.SECONDS);
+        try {
+            byte[] bytes = readFully(response.getInputStream());
+            assertEquals("1234 ", new String(bytes, 0, 5, "UTF-8"));
+            assertTrue(Arrays.equals(BYTES, Arrays.copyOfRange(bytes, 5, bytes.length)));
+        } finally {
+            response.close();
+        }
+    }
+
+    public void testFrames() throws Exception {
+        Collector collector = new Collector();
+        StreamStatus status = client.sendRequestAsync(getURI("/test"), null, collector).get(10, TimeUnit.SECONDS);
+        assertEquals(StreamStatus.STATUS_OK, status.getStatusCode());
+        byte[] bytes = collector.bytes.toByteArray();
+        assertEquals("0 ", new String(bytes, 0, 2, "UTF-8"));
+        assertTrue(Arrays.equals(BYTES, Arrays.copyOfRange(bytes, 2, bytes.length)));
+    }
+
+    public void testError() throws Exception {
+        try {
+            client.sendRequestAsync(getURI("/error"), null, new Collector()).get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RemoteStreamException);
+        }
+    }
+
+    public void testConcurrentStreams() throws Exception {
+        // all frames of all streams are delivered on the single client thread
+        List<Collector> collectors = new ArrayList<Collector>();
+        List<CompletableFuture<StreamStatus>> futures = new ArrayList<CompletableFuture<StreamStatus>>();
+        for (int n = 0; n < 200; n++) {
+            Collector collector = new Collector();
+            collectors.add(collector);
+            futures.add(client.sendRequestAsync(getURI("/test"), null, collector));
+        }
+        Set<String> threads = new HashSet<String>();
+        for (int n = 0; n < futures.size(); n++) {
+            assertEquals(StreamStatus.STATUS_OK, futures.get(n).get(30, TimeUnit.SECONDS).getStatusCode());
+            assertEquals(BYTES.length + 2, collectors.get(n).bytes.size());
+            threads.addAll(collectors.get(n).threads);
+        }
+        assertEquals(1, threads.size());
+    }
+
+    private String getURI(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            result.write(buffer, 0, n);
+        }
+        return result.toByteArray();
+    }
+
+    private static final class Collector implements StreamFrameHandler {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final Set<String> threads = new HashSet<String>();
+
+        public void onFrame(int channel, byte[] bytes, int offset, int length) {
+            this.bytes.write(bytes, offset, length);
+            threads.add(Thread.currentThread().getName());
+        }
+
+        public void onChannelEnd(int channel, StreamStatus status) {
+        }
+
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class DuplexStreamTestCase extends TestCase {
+
+    private HttpServer server;
+    private StreamClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        // a server that responds to every number of the request body right away (with the number doubled), like a
+        // duplex stream handler would
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                assertEquals("true", exchange.getRequestHeaders().getFirst(StreamConstants.DUPLEX_HEADER));
+                StreamProtocol protocol = StreamProtocol.DEFAULT.negotiate(
+                        StreamProtocol.parseAccept(exchange.getRequestHeaders().getFirst("Accept")));
+                exchange.getResponseHeaders().set("Content-Type", protocol.getContentType());
+                exchange.sendResponseHeaders(202, 0);
+                StreamInputStream in = new StreamInputStream(exchange.getRequestBody(),
+                        StreamProtocol.parse(exchange.getRequestHeaders().getFirst("Content-Type")));
+                StreamOutputStream out = new StreamOutputStream(exchange.getResponseBody(), protocol);
+                DataInputStream dataIn = new DataInputStream(in);
+                DataOutputStream dataOut = new DataOutputStream(out);
+                try {
+                    while (true) {
+                        int number;
+                        try {
+                            number = dataIn.readInt();
+                        } catch (EOFException e) {
+                            break;
+                        }
+                        dataOut.writeInt(number * 2);
+                        dataOut.flush();
+                    }
+                    out.writeStatus(StreamStatus.STATUS_OK, "OK");
+                } catch (RemoteStreamException e) {
+                    out.writeStatus(StreamStatus.STATUS_ERROR, e.getMessage());
+                }
+                out.release();
+                exchange.close();
+            }
+        });
+        server.start();
+        client = new StreamClient();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    public void testLockstep() throws Exception {
+        // every response is read before the next request is written, which deadlocks without full-duplex
+        DuplexStream stream = client.openDuplexStream(getURI());
+        try {
+            DataOutputStream dataOut = new DataOutputStream(stream.getOutputStream());
+            DataInputStream dataIn = null;
+            for (int n = 0; n < 100; n++) {
+                dataOut.writeInt(n);
+                dataOut.flush();
+                if (dataIn == null) {
+                    dataIn = new DataInputStream(stream.getResponse().getInputStream());
+                }
+                assertEquals(n * 2, dataIn.readInt());
+            }
+            stream.sendSuccess();
+            assertEquals(-1, dataIn.read());
+            stream.getResponse().close();
+        } finally {
+            stream.close();
+        }
+    }
+
+    public void testError() throws Exception {
+        DuplexStream stream = client.openDuplexStream(getURI());
+        try {
+            DataOutputStream dataOut = new DataOutputStream(stream.getOutputStream());
+            dataOut.writeInt(21);
+            dataOut.flush();
+            DataInputStream dataIn = new DataInputStream(stream.getResponse().getInputStream());
+            assertEquals(42, dataIn.readInt());
+            stream.sendError("failed");
+            try {
+                dataIn.read();
+                fail();
+            } catch (RemoteStreamException e) {
+                // expected
+            }
+            try {
+                stream.sendSuccess();
+                fail();
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    private String getURI() {
+        return "http://localhost:" + server.getAddress().getPort() + "/duplex";
+    }
+
+}
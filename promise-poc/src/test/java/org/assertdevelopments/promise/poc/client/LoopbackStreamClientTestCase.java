@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.server.LoopbackStreamServer;
+import org.assertdevelopments.promise.poc.server.Stream;
+import org.assertdevelopments.promise.poc.server.StreamHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class LoopbackStreamClientTestCase extends AbstractTransportTestCase {
+
+    private LoopbackStreamServer server;
+    private LoopbackStreamClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new LoopbackStreamServer("test");
+        server.register("/ws/echo", createEchoHandler());
+        server.register("/ws/error", createErrorHandler());
+        server.start();
+        // small pipes, so the writers wait for the readers
+        client = new LoopbackStreamClient(StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C), 4096);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    public void testEcho() throws Exception {
+        for (int n = 0; n < 3; n++) {
+            StreamResponse response = client.sendRequest("loopback://test/ws/echo/test?n=1", new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    // (the echo must fit in the buffers of the server, until the request body is written completely)
+                    outputStream.write(BYTES, 0, 10000);
+                }
+            });
+            assertEcho(response, "/test?n=1", 10000);
+        }
+    }
+
+    public void testError() throws Exception {
+        try {
+            StreamResponse response = client.sendRequest("loopback://test/ws/error", new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(BYTES, 0, 100000);
+                }
+            });
+            try {
+                readFully(response.getInputStream());
+            } finally {
+                response.close();
+            }
+            fail();
+        } catch (RemoteStreamException e) {
+            // expected
+        }
+    }
+
+    public void testFlowControl() throws Exception {
+        final byte[] bytes = BYTES;
+        final AtomicLong written = new AtomicLong();
+        LoopbackStreamServer creditServer = new LoopbackStreamServer("credits", StreamProtocol.DEFAULT.withCredits(2));
+        creditServer.register("/ws/bytes", new StreamHandler() {
+            public void handleStreamRequest(Stream stream) throws Throwable {
+                written.set(0);
+                OutputStream out = stream.getOutputStream();
+                for (int offset = 0; offset < bytes.length; offset += 1000) {
+                    out.write(bytes, offset, 1000);
+                    written.addAndGet(1000);
+                }
+            }
+        });
+        creditServer.start();
+        // pipes that hold the whole response body, so only the credits hold up the server
+        LoopbackStreamClient creditClient = new LoopbackStreamClient(StreamProtocol.DEFAULT.withCredits(4), 4000000);
+        try {
+            // the same connection carries the exchanges, the credits of every response body end with the exchange
+            for (int n = 0; n < 3; n++) {
+                StreamResponse response = creditClient.sendRequest("loopback://credits/ws/bytes");
+                try {
+                    assertEquals(2, response.getProtocol().getCredits());
+                    Thread.sleep(200);
+                    assertTrue(written.get() < bytes.length / 2);
+                    assertTrue(Arrays.equals(bytes, readFully(response.getInputStream())));
+                } finally {
+                    response.close();
+                }
+            }
+        } finally {
+            creditClient.close();
+            creditServer.close();
+        }
+    }
+
+    public void testNotBound() throws Exception {
+        try {
+            client.sendRequest("loopback://unknown/ws/echo");
+            fail();
+        } catch (HttpStreamException e) {
+            // expected
+        }
+    }
+
+    public void testServerClosed() throws Exception {
+        StreamResponse response = client.sendRequest("loopback://test/ws/echo");
+        readFully(response.getInputStream());
+        response.close();
+        server.close();
+        try {
+            // the idle connection was closed by the server
+            client.sendRequest("loopback://test/ws/echo");
+            fail();
+        } catch (HttpStreamException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.io.MappedRingBuffer;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.server.SharedMemoryStreamServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class SharedMemoryStreamClientTestCase extends AbstractTransportTestCase {
+
+    private Path directory;
+    private SharedMemoryStreamServer server;
+    private SharedMemoryStreamClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("promise");
+        // small ring buffers, so both sides wait for each other
+        server = new SharedMemoryStreamServer(directory, 64 * 1024, MappedRingBuffer.WaitStrategy.PARK,
+                StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C));
+        server.register("/ws/echo", createEchoHandler());
+        server.register("/ws/error", createErrorHandler());
+        server.start();
+        client = new SharedMemoryStreamClient(directory, MappedRingBuffer.WaitStrategy.BUSY_SPIN,
+                StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        server.close();
+        assertFalse(Files.exists(directory.resolve(SharedMemoryStreamServer.REQUESTS_FILE)));
+        Files.delete(directory);
+    }
+
+    public void testEcho() throws Exception {
+        for (int n = 0; n < 3; n++) {
+            // the request body fits in the ring buffers, the server echoes it while it is being written
+            StreamResponse response = client.sendRequest("/ws/echo", new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(BYTES, 0, 10000);
+                }
+            });
+            assertEcho(response, "", 10000);
+        }
+    }
+
+    public void testError() throws Exception {
+        // the request body (larger than the ring buffer) isn't read by the handler, but the connection is reused
+        for (int n = 0; n < 2; n++) {
+            StreamResponse response = client.sendRequest("/ws/error", new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(BYTES);
+                }
+            });
+            try {
+                readFully(response.getInputStream());
+                fail();
+            } catch (RemoteStreamException e) {
+                // expected
+            } finally {
+                response.close();
+            }
+        }
+    }
+
+    public void testPreviousResponseNotClosed() throws Exception {
+        StreamResponse response = client.sendRequest("/ws/echo");
+        try {
+            client.sendRequest("/ws/echo");
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        } finally {
+            readFully(response.getInputStream());
+            response.close();
+        }
+        client.sendRequest("/ws/echo").close();
+    }
+
+    public void testForkedClient() throws Exception {
+        // the server serves one client at a time
+        client.close();
+
+        // a client in another process, that is killed while it is connected (the server notices it, and replaces the
+        // ring buffers for the next client)
+        Process process = fork("hang", ProcessBuilder.Redirect.PIPE);
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line;
+            while ((line = reader.readLine()) != null && !line.equals("connected")) {
+                // log output
+            }
+            assertEquals("connected", line);
+        } finally {
+            process.destroyForcibly();
+            process.waitFor();
+        }
+
+        // a client in another process, that echoes a request body
+        process = fork("echo", ProcessBuilder.Redirect.DISCARD);
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue());
+    }
+
+    private Process fork(String mode, ProcessBuilder.Redirect output) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                ForkedClient.class.getName(), directory.toString(), mode);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(output);
+        return processBuilder.start();
+    }
+
+    /**
+     * A shared memory client in a process of its own: it connects (trying again while the server is busy), and either
+     * echoes a request body (exit code 0 if the response matches, the assertion error ends the process otherwise) or
+     * hangs.
+     */
+    public static final class ForkedClient {
+
+        public static void main(String[] args) throws Exception {
+            SharedMemoryStreamClient client = connect(Paths.get(args[0]));
+            if ("hang".equals(args[1])) {
+                System.out.println("connected");
+                System.out.flush();
+                Thread.sleep(Long.MAX_VALUE);
+            }
+            StreamResponse response = client.sendRequest("/ws/echo", new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(BYTES, 0, 10000);
+                }
+            });
+            try {
+                assertEcho(response, "", 10000);
+            } finally {
+                client.close();
+            }
+            System.exit(0);
+        }
+
+        private static SharedMemoryStreamClient connect(Path directory) throws Exception {
+            long deadline = System.currentTimeMillis() + 30000;
+            while (true) {
+                try {
+                    return new SharedMemoryStreamClient(directory, MappedRingBuffer.WaitStrategy.PARK,
+                            StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C));
+                } catch (IOException e) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw e;
+                    }
+                    Thread.sleep(10);
+                }
+            }
+        }
+
+    }
+
+}
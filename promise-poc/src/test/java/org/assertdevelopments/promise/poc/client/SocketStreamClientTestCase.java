@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import org.assertdevelopments.promise.poc.core.exceptions.HttpStreamException;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.server.SocketStreamServer;
+import org.assertdevelopments.promise.poc.server.Stream;
+import org.assertdevelopments.promise.poc.server.StreamHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class SocketStreamClientTestCase extends AbstractTransportTestCase {
+
+    private SocketStreamServer server;
+    private SocketStreamClient client;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new SocketStreamServer(new InetSocketAddress("localhost", 0),
+                StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C));
+        server.register("/ws/echo", createEchoHandler());
+        server.register("/ws/error", createErrorHandler());
+        server.start();
+        client = new SocketStreamClient(StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        client.close();
+        server.close();
+    }
+
+    public void testEcho() throws Exception {
+        StreamResponse response = client.sendRequest(getURI("/ws/echo/test?n=1"), new StreamRequest() {
+            public void writeEntity(OutputStream outputStream) throws IOException {
+                outputStream.write(BYTES);
+            }
+        });
+        assertEcho(response, "/test?n=1", BYTES.length);
+    }
+
+    public void testConnectionReuse() throws Exception {
+        for (int n = 0; n < 5; n++) {
+            StreamResponse response = client.sendRequest(getURI("/ws/echo"));
+            try {
+                assertEquals("POST \n", new String(readFully(response.getInputStream()), "UTF-8"));
+            } finally {
+                response.close();
+            }
+            assertEquals(1, client.getIdleConnections());
+        }
+    }
+
+    public void testError() throws Exception {
+        // the request body isn't read by the handler, but the connection can still be reused
+        for (int n = 0; n < 2; n++) {
+            StreamResponse response = client.sendRequest(getURI("/ws/error"), new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(BYTES, 0, 100000);
+                }
+            });
+            try {
+                readFully(response.getInputStream());
+                fail();
+            } catch (RemoteStreamException e) {
+                // expected
+            } finally {
+                response.close();
+            }
+            assertEquals(1, client.getIdleConnections());
+        }
+    }
+
+    public void testUnixDomainSocket() throws Exception {
+        Path directory = Files.createTempDirectory("promise");
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(directory.resolve("promise.sock"));
+        SocketStreamServer server = new SocketStreamServer(address).register("/ws/echo", new StreamHandler() {
+            public void handleStreamRequest(Stream stream) throws Throwable {
+                OutputStream out = stream.getOutputStream();
+                InputStream in = stream.getInputStream();
+                int b;
+                while ((b = in.read()) != -1) {
+                    out.write(b);
+                }
+            }
+        });
+        server.start();
+        try {
+            for (int n = 0; n < 2; n++) {
+                StreamResponse response = client.sendRequest(address, "/ws/echo", new StreamRequest() {
+                    public void writeEntity(OutputStream outputStream) throws IOException {
+                        outputStream.write(BYTES, 0, 10000);
+                    }
+                });
+                try {
+                    assertTrue(Arrays.equals(Arrays.copyOf(BYTES, 10000), readFully(response.getInputStream())));
+                } finally {
+                    response.close();
+                }
+            }
+            assertEquals(1, client.getIdleConnections());
+        } finally {
+            server.close();
+        }
+        assertFalse(Files.exists(address.getPath()));
+        Files.delete(directory);
+    }
+
+    public void testNotFound() throws Exception {
+        try {
+            client.sendRequest(getURI("/ws/unknown"));
+            fail();
+        } catch (HttpStreamException e) {
+            assertEquals(0, client.getIdleConnections());
+        }
+    }
+
+    private String getURI(String path) throws IOException {
+        return "tcp://localhost:" + ((InetSocketAddress) server.getLocalAddress()).getPort() + path;
+    }
+
+}
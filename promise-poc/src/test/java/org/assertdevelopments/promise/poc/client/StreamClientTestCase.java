@@ -0,0 +1,605 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class StreamClientTestCase extends TestCase {
+
+    public void testWarmUp() throws Exception {
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final Semaphore accepted = new Semaphore(0);
+        final List<Socket> sockets = new ArrayList<Socket>();
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+                        sockets.add(socket);
+                        accepted.release();
+                        new Thread() {
+                            @Override
+                            public void run() {
+                                respond(socket);
+                            }
+                        }.start();
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        };
+        acceptor.start();
+        StreamClient client = StreamClient.builder()
+                .withMaxConnectionsPerRoute(4)
+                .withSocketBufferSizes(65536, 65536)
+                .build();
+        try {
+            // the connections are opened in advance
+            String uri = "http://localhost:" + serverSocket.getLocalPort() + "/ws/test";
+            client.warmUp(uri, 4);
+            assertTrue(accepted.tryAcquire(4, 10, TimeUnit.SECONDS));
+
+            // the pooled connections are reused
+            client.warmUp(uri, 4);
+            assertFalse(accepted.tryAcquire(1, 200, TimeUnit.MILLISECONDS));
+
+            // requests use the warmed up connections (the same route)
+            StreamResponse response = client.sendRequest(uri);
+            try {
+                assertEquals(42, response.getInputStream().read());
+                assertEquals(-1, response.getInputStream().read());
+            } finally {
+                response.close();
+            }
+            assertFalse(accepted.tryAcquire(1, 200, TimeUnit.MILLISECONDS));
+        } finally {
+            client.close();
+            serverSocket.close();
+            acceptor.join();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Respond to the requests on a connection (with a single byte), until the connection is closed.
+     *
+     * @param socket the connection
+     */
+    private static void respond(Socket socket) {
+        try {
+            BufferedInputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                // skip the request headers (the requests have an empty body)
+                int state = 0;
+                while (state < 4) {
+                    int n = in.read();
+                    if (n == -1) {
+                        return;
+                    }
+                    state = (n == '\r' && state % 2 == 0) || (n == '\n' && state % 2 == 1) ? state + 1 : 0;
+                }
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                StreamOutputStream stream = new StreamOutputStream(body, StreamProtocol.DEFAULT);
+                stream.write(42);
+                stream.writeStatus(StreamStatus.STATUS_OK, "OK");
+                stream.release();
+                out.write(("HTTP/1.1 202 Accepted\r\nContent-Type: " + StreamProtocol.DEFAULT.getContentType() +
+                        "\r\nContent-Length: " + body.size() + "\r\n\r\n").getBytes("US-ASCII"));
+                body.writeTo(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // connection closed
+        }
+    }
+
+    public void testHttp2() throws Exception {
+        // a cleartext HTTP/2 (h2c) server, that upgrades the connection and responds with the size of the request body
+        H2cServer server = new H2cServer();
+        StreamClient client = StreamClient.builder().withHttp2(true).build();
+        try {
+            String uri = "http://localhost:" + server.getPort() + "/ws/test";
+            StreamResponse response = client.sendRequest(uri, new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(new byte[10000]);
+                }
+            });
+            try {
+                assertEquals("HTTP/2", response.getHttpVersion());
+                assertEquals(10000, new DataInputStream(response.getInputStream()).readInt());
+                assertEquals(-1, response.getInputStream().read());
+            } finally {
+                response.close();
+            }
+        } finally {
+            client.close();
+            server.close();
+        }
+        assertNull(server.error);
+    }
+
+    public void testHttp2Fallback() throws Exception {
+        // a server that responds with the size of the request body (the server only speaks HTTP/1.1, so the client
+        // falls back to HTTP/1.1)
+        // (platform threads: the request bodies are written on virtual threads, and the blocking reads of the server
+        // pin their carrier thread)
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                StreamInputStream in = new StreamInputStream(exchange.getRequestBody(),
+                        StreamProtocol.parse(exchange.getRequestHeaders().getFirst("Content-Type")));
+                long size = 0;
+                while (in.read() != -1) {
+                    size++;
+                }
+                StreamProtocol protocol = StreamProtocol.DEFAULT.negotiate(
+                        StreamProtocol.parseAccept(exchange.getRequestHeaders().getFirst("Accept")));
+                exchange.getResponseHeaders().set("Content-Type", protocol.getContentType());
+                exchange.sendResponseHeaders(202, 0);
+                StreamOutputStream out = new StreamOutputStream(exchange.getResponseBody(), protocol);
+                out.write(new byte[]{(byte) (size >> 24), (byte) (size >> 16), (byte) (size >> 8), (byte) size});
+                out.writeStatus(StreamStatus.STATUS_OK, "OK");
+                out.release();
+                exchange.close();
+            }
+        });
+        server.start();
+        StreamClient client = StreamClient.builder().withHttp2(true).build();
+        try {
+            String uri = "http://localhost:" + server.getAddress().getPort() + "/ws/test";
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int n = 0; n < 50; n++) {
+                final int size = n * 10000;
+                results.add(client.sendRequest(uri, new StreamRequest() {
+                    public void writeEntity(OutputStream outputStream) throws IOException {
+                        outputStream.write(new byte[size]);
+                    }
+                }, new StreamResponseHandler<Integer>() {
+                    public Integer handleResponse(StreamResponse response) throws Exception {
+                        assertEquals("HTTP/1.1", response.getHttpVersion());
+                        return new DataInputStream(response.getInputStream()).readInt();
+                    }
+                }));
+            }
+            for (int n = 0; n < results.size(); n++) {
+                assertEquals(n * 10000, results.get(n).get(10, TimeUnit.SECONDS).intValue());
+            }
+            try {
+                client.warmUp(uri, 1);
+                fail();
+            } catch (IllegalStateException e) {
+                // the streams share a connection
+            }
+        } finally {
+            client.close();
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdown();
+        }
+    }
+
+    public void testResponseHandler() throws Exception {
+        // a server that responds with a single byte (the requests have an empty body)
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", StreamProtocol.DEFAULT.getContentType());
+                exchange.sendResponseHeaders(202, 0);
+                StreamOutputStream out = new StreamOutputStream(exchange.getResponseBody(), StreamProtocol.DEFAULT);
+                out.write(42);
+                out.writeStatus(StreamStatus.STATUS_OK, "OK");
+                out.release();
+                exchange.close();
+            }
+        });
+        server.start();
+        StreamClient client = StreamClient.builder().withMaxConnectionsPerRoute(1).build();
+        try {
+            String uri = "http://localhost:" + server.getAddress().getPort() + "/ws/test";
+
+            // the handler consumes the response on a virtual thread
+            Future<Boolean> result = client.sendRequest(uri, null, new StreamResponseHandler<Boolean>() {
+                public Boolean handleResponse(StreamResponse response) throws Exception {
+                    assertEquals(42, response.getInputStream().read());
+                    assertEquals(-1, response.getInputStream().read());
+                    return Thread.currentThread().isVirtual();
+                }
+            });
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+
+            // the exception of the handler is the result of the future (the single connection of the client is only
+            // available when the first response was closed)
+            result = client.sendRequest(uri, null, new StreamResponseHandler<Boolean>() {
+                public Boolean handleResponse(StreamResponse response) throws Exception {
+                    throw new IllegalStateException("test");
+                }
+            });
+            try {
+                result.get(10, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            client.close();
+            server.stop(0);
+        }
+    }
+
+    public void testRequestProtocol() throws Exception {
+        // a server that negotiates the protocol of the response body (for /v2), or responds with the legacy protocol
+        // (for /v1), and records the content types of the request bodies
+        final List<String> contentTypes = Collections.synchronizedList(new ArrayList<String>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                contentTypes.add(contentType);
+                StreamInputStream in = new StreamInputStream(exchange.getRequestBody(),
+                        StreamProtocol.parse(contentType));
+                while (in.read() != -1) {
+                    // skip
+                }
+                StreamProtocol protocol = exchange.getRequestURI().getPath().startsWith("/v2")
+                        ? StreamProtocol.DEFAULT.negotiate(
+                        StreamProtocol.parseAccept(exchange.getRequestHeaders().getFirst("Accept")))
+                        : StreamProtocol.LEGACY;
+                exchange.getResponseHeaders().set("Content-Type", protocol.getContentType());
+                exchange.sendResponseHeaders(202, 0);
+                StreamOutputStream out = new StreamOutputStream(exchange.getResponseBody(), protocol);
+                out.writeStatus(StreamStatus.STATUS_OK, "OK");
+                out.release();
+                exchange.close();
+            }
+        });
+        server.start();
+        StreamClient client = new StreamClient();
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            StreamRequest request = new StreamRequest() {
+                public void writeEntity(OutputStream outputStream) throws IOException {
+                    outputStream.write(new byte[100]);
+                }
+            };
+            for (int n = 0; n < 2; n++) {
+                client.sendRequest(base + "/v1/test", request).close();
+            }
+            for (int n = 0; n < 2; n++) {
+                client.sendRequest(base + "/v2/test", request).close();
+            }
+
+            // legacy request bodies, until the server responded with a version 2 response body
+            assertEquals(Arrays.asList(StreamConstants.CONTENT_TYPE, StreamConstants.CONTENT_TYPE,
+                    StreamConstants.CONTENT_TYPE, StreamProtocol.DEFAULT.getContentType()), contentTypes);
+        } finally {
+            client.close();
+            server.stop(0);
+        }
+    }
+
+    public void testTrailers() throws Exception {
+        // a server that sends the stream status as trailer fields of a chunked response, for three exchanges on the
+        // same connection (an ok status, an error status, and an ok status in the leading headers instead of the
+        // trailer)
+        final ServerSocket serverSocket = new ServerSocket(0);
+        final List<String> accepted = Collections.synchronizedList(new ArrayList<String>());
+        Thread server = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = serverSocket.accept();
+                    try {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                "US-ASCII"));
+                        OutputStream out = socket.getOutputStream();
+                        for (int n = 0; n < 3; n++) {
+                            String accept = null;
+                            boolean te = false;
+                            String line;
+                            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                                if (line.regionMatches(true, 0, "Accept:", 0, 7)) {
+                                    accept = line.substring(7).trim();
+                                } else if (line.equalsIgnoreCase("TE: trailers")) {
+                                    te = true;
+                                }
+                            }
+                            StreamProtocol protocol = StreamProtocol.DEFAULT.withTrailers(true).negotiate(
+                                    StreamProtocol.parseAccept(accept));
+                            accepted.add(te + " " + protocol.isTrailers());
+                            int status = n != 1 ? StreamStatus.STATUS_OK : StreamStatus.STATUS_ERROR;
+                            String field = StreamConstants.STATUS_TRAILER + ": " + status + "\r\n";
+                            out.write(("HTTP/1.1 202 Accepted\r\n" +
+                                    "Content-Type: " + protocol.getContentType() + "\r\n" +
+                                    "Transfer-Encoding: chunked\r\n" +
+                                    "Trailer: " + StreamConstants.STATUS_TRAILER + "\r\n" +
+                                    (n == 2 ? field : "") +
+                                    "\r\n" +
+                                    "5\r\nhello\r\n" +
+                                    "0\r\n" +
+                                    (n != 2 ? field : "") +
+                                    "\r\n").getBytes("US-ASCII"));
+                            out.flush();
+                        }
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        };
+        server.start();
+        StreamClient client = new StreamClient(StreamProtocol.DEFAULT.withTrailers(true));
+        try {
+            String uri = "http://localhost:" + serverSocket.getLocalPort() + "/ws/test";
+            StreamResponse response = client.sendRequest(uri, null);
+            try {
+                DataInputStream in = new DataInputStream(response.getInputStream());
+                byte[] bytes = new byte[5];
+                in.readFully(bytes);
+                assertEquals("hello", new String(bytes, "US-ASCII"));
+                assertEquals(-1, in.read());
+                assertTrue(response.isComplete());
+            } finally {
+                response.close();
+            }
+
+            // the connection is reused, and the error status is reported
+            response = client.sendRequest(uri, null);
+            try {
+                while (response.getInputStream().read() != -1) {
+                    // skip
+                }
+                fail();
+            } catch (RemoteStreamException e) {
+                // remote error
+            } finally {
+                response.close();
+            }
+
+            // a status in the leading headers is not taken for the trailer
+            response = client.sendRequest(uri, null);
+            try {
+                while (response.getInputStream().read() != -1) {
+                    // skip
+                }
+                fail();
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("trailer is missing"));
+            } finally {
+                response.close();
+            }
+            assertEquals(Arrays.asList("true true", "true true", "true true"), accepted);
+        } finally {
+            client.close();
+            serverSocket.close();
+            server.join();
+        }
+    }
+
+    /**
+     * A minimal cleartext HTTP/2 server for a single exchange: the HTTP/1.1 request is upgraded to h2c (RFC 7540,
+     * section 3.2), and the response to it is sent on stream 1. The response headers are encoded as literals (no
+     * header table, no huffman coding).
+     */
+    private static final class H2cServer extends Thread {
+
+        private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes();
+
+        private static final int DATA = 0;
+        private static final int HEADERS = 1;
+        private static final int SETTINGS = 4;
+        private static final int END_STREAM = 1;
+        private static final int ACK = 1;
+        private static final int END_HEADERS = 4;
+
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private volatile Socket socket;
+        private volatile Throwable error;
+
+        H2cServer() throws IOException {
+            setDaemon(true);
+            start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket = serverSocket.accept();
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                OutputStream out = socket.getOutputStream();
+
+                // the HTTP/1.1 request, with the upgrade headers
+                ChunkedTransferInputStream.readLine(in);
+                Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+                String line;
+                while ((line = ChunkedTransferInputStream.readLine(in)).length() > 0) {
+                    int colon = line.indexOf(':');
+                    headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                }
+                assertEquals("h2c", headers.get("Upgrade"));
+                assertEquals("chunked", headers.get("Transfer-Encoding"));
+                ChunkedTransferInputStream body = new ChunkedTransferInputStream(in);
+                StreamInputStream streamInputStream = new StreamInputStream(body,
+                        StreamProtocol.parse(headers.get("Content-Type")));
+                int size = 0;
+                while (streamInputStream.read() != -1) {
+                    size++;
+                }
+                while (body.read() != -1) {
+                    // the end of the chunked request body
+                }
+
+                // switch to HTTP/2, the client sends the connection preface and its settings
+                out.write("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n"
+                        .getBytes("ISO-8859-1"));
+                writeFrame(out, SETTINGS, 0, 0, new byte[0]);
+                byte[] preface = new byte[PREFACE.length];
+                in.readFully(preface);
+                assertTrue(Arrays.equals(PREFACE, preface));
+                assertEquals(SETTINGS, readFrame(in));
+                writeFrame(out, SETTINGS, ACK, 0, new byte[0]);
+
+                // the response on stream 1 (the stream of the upgraded request)
+                ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+                writeHeader(headerBlock, 8, "202");
+                writeHeader(headerBlock, 31, StreamProtocol.DEFAULT.getContentType());
+                writeFrame(out, HEADERS, END_HEADERS, 1, headerBlock.toByteArray());
+                ByteArrayOutputStream responseBody = new ByteArrayOutputStream();
+                StreamOutputStream streamOutputStream = new StreamOutputStream(responseBody, StreamProtocol.DEFAULT);
+                new DataOutputStream(streamOutputStream).writeInt(size);
+                streamOutputStream.writeStatus(StreamStatus.STATUS_OK, "OK");
+                streamOutputStream.release();
+                writeFrame(out, DATA, END_STREAM, 1, responseBody.toByteArray());
+
+                // ignore the rest of the frames, until the client closes the connection
+                while (true) {
+                    readFrame(in);
+                }
+            } catch (EOFException e) {
+                // connection closed
+            } catch (SocketException e) {
+                // connection closed
+            } catch (Throwable t) {
+                error = t;
+            }
+        }
+
+        private static int readFrame(DataInputStream in) throws IOException {
+            int length = in.readUnsignedShort() << 8 | in.readUnsignedByte();
+            int type = in.readUnsignedByte();
+            in.readUnsignedByte();
+            in.readInt();
+            in.readFully(new byte[length]);
+            return type;
+        }
+
+        private static void writeFrame(OutputStream out, int type, int flags, int streamId, byte[] payload)
+                throws IOException {
+            DataOutputStream frame = new DataOutputStream(out);
+            frame.writeShort(payload.length >> 8);
+            frame.writeByte(payload.length);
+            frame.writeByte(type);
+            frame.writeByte(flags);
+            frame.writeInt(streamId);
+            frame.write(payload);
+            frame.flush();
+        }
+
+        private static void writeHeader(ByteArrayOutputStream out, int nameIndex, String value) throws IOException {
+            // literal header field without indexing, with the name from the static table
+            byte[] bytes = value.getBytes("ISO-8859-1");
+            writeInteger(out, 4, nameIndex);
+            writeInteger(out, 7, bytes.length);
+            out.write(bytes);
+        }
+
+        private static void writeInteger(ByteArrayOutputStream out, int prefixBits, int value) {
+            int max = (1 << prefixBits) - 1;
+            if (value < max) {
+                out.write(value);
+                return;
+            }
+            out.write(max);
+            value -= max;
+            while (value >= 128) {
+                out.write(value & 127 | 128);
+                value >>= 7;
+            }
+            out.write(value);
+        }
+
+        void close() throws Exception {
+            serverSocket.close();
+            if (socket != null) {
+                socket.close();
+            }
+            join(10000);
+        }
+
+    }
+
+    public void testBuilder() {
+        try {
+            StreamClient.builder().withMaxConnectionsPerRoute(0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // invalid maximum
+        }
+        try {
+            StreamClient.builder().withSocketBufferSizes(-1, 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // invalid buffer size
+        }
+        try {
+            StreamClient.builder().withConnectTimeout(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // invalid connect timeout
+        }
+    }
+
+}
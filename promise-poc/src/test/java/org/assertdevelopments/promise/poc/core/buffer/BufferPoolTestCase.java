@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.buffer;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FixedChunkSizePolicy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class BufferPoolTestCase extends TestCase {
+
+    public void testBorrowAndRelease() {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        byte[] buffer = pool.borrow(8192);
+        assertEquals(8192, buffer.length);
+        assertEquals(0, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getOutstanding());
+
+        pool.release(buffer);
+        assertEquals(0, pool.getOutstanding());
+        assertEquals(8192, pool.getPooledBytes());
+
+        // the released buffer is reused
+        assertSame(buffer, pool.borrow(5000));
+        assertEquals(1, pool.getHits());
+        assertEquals(0, pool.getPooledBytes());
+
+        // sizes are rounded up to a power of two
+        assertEquals(BufferPool.MIN_BUFFER_SIZE, pool.borrow(1).length);
+        assertEquals(16384, pool.borrow(8193).length);
+        assertEquals(BufferPool.MAX_BUFFER_SIZE, pool.borrow(BufferPool.MAX_BUFFER_SIZE).length);
+        assertEquals(BufferPool.MAX_BUFFER_SIZE + 1, pool.borrow(BufferPool.MAX_BUFFER_SIZE + 1).length);
+        assertEquals(5, pool.getOutstanding());
+    }
+
+    public void testBounded() {
+        BufferPool pool = new BufferPool(1, 16384, false);
+        byte[] buffer1 = pool.borrow(8192);
+        byte[] buffer2 = pool.borrow(8192);
+        byte[] buffer3 = pool.borrow(8192);
+        pool.release(buffer1);
+        pool.release(buffer2);
+        pool.release(buffer3);
+        assertEquals(3, pool.getReleases());
+        assertEquals(1, pool.getDiscards());
+        assertEquals(16384, pool.getPooledBytes());
+    }
+
+    public void testDoubleRelease() {
+        // only detected with leak detection
+        BufferPool pool = new BufferPool(4, 1024 * 1024, true);
+        byte[] buffer = pool.borrow(8192);
+        pool.release(buffer);
+        try {
+            pool.release(buffer);
+            fail();
+        } catch (IllegalStateException e) {
+            // buffer already released
+        }
+        try {
+            pool.release(new byte[8192]);
+            fail();
+        } catch (IllegalStateException e) {
+            // buffer not borrowed from the pool
+        }
+    }
+
+    public void testCheckLeaks() throws InterruptedException {
+        BufferPool pool = new BufferPool(4, 1024 * 1024, true);
+        byte[] buffer = pool.borrow(8192);
+        assertEquals(0, pool.checkLeaks(60000));
+        Thread.sleep(10);
+        assertEquals(1, pool.checkLeaks(0));
+        pool.release(buffer);
+        assertEquals(0, pool.checkLeaks(0));
+    }
+
+    public void testChunkStreams() throws IOException {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        StreamProtocol protocol = new StreamProtocol(StreamProtocol.VERSION_2, 65536);
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream outputStream = ChunkOutputStream.builder(result, protocol)
+                .withChunkSizePolicy(new FixedChunkSizePolicy(65536))
+                .withBufferPool(pool)
+                .build();
+        outputStream.write(new byte[100000]);
+        outputStream.writeEOF();
+        outputStream.release();
+        outputStream.release();
+        assertEquals(0, pool.getOutstanding());
+
+        ChunkInputStream inputStream = new ChunkInputStream(
+                new ByteArrayInputStream(result.toByteArray()), protocol, pool
+        );
+        assertEquals(0, inputStream.read());
+        inputStream.release();
+        assertEquals(0, pool.getOutstanding());
+        assertEquals(2, pool.getMisses());
+        try {
+            inputStream.read();
+            fail();
+        } catch (IOException e) {
+            // released
+        }
+    }
+
+}
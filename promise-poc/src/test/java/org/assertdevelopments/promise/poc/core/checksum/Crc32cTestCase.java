@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.checksum;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class Crc32cTestCase extends TestCase {
+
+    public void testCheckValue() throws Exception {
+        Crc32c crc = new Crc32c();
+        crc.update("123456789".getBytes("US-ASCII"), 0, 9);
+        assertEquals(0xE3069283L, crc.getValue());
+        crc.reset();
+        assertEquals(0L, crc.getValue());
+    }
+
+    public void testUpdate() {
+        byte[] bytes = new byte[1000];
+        new Random(0).nextBytes(bytes);
+        Crc32c expected = new Crc32c();
+        for (byte b : bytes) {
+            expected.update(b);
+        }
+
+        // the result doesn't depend on how the bytes are split (slicing is only used for aligned blocks of 8 bytes)
+        int[] splits = {1, 3, 7, 8, 9, 100, 1000};
+        for (int split : splits) {
+            Crc32c crc = new Crc32c();
+            for (int offset = 0; offset < bytes.length; offset += split) {
+                crc.update(bytes, offset, Math.min(split, bytes.length - offset));
+            }
+            assertEquals(expected.getValue(), crc.getValue());
+        }
+    }
+
+    public void testUpdateInt() {
+        Crc32c expected = new Crc32c();
+        expected.update(new byte[]{0x12, 0x34, 0x56, 0x78}, 0, 4);
+        Crc32c crc = new Crc32c();
+        crc.updateInt(0x12345678);
+        assertEquals(expected.getValue(), crc.getValue());
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.compression;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class CompressorPoolTestCase extends TestCase {
+
+    public void testReuse() throws Exception {
+        CompressorPool pool = new CompressorPool(Deflater.BEST_SPEED, 1);
+        Deflater deflater = pool.borrowDeflater();
+        Inflater inflater = pool.borrowInflater();
+        byte[] compressed = compress(deflater, new byte[1000]);
+        assertEquals(1000, decompress(inflater, compressed, 1000));
+        pool.release(deflater);
+        pool.release(inflater);
+        assertEquals(1, pool.getPooledDeflaters());
+        assertEquals(1, pool.getPooledInflaters());
+
+        // released compressors are reset, so they can be reused
+        assertSame(deflater, pool.borrowDeflater());
+        assertSame(inflater, pool.borrowInflater());
+        assertEquals(0, pool.getPooledDeflaters());
+        assertEquals(0, pool.getPooledInflaters());
+        assertTrue(Arrays.equals(compressed, compress(deflater, new byte[1000])));
+        assertEquals(1000, decompress(inflater, compressed, 1000));
+    }
+
+    public void testMaxPooled() {
+        CompressorPool pool = new CompressorPool(Deflater.BEST_SPEED, 1);
+        Deflater deflater1 = pool.borrowDeflater();
+        Deflater deflater2 = pool.borrowDeflater();
+        pool.release(deflater1);
+        pool.release(deflater2);
+        assertEquals(1, pool.getPooledDeflaters());
+        assertSame(deflater1, pool.borrowDeflater());
+        assertNotSame(deflater2, pool.borrowDeflater());
+    }
+
+    private static byte[] compress(Deflater deflater, byte[] bytes) {
+        deflater.setInput(bytes);
+        deflater.finish();
+        byte[] buffer = new byte[bytes.length];
+        int n = deflater.deflate(buffer);
+        assertTrue(deflater.finished());
+        byte[] compressed = new byte[n];
+        System.arraycopy(buffer, 0, compressed, 0, n);
+        return compressed;
+    }
+
+    private static int decompress(Inflater inflater, byte[] compressed, int size) throws Exception {
+        inflater.setInput(compressed);
+        return inflater.inflate(new byte[size]);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.compression;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkStatistics;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FixedChunkSizePolicy;
+import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class DictionaryTrainerTestCase extends TestCase {
+
+    public void testTrain() throws IOException {
+        CompressionDictionary dictionary = DictionaryTrainer.train(createEntities(0, 10000), 4096);
+        assertTrue(dictionary.getBytes().length <= 4096);
+        assertEquals(dictionary, new CompressionDictionary(dictionary.getBytes()));
+
+        // small chunks compress (much) better with the dictionary
+        byte[] bytes = createEntities(20000, 5);
+        long plain = compress(bytes, StreamProtocol.COMPRESSION_DEFLATE, null);
+        long preset = compress(bytes, StreamProtocol.COMPRESSION_DEFLATE, dictionary);
+        assertTrue("plain=" + plain + ", preset=" + preset, preset < plain * 3 / 4);
+    }
+
+    public void testNoCommonStrings() {
+        try {
+            DictionaryTrainer.train(new byte[1000], 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // invalid dictionary size
+        }
+
+        byte[] bytes = new byte[100];
+        for (int n = 0; n < bytes.length; n++) {
+            bytes[n] = (byte) n;
+        }
+        try {
+            DictionaryTrainer.train(bytes, 4096);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // no common strings
+        }
+    }
+
+    /**
+     * Write the provided bytes with a chunk output stream (in chunks of 256 bytes), read them again, and return the
+     * number of bytes written (not including the chunk headers).
+     */
+    private static long compress(byte[] bytes, String compression, CompressionDictionary dictionary)
+            throws IOException {
+        StreamProtocol protocol = new StreamProtocol(StreamProtocol.VERSION_2, 256, compression, dictionary);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream out = ChunkOutputStream.builder(result, protocol)
+                .withChunkSizePolicy(new FixedChunkSizePolicy(256))
+                .build();
+        out.write(bytes);
+        out.writeEOF();
+        out.release();
+        ChunkStatistics statistics = out.getStatistics();
+
+        ChunkInputStream in = new ChunkInputStream(new ByteArrayInputStream(result.toByteArray()), protocol);
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            read.write(buffer, 0, n);
+        }
+        in.release();
+        assertTrue(Arrays.equals(bytes, read.toByteArray()));
+        return statistics.getBytes() - statistics.getSavedBytes();
+    }
+
+    private static byte[] createEntities(long offset, int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GenericEntityOutputStream out = new GenericEntityOutputStream(bytes);
+        for (long n = offset; n < offset + count; n++) {
+            out.writeEntity(new GenericEntity()
+                    .setLong("id", n)
+                    .setString("name", "server-user-" + n)
+                    .setString("email", "server-user-" + n + "@example.com")
+            );
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class MappedRingBufferTestCase extends TestCase {
+
+    private Path file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = Files.createTempFile("promise", ".ring");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.delete(file);
+    }
+
+    public void testWrapAround() throws Exception {
+        // a small ring buffer, so the writer waits for the reader (and the bytes wrap around many times)
+        final byte[] bytes = new byte[100000];
+        for (int n = 0; n < bytes.length; n++) {
+            bytes[n] = (byte) n;
+        }
+        MappedRingBuffer writer = MappedRingBuffer.create(file, 1000, MappedRingBuffer.WaitStrategy.BUSY_SPIN);
+        MappedRingBuffer reader = MappedRingBuffer.open(file, MappedRingBuffer.WaitStrategy.PARK);
+        assertEquals(1000, reader.getCapacity());
+        final OutputStream out = writer.getOutputStream();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (int offset = 0; offset < bytes.length; offset += 777) {
+                        out.write(bytes, offset, Math.min(777, bytes.length - offset));
+                    }
+                    out.close();
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            }
+        });
+        thread.start();
+        InputStream in = reader.getInputStream();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[333];
+        int length;
+        while ((length = in.read(buffer)) != -1) {
+            result.write(buffer, 0, length);
+        }
+        thread.join();
+        assertNull(error.get());
+        assertTrue(Arrays.equals(bytes, result.toByteArray()));
+        assertEquals(-1, in.read());
+    }
+
+    public void testReaderClosed() throws Exception {
+        MappedRingBuffer writer = MappedRingBuffer.create(file, 1000, MappedRingBuffer.WaitStrategy.PARK);
+        MappedRingBuffer reader = MappedRingBuffer.open(file, MappedRingBuffer.WaitStrategy.PARK);
+        OutputStream out = writer.getOutputStream();
+        out.write(new byte[1000]);
+        reader.getInputStream().close();
+        try {
+            // the ring buffer is full, and the reader is gone
+            out.write(1);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testOpenedTwice() throws Exception {
+        MappedRingBuffer.create(file, 1000, MappedRingBuffer.WaitStrategy.PARK);
+        MappedRingBuffer.open(file, MappedRingBuffer.WaitStrategy.PARK);
+        try {
+            // a ring buffer has a single reader and a single writer
+            MappedRingBuffer.open(file, MappedRingBuffer.WaitStrategy.PARK);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testInvalidFile() throws Exception {
+        Files.write(file, new byte[1000]);
+        try {
+            MappedRingBuffer.open(file, MappedRingBuffer.WaitStrategy.PARK);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+}
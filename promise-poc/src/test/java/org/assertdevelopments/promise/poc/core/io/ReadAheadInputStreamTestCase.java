@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class ReadAheadInputStreamTestCase extends TestCase {
+
+    public void testRead() throws IOException {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        byte[] bytes = new byte[100000];
+        for (int n = 0; n < bytes.length; n++) {
+            bytes[n] = (byte) n;
+        }
+        ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(bytes), 1024, 2, pool);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int n = 0; ; n++) {
+            if (n % 2 == 0) {
+                int b = in.read();
+                if (b == -1) {
+                    break;
+                }
+                result.write(b);
+            } else {
+                byte[] buffer = new byte[n % 3000];
+                int c = in.read(buffer);
+                if (c == -1) {
+                    break;
+                }
+                result.write(buffer, 0, c);
+            }
+        }
+        assertEquals(-1, in.read());
+        assertTrue(Arrays.equals(bytes, result.toByteArray()));
+        in.abort();
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    public void testError() throws IOException {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        InputStream broken = new InputStream() {
+            private int count = 0;
+
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                if (count++ == 0) {
+                    bytes[offset] = 1;
+                    return 1;
+                }
+                throw new IOException("broken");
+            }
+        };
+        ReadAheadInputStream in = new ReadAheadInputStream(broken, 1024, 2, pool);
+        assertEquals(1, in.read());
+        try {
+            in.read();
+            fail();
+        } catch (IOException e) {
+            assertEquals("broken", e.getMessage());
+        }
+        in.abort();
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    public void testAbort() throws Exception {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        final CountDownLatch reading = new CountDownLatch(3);
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                reading.countDown();
+                return length;
+            }
+        };
+        ReadAheadInputStream in = new ReadAheadInputStream(endless, 1024, 2, pool);
+
+        // two blocks read ahead, the third block must wait
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        assertEquals(0, in.read());
+        in.abort();
+        in.abort();
+        try {
+            in.read();
+            fail();
+        } catch (IOException e) {
+            // aborted
+        }
+
+        // the background reader returns its blocks to the pool
+        for (int n = 0; n < 100 && pool.getOutstanding() > 0; n++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    public void testAbortClosesBlockedStream() throws Exception {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        InputStream blocking = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                reading.countDown();
+                try {
+                    closed.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                // simulate the reader still using its block after the stream got closed
+                Arrays.fill(bytes, offset, offset + length, (byte) 1);
+                throw new IOException("stream closed");
+            }
+
+            @Override
+            public void close() throws IOException {
+                closed.countDown();
+            }
+        };
+        ReadAheadInputStream in = new ReadAheadInputStream(blocking, 1024, 2, pool);
+
+        // the background reader is blocked, aborting closes the stream, and waits for the background reader
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        in.abort();
+        assertEquals(0, closed.getCount());
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    public void testAbortAfterEnd() throws Exception {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        final CountDownLatch closed = new CountDownLatch(1);
+        InputStream empty = new ByteArrayInputStream(new byte[0]) {
+            @Override
+            public void close() throws IOException {
+                closed.countDown();
+            }
+        };
+        ReadAheadInputStream in = new ReadAheadInputStream(empty, 1024, 2, pool);
+        assertEquals(-1, in.read());
+
+        // the underlying stream is only closed while the background reader is still reading it
+        in.abort();
+        assertEquals(1, closed.getCount());
+        assertEquals(0, pool.getOutstanding());
+    }
+
+}
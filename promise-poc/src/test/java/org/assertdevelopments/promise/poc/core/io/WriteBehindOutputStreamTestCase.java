@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.io;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.buffer.BufferPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class WriteBehindOutputStreamTestCase extends TestCase {
+
+    public void testWrite() throws IOException {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        WriteBehindOutputStream out = new WriteBehindOutputStream(result, 1024, 2, pool);
+        for (int n = 0; n < 10000; n++) {
+            byte[] bytes = new byte[n % 3000];
+            Arrays.fill(bytes, (byte) n);
+            out.write(bytes);
+            out.write(n);
+            expected.write(bytes);
+            expected.write(n);
+            if (n % 100 == 0) {
+                out.flush();
+            }
+        }
+        out.drain();
+        assertTrue(Arrays.equals(expected.toByteArray(), result.toByteArray()));
+        assertEquals(0, pool.getOutstanding());
+
+        try {
+            out.write(1);
+            fail();
+        } catch (IOException e) {
+            // drained
+        }
+    }
+
+    public void testBackpressure() throws Exception {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch unblocked = new CountDownLatch(1);
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                blocked.countDown();
+                try {
+                    unblocked.await();
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted");
+                }
+            }
+        };
+        final WriteBehindOutputStream out = new WriteBehindOutputStream(slow, 1024, 2, pool);
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    // one block being written, two blocks waiting, the fourth block must wait
+                    out.write(new byte[4 * 1024]);
+                    written.countDown();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        };
+        producer.start();
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        assertFalse(written.await(100, TimeUnit.MILLISECONDS));
+        unblocked.countDown();
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        out.drain();
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    public void testError() throws IOException {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        WriteBehindOutputStream out = new WriteBehindOutputStream(broken, 1024, 2, pool);
+        out.write(1);
+        out.flush();
+        try {
+            out.drain();
+            fail();
+        } catch (IOException e) {
+            assertEquals("broken", e.getCause().getMessage());
+        }
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    public void testAbort() throws IOException {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        WriteBehindOutputStream out = new WriteBehindOutputStream(new ByteArrayOutputStream(), 1024, 2, pool);
+        out.write(new byte[1500]);
+        out.abort();
+        out.abort();
+        try {
+            out.write(1);
+            fail();
+        } catch (IOException e) {
+            // aborted
+        }
+    }
+
+    public void testAbortWaitsForWriter() throws Exception {
+        BufferPool pool = new BufferPool(1, 1024 * 1024, false);
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch unblocked = new CountDownLatch(1);
+        final boolean[] written = new boolean[1];
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                writing.countDown();
+                try {
+                    unblocked.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                written[0] = true;
+            }
+        };
+        final WriteBehindOutputStream out = new WriteBehindOutputStream(slow, 1024, 2, pool);
+        out.write(1);
+        out.flush();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // the background writer is still writing, abort waits for it
+        Thread aborter = new Thread() {
+            @Override
+            public void run() {
+                out.abort();
+            }
+        };
+        aborter.start();
+        aborter.join(200);
+        assertTrue(aborter.isAlive());
+        unblocked.countDown();
+        aborter.join(5000);
+        assertFalse(aborter.isAlive());
+        assertTrue(written[0]);
+        assertEquals(0, pool.getOutstanding());
+    }
+
+}
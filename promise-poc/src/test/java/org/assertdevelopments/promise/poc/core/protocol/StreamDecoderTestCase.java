@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.channel.ChannelOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FixedChunkSizePolicy;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertdevelopments.promise.poc.core.protocol.StreamTestCase.createBytes;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class StreamDecoderTestCase extends TestCase {
+
+    public void testDecode() throws IOException {
+        byte[] bytes = createBytes(100000);
+        StreamProtocol[] protocols = new StreamProtocol[]{
+                StreamProtocol.LEGACY,
+                StreamProtocol.DEFAULT,
+                StreamProtocol.DEFAULT.withCompression(StreamProtocol.COMPRESSION_DEFLATE),
+                StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C),
+                StreamProtocol.DEFAULT.withResumable(true)
+        };
+        for (StreamProtocol protocol : protocols) {
+            byte[] stream = writeStream(protocol, bytes, StreamStatus.STATUS_OK);
+            for (int pieceSize = 1; pieceSize <= 100000; pieceSize *= 10) {
+                Collector collector = new Collector();
+                StreamDecoder decoder = decode(protocol, stream, pieceSize, collector);
+                assertTrue(protocol.toString(), decoder.isComplete());
+                assertEquals(StreamStatus.STATUS_OK, decoder.getStatus().getStatusCode());
+                assertTrue(protocol.toString(), Arrays.equals(bytes, collector.getBytes(0)));
+            }
+        }
+    }
+
+    public void testIncomplete() throws IOException {
+        byte[] stream = writeStream(StreamProtocol.DEFAULT, createBytes(10000), StreamStatus.STATUS_OK);
+        Collector collector = new Collector();
+        StreamDecoder decoder = new StreamDecoder(StreamProtocol.DEFAULT, collector);
+        decoder.decode(ByteBuffer.wrap(stream, 0, stream.length - 1));
+        assertFalse(decoder.isComplete());
+        assertNull(decoder.getStatus());
+        assertEquals(10000, collector.getBytes(0).length);
+        decoder.decode(ByteBuffer.wrap(stream, stream.length - 1, 1));
+        assertTrue(decoder.isComplete());
+    }
+
+    public void testError() throws IOException {
+        byte[] stream = writeStream(StreamProtocol.DEFAULT, createBytes(10000), StreamStatus.STATUS_ERROR);
+        try {
+            decode(StreamProtocol.DEFAULT, stream, 100, new Collector());
+            fail();
+        } catch (RemoteStreamException e) {
+            // remote error
+        }
+    }
+
+    public void testMultiplexed() throws IOException {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withMultiplexed(true);
+        byte[] bytes = createBytes(10000);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        StreamOutputStream out = StreamOutputStream.builder(stream, protocol)
+                .withChunkSizePolicy(new FixedChunkSizePolicy(1000))
+                .build();
+        ChannelOutputStream channel = out.openChannel(1);
+        for (int n = 0; n < bytes.length; n += 500) {
+            out.write(bytes, n, 500);
+            channel.write(bytes, n, 500);
+        }
+        channel.writeStatus(StreamStatus.STATUS_ERROR, "channel failed");
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+
+        Collector collector = new Collector();
+        StreamDecoder decoder = decode(protocol, stream.toByteArray(), 77, collector);
+        assertTrue(decoder.isComplete());
+        assertTrue(Arrays.equals(bytes, collector.getBytes(0)));
+        assertTrue(Arrays.equals(bytes, collector.getBytes(1)));
+        assertEquals(StreamStatus.STATUS_ERROR, collector.channelStatus.get(1).getStatusCode());
+        assertEquals("channel failed", collector.channelStatus.get(1).getStatusMessage());
+    }
+
+    private static StreamDecoder decode(StreamProtocol protocol, byte[] stream, int pieceSize, Collector collector)
+            throws IOException {
+        StreamDecoder decoder = new StreamDecoder(protocol, collector);
+        for (int offset = 0; offset < stream.length; offset += pieceSize) {
+            decoder.decode(ByteBuffer.wrap(stream, offset, Math.min(pieceSize, stream.length - offset)));
+        }
+        return decoder;
+    }
+
+    private static byte[] writeStream(StreamProtocol protocol, byte[] bytes, int statusCode) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        StreamOutputStream out = StreamOutputStream.builder(stream, protocol)
+                .withChunkSizePolicy(new FixedChunkSizePolicy(1000))
+                .build();
+        out.write(bytes);
+        out.writeStatus(statusCode, statusCode == StreamStatus.STATUS_OK ? "OK" : "failed");
+        out.release();
+        return stream.toByteArray();
+    }
+
+    private static final class Collector implements StreamFrameHandler {
+
+        private final Map<Integer, ByteArrayOutputStream> channels = new HashMap<Integer, ByteArrayOutputStream>();
+        private final Map<Integer, StreamStatus> channelStatus = new HashMap<Integer, StreamStatus>();
+
+        public void onFrame(int channel, byte[] bytes, int offset, int length) {
+            if (!channels.containsKey(channel)) {
+                channels.put(channel, new ByteArrayOutputStream());
+            }
+            channels.get(channel).write(bytes, offset, length);
+        }
+
+        public void onChannelEnd(int channel, StreamStatus status) {
+            channelStatus.put(channel, status);
+        }
+
+        byte[] getBytes(int channel) {
+            return channels.containsKey(channel) ? channels.get(channel).toByteArray() : new byte[0];
+        }
+
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.compression.CompressionDictionary;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class StreamProtocolTestCase extends TestCase {
+
+    public void testParse() {
+        assertEquals(StreamProtocol.LEGACY, StreamProtocol.parse("application/x-promise"));
+        assertEquals(StreamProtocol.LEGACY, StreamProtocol.parse("application/x-promise; version=1"));
+        assertEquals(new StreamProtocol(2, 1048576),
+                StreamProtocol.parse("application/x-promise; version=2; max-chunk-size=1048576"));
+        assertEquals(new StreamProtocol(2, 65536),
+                StreamProtocol.parse("Application/X-Promise;max-chunk-size=\"65536\";version=2;foo=bar"));
+        assertEquals(StreamProtocol.DEFAULT, StreamProtocol.parse(StreamProtocol.DEFAULT.getContentType()));
+        assertEquals(new StreamProtocol(2, 65536, StreamProtocol.COMPRESSION_DEFLATE),
+                StreamProtocol.parse("application/x-promise; version=2; max-chunk-size=65536; compression=Deflate"));
+        StreamProtocol compressed = StreamProtocol.DEFAULT.withCompression(StreamProtocol.COMPRESSION_DEFLATE);
+        assertEquals(compressed, StreamProtocol.parse(compressed.getContentType()));
+
+        try {
+            StreamProtocol.parse("application/octet-stream");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // not a promise content type
+        }
+
+        try {
+            StreamProtocol.parse("application/x-promise; version=3");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // unsupported version
+        }
+
+        try {
+            StreamProtocol.parse("application/x-promise; version=2; max-chunk-size=8388608");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // chunk size too large
+        }
+
+        try {
+            StreamProtocol.parse("application/x-promise; version=2; compression=lz4");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // unsupported compression
+        }
+
+        try {
+            StreamProtocol.parse("application/x-promise; version=1; compression=deflate");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // no compression in version 1
+        }
+    }
+
+    public void testParseAccept() {
+        assertEquals(StreamProtocol.LEGACY, StreamProtocol.parseAccept(null));
+        assertEquals(StreamProtocol.LEGACY, StreamProtocol.parseAccept("*/*"));
+        assertEquals(StreamProtocol.LEGACY, StreamProtocol.parseAccept("application/x-promise"));
+        assertEquals(new StreamProtocol(2, 1048576), StreamProtocol.parseAccept(
+                "application/x-promise; version=3, application/x-promise; version=2; max-chunk-size=1048576, " +
+                        "application/x-promise"
+        ));
+    }
+
+    public void testNegotiate() {
+        StreamProtocol large = new StreamProtocol(2, StreamConstants.MAX_LARGE_CHUNK_SIZE);
+        assertEquals(StreamProtocol.LEGACY, large.negotiate(StreamProtocol.LEGACY));
+        assertEquals(StreamProtocol.LEGACY, StreamProtocol.LEGACY.negotiate(large));
+        assertEquals(StreamProtocol.DEFAULT, large.negotiate(StreamProtocol.DEFAULT));
+        assertEquals(StreamProtocol.DEFAULT, StreamProtocol.DEFAULT.negotiate(large));
+
+        StreamProtocol compressed = StreamProtocol.DEFAULT.withCompression(StreamProtocol.COMPRESSION_DEFLATE);
+        assertEquals(compressed, compressed.negotiate(compressed));
+        assertEquals(StreamProtocol.DEFAULT, compressed.negotiate(StreamProtocol.DEFAULT));
+        assertEquals(StreamProtocol.DEFAULT, StreamProtocol.DEFAULT.negotiate(compressed));
+        assertEquals(StreamProtocol.LEGACY, compressed.negotiate(StreamProtocol.LEGACY));
+    }
+
+    public void testAccepts() {
+        StreamProtocol large = new StreamProtocol(2, StreamConstants.MAX_LARGE_CHUNK_SIZE);
+        assertTrue(large.accepts(StreamProtocol.DEFAULT));
+        assertTrue(large.accepts(StreamProtocol.LEGACY));
+        assertFalse(StreamProtocol.DEFAULT.accepts(large));
+        assertFalse(StreamProtocol.LEGACY.accepts(StreamProtocol.DEFAULT));
+        assertTrue(StreamProtocol.DEFAULT.accepts(
+                StreamProtocol.DEFAULT.withCompression(StreamProtocol.COMPRESSION_DEFLATE)));
+    }
+
+    public void testDictionary() {
+        CompressionDictionary dictionary = CompressionDictionary.register(
+                new CompressionDictionary("\"id\": \"name\": \"user-".getBytes())
+        );
+        StreamProtocol compressed = StreamProtocol.DEFAULT.withCompression(StreamProtocol.COMPRESSION_DEFLATE);
+        StreamProtocol preset = compressed.withDictionary(dictionary);
+        assertEquals(preset, StreamProtocol.parse(preset.getContentType()));
+        assertTrue(preset.getContentType().endsWith("; dictionary=" + dictionary.getIdString()));
+        assertEquals(preset, preset.negotiate(preset));
+        assertEquals(compressed, preset.negotiate(compressed));
+        assertEquals(compressed, compressed.negotiate(preset));
+
+        // unknown dictionaries are refused, and skipped when parsing an accept header
+        String unknown = StreamConstants.CONTENT_TYPE + "; version=2; compression=deflate; dictionary=" +
+                Integer.toHexString(dictionary.getId() + 1);
+        try {
+            StreamProtocol.parse(unknown);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // unknown dictionary
+        }
+        assertEquals(new StreamProtocol(2, StreamConstants.MAX_CHUNK_SIZE, StreamProtocol.COMPRESSION_DEFLATE),
+                StreamProtocol.parseAccept(unknown + ", " + StreamConstants.CONTENT_TYPE +
+                        "; version=2; compression=deflate"));
+
+        try {
+            StreamProtocol.DEFAULT.withDictionary(dictionary);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // a dictionary requires compression
+        }
+    }
+
+    public void testChecksum() {
+        StreamProtocol checked = StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C);
+        assertEquals(checked, StreamProtocol.parse(checked.getContentType()));
+        assertTrue(checked.getContentType().endsWith("; checksum=crc32c"));
+        assertEquals(checked, checked.negotiate(checked));
+        assertEquals(StreamProtocol.DEFAULT, checked.negotiate(StreamProtocol.DEFAULT));
+        assertEquals(StreamProtocol.DEFAULT, StreamProtocol.DEFAULT.negotiate(checked));
+
+        try {
+            StreamProtocol.parse("application/x-promise; version=2; checksum=md5");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // unsupported checksum
+        }
+    }
+
+    public void testResumable() {
+        StreamProtocol resumable = StreamProtocol.DEFAULT.withResumable(true);
+        assertTrue(resumable.isResumable());
+        assertEquals(resumable, StreamProtocol.parse(resumable.getContentType()));
+        assertTrue(resumable.getContentType().endsWith("; resumable=true"));
+        assertEquals(resumable, resumable.negotiate(resumable));
+        assertEquals(StreamProtocol.DEFAULT, resumable.negotiate(StreamProtocol.DEFAULT));
+        assertEquals(StreamProtocol.DEFAULT, StreamProtocol.DEFAULT.negotiate(resumable));
+        assertEquals(StreamProtocol.LEGACY, resumable.negotiate(StreamProtocol.LEGACY));
+
+        try {
+            StreamProtocol.LEGACY.withResumable(true);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // no resumable stream bodies in version 1
+        }
+    }
+
+    public void testMultiplexed() {
+        StreamProtocol multiplexed = StreamProtocol.DEFAULT.withMultiplexed(true);
+        StreamProtocol resumable = StreamProtocol.DEFAULT.withResumable(true);
+        assertTrue(multiplexed.isMultiplexed());
+        assertEquals(multiplexed, StreamProtocol.parse(multiplexed.getContentType()));
+        assertTrue(multiplexed.getContentType().endsWith("; multiplexed=true"));
+        assertEquals(multiplexed, multiplexed.negotiate(multiplexed));
+        assertEquals(StreamProtocol.DEFAULT, multiplexed.negotiate(StreamProtocol.DEFAULT));
+        assertEquals(StreamProtocol.DEFAULT, multiplexed.negotiate(resumable));
+        assertEquals(StreamProtocol.LEGACY, multiplexed.negotiate(StreamProtocol.LEGACY));
+
+        try {
+            resumable.withMultiplexed(true);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // multiplexed stream bodies can't be resumable
+        }
+        try {
+            StreamProtocol.LEGACY.withMultiplexed(true);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // no multiplexed stream bodies in version 1
+        }
+    }
+
+    public void testCredits() {
+        StreamProtocol credits = StreamProtocol.DEFAULT.withCredits(16);
+        assertEquals(16, credits.getCredits());
+        assertEquals(credits, StreamProtocol.parse(credits.getContentType()));
+        assertTrue(credits.getContentType().endsWith("; credits=16"));
+        assertEquals(8, credits.negotiate(StreamProtocol.DEFAULT.withCredits(8)).getCredits());
+        assertEquals(StreamProtocol.DEFAULT, credits.negotiate(StreamProtocol.DEFAULT));
+        assertEquals(StreamProtocol.LEGACY, credits.negotiate(StreamProtocol.LEGACY));
+
+        try {
+            StreamProtocol.LEGACY.withCredits(16);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // no flow control in version 1
+        }
+    }
+
+    public void testTrailers() {
+        StreamProtocol trailers = StreamProtocol.DEFAULT.withTrailers(true);
+        assertTrue(trailers.isTrailers());
+        assertEquals(trailers, StreamProtocol.parse(trailers.getContentType()));
+        assertTrue(trailers.getContentType().endsWith("; trailers=true"));
+        assertEquals(trailers, trailers.negotiate(StreamProtocol.DEFAULT.withTrailers(true)));
+        assertEquals(StreamProtocol.DEFAULT, trailers.negotiate(StreamProtocol.DEFAULT));
+        assertEquals(StreamProtocol.DEFAULT, StreamProtocol.DEFAULT.negotiate(trailers));
+        assertEquals(StreamProtocol.LEGACY, trailers.negotiate(StreamProtocol.LEGACY));
+
+        try {
+            StreamProtocol.LEGACY.withTrailers(true);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // no status trailers in version 1
+        }
+        try {
+            StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C).withTrailers(true);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // the stream body is not framed
+        }
+        try {
+            StreamProtocol.parse(StreamConstants.CONTENT_TYPE + "; version=2; resumable=true; trailers=true");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // the stream body is not framed
+        }
+    }
+
+}
@@ -0,0 +1,550 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.io.BoundedPipe;
+import org.assertdevelopments.promise.poc.core.protocol.channel.ChannelDemultiplexer;
+import org.assertdevelopments.promise.poc.core.protocol.channel.ChannelInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.channel.ChannelOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ChunkInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FixedChunkSizePolicy;
+import org.assertdevelopments.promise.poc.core.protocol.status.StatusTrailers;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityInputStream;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class StreamTestCase extends TestCase {
+
+    public void testLifeCycle() throws IOException {
+        byte[] bytes = createBytes(1000000);
+        assertTrue(Arrays.equals(bytes, readStream(writeStream(bytes, StreamStatus.STATUS_OK, 0))));
+        assertTrue(Arrays.equals(bytes, readStream(writeStream(bytes, StreamStatus.STATUS_OK, 2))));
+        assertTrue(Arrays.equals(bytes, readStream(writeStream(bytes, StreamStatus.STATUS_OK, 0), 2)));
+    }
+
+    public void testError() throws IOException {
+        byte[] bytes = createBytes(1000000);
+        for (int writeBehindBlocks = 0; writeBehindBlocks <= 2; writeBehindBlocks += 2) {
+            try {
+                readStream(writeStream(bytes, StreamStatus.STATUS_ERROR, writeBehindBlocks), writeBehindBlocks);
+                fail();
+            } catch (RemoteStreamException e) {
+                // remote error
+            }
+        }
+    }
+
+    public void testDigest() throws IOException {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C);
+        byte[] bytes = createBytes(1000000);
+        byte[] stream = writeStream(bytes, StreamStatus.STATUS_OK, 0, protocol);
+        assertTrue(Arrays.equals(bytes, readStream(stream, 0, protocol)));
+        assertTrue(Arrays.equals(bytes, readStream(stream, 2, protocol)));
+
+        // the digest is the last field of the status
+        stream[stream.length - 1] ^= 0x01;
+        try {
+            readStream(stream, 0, protocol);
+            fail();
+        } catch (IOException e) {
+            // stream digest mismatch
+        }
+    }
+
+    public void testTrailers() throws IOException {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withTrailers(true);
+        byte[] bytes = createBytes(1000000);
+        for (int blocks = 0; blocks <= 2; blocks += 2) {
+            // the stream body is not framed, the status is handed over to the trailers
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            StatusTrailers trailers = new StatusTrailers();
+            StreamOutputStream out = StreamOutputStream.builder(body, protocol)
+                    .withWriteBehindBlocks(blocks)
+                    .withTrailers(trailers)
+                    .build();
+            writeBytes(out, bytes);
+            assertEquals(bytes.length, out.getStreamOffset());
+            assertNull(trailers.getStatus());
+            out.writeStatus(StreamStatus.STATUS_OK, "OK \u00e9, \"done\"");
+            out.release();
+            assertTrue(Arrays.equals(bytes, body.toByteArray()));
+
+            // the status is read from the trailer fields, after the stream body
+            StreamInputStream in = new StreamInputStream(new ByteArrayInputStream(body.toByteArray()), protocol,
+                    blocks, null, trailers);
+            assertTrue(Arrays.equals(bytes, readFully(in)));
+            assertTrue(in.isComplete());
+            assertEquals(bytes.length, in.getStreamOffset());
+            StreamStatus status = StatusTrailers.readStatus(trailers.get());
+            assertEquals(StreamStatus.STATUS_OK, status.getStatusCode());
+            assertEquals("OK \u00e9, \"done\"", status.getStatusMessage());
+
+            // error status
+            trailers.setStatus(new StreamStatus(StreamStatus.STATUS_ERROR, "failed"));
+            try {
+                readFully(new StreamInputStream(new ByteArrayInputStream(body.toByteArray()), protocol, blocks, null,
+                        trailers));
+                fail();
+            } catch (RemoteStreamException e) {
+                // remote error
+            }
+
+            // missing trailer (f.e. an interrupted response)
+            try {
+                readFully(new StreamInputStream(new ByteArrayInputStream(body.toByteArray()), protocol, blocks, null,
+                        new StatusTrailers()));
+                fail();
+            } catch (IOException e) {
+                // incomplete stream
+            }
+        }
+    }
+
+    public void testResume() throws IOException {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withResumable(true).withChecksum(StreamProtocol.CHECKSUM_CRC32C);
+        byte[] bytes = createBytes(1000000);
+        byte[] expected = new byte[bytes.length - 123456];
+        System.arraycopy(bytes, 123456, expected, 0, expected.length);
+
+        // the producer regenerates the stream body, the bytes before the resume offset are discarded
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        StreamOutputStream out = new StreamOutputStream(result, protocol);
+        out.resume(123456);
+        out.write(bytes, 0, 1000);
+        out.write(bytes, 1000, bytes.length - 1000);
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+        byte[] stream = result.toByteArray();
+        StreamInputStream in = new StreamInputStream(new ByteArrayInputStream(stream), protocol);
+        in.resume(123456);
+        assertEquals(123456, in.getStreamOffset());
+        assertTrue(Arrays.equals(expected, readFully(in)));
+        assertEquals(bytes.length, in.getStreamOffset());
+
+        // the producer seeks (before the resume offset), the bytes before the resume offset are discarded
+        result = new ByteArrayOutputStream();
+        out = new StreamOutputStream(result, protocol);
+        out.resume(123456);
+        out.seek(100000);
+        assertEquals(100000, out.getStreamOffset());
+        out.write(bytes, 100000, bytes.length - 100000);
+        assertEquals(bytes.length, out.getStreamOffset());
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+        in = new StreamInputStream(new ByteArrayInputStream(result.toByteArray()), protocol);
+        in.resume(123456);
+        assertTrue(Arrays.equals(expected, readFully(in)));
+
+        // a stream body that doesn't start at the resume offset is refused
+        in = new StreamInputStream(new ByteArrayInputStream(stream), protocol);
+        in.resume(100000);
+        try {
+            readFully(in);
+            fail();
+        } catch (IOException e) {
+            // unexpected chunk offset
+        }
+    }
+
+    public void testResumeEntities() throws IOException {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withResumable(true);
+
+        // the first response body is interrupted halfway
+        byte[] stream = writeEntities(protocol, 0);
+        byte[] interrupted = new byte[stream.length / 2];
+        System.arraycopy(stream, 0, interrupted, 0, interrupted.length);
+        StreamInputStream in = new StreamInputStream(new ByteArrayInputStream(interrupted), protocol);
+        GenericEntityInputStream entities = new GenericEntityInputStream(in);
+        long id = 0;
+        long entityOffset = 0;
+        try {
+            while (true) {
+                GenericEntity entity = entities.readEntity();
+                assertEquals(Long.valueOf(id++), entity.getLong("id"));
+                entityOffset = in.getStreamOffset();
+            }
+        } catch (IOException e) {
+            // interrupted, the last entity is incomplete
+        }
+        in.release();
+        assertTrue(entityOffset > 0);
+
+        // the response body is resumed at the last entity boundary
+        in = new StreamInputStream(new ByteArrayInputStream(writeEntities(protocol, entityOffset)), protocol);
+        in.resume(entityOffset);
+        entities = new GenericEntityInputStream(in);
+        while (true) {
+            GenericEntity entity = entities.readEntity();
+            if (entity == null) {
+                break;
+            }
+            assertEquals(Long.valueOf(id++), entity.getLong("id"));
+        }
+        assertEquals(10000, id);
+    }
+
+    public void testMultiplexed() throws Exception {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withMultiplexed(true).withChecksum(StreamProtocol.CHECKSUM_CRC32C);
+        final byte[] bytes = createBytes(1000000);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final StreamOutputStream out = new StreamOutputStream(result, protocol);
+
+        // write the main channel and two channels concurrently, channel 2 ends with an error
+        Thread[] writers = new Thread[2];
+        final Exception[] errors = new Exception[writers.length];
+        for (int n = 0; n < writers.length; n++) {
+            final int index = n;
+            final ChannelOutputStream channel = out.openChannel(n + 1);
+            writers[n] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        writeBytes(channel, bytes);
+                        channel.writeStatus(index == 0 ? StreamStatus.STATUS_OK : StreamStatus.STATUS_ERROR, "status");
+                    } catch (Exception e) {
+                        errors[index] = e;
+                    }
+                }
+            };
+            writers[n].start();
+        }
+        writeBytes(out, bytes);
+        for (int n = 0; n < writers.length; n++) {
+            writers[n].join();
+            if (errors[n] != null) {
+                throw errors[n];
+            }
+        }
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+
+        // read the channels in reverse order (the frames of the other channels are queued)
+        StreamInputStream in = new StreamInputStream(new ByteArrayInputStream(result.toByteArray()), protocol);
+        ChannelInputStream channel2 = in.getChannel(2);
+        try {
+            readFully(channel2);
+            fail();
+        } catch (RemoteStreamException e) {
+            // channel error
+        }
+        assertEquals(StreamStatus.STATUS_ERROR, channel2.getStatus().getStatusCode());
+        assertTrue(Arrays.equals(bytes, readFully(in.getChannel(1))));
+        assertTrue(Arrays.equals(bytes, readFully(in)));
+    }
+
+    public void testMultiplexedFairness() throws Exception {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withMultiplexed(true);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        StreamOutputStream out = new StreamOutputStream(result, protocol);
+
+        // a small channel written after a large main channel is flushed
+        ChannelOutputStream channel = out.openChannel(1);
+        writeBytes(out, createBytes(1000000));
+        out.flush();
+        channel.write(createBytes(1000));
+        channel.writeStatus(StreamStatus.STATUS_OK, "OK");
+        writeBytes(out, createBytes(1000000));
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+
+        // the small channel ends before the main channel, so it's readable without buffering the main channel
+        StreamInputStream in = new StreamInputStream(new ByteArrayInputStream(result.toByteArray()), protocol);
+        byte[] buffer = new byte[1000000];
+        int length = 0;
+        while (length < buffer.length) {
+            length += in.read(buffer, length, buffer.length - length);
+        }
+        ChannelInputStream channelInputStream = in.getChannel(1);
+        assertEquals(1000, readFully(channelInputStream).length);
+        assertEquals(StreamStatus.STATUS_OK, channelInputStream.getStatus().getStatusCode());
+        assertEquals(1000000, readFully(in).length);
+    }
+
+    public void testEndOpenChannel() throws Exception {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withMultiplexed(true)
+                .withChecksum(StreamProtocol.CHECKSUM_CRC32C);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        StreamOutputStream out = new StreamOutputStream(result, protocol);
+
+        // channel 1 is being written by its own thread, until it ends
+        final ChannelOutputStream channel = out.openChannel(1);
+        final CountDownLatch writing = new CountDownLatch(1);
+        final IOException[] error = new IOException[1];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                byte[] bytes = createBytes(1000);
+                try {
+                    while (true) {
+                        channel.write(bytes);
+                        writing.countDown();
+                    }
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            }
+        };
+        writer.start();
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // the status of the stream body ends the channel while it is being written
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        writer.join();
+        assertNotNull(error[0]);
+        out.release();
+
+        // the channel holds complete writes only, and ends with the status of the stream body
+        StreamInputStream in = new StreamInputStream(new ByteArrayInputStream(result.toByteArray()), protocol);
+        ChannelInputStream channelInputStream = in.getChannel(1);
+        byte[] bytes = readFully(channelInputStream);
+        assertTrue(bytes.length > 0);
+        assertEquals(0, bytes.length % 1000);
+        assertEquals(StreamStatus.STATUS_OK, channelInputStream.getStatus().getStatusCode());
+        assertEquals(-1, in.read());
+    }
+
+    public void testMultiplexedQueueLimit() throws Exception {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withMultiplexed(true);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        StreamOutputStream out = new StreamOutputStream(result, protocol);
+        ChannelOutputStream channel = out.openChannel(1);
+        writeBytes(channel, createBytes(1000000));
+        channel.writeStatus(StreamStatus.STATUS_OK, "OK");
+        writeBytes(out, createBytes(1000));
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+
+        // channel 1 isn't read, its frames don't fit in its queue
+        InputStream data = new ByteArrayInputStream(result.toByteArray());
+        ChannelDemultiplexer demultiplexer = new ChannelDemultiplexer(new ChunkInputStream(data, protocol), data,
+                null, 10000);
+        try {
+            readFully(demultiplexer.getChannel(0));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("channel 1"));
+        }
+    }
+
+    public void testFlowControl() throws Exception {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withCredits(4);
+        final byte[] bytes = createBytes(1000000);
+        PipedInputStream dataInputStream = new PipedInputStream(1000000);
+        PipedInputStream creditInputStream = new PipedInputStream();
+        final StreamOutputStream out = StreamOutputStream.builder(new PipedOutputStream(dataInputStream), protocol)
+                .withChunkSizePolicy(new FixedChunkSizePolicy(1000))
+                .withCreditInputStream(creditInputStream)
+                .build();
+        StreamInputStream in = new StreamInputStream(dataInputStream, protocol, 0,
+                new PipedOutputStream(creditInputStream));
+
+        // write in the background, the writer is only limited by its credits (the pipe can hold the whole stream)
+        final Exception[] error = new Exception[1];
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    writeBytes(out, bytes);
+                    out.writeStatus(StreamStatus.STATUS_OK, "OK");
+                    out.release();
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        };
+        writer.start();
+
+        // the writer waits when the credits run out
+        Thread.sleep(200);
+        assertTrue(writer.isAlive());
+        assertTrue(dataInputStream.available() <= 4 * 1010);
+
+        // the bytes in flight stay bounded while reading slowly
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[500];
+        int maxInFlight = 0;
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            result.write(buffer, 0, n);
+            maxInFlight = Math.max(maxInFlight, dataInputStream.available());
+        }
+        writer.join();
+        if (error[0] != null) {
+            throw error[0];
+        }
+        assertTrue(Arrays.equals(bytes, result.toByteArray()));
+        assertTrue("max in flight: " + maxInFlight, maxInFlight <= 4 * 1010);
+        assertTrue(out.getCredits().getStalls() > 0);
+    }
+
+    public void testMultiplexedFlowControl() throws Exception {
+        StreamProtocol protocol = StreamProtocol.DEFAULT.withMultiplexed(true).withCredits(4);
+        final byte[] bytes = createBytes(1000000);
+        PipedInputStream dataInputStream = new PipedInputStream(1000000);
+
+        // both writers read credits, so the credits go through a pipe that doesn't break when one of them ends
+        BoundedPipe creditPipe = new BoundedPipe(1024);
+
+        // write behind, so a single thread writes to the pipe (the pipe breaks when the thread that wrote last ends)
+        final StreamOutputStream out = StreamOutputStream.builder(new PipedOutputStream(dataInputStream), protocol)
+                .withChunkSizePolicy(new FixedChunkSizePolicy(1000))
+                .withWriteBehindBlocks(2)
+                .withCreditInputStream(creditPipe.getInputStream())
+                .build();
+        StreamInputStream in = new StreamInputStream(dataInputStream, protocol, 0, creditPipe.getOutputStream());
+
+        // the main channel and channel 1 are written by their own threads
+        final Exception[] error = new Exception[1];
+        final ChannelOutputStream channel = out.openChannel(1);
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    writeBytes(channel, bytes);
+                    channel.writeStatus(StreamStatus.STATUS_OK, "OK");
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        };
+        writer.start();
+        Thread mainWriter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    writeBytes(out, bytes);
+                    out.flush();
+                } catch (Exception e) {
+                    error[0] = e;
+                }
+            }
+        };
+        mainWriter.start();
+
+        // reading channel 1 first: the main channel only gets a credit window ahead
+        assertTrue(Arrays.equals(bytes, readFully(in.getChannel(1))));
+        assertTrue(mainWriter.isAlive());
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (result.size() < bytes.length) {
+            result.write(buffer, 0, in.read(buffer));
+        }
+        mainWriter.join();
+        writer.join();
+        if (error[0] != null) {
+            throw error[0];
+        }
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+        assertEquals(-1, in.read());
+        assertTrue(Arrays.equals(bytes, result.toByteArray()));
+    }
+
+    private static byte[] writeEntities(StreamProtocol protocol, long resumeOffset) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        StreamOutputStream out = new StreamOutputStream(result, protocol);
+        out.resume(resumeOffset);
+        GenericEntityOutputStream entities = new GenericEntityOutputStream(out);
+        for (long n = 0; n < 10000; n++) {
+            entities.writeEntity(new GenericEntity().setLong("id", n).setString("name", "user-" + n));
+        }
+        entities.flush();
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+        return result.toByteArray();
+    }
+
+    private static byte[] writeStream(byte[] bytes, int statusCode, int writeBehindBlocks) throws IOException {
+        return writeStream(bytes, statusCode, writeBehindBlocks, StreamProtocol.DEFAULT);
+    }
+
+    private static byte[] writeStream(byte[] bytes, int statusCode, int writeBehindBlocks, StreamProtocol protocol)
+            throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        StreamOutputStream out = StreamOutputStream.builder(result, protocol)
+                .withWriteBehindBlocks(writeBehindBlocks)
+                .build();
+        for (int offset = 0; offset < bytes.length; offset += 1000) {
+            out.write(bytes, offset, Math.min(1000, bytes.length - offset));
+        }
+        out.writeStatus(statusCode, "status");
+        out.release();
+        return result.toByteArray();
+    }
+
+    private static void writeBytes(OutputStream out, byte[] bytes) throws IOException {
+        for (int offset = 0; offset < bytes.length; offset += 1000) {
+            out.write(bytes, offset, Math.min(1000, bytes.length - offset));
+        }
+    }
+
+    private static byte[] readStream(byte[] stream) throws IOException {
+        return readStream(stream, 0);
+    }
+
+    private static byte[] readStream(byte[] stream, int readAheadBlocks) throws IOException {
+        return readStream(stream, readAheadBlocks, StreamProtocol.DEFAULT);
+    }
+
+    private static byte[] readStream(byte[] stream, int readAheadBlocks, StreamProtocol protocol) throws IOException {
+        return readFully(new StreamInputStream(new ByteArrayInputStream(stream), protocol, readAheadBlocks));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            result.write(buffer, 0, n);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Create a stream body of the provided size, with a repeating (and poorly compressible) byte pattern. Shared by the
+     * stream tests of the other packages.
+     *
+     * @param size the size
+     * @return the bytes
+     */
+    public static byte[] createBytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int n = 0; n < size; n++) {
+            bytes[n] = (byte) (n * 31);
+        }
+        return bytes;
+    }
+
+}
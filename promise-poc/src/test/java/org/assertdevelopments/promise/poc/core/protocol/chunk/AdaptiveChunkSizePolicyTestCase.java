@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.chunk;
+
+import junit.framework.TestCase;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class AdaptiveChunkSizePolicyTestCase extends TestCase {
+
+    private static final long MS = 1000000L;
+
+    public void testGrowWhenProducerBound() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(8192, 65536);
+        assertEquals(8192, policy.getChunkSize());
+        writeWindow(policy, 1 * MS, 10 * MS);
+        assertEquals(16384, policy.getChunkSize());
+        writeWindow(policy, 1 * MS, 10 * MS);
+        writeWindow(policy, 1 * MS, 10 * MS);
+        writeWindow(policy, 1 * MS, 10 * MS);
+        assertEquals(65536, policy.getChunkSize());
+    }
+
+    public void testShrinkWhenConsumerBound() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(8192, 65536);
+        writeWindow(policy, 9 * MS, 10 * MS);
+        assertEquals(4096, policy.getChunkSize());
+        for (int n = 0; n < 10; n++) {
+            writeWindow(policy, 9 * MS, 10 * MS);
+        }
+        assertEquals(AdaptiveChunkSizePolicy.MIN_CHUNK_SIZE, policy.getChunkSize());
+    }
+
+    public void testShrinkWhenProducerSlow() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(8192, 65536);
+        writeWindow(policy, 1 * MS, 100 * MS);
+        assertEquals(4096, policy.getChunkSize());
+    }
+
+    public void testShrinkWhenGrowingDoesNotPay() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(8192, 65536);
+        writeWindow(policy, MS / 10, 2 * MS);
+        assertEquals(16384, policy.getChunkSize());
+
+        // twice the bytes in five times the time: the throughput dropped
+        writeWindow(policy, 1 * MS, 10 * MS);
+        assertEquals(8192, policy.getChunkSize());
+
+        // hold the chunk size for a while
+        for (int n = 0; n < AdaptiveChunkSizePolicy.HOLD_WINDOWS - 1; n++) {
+            writeWindow(policy, MS / 10, 2 * MS);
+            assertEquals(8192, policy.getChunkSize());
+        }
+        writeWindow(policy, MS / 10, 2 * MS);
+        assertEquals(16384, policy.getChunkSize());
+    }
+
+    public void testIgnoreFlushedChunks() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(8192, 65536);
+        for (int n = 0; n < 100; n++) {
+            policy.chunkWritten(100, false, 1 * MS, 10 * MS);
+        }
+        assertEquals(8192, policy.getChunkSize());
+    }
+
+    public void testCeiling() {
+        AdaptiveChunkSizePolicy policy = new AdaptiveChunkSizePolicy(8192, 512);
+        assertEquals(512, policy.getChunkSize());
+        writeWindow(policy, 9 * MS, 10 * MS);
+        assertEquals(512, policy.getChunkSize());
+    }
+
+    private static void writeWindow(AdaptiveChunkSizePolicy policy, long writeTime, long elapsedTime) {
+        for (int n = 0; n < AdaptiveChunkSizePolicy.WINDOW_SIZE; n++) {
+            policy.chunkWritten(policy.getChunkSize(), true, writeTime, elapsedTime);
+        }
+    }
+
+}
@@ -17,8 +17,11 @@
 package org.assertdevelopments.promise.poc.core.protocol.chunk;
 
 import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.util.Arrays;
 
@@ -88,6 +91,115 @@ public class ChunkInputStreamTestCase extends TestCase {
         assertTrue(Arrays.equals(buffer, new byte[]{0x00, 0x00}));
     }
 
+    public void testReadBytesDirect() throws IOException {
+        ChunkInputStream inputStream = new ChunkInputStream(new ByteArrayInputStream(createSample()), MAX_CHUNK_SIZE);
+        byte[] buffer = new byte[8];
+        assertEquals(6, inputStream.read(buffer, 0, 6));
+        assertTrue(Arrays.equals(buffer, new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x00, 0x00}));
+        assertEquals(0, inputStream.available());
+        buffer = new byte[8];
+        assertEquals(2, inputStream.read(buffer, 0, 2));
+        assertTrue(Arrays.equals(buffer, new byte[]{0x07, 0x08, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00}));
+        assertEquals(2, inputStream.available());
+        assertEquals(0x09, inputStream.read());
+        assertEquals(1, inputStream.read(buffer, 2, 6));
+        assertTrue(Arrays.equals(buffer, new byte[]{0x07, 0x08, (byte) 0xFF, 0x00, 0x00, 0x00, 0x00, 0x00}));
+        assertEquals(-1, inputStream.read(buffer));
+    }
+
+    public void testReadBytesLifeCycle() throws IOException {
+        // reading with buffers that are smaller, equal to or bigger than the chunks must return the same bytes
+        byte[] bytes = new byte[10000];
+        for (int n = 0; n < bytes.length; n++) {
+            bytes[n] = (byte) n;
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream outputStream = new ChunkOutputStream(result, MAX_CHUNK_SIZE);
+        outputStream.write(bytes);
+        outputStream.writeEOF();
+
+        for (int size : new int[]{1, 100, MAX_CHUNK_SIZE - 1, MAX_CHUNK_SIZE, MAX_CHUNK_SIZE + 1, 20000}) {
+            ChunkInputStream inputStream = new ChunkInputStream(
+                    new ByteArrayInputStream(result.toByteArray()), MAX_CHUNK_SIZE
+            );
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            byte[] buffer = new byte[size];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                read.write(buffer, 0, n);
+            }
+            assertTrue(Arrays.equals(bytes, read.toByteArray()));
+        }
+    }
+
+    public void testReadLargeChunks() throws IOException {
+        StreamProtocol protocol = new StreamProtocol(StreamProtocol.VERSION_2, 1048576);
+        byte[] bytes = new byte[1048576 + 1000];
+        for (int n = 0; n < bytes.length; n++) {
+            bytes[n] = (byte) n;
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream outputStream = new ChunkOutputStream(result, protocol);
+        outputStream.write(bytes);
+        outputStream.writeEOF();
+
+        ChunkInputStream inputStream = new ChunkInputStream(new ByteArrayInputStream(result.toByteArray()), protocol);
+        byte[] buffer = new byte[bytes.length];
+        assertEquals(0x00, inputStream.read());
+        assertEquals(0x01, inputStream.read());
+        assertEquals(bytes.length - 2, inputStream.read(buffer, 2, bytes.length - 2));
+        assertEquals(-1, inputStream.read());
+        buffer[1] = 0x01;
+        assertTrue(Arrays.equals(bytes, buffer));
+
+        // chunks that exceed the maximum chunk size are refused
+        inputStream = new ChunkInputStream(new ByteArrayInputStream(result.toByteArray()),
+                new StreamProtocol(StreamProtocol.VERSION_2, 1048575));
+        try {
+            inputStream.read();
+            fail();
+        } catch (IOException e) {
+            // chunk too large
+        }
+    }
+
+    public void testReadBytesDirectLargeChunks() throws IOException {
+        // reading less than a chunk (64 KB of the 256 KB chunks of the default protocol) doesn't use the chunk buffer
+        for (StreamProtocol protocol : new StreamProtocol[]{StreamProtocol.DEFAULT,
+                StreamProtocol.DEFAULT.withChecksum(StreamProtocol.CHECKSUM_CRC32C)}) {
+            byte[] bytes = new byte[1048576 + 1000];
+            for (int n = 0; n < bytes.length; n++) {
+                bytes[n] = (byte) n;
+            }
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            ChunkOutputStream outputStream = new ChunkOutputStream(result, protocol);
+            outputStream.write(bytes);
+            outputStream.writeEOF();
+
+            final byte[] buffer = new byte[65536];
+            final int[] buffered = new int[1];
+            ChunkInputStream inputStream = new ChunkInputStream(new FilterInputStream(
+                    new ByteArrayInputStream(result.toByteArray())) {
+                @Override
+                @SuppressWarnings({"NullableProblems"})
+                public int read(byte[] target, int offset, int length) throws IOException {
+                    int n = super.read(target, offset, length);
+                    if (target != buffer && n > 0) {
+                        buffered[0] += n;
+                    }
+                    return n;
+                }
+            }, protocol);
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                read.write(buffer, 0, n);
+            }
+            assertTrue(Arrays.equals(bytes, read.toByteArray()));
+            assertEquals(0, buffered[0]);
+        }
+    }
+
     private static byte[] createSample() {
         return new byte[]{
                 0x00, 0x01, /* chunk-size 1 */
@@ -17,6 +17,7 @@
 package org.assertdevelopments.promise.poc.core.protocol.chunk;
 
 import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
 
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
@@ -75,4 +76,200 @@ public class ChunkOutputStreamTestCase extends TestCase {
         }));
     }
 
+    public void testWriteBytes() throws IOException {
+        // large writes bypass the chunk buffer, but must result in exactly the same chunks as single byte writes
+        byte[] bytes = createBytes(10000);
+        int[][] writes = {{0, 10000}, {0, 4}, {0, 3, 10000}, {0, 1, 2, 3, 8, 9, 100, 101, 5000, 10000}};
+        for (int[] offsets : writes) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ChunkOutputStream expectedOut = new ChunkOutputStream(expected, 4);
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            ChunkOutputStream out = new ChunkOutputStream(result, 4);
+            for (int n = 1; n < offsets.length; n++) {
+                for (int i = offsets[n - 1]; i < offsets[n]; i++) {
+                    expectedOut.write(bytes[i]);
+                }
+                out.write(bytes, offsets[n - 1], offsets[n] - offsets[n - 1]);
+            }
+            expectedOut.writeEOF();
+            out.writeEOF();
+            assertTrue(Arrays.equals(expected.toByteArray(), result.toByteArray()));
+        }
+    }
+
+    public void testWriteBytesAfterFlush() throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream out = new ChunkOutputStream(result, 4);
+        out.write(new byte[]{0x01, 0x02});
+        out.flush();
+        out.write(new byte[]{0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B});
+        out.writeEOF();
+
+        assertTrue(Arrays.equals(result.toByteArray(), new byte[]{
+                0x00, 0x02, /* chunk-size 1 */
+                0x01, 0x02, /* chunk 1 */
+                0x00, 0x04, /* chunk-size 2 */
+                0x03, 0x04, 0x05, 0x06, /* chunk 2 */
+                0x00, 0x04, /* chunk-size 3 */
+                0x07, 0x08, 0x09, 0x0A, /* chunk 3 */
+                0x00, 0x01, /* chunk-size 4 */
+                0x0B, /* chunk 4 */
+                0x00, 0x00 /* chunk-eof */
+        }));
+    }
+
+    public void testWriteLargeChunks() throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream out = new ChunkOutputStream(result, new StreamProtocol(StreamProtocol.VERSION_2, 200));
+        out.write(createBytes(330));
+        out.writeEOF();
+
+        byte[] bytes = result.toByteArray();
+        assertEquals(3 + 200 + 3 + 130 + 2, bytes.length);
+        assertTrue(Arrays.equals(slice(bytes, 0, 3), new byte[]{
+                0x00, /* flags */
+                (byte) 0xC8, 0x01 /* chunk-size 200 */
+        }));
+        assertTrue(Arrays.equals(slice(bytes, 203, 206), new byte[]{
+                0x00, /* flags */
+                (byte) 0x82, 0x01 /* chunk-size 130 */
+        }));
+        assertTrue(Arrays.equals(slice(bytes, 336, 338), new byte[]{
+                0x00, /* flags */
+                0x00 /* chunk-eof */
+        }));
+    }
+
+    public void testChunkSizePolicy() throws IOException {
+        // a policy that alternates between chunks of 2 and 3 bytes
+        ChunkSizePolicy policy = new ChunkSizePolicy() {
+            private int chunkSize = 2;
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void chunkWritten(int size, boolean full, long writeTime, long elapsedTime) {
+                chunkSize = chunkSize == 2 ? 3 : 2;
+            }
+        };
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream out = ChunkOutputStream.builder(result, new StreamProtocol(StreamProtocol.VERSION_1, 4))
+                .withChunkSizePolicy(policy)
+                .build();
+        out.write(1);
+        out.write(2);
+        out.write(new byte[]{0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B});
+        out.writeEOF();
+
+        assertTrue(Arrays.equals(result.toByteArray(), new byte[]{
+                0x00, 0x02, /* chunk-size 1 */
+                0x01, 0x02, /* chunk 1 */
+                0x00, 0x03, /* chunk-size 2 */
+                0x03, 0x04, 0x05, /* chunk 2 */
+                0x00, 0x02, /* chunk-size 3 */
+                0x06, 0x07, /* chunk 3 */
+                0x00, 0x03, /* chunk-size 4 */
+                0x08, 0x09, 0x0A, /* chunk 4 */
+                0x00, 0x01, /* chunk-size 5 */
+                0x0B, /* chunk 5 */
+                0x00, 0x00 /* chunk-eof */
+        }));
+
+        ChunkStatistics statistics = out.getStatistics();
+        assertEquals(5, statistics.getChunks());
+        assertEquals(11, statistics.getBytes());
+        assertEquals(2, statistics.getMinChunkSize());
+        assertEquals(3, statistics.getMaxChunkSize());
+        assertEquals(5, statistics.getChunkSizeChanges());
+    }
+
+    public void testCoalescingFlushPolicy() throws IOException {
+        FlushCountingOutputStream result = new FlushCountingOutputStream();
+        ChunkOutputStream out = ChunkOutputStream.builder(result, new StreamProtocol(StreamProtocol.VERSION_1, 4))
+                .withFlushPolicy(new CoalescingFlushPolicy(10))
+                .build();
+
+        // small flushes are coalesced (the bytes stay in the chunk buffer)
+        out.write(1);
+        out.flush();
+        out.write(2);
+        out.flush();
+        assertEquals(0, result.size());
+        assertEquals(0, result.getFlushes());
+
+        // full chunks are written, but only flushed when enough bytes are pending
+        out.write(new byte[]{0x03, 0x04, 0x05, 0x06, 0x07, 0x08});
+        assertEquals(2 * (2 + 4), result.size());
+        assertEquals(0, result.getFlushes());
+        out.write(new byte[]{0x09, 0x0A});
+        assertEquals(0, result.getFlushes());
+        out.flush();
+        assertEquals(1, result.getFlushes());
+        assertEquals(2 * (2 + 4) + (2 + 2), result.size());
+
+        // the end of the stream is always flushed
+        out.write(0x0B);
+        out.flush();
+        assertEquals(1, result.getFlushes());
+        out.writeEOF();
+        assertEquals(2, result.getFlushes());
+        assertEquals(2 * (2 + 4) + (2 + 2) + (2 + 1) + 2, result.size());
+    }
+
+    public void testLatencyFlushPolicy() throws Exception {
+        FlushCountingOutputStream result = new FlushCountingOutputStream();
+        ChunkOutputStream out = ChunkOutputStream.builder(result, new StreamProtocol(StreamProtocol.VERSION_1, 4))
+                .withFlushPolicy(new LatencyFlushPolicy(50))
+                .build();
+
+        // the first flush is not delayed
+        out.write(1);
+        out.flush();
+        assertEquals(1, result.getFlushes());
+
+        // the next flush is delayed, and done by the timer
+        out.write(2);
+        out.flush();
+        assertEquals(1, result.getFlushes());
+        for (int n = 0; n < 100 && result.getFlushes() < 2; n++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, result.getFlushes());
+        assertEquals(2 * (2 + 1), result.size());
+
+        out.writeEOF();
+        assertEquals(3, result.getFlushes());
+        assertEquals(2 * (2 + 1) + 2, result.size());
+    }
+
+    private static byte[] slice(byte[] bytes, int from, int to) {
+        byte[] slice = new byte[to - from];
+        System.arraycopy(bytes, from, slice, 0, slice.length);
+        return slice;
+    }
+
+    private static byte[] createBytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int n = 0; n < size; n++) {
+            bytes[n] = (byte) n;
+        }
+        return bytes;
+    }
+
+    private static class FlushCountingOutputStream extends ByteArrayOutputStream {
+
+        private int flushes;
+
+        @Override
+        public synchronized void flush() {
+            flushes++;
+        }
+
+        synchronized int getFlushes() {
+            return flushes;
+        }
+
+    }
+
 }
@@ -17,10 +17,15 @@
 package org.assertdevelopments.promise.poc.core.protocol.chunk;
 
 import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * @author Stefan Bangels
@@ -48,4 +53,114 @@ public class ChunkTestCase extends TestCase {
         assertEquals(-1, inputStream.read());
     }
 
+    public void testCompression() throws IOException {
+        StreamProtocol protocol = new StreamProtocol(StreamProtocol.VERSION_2, 4096, StreamProtocol.COMPRESSION_DEFLATE);
+
+        // compressible bytes (repeated text) and incompressible bytes (random)
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int n = 0; n < 1000; n++) {
+            expected.write(("{\"id\": " + n + ", \"name\": \"user-" + n + "\"}").getBytes("UTF-8"));
+        }
+        byte[] random = new byte[10000];
+        new Random(0).nextBytes(random);
+        expected.write(random);
+        byte[] bytes = expected.toByteArray();
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream outputStream = ChunkOutputStream.builder(result, protocol)
+                .withChunkSizePolicy(new FixedChunkSizePolicy(4096))
+                .build();
+        outputStream.write(bytes);
+        outputStream.write(bytes, 0, 10);
+        outputStream.flush();
+        outputStream.writeEOF();
+        outputStream.release();
+
+        ChunkStatistics statistics = outputStream.getStatistics();
+        assertTrue(statistics.getCompressedChunks() > 0);
+        assertTrue(statistics.getCompressedChunks() < statistics.getChunks());
+        assertTrue(statistics.getSavedBytes() > 0);
+        assertTrue(result.size() < bytes.length + 10);
+
+        // read single bytes, small reads (buffered) and large reads (direct)
+        ChunkInputStream inputStream = new ChunkInputStream(new ByteArrayInputStream(result.toByteArray()), protocol);
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        for (int n = 0; ; n++) {
+            byte[] buffer = new byte[n % 3 == 0 ? 1 : n % 3 == 1 ? 100 : 5000];
+            int c = inputStream.read(buffer);
+            if (c == -1) {
+                break;
+            }
+            read.write(buffer, 0, c);
+        }
+        inputStream.release();
+        expected.write(bytes, 0, 10);
+        assertTrue(Arrays.equals(expected.toByteArray(), read.toByteArray()));
+
+        // compressed chunks are refused when compression was not negotiated
+        inputStream = new ChunkInputStream(new ByteArrayInputStream(result.toByteArray()),
+                new StreamProtocol(StreamProtocol.VERSION_2, 4096));
+        try {
+            inputStream.skipRemaining();
+            fail();
+        } catch (IOException e) {
+            // unsupported chunk flags
+        }
+    }
+
+    public void testChecksum() throws IOException {
+        StreamProtocol protocol = new StreamProtocol(StreamProtocol.VERSION_2, 4096)
+                .withChecksum(StreamProtocol.CHECKSUM_CRC32C);
+        checkChecksum(protocol);
+        checkChecksum(protocol.withCompression(StreamProtocol.COMPRESSION_DEFLATE));
+    }
+
+    private void checkChecksum(StreamProtocol protocol) throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int n = 0; n < 1000; n++) {
+            expected.write(("{\"id\": " + n + "}").getBytes("UTF-8"));
+        }
+        byte[] bytes = expected.toByteArray();
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ChunkOutputStream outputStream = ChunkOutputStream.builder(result, protocol)
+                .withChunkSizePolicy(new FixedChunkSizePolicy(1000))
+                .build();
+        outputStream.write(bytes);
+        outputStream.writeEOF();
+        outputStream.release();
+        byte[] chunks = result.toByteArray();
+
+        // the chunks are verified, and the reader ends up with the digest of the writer
+        ChunkInputStream inputStream = new ChunkInputStream(new ByteArrayInputStream(chunks), protocol);
+        byte[] read = new byte[bytes.length];
+        for (int offset = 0; offset < read.length; offset++) {
+            read[offset] = (byte) inputStream.read();
+        }
+        assertEquals(-1, inputStream.read());
+        inputStream.release();
+        assertTrue(Arrays.equals(bytes, read));
+        assertNotNull(outputStream.getDigest());
+        assertEquals(outputStream.getDigest(), inputStream.getDigest());
+
+        // a corrupted byte in the last chunk is detected
+        chunks[chunks.length - 3] ^= 0x01;
+        inputStream = new ChunkInputStream(new ByteArrayInputStream(chunks), protocol);
+        try {
+            inputStream.skipRemaining();
+            fail();
+        } catch (IOException e) {
+            // chunk checksum mismatch
+        }
+
+        // chunks with checksums are refused when checksums were not negotiated
+        inputStream = new ChunkInputStream(new ByteArrayInputStream(chunks), protocol.withChecksum(null));
+        try {
+            inputStream.skipRemaining();
+            fail();
+        } catch (IOException e) {
+            // unsupported chunk flags
+        }
+    }
+
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.credit;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class CreditTestCase extends TestCase {
+
+    public void testGrant() throws IOException {
+        ByteArrayOutputStream grants = new ByteArrayOutputStream();
+        CreditGrantor grantor = new CreditGrantor(grants, 4);
+        grantor.consumed(0);
+        assertEquals(0, grants.size());
+        grantor.consumed(0);
+        assertEquals(2, grants.size());
+
+        CreditWindow credits = new CreditWindow(new ByteArrayInputStream(grants.toByteArray()), 4);
+        for (int n = 0; n < 4; n++) {
+            assertTrue(credits.tryAcquire(0));
+        }
+        assertFalse(credits.tryAcquire(0));
+        assertEquals(0, credits.getStalls());
+
+        // the writer reads the grant when it's out of credits
+        credits.acquire(0);
+        assertEquals(1, credits.getStalls());
+        assertEquals(1, credits.getCredits(0));
+        credits.acquire(0);
+        try {
+            credits.acquire(0);
+            fail();
+        } catch (IOException e) {
+            // no more credits
+        }
+    }
+
+    public void testChannels() throws IOException {
+        ByteArrayOutputStream grants = new ByteArrayOutputStream();
+        CreditGrantor grantor = new CreditGrantor(grants, 1);
+        grantor.consumed(300);
+        grantor.consumed(300);
+
+        CreditWindow credits = new CreditWindow(new ByteArrayInputStream(grants.toByteArray()), 1);
+        credits.acquire(0);
+        credits.acquire(300);
+        assertFalse(credits.tryAcquire(0));
+        assertFalse(credits.tryAcquire(300));
+
+        credits.acquire(300);
+
+        // the grants of a channel don't help the other channels
+        try {
+            credits.acquire(0);
+            fail();
+        } catch (IOException e) {
+            // no more credits
+        }
+        assertEquals(1, credits.getCredits(300));
+        assertEquals(0, credits.getCredits(0));
+    }
+
+    public void testEnd() throws IOException {
+        // the grants of two stream bodies on the same credit stream
+        ByteArrayOutputStream grants = new ByteArrayOutputStream();
+        CreditGrantor grantor = new CreditGrantor(grants, 2);
+        grantor.consumed(0);
+        grantor.consumed(300);
+        CreditGrantor.end(grants);
+        grantor = new CreditGrantor(grants, 2);
+        grantor.consumed(0);
+        CreditGrantor.end(grants);
+
+        // the first writer didn't need its grants, the second writer only gets its own grants
+        ByteArrayInputStream creditInputStream = new ByteArrayInputStream(grants.toByteArray());
+        CreditWindow.skip(creditInputStream);
+        CreditWindow credits = new CreditWindow(creditInputStream, 1);
+        credits.acquire(0);
+        credits.acquire(0);
+        try {
+            credits.acquire(0);
+            fail();
+        } catch (IOException e) {
+            // the grants ended
+        }
+        assertEquals(0, creditInputStream.available());
+    }
+
+}
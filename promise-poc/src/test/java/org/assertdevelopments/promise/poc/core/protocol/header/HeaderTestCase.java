@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.core.protocol.header;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class HeaderTestCase extends TestCase {
+
+    public void testRequestHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HeaderOutputStream out = new HeaderOutputStream(bytes);
+        out.writeRequestHeader(new StreamRequestHeader("POST", "/ws/test?n=1", "application/x-promise", null));
+        out.writeRequestHeader(new StreamRequestHeader("GET", "/", null, "application/x-promise"));
+        out.flush();
+
+        HeaderInputStream in = new HeaderInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        StreamRequestHeader header = in.readRequestHeader();
+        assertEquals("POST", header.getMethod());
+        assertEquals("/ws/test?n=1", header.getUri());
+        assertEquals("application/x-promise", header.getContentType());
+        assertNull(header.getAccept());
+        header = in.readRequestHeader();
+        assertEquals("GET", header.getMethod());
+        assertNull(header.getContentType());
+        assertEquals("application/x-promise", header.getAccept());
+
+        // end of the connection
+        assertNull(in.readRequestHeader());
+    }
+
+    public void testResponseHeader() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HeaderOutputStream out = new HeaderOutputStream(bytes);
+        out.writeResponseHeader(new StreamResponseHeader(StreamResponseHeader.STATUS_ACCEPTED,
+                "application/x-promise; version=2", null));
+        out.writeResponseHeader(new StreamResponseHeader(StreamResponseHeader.STATUS_NOT_FOUND, null, "not found"));
+        out.flush();
+
+        HeaderInputStream in = new HeaderInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        StreamResponseHeader header = in.readResponseHeader();
+        assertTrue(header.isAccepted());
+        assertEquals("application/x-promise; version=2", header.getContentType());
+        header = in.readResponseHeader();
+        assertFalse(header.isAccepted());
+        assertEquals(StreamResponseHeader.STATUS_NOT_FOUND, header.getStatusCode());
+        assertEquals("not found", header.getMessage());
+    }
+
+    public void testInvalidRequestHeader() {
+        HeaderInputStream in = new HeaderInputStream(new ByteArrayInputStream("GET / HTTP/1.1\r\n".getBytes()));
+        try {
+            in.readRequestHeader();
+            fail();
+        } catch (IOException e) {
+            // not a stream request
+        }
+    }
+
+}
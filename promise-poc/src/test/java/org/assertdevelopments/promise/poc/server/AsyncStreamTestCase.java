@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.exceptions.RemoteStreamException;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.ExplicitFlushPolicy;
+import org.assertdevelopments.promise.poc.entities.objects.GenericEntity;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityInputStream;
+import org.assertdevelopments.promise.poc.entities.serialization.GenericEntityOutputStream;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class AsyncStreamTestCase extends TestCase {
+
+    public void testWrite() throws Exception {
+        final ClientOutputStream client = new ClientOutputStream();
+        AsyncStreamImpl stream = createStream(client);
+        final GenericEntityOutputStream out = new GenericEntityOutputStream(stream.getOutputStream());
+        stream.start(new AsyncStreamHandler() {
+            private long n = 0;
+
+            public void onWritePossible(AsyncStream stream) throws Throwable {
+                while (stream.isReady() && n < 100000) {
+                    out.writeEntity(new GenericEntity().setLong("id", n++));
+                }
+                if (n == 100000) {
+                    stream.sendSuccess();
+                }
+            }
+        });
+
+        // the client is ready now and then, until the exchange is completed
+        int callbacks = 0;
+        while (!client.completed) {
+            assertTrue(callbacks++ < 100000);
+            client.ready = true;
+            client.listener.onWritePossible();
+        }
+        assertTrue(callbacks > 1);
+
+        GenericEntityInputStream in = new GenericEntityInputStream(readStream(client));
+        long n = 0;
+        GenericEntity entity;
+        while ((entity = in.readEntity()) != null) {
+            assertEquals(Long.valueOf(n++), entity.getLong("id"));
+        }
+        assertEquals(100000, n);
+    }
+
+    public void testError() throws Exception {
+        final ClientOutputStream client = new ClientOutputStream();
+        AsyncStreamImpl stream = createStream(client);
+        stream.start(new AsyncStreamHandler() {
+            public void onWritePossible(AsyncStream stream) throws Throwable {
+                stream.getOutputStream().write(new byte[1000]);
+                throw new IllegalStateException("handler error");
+            }
+        });
+        client.ready = true;
+        client.listener.onWritePossible();
+        assertTrue(client.completed);
+
+        StreamInputStream in = readStream(client);
+        try {
+            while (in.read() != -1) {
+                // skip
+            }
+            fail();
+        } catch (RemoteStreamException e) {
+            // handler error
+        }
+    }
+
+    public void testWhenReady() throws Exception {
+        final ClientOutputStream client = new ClientOutputStream();
+        final AsyncStreamImpl stream = createStream(client);
+        final GenericEntityOutputStream out = new GenericEntityOutputStream(stream.getOutputStream());
+        stream.start(null);
+
+        // the writer continues when the stream is ready again, instead of being called back
+        new Runnable() {
+            private long n = 0;
+
+            public void run() {
+                try {
+                    while (stream.isReady() && n < 100000) {
+                        out.writeEntity(new GenericEntity().setLong("id", n++));
+                    }
+                    if (n == 100000) {
+                        stream.sendSuccess();
+                        return;
+                    }
+                    out.flush();
+                    stream.whenReady().thenRun(this);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }.run();
+        int callbacks = 0;
+        while (!client.completed) {
+            assertTrue(callbacks++ < 100000);
+            client.ready = true;
+            client.listener.onWritePossible();
+        }
+        assertTrue(stream.whenReady().toCompletableFuture().isCompletedExceptionally());
+
+        GenericEntityInputStream in = new GenericEntityInputStream(readStream(client));
+        long n = 0;
+        GenericEntity entity;
+        while ((entity = in.readEntity()) != null) {
+            assertEquals(Long.valueOf(n++), entity.getLong("id"));
+        }
+        assertEquals(100000, n);
+    }
+
+    public void testOverflow() throws Exception {
+        final ClientOutputStream client = new ClientOutputStream();
+        AsyncStreamImpl stream = createStream(client, 64 * 1024);
+        stream.start(new AsyncStreamHandler() {
+            public void onWritePossible(AsyncStream stream) throws Throwable {
+                // ignores isReady
+                for (int n = 0; n < 100; n++) {
+                    stream.getOutputStream().write(new byte[1000]);
+                    stream.getOutputStream().flush();
+                }
+            }
+        });
+        client.ready = true;
+        client.listener.onWritePossible();
+        while (!client.completed) {
+            client.ready = true;
+            client.listener.onWritePossible();
+        }
+
+        // no room for the error status, the stream is incomplete
+        StreamInputStream in = readStream(client);
+        try {
+            while (in.read() != -1) {
+                // skip
+            }
+            fail();
+        } catch (RemoteStreamException e) {
+            fail();
+        } catch (IOException e) {
+            // incomplete stream
+        }
+    }
+
+    private static AsyncStreamImpl createStream(ClientOutputStream client) {
+        return createStream(client, 1024 * 1024);
+    }
+
+    private static AsyncStreamImpl createStream(final ClientOutputStream client, int maxBuffer) {
+        final ServletResponse response = (ServletResponse) Proxy.newProxyInstance(
+                ServletResponse.class.getClassLoader(), new Class<?>[]{ServletResponse.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return "getOutputStream".equals(method.getName()) ? client : null;
+                    }
+                }
+        );
+        AsyncContext asyncContext = (AsyncContext) Proxy.newProxyInstance(
+                AsyncContext.class.getClassLoader(), new Class<?>[]{AsyncContext.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("complete".equals(method.getName())) {
+                            client.completed = true;
+                        }
+                        return "getResponse".equals(method.getName()) ? response : null;
+                    }
+                }
+        );
+        StreamExchange exchange = new StreamExchange(StreamProtocol.DEFAULT, StreamProtocol.DEFAULT, null, 0, null);
+        return new AsyncStreamImpl("/test", "POST", new byte[1], asyncContext, exchange, new ExplicitFlushPolicy(),
+                16 * 1024, maxBuffer, System.currentTimeMillis());
+    }
+
+    private static StreamInputStream readStream(ClientOutputStream client) {
+        return new StreamInputStream(new ByteArrayInputStream(client.bytes.toByteArray()), StreamProtocol.DEFAULT);
+    }
+
+    /**
+     * A client that is ready for one block at a time.
+     */
+    private static final class ClientOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private WriteListener listener;
+        private boolean ready = false;
+        private boolean completed = false;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void write(int b) {
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            assertTrue(ready);
+            bytes.write(b, off, len);
+            ready = false;
+        }
+
+    }
+
+}
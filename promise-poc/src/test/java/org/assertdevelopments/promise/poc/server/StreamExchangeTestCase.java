@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Logger;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertdevelopments.promise.poc.server.StreamServletTestCase.ResponseStub;
+import static org.assertdevelopments.promise.poc.server.StreamServletTestCase.createHeaders;
+import static org.assertdevelopments.promise.poc.server.StreamServletTestCase.createRequest;
+import static org.assertdevelopments.promise.poc.server.StreamServletTestCase.createRequestBody;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class StreamExchangeTestCase extends TestCase {
+
+    private static final StreamProtocol TRAILERS_PROTOCOL = StreamProtocol.DEFAULT.withTrailers(true);
+
+    private final Logger logger = Logger.getLogger(getClass());
+
+    public void testTrailers() throws Exception {
+        Map<String, String> headers = createTrailersHeaders();
+        headers.put("TE", "deflate, trailers");
+        ResponseStub response = new ResponseStub();
+
+        StreamExchange exchange = accept(headers, response.create(Servlet4Response.class));
+        assertNotNull(exchange);
+        assertTrue(exchange.getResponseProtocol().isTrailers());
+        assertEquals(exchange.getResponseProtocol().getContentType(), response.headers.get("Content-Type"));
+        assertEquals(StreamConstants.STATUS_TRAILER + ", " + StreamConstants.STATUS_MESSAGE_TRAILER,
+                response.headers.get("Trailer"));
+
+        // the container asks the registered supplier for the trailer fields when the response is completed
+        assertNotNull(exchange.getTrailers());
+        assertSame(exchange.getTrailers(), response.trailerFields);
+        exchange.getTrailers().setStatus(new StreamStatus(StreamStatus.STATUS_OK, "OK"));
+        assertEquals(String.valueOf(StreamStatus.STATUS_OK),
+                response.trailerFields.get().get(StreamConstants.STATUS_TRAILER));
+    }
+
+    public void testTrailersNotAccepted() throws Exception {
+        // no TE: trailers request header
+        ResponseStub response = new ResponseStub();
+
+        StreamExchange exchange = accept(createTrailersHeaders(), response.create(Servlet4Response.class));
+        assertFallback(exchange, response);
+        assertNull(response.trailerFields);
+    }
+
+    public void testTrailersNotSupported() throws Exception {
+        // a Servlet 3.1 response
+        Map<String, String> headers = createTrailersHeaders();
+        headers.put("TE", "trailers");
+        ResponseStub response = new ResponseStub();
+
+        StreamExchange exchange = accept(headers, response.create(HttpServletResponse.class));
+        assertFallback(exchange, response);
+    }
+
+    public void testTrailersRejected() throws Exception {
+        // f.e. an http/1.0 request
+        Map<String, String> headers = createTrailersHeaders();
+        headers.put("TE", "trailers");
+        ResponseStub response = new ResponseStub();
+        response.trailersRejected = true;
+
+        StreamExchange exchange = accept(headers, response.create(Servlet4Response.class));
+        assertFallback(exchange, response);
+    }
+
+    private StreamExchange accept(Map<String, String> headers, HttpServletResponse response) throws Exception {
+        return StreamExchange.accept(createRequest(headers, createRequestBody(new byte[0]), null), response,
+                TRAILERS_PROTOCOL, false, logger);
+    }
+
+    private static Map<String, String> createTrailersHeaders() {
+        Map<String, String> headers = createHeaders();
+        headers.put("Accept", TRAILERS_PROTOCOL.getContentType());
+        return headers;
+    }
+
+    private static void assertFallback(StreamExchange exchange, ResponseStub response) {
+        // the stream status is sent in the response body
+        assertNotNull(exchange);
+        assertNull(exchange.getTrailers());
+        assertFalse(exchange.getResponseProtocol().isTrailers());
+        assertEquals(exchange.getResponseProtocol().getContentType(), response.headers.get("Content-Type"));
+        assertFalse(response.headers.containsKey("Trailer"));
+        assertEquals(HttpServletResponse.SC_ACCEPTED, response.status);
+    }
+
+    /**
+     * The Servlet 4 response API for trailer fields (the tests are compiled against the Servlet 3.1 API).
+     */
+    public interface Servlet4Response extends HttpServletResponse {
+
+        void setTrailerFields(Supplier<Map<String, String>> supplier);
+
+    }
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.io.BoundedPipe;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @author agent
+ * @since 2026-10-17
+ */
+public class StreamServletTestCase extends TestCase {
+
+    public void testVirtualThreads() throws Exception {
+        final boolean[] virtual = new boolean[1];
+        AbstractStreamServlet servlet = new AbstractStreamServlet() {
+            @Override
+            protected boolean isVirtualThreads() {
+                return true;
+            }
+
+            @Override
+            protected void handleStreamRequest(Stream stream) throws Throwable {
+                virtual[0] = Thread.currentThread().isVirtual();
+                echo(stream);
+            }
+        };
+        final CountDownLatch completed = new CountDownLatch(1);
+        AsyncContext asyncContext = (AsyncContext) Proxy.newProxyInstance(
+                AsyncContext.class.getClassLoader(), new Class<?>[]{AsyncContext.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("complete".equals(method.getName())) {
+                            completed.countDown();
+                        }
+                        return null;
+                    }
+                }
+        );
+        Map<String, String> headers = createHeaders();
+        ResponseStub response = new ResponseStub();
+
+        // the container thread returns before the stream is handled, the exchange is completed afterwards
+        servlet.service(createRequest(headers, createRequestBody(new byte[]{1, 2, 3}), asyncContext),
+                response.create(HttpServletResponse.class));
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertTrue(virtual[0]);
+        assertEquals(HttpServletResponse.SC_ACCEPTED, response.status);
+        assertEquals(3, readResponseBody(response).length);
+    }
+
+    public void testDuplex() throws Exception {
+        final AbstractStreamServlet servlet = new AbstractStreamServlet() {
+            @Override
+            protected void handleStreamRequest(Stream stream) throws Throwable {
+                // respond to every byte right away
+                InputStream in = stream.getInputStream();
+                int n;
+                while ((n = in.read()) != -1) {
+                    stream.getOutputStream().write(n);
+                    stream.getOutputStream().flush();
+                }
+            }
+        };
+        Map<String, String> headers = createHeaders();
+        headers.put(StreamConstants.DUPLEX_HEADER, "true");
+        BoundedPipe requestPipe = new BoundedPipe(1024);
+        BoundedPipe responsePipe = new BoundedPipe(1024);
+        final HttpServletRequest request = createRequest(headers, requestPipe.getInputStream(), null);
+        final ResponseStub response = new ResponseStub(responsePipe.getOutputStream());
+        Thread container = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    servlet.service(request, response.create(HttpServletResponse.class));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        container.start();
+        try {
+            // the response headers are committed before the request body is read
+            assertTrue(response.committed.await(10, TimeUnit.SECONDS));
+            assertEquals(HttpServletResponse.SC_ACCEPTED, response.status);
+
+            // the response is read in lockstep with the request, before the request body has ended
+            StreamOutputStream out = new StreamOutputStream(requestPipe.getOutputStream(), StreamProtocol.DEFAULT);
+            StreamInputStream in = new StreamInputStream(responsePipe.getInputStream(),
+                    StreamProtocol.parse(response.headers.get("Content-Type")));
+            for (int n = 1; n <= 3; n++) {
+                out.write(n);
+                out.flush();
+                assertEquals(n, in.read());
+            }
+            out.writeStatus(StreamStatus.STATUS_OK, "OK");
+            out.release();
+            assertEquals(-1, in.read());
+        } finally {
+            container.join(10000);
+        }
+        assertFalse(container.isAlive());
+    }
+
+    public void testDuplexRejectedByAsyncServlet() throws Exception {
+        AbstractAsyncStreamServlet servlet = new AbstractAsyncStreamServlet() {
+            @Override
+            protected AsyncStreamHandler handleStreamRequest(AsyncStream stream) {
+                fail();
+                return null;
+            }
+        };
+        Map<String, String> headers = createHeaders();
+        headers.put(StreamConstants.DUPLEX_HEADER, "true");
+        ResponseStub response = new ResponseStub();
+
+        // the request body would only be handled when it is complete, so the client would never see a response
+        servlet.service(createRequest(headers, createRequestBody(new byte[]{1}), null),
+                response.create(HttpServletResponse.class));
+        assertEquals(HttpServletResponse.SC_NOT_IMPLEMENTED, response.status);
+        assertFalse(response.headers.containsKey("Content-Type"));
+    }
+
+    public void testRequestProtocolRejected() throws Exception {
+        AbstractStreamServlet servlet = new AbstractStreamServlet() {
+            @Override
+            protected void handleStreamRequest(Stream stream) {
+                fail();
+            }
+        };
+        Map<String, String> headers = createHeaders();
+        headers.put("Content-Type", new StreamProtocol(StreamProtocol.VERSION_2,
+                StreamConstants.MAX_LARGE_CHUNK_SIZE).getContentType());
+        ResponseStub response = new ResponseStub();
+
+        // the request body has larger chunks than the servlet offered to read
+        servlet.service(createRequest(headers, createRequestBody(new byte[]{1}), null),
+                response.create(HttpServletResponse.class));
+        assertEquals(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, response.status);
+        assertFalse(response.headers.containsKey("Content-Type"));
+    }
+
+    static void echo(Stream stream) throws IOException {
+        InputStream in = stream.getInputStream();
+        int n;
+        while ((n = in.read()) != -1) {
+            stream.getOutputStream().write(n);
+        }
+    }
+
+    static Map<String, String> createHeaders() {
+        Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        headers.put("Content-Type", StreamProtocol.DEFAULT.getContentType());
+        headers.put("Accept", StreamProtocol.DEFAULT.getContentType());
+        return headers;
+    }
+
+    static InputStream createRequestBody(byte[] bytes) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        StreamOutputStream out = new StreamOutputStream(body, StreamProtocol.DEFAULT);
+        out.write(bytes);
+        out.writeStatus(StreamStatus.STATUS_OK, "OK");
+        out.release();
+        return new ByteArrayInputStream(body.toByteArray());
+    }
+
+    static HttpServletRequest createRequest(final Map<String, String> headers, final InputStream body,
+                                            final AsyncContext asyncContext) {
+        final ServletInputStream in = new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return false;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read() throws IOException {
+                return body.read();
+            }
+
+            @Override
+            public int read(byte[] bytes, int off, int len) throws IOException {
+                return body.read(bytes, off, len);
+            }
+        };
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("getMethod".equals(name)) {
+                            return "POST";
+                        } else if ("getRequestURI".equals(name)) {
+                            return "/context/servlet/test";
+                        } else if ("getContextPath".equals(name)) {
+                            return "/context";
+                        } else if ("getServletPath".equals(name)) {
+                            return "/servlet";
+                        } else if ("getContentType".equals(name)) {
+                            return headers.get("Content-Type");
+                        } else if ("getHeader".equals(name)) {
+                            return headers.get((String) args[0]);
+                        } else if ("getInputStream".equals(name)) {
+                            return in;
+                        } else if ("startAsync".equals(name)) {
+                            return asyncContext;
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                }
+        );
+    }
+
+    static byte[] readResponseBody(ResponseStub response) throws IOException {
+        StreamInputStream in = new StreamInputStream(new ByteArrayInputStream(response.body.toByteArray()),
+                StreamProtocol.parse(response.headers.get("Content-Type")));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int n;
+        while ((n = in.read()) != -1) {
+            bytes.write(n);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A response that keeps the status, the headers, the body and the supplier of the trailer fields (when created as
+     * a Servlet 4 response).
+     */
+    static class ResponseStub implements InvocationHandler {
+
+        final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        volatile int status = HttpServletResponse.SC_OK;
+        final CountDownLatch committed = new CountDownLatch(1);
+        volatile Supplier<Map<String, String>> trailerFields;
+        boolean trailersRejected = false;
+
+        private final OutputStream target;
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                target.write(b);
+            }
+
+            @Override
+            public void write(byte[] bytes, int off, int len) throws IOException {
+                target.write(bytes, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                target.flush();
+            }
+        };
+
+        ResponseStub() {
+            this.target = body;
+        }
+
+        /**
+         * A response that writes the body to the provided output stream (instead of keeping it).
+         */
+        ResponseStub(OutputStream target) {
+            this.target = target;
+        }
+
+        HttpServletResponse create(Class<? extends HttpServletResponse> type) {
+            return (HttpServletResponse) Proxy.newProxyInstance(
+                    type.getClassLoader(), new Class<?>[]{type}, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("setHeader".equals(name)) {
+                headers.put((String) args[0], (String) args[1]);
+            } else if ("setStatus".equals(name) || "sendError".equals(name)) {
+                status = (Integer) args[0];
+            } else if ("flushBuffer".equals(name)) {
+                committed.countDown();
+            } else if ("getOutputStream".equals(name)) {
+                return out;
+            } else if ("isCommitted".equals(name)) {
+                return committed.getCount() == 0;
+            } else if ("setTrailerFields".equals(name)) {
+                if (trailersRejected) {
+                    throw new IllegalStateException("trailers are not supported for this response");
+                }
+                @SuppressWarnings("unchecked")
+                Supplier<Map<String, String>> supplier = (Supplier<Map<String, String>>) args[0];
+                trailerFields = supplier;
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 Assert Developments
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.assertdevelopments.promise.poc.server;
+
+import junit.framework.TestCase;
+import org.assertdevelopments.promise.poc.core.io.BoundedPipe;
+import org.assertdevelopments.promise.poc.core.protocol.StreamConstants;
+import org.assertdevelopments.promise.poc.core.protocol.StreamInputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamOutputStream;
+import org.assertdevelopments.promise.poc.core.protocol.StreamProtocol;
+import org.assertdevelopments.promise.poc.core.protocol.chunk.FixedChunkSizePolicy;
+import org.assertdevelopments.promise.poc.core.protocol.status.StreamStatus;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertdevelopments.promise.poc.server.StreamServletTestCase.ResponseStub;
+import static org.assertdevelopments.promise.poc.server.StreamServletTestCase.createHeaders;
+import static org.assertdevelopments.promise.poc.server.StreamServletTestCase.createRequest;
+
+/**
+ * Runs a large number of concurrent streams through a stream servlet in virtual-thread mode, on a container with a
+ * small thread pool (in a single JVM). The stream handlers only finish when all streams are open at the same time,
+ * so this only completes when the container threads are returned while the stream handlers are blocked. The clients
+ * and the servlet block on small pipes, so this also only completes when blocking in the streams doesn't pin the
+ * carrier threads.
+ *
+ * @author agent
+ * @since 2026-10-17
+ */
+public class VirtualThreadTestCase extends TestCase {
+
+    private static final int STREAMS = 10000;
+    private static final int STREAM_SIZE = 10000;
+    private static final int PIPE_SIZE = 1024;
+    private static final int CONTAINER_THREADS = 4;
+
+    public void testConcurrentStreams() throws Exception {
+        final StreamProtocol protocol = StreamProtocol.parse(StreamConstants.CONTENT_TYPE + "; version=2; " +
+                "max-chunk-size=1024; checksum=crc32c");
+        final CountDownLatch opened = new CountDownLatch(STREAMS);
+        final CountDownLatch finished = new CountDownLatch(STREAMS);
+        final CountDownLatch completed = new CountDownLatch(STREAMS);
+        final AtomicInteger virtualHandlers = new AtomicInteger();
+        final AtomicInteger echoed = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        // the stream handlers echo the request body, once all streams are open
+        final AbstractStreamServlet servlet = new AbstractStreamServlet() {
+            @Override
+            protected StreamProtocol getStreamProtocol() {
+                return protocol;
+            }
+
+            @Override
+            protected boolean isVirtualThreads() {
+                return true;
+            }
+
+            @Override
+            protected void handleStreamRequest(Stream stream) throws Throwable {
+                if (Thread.currentThread().isVirtual()) {
+                    virtualHandlers.incrementAndGet();
+                }
+                InputStream in = stream.getInputStream();
+                OutputStream out = stream.getOutputStream();
+                out.write(in.read());
+                opened.countDown();
+                if (!opened.await(60, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("streams not opened: " + opened.getCount());
+                }
+                byte[] buffer = new byte[512];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        };
+        AsyncContext asyncContext = (AsyncContext) Proxy.newProxyInstance(
+                AsyncContext.class.getClassLoader(), new Class<?>[]{AsyncContext.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("complete".equals(method.getName())) {
+                            completed.countDown();
+                        }
+                        return null;
+                    }
+                }
+        );
+        Map<String, String> headers = createHeaders();
+        headers.put("Content-Type", protocol.getContentType());
+        headers.put("Accept", protocol.getContentType());
+
+        // a container with a small thread pool
+        ExecutorService container = Executors.newFixedThreadPool(CONTAINER_THREADS);
+        try {
+            for (int n = 0; n < STREAMS; n++) {
+                final int stream = n;
+                final BoundedPipe requestPipe = new BoundedPipe(PIPE_SIZE);
+                final BoundedPipe responsePipe = new BoundedPipe(PIPE_SIZE);
+                final HttpServletRequest request = createRequest(headers, requestPipe.getInputStream(), asyncContext);
+                final ResponseStub response = new ResponseStub(responsePipe.getOutputStream());
+                final CountDownLatch accepted = new CountDownLatch(1);
+                container.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            servlet.service(request, response.create(HttpServletResponse.class));
+                        } catch (Throwable t) {
+                            error.compareAndSet(null, t);
+                        } finally {
+                            accepted.countDown();
+                        }
+                    }
+                });
+
+                // the client writes the request body, and reads the response body once the request is accepted
+                Thread.ofVirtual().start(new Runnable() {
+                    public void run() {
+                        try {
+                            StreamOutputStream out = StreamOutputStream.builder(requestPipe.getOutputStream(), protocol)
+                                    .withChunkSizePolicy(new FixedChunkSizePolicy(1000))
+                                    .build();
+                            for (int i = 0; i < STREAM_SIZE; i++) {
+                                out.write(createByte(stream, i));
+                                if (i == 0) {
+                                    out.flush();
+                                }
+                            }
+                            out.writeStatus(StreamStatus.STATUS_OK, "OK");
+                            out.release();
+                            requestPipe.getOutputStream().close();
+                        } catch (Throwable t) {
+                            error.compareAndSet(null, t);
+                        }
+                    }
+                });
+                Thread.ofVirtual().start(new Runnable() {
+                    public void run() {
+                        try {
+                            accepted.await();
+                            assertEquals(HttpServletResponse.SC_ACCEPTED, response.status);
+                            StreamInputStream in = new StreamInputStream(responsePipe.getInputStream(),
+                                    StreamProtocol.parse(response.headers.get("Content-Type")));
+                            byte[] buffer = new byte[512];
+                            int size = 0;
+                            int n;
+                            while ((n = in.read(buffer)) != -1) {
+                                for (int i = 0; i < n; i++) {
+                                    if (buffer[i] != createByte(stream, size + i)) {
+                                        throw new IOException("unexpected byte at " + (size + i) + " of stream " +
+                                                stream);
+                                    }
+                                }
+                                size += n;
+                            }
+                            if (size != STREAM_SIZE) {
+                                throw new IOException("unexpected size of stream " + stream + ": " + size);
+                            }
+                            echoed.incrementAndGet();
+                        } catch (Throwable t) {
+                            error.compareAndSet(null, t);
+                        } finally {
+                            finished.countDown();
+                        }
+                    }
+                });
+            }
+
+            // all streams are open at the same time, while the container has only a few threads
+            assertTrue("streams not opened: " + opened.getCount(), opened.await(60, TimeUnit.SECONDS));
+            assertTrue("streams not finished: " + finished.getCount(), finished.await(60, TimeUnit.SECONDS));
+            assertTrue("streams not completed: " + completed.getCount(), completed.await(10, TimeUnit.SECONDS));
+        } finally {
+            container.shutdownNow();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        assertEquals(STREAMS, virtualHandlers.get());
+        assertEquals(STREAMS, echoed.get());
+    }
+
+    private static byte createByte(int stream, int index) {
+        return (byte) (stream + index * 31);
+    }
+
+}